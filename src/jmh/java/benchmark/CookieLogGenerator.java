@@ -0,0 +1,139 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class generates synthetic cookie log files for benchmarks.
+ * The rows are spread evenly over the requested number of days and written newest first,
+ * and cookie popularity follows a Zipf distribution with a configurable skew.
+ */
+public class CookieLogGenerator {
+
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int COOKIE_ID_LENGTH = 16;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxx");
+
+    private final long rows;
+    private final int distinctCookies;
+    private final double skew;
+    private final int days;
+    private final LocalDate lastDay;
+    private final long seed;
+
+    /**
+     * Constructs a new CookieLogGenerator.
+     *
+     * @param rows            the number of rows to generate
+     * @param distinctCookies the number of distinct cookie identifiers
+     * @param skew            the Zipf exponent, 0 for a uniform distribution
+     * @param days            the number of days spanned by the log
+     * @param lastDay         the newest day of the log
+     * @param seed            the seed of the random generator
+     */
+    public CookieLogGenerator(long rows, int distinctCookies, double skew, int days, LocalDate lastDay, long seed) {
+        if (rows < 0 || distinctCookies < 1 || skew < 0 || days < 1) {
+            throw new IllegalArgumentException("Incorrect generator parameters");
+        }
+        this.rows = rows;
+        this.distinctCookies = distinctCookies;
+        this.skew = skew;
+        this.days = days;
+        this.lastDay = lastDay;
+        this.seed = seed;
+    }
+
+    /**
+     * Writes the log to the given file.
+     *
+     * @param file the file to write
+     * @return the number of bytes written
+     * @throws IOException if the file cannot be written
+     */
+    public long generate(Path file) throws IOException {
+        Random random = new Random(seed);
+        String[] cookieIds = new String[distinctCookies];
+        for (int i = 0; i < distinctCookies; i++) {
+            cookieIds[i] = cookieId(random);
+        }
+        double[] cumulative = zipfCumulative();
+
+        long end = lastDay.plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        long span = days * 86400L;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("cookie,timestamp\n");
+            for (long row = 0; row < rows; row++) {
+                long timestamp = end - 1 - (span * row) / Math.max(1, rows);
+                int index = Arrays.binarySearch(cumulative, random.nextDouble());
+                String cookieId = cookieIds[Math.min(distinctCookies - 1, index < 0 ? -index - 1 : index)];
+                out.write(cookieId);
+                out.write(',');
+                out.write(TIMESTAMP_FORMAT.format(Instant.ofEpochSecond(timestamp).atOffset(ZoneOffset.UTC)));
+                out.write('\n');
+            }
+        }
+        return Files.size(file);
+    }
+
+    /**
+     * Computes the normalized cumulative Zipf distribution over the cookie ranks.
+     *
+     * @return the cumulative probabilities
+     */
+    private double[] zipfCumulative() {
+        double[] cumulative = new double[distinctCookies];
+        double sum = 0;
+        for (int rank = 0; rank < distinctCookies; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < distinctCookies; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Generates a random base62 cookie identifier.
+     *
+     * @param random the random generator
+     * @return the cookie identifier
+     */
+    private static String cookieId(Random random) {
+        char[] id = new char[COOKIE_ID_LENGTH];
+        for (int i = 0; i < COOKIE_ID_LENGTH; i++) {
+            id[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(id);
+    }
+
+    /**
+     * Generates a log file from the command line. <p>
+     * Usage: CookieLogGenerator &lt;file&gt; &lt;rows&gt; &lt;distinct-cookies&gt; &lt;skew&gt; &lt;days&gt; [last-day]
+     *
+     * @param args the command line arguments
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: CookieLogGenerator <file> <rows> <distinct-cookies> <skew> <days> [last-day]");
+            return;
+        }
+        LocalDate lastDay = args.length > 5 ? LocalDate.parse(args[5]) : LocalDate.of(2018, 12, 31);
+        CookieLogGenerator generator = new CookieLogGenerator(Long.parseLong(args[1]), Integer.parseInt(args[2]),
+                Double.parseDouble(args[3]), Integer.parseInt(args[4]), lastDay, 42);
+        long bytes = generator.generate(Paths.get(args[0]));
+        System.out.println("Written " + bytes + " bytes to " + args[0]);
+    }
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import model.Cookie;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import processing.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the cookie readers and of the end-to-end most active cookie query on a synthetic log.
+ * Besides the queries per second, every benchmark reports the rows and bytes of the log processed per second,
+ * so readers can be compared on equal footing. Run with "-prof gc" to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CookieReaderBenchmark {
+
+    @Param({"CSV", "SEEK", "MAPPED", "PARALLEL", "PIPELINE", "VECTOR", "COLUMNAR"})
+    public String readerMode;
+
+    @Param({"1000000"})
+    public long rows;
+
+    @Param({"100000"})
+    public int distinctCookies;
+
+    @Param({"1.1"})
+    public double skew;
+
+    @Param({"7"})
+    public int days;
+
+    /**
+     * The reader mode that queries the log after converting it with {@link ColumnarConverter}.
+     */
+    private static final String COLUMNAR = "COLUMNAR";
+
+    private static final LocalDate LAST_DAY = LocalDate.of(2018, 12, 31);
+
+    private Path directory;
+    private List<File> files;
+    private long fileBytes;
+    private Date targetDate;
+    private CookieFileReader reader;
+    private CookieFileProcessor processor;
+
+    /**
+     * Counters of the processed input, reported by JMH as rates per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long rows;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cookie-benchmark");
+        Path file = directory.resolve("cookie_log.csv");
+        fileBytes = new CookieLogGenerator(rows, distinctCookies, skew, days, LAST_DAY, 42).generate(file);
+        files = List.of(file.toFile());
+        targetDate = Date.from(LAST_DAY.minusDays(days / 2).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        if (COLUMNAR.equals(readerMode)) {
+            ColumnarConverter.convert(file.toFile());
+            files = List.of(ColumnarCookieFileReader.columnarOf(file.toFile()));
+            reader = new ColumnarCookieFileReader(new CSVCookieFileReader());
+        } else {
+            reader = ReaderMode.fromName(readerMode).createReader(Runtime.getRuntime().availableProcessors());
+        }
+        processor = new CookieFileProcessorImpl(reader);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("cookie_log.csv"));
+        Files.deleteIfExists(directory.resolve("cookie_log.csv.cols"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Collection<Cookie> readFile(Throughput throughput) {
+        count(throughput);
+        return reader.readFile(files, targetDate);
+    }
+
+    @Benchmark
+    public void countCookies(Throughput throughput, Blackhole blackhole) {
+        count(throughput);
+        blackhole.consume(reader.countCookies(files, targetDate));
+    }
+
+    @Benchmark
+    public Collection<Cookie> getMostActiveCookies(Throughput throughput) {
+        count(throughput);
+        return processor.getMostActiveCookies(files, targetDate);
+    }
+
+    private void count(Throughput throughput) {
+        throughput.rows += rows;
+        throughput.bytes += fileBytes;
+    }
+}
@@ -26,8 +26,17 @@ public interface Cookie {
 
     /**
      * Retrieves a collection of timestamps representing the times when the cookie was accessed.
+     * The collection cannot be modified; timestamps are added with {@link #addTimestamp(Date)}.
      *
-     * @return a Collection of Date objects representing the access times
+     * @return an unmodifiable Collection of Date objects representing the access times
      */
     Collection<Date> getTimestamps();
+
+    /**
+     * Retrieves the number of times the cookie was accessed.
+     * Unlike {@link #getTimestamps()}, it is available even when the individual timestamps are not retained.
+     *
+     * @return the number of accesses
+     */
+    int getCount();
 }
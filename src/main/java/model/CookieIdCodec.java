@@ -0,0 +1,181 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class packs cookie identifiers made of up to 20 base62 characters ('0'-'9', 'A'-'Z', 'a'-'z')
+ * into two longs of 10 characters each, 6 bits per character, the first character in the highest bits.
+ * Characters are stored as 1 to 62 in their ASCII order and the unused positions of shorter identifiers stay 0,
+ * which keeps the packing unique and makes comparing the packed halves, high half first, give the order of
+ * {@link String#compareTo(String)}. Identifiers that cannot be packed are reported as {@link #INVALID}.
+ */
+public final class CookieIdCodec {
+
+    /**
+     * Returned by the pack methods for identifiers that cannot be packed. Never a valid packed half.
+     */
+    public static final long INVALID = -1L;
+
+    /**
+     * The maximum length of a packable identifier.
+     */
+    public static final int MAX_PACKED_LENGTH = 20;
+
+    private static final int CHARS_PER_LONG = 10;
+    private static final int BITS_PER_CHAR = 6;
+    private static final int CHAR_MASK = (1 << BITS_PER_CHAR) - 1;
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private CookieIdCodec() {
+    }
+
+    /**
+     * Packs the first 10 characters of the identifier.
+     *
+     * @param cookieId the identifier
+     * @return the packed characters, or {@link #INVALID} if the identifier cannot be packed
+     */
+    public static long packHigh(CharSequence cookieId) {
+        return cookieId.length() > MAX_PACKED_LENGTH ? INVALID : pack(cookieId, 0);
+    }
+
+    /**
+     * Packs the characters 10 to 19 of the identifier.
+     *
+     * @param cookieId the identifier
+     * @return the packed characters, or {@link #INVALID} if the identifier cannot be packed
+     */
+    public static long packLow(CharSequence cookieId) {
+        return cookieId.length() > MAX_PACKED_LENGTH ? INVALID : pack(cookieId, CHARS_PER_LONG);
+    }
+
+    /**
+     * Packs the first 10 characters of the identifier held as ASCII in the given index range of the buffer.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the packed characters, or {@link #INVALID} if the identifier cannot be packed
+     */
+    public static long packHigh(ByteBuffer buffer, int from, int to) {
+        return to - from > MAX_PACKED_LENGTH ? INVALID : pack(buffer, from, Math.min(to, from + CHARS_PER_LONG));
+    }
+
+    /**
+     * Packs the characters 10 to 19 of the identifier held as ASCII in the given index range of the buffer.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the packed characters, or {@link #INVALID} if the identifier cannot be packed
+     */
+    public static long packLow(ByteBuffer buffer, int from, int to) {
+        return to - from > MAX_PACKED_LENGTH ? INVALID : pack(buffer, Math.min(to, from + CHARS_PER_LONG), to);
+    }
+
+    /**
+     * Restores the identifier from its packed halves.
+     *
+     * @param high the packed first 10 characters
+     * @param low  the packed characters 10 to 19
+     * @return the identifier
+     */
+    public static String unpack(long high, long low) {
+        char[] chars = new char[MAX_PACKED_LENGTH];
+        int length = unpack(high, chars, 0);
+        if (length == CHARS_PER_LONG) {
+            length += unpack(low, chars, CHARS_PER_LONG);
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Packs up to 10 characters starting at the given offset.
+     *
+     * @param cookieId the identifier
+     * @param offset   the index of the first character to pack
+     * @return the packed characters, or {@link #INVALID} if a character is not base62
+     */
+    private static long pack(CharSequence cookieId, int offset) {
+        long packed = 0;
+        int end = Math.min(cookieId.length(), offset + CHARS_PER_LONG);
+        for (int i = offset; i < end; i++) {
+            int code = code(cookieId.charAt(i));
+            if (code < 0) {
+                return INVALID;
+            }
+            packed |= (long) code << shiftOf(i - offset);
+        }
+        return packed;
+    }
+
+    /**
+     * Packs the ASCII characters within the given index range of the buffer.
+     *
+     * @param buffer the buffer holding the characters
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index, at most 10 characters after the start
+     * @return the packed characters, or {@link #INVALID} if a character is not base62
+     */
+    private static long pack(ByteBuffer buffer, int from, int to) {
+        long packed = 0;
+        for (int i = from; i < to; i++) {
+            int code = code(buffer.get(i));
+            if (code < 0) {
+                return INVALID;
+            }
+            packed |= (long) code << shiftOf(i - from);
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks the characters of one packed half.
+     *
+     * @param packed the packed characters
+     * @param chars  the array to write the characters to
+     * @param offset the index of the first character in the array
+     * @return the number of characters written
+     */
+    private static int unpack(long packed, char[] chars, int offset) {
+        int count = 0;
+        for (; count < CHARS_PER_LONG; count++) {
+            int code = (int) (packed >>> shiftOf(count)) & CHAR_MASK;
+            if (code == 0) {
+                break;
+            }
+            chars[offset + count] = ALPHABET[code - 1];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the bit position of a character within its packed half, the first character taking the highest bits.
+     *
+     * @param position the position of the character within the half, from 0 to 9
+     * @return the number of bits to shift the code of the character by
+     */
+    private static int shiftOf(int position) {
+        return BITS_PER_CHAR * (CHARS_PER_LONG - 1 - position);
+    }
+
+    /**
+     * Returns the 6-bit code of a base62 character.
+     *
+     * @param c the character
+     * @return the code from 1 to 62, or -1 if the character is not base62
+     */
+    private static int code(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 11;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 37;
+        }
+        return -1;
+    }
+}
@@ -1,18 +1,22 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 /**
  * This class represents the implementation of a cookie with a unique ID and timestamps.
- * It stores the cookie's identifier and a list of Date objects representing
- * the times at which the cookie was accessed.
+ * It stores the cookie's identifier packed by {@link CookieIdCodec} where possible and
+ * the times at which the cookie was accessed as primitive epoch milliseconds,
+ * creating Date objects only when the timestamps are requested.
  */
 public class CookieImpl implements Cookie {
 
-    private String cookieId;
-    private List<Date> timestamps;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final long idHigh;
+    private final long idLow;
+    private final String unpackedId;
+    private long[] timestamps;
+    private int count;
 
     /**
      * Constructs a new CookieImpl with the specified identifier.
@@ -20,18 +24,26 @@ public class CookieImpl implements Cookie {
      * @param cookieId the unique identifier for this cookie
      */
     public CookieImpl(String cookieId) {
-        this.cookieId = cookieId;
-        this.timestamps = new ArrayList<>();
+        long high = CookieIdCodec.packHigh(cookieId);
+        long low = CookieIdCodec.packLow(cookieId);
+        boolean packed = high != CookieIdCodec.INVALID && low != CookieIdCodec.INVALID;
+        this.idHigh = packed ? high : CookieIdCodec.INVALID;
+        this.idLow = packed ? low : CookieIdCodec.INVALID;
+        this.unpackedId = packed ? null : cookieId;
+        this.timestamps = new long[INITIAL_CAPACITY];
     }
 
     /**
-     * Adds a timestamp to the list of access times for this cookie.
+     * Adds a timestamp to the access times for this cookie.
      *
      * @param timestamp the Date object to be added to the cookie's timestamps
      */
     @Override
     public void addTimestamp(Date timestamp) {
-        this.timestamps.add(timestamp);
+        if (count == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, count * 2);
+        }
+        timestamps[count++] = timestamp.getTime();
     }
 
     /**
@@ -41,16 +53,39 @@ public class CookieImpl implements Cookie {
      */
     @Override
     public String getCookieId() {
-        return cookieId;
+        return unpackedId != null ? unpackedId : CookieIdCodec.unpack(idHigh, idLow);
     }
 
     /**
-     * Returns the list of access times for this cookie.
+     * Returns an unmodifiable view of the access times for this cookie in the order they were added.
+     * The view follows later calls to {@link #addTimestamp(Date)} and creates a new Date on every access.
      *
-     * @return a List of Date objects representing the timestamps
+     * @return an unmodifiable List of Date objects representing the timestamps
      */
+    @Override
     public List<Date> getTimestamps() {
-        return timestamps;
+        return new AbstractList<>() {
+            @Override
+            public Date get(int index) {
+                Objects.checkIndex(index, count);
+                return new Date(timestamps[index]);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of access times recorded for this cookie.
+     *
+     * @return the number of timestamps
+     */
+    @Override
+    public int getCount() {
+        return count;
     }
 
     /**
@@ -64,7 +99,7 @@ public class CookieImpl implements Cookie {
         if (this == o) return true;
         if (!(o instanceof CookieImpl)) return false;
         CookieImpl cookie = (CookieImpl) o;
-        return cookieId.equals(cookie.cookieId);
+        return idHigh == cookie.idHigh && idLow == cookie.idLow && Objects.equals(unpackedId, cookie.unpackedId);
     }
 
     /**
@@ -74,7 +109,8 @@ public class CookieImpl implements Cookie {
      */
     @Override
     public int hashCode() {
-        return cookieId.hashCode();
+        // Hashes the packed identifier, so that no String is unpacked
+        return unpackedId != null ? unpackedId.hashCode() : 31 * Long.hashCode(idHigh) + Long.hashCode(idLow);
     }
 
     /**
@@ -85,8 +121,8 @@ public class CookieImpl implements Cookie {
     @Override
     public String toString() {
         return "CookieImpl{" +
-                "cookieId='" + cookieId + '\'' +
-                ", timestamps=" + timestamps +
+                "cookieId='" + getCookieId() + '\'' +
+                ", timestamps=" + getTimestamps() +
                 '}';
     }
 }
@@ -0,0 +1,103 @@
+package model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * This class represents a cookie that only keeps the number of its accesses.
+ * It is used when the individual timestamps are not needed, so no Date objects are retained per access.
+ */
+public class CountedCookie implements Cookie {
+
+    private final String cookieId;
+    private int count;
+
+    /**
+     * Constructs a new CountedCookie with the specified identifier and number of accesses.
+     *
+     * @param cookieId the unique identifier for this cookie
+     * @param count    the number of accesses
+     */
+    public CountedCookie(String cookieId, int count) {
+        this.cookieId = cookieId;
+        this.count = count;
+    }
+
+    /**
+     * Counts an access of this cookie. The timestamp itself is not retained.
+     *
+     * @param timestamp the Date object representing the time of access
+     */
+    @Override
+    public void addTimestamp(Date timestamp) {
+        count++;
+    }
+
+    /**
+     * Returns the unique identifier of this cookie.
+     *
+     * @return the cookie identifier as a String
+     */
+    @Override
+    public String getCookieId() {
+        return cookieId;
+    }
+
+    /**
+     * Returns an empty collection, since this cookie does not retain its access times.
+     *
+     * @return an empty collection
+     */
+    @Override
+    public Collection<Date> getTimestamps() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the number of accesses of this cookie.
+     *
+     * @return the number of accesses
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Compares this cookie with the specified object for equality.
+     *
+     * @param o the object to be compared for equality with this cookie
+     * @return true if the specified object is equal to this cookie
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CountedCookie)) return false;
+        CountedCookie cookie = (CountedCookie) o;
+        return cookieId.equals(cookie.cookieId);
+    }
+
+    /**
+     * Returns the hash code value for this cookie.
+     *
+     * @return a hash code value for this cookie
+     */
+    @Override
+    public int hashCode() {
+        return cookieId.hashCode();
+    }
+
+    /**
+     * Returns a string representation of the cookie.
+     *
+     * @return a string representation of the cookie, including its identifier and count
+     */
+    @Override
+    public String toString() {
+        return "CountedCookie{" +
+                "cookieId='" + cookieId + '\'' +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,126 @@
+package model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * This class represents a cookie whose number of accesses is estimated by an approximate counter.
+ * The estimate never undercounts; the true number of accesses lies between {@link #getLowerBound()}
+ * and {@link #getCount()}. A cookie with an error of 0 carries an exact count.
+ */
+public class EstimatedCookie implements Cookie {
+
+    private final String cookieId;
+    private final long error;
+    private int count;
+
+    /**
+     * Constructs a new EstimatedCookie with the specified identifier, estimated number of accesses and error bound.
+     *
+     * @param cookieId the unique identifier for this cookie
+     * @param count    the estimated number of accesses, never lower than the true number
+     * @param error    the maximum overestimation of the count
+     */
+    public EstimatedCookie(String cookieId, int count, long error) {
+        this.cookieId = cookieId;
+        this.count = count;
+        this.error = error;
+    }
+
+    /**
+     * Counts an access of this cookie. The timestamp itself is not retained.
+     *
+     * @param timestamp the Date object representing the time of access
+     */
+    @Override
+    public void addTimestamp(Date timestamp) {
+        count++;
+    }
+
+    /**
+     * Returns the unique identifier of this cookie.
+     *
+     * @return the cookie identifier as a String
+     */
+    @Override
+    public String getCookieId() {
+        return cookieId;
+    }
+
+    /**
+     * Returns an empty collection, since this cookie does not retain its access times.
+     *
+     * @return an empty collection
+     */
+    @Override
+    public Collection<Date> getTimestamps() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the estimated number of accesses of this cookie, which is an upper bound of the true number.
+     *
+     * @return the estimated number of accesses
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the maximum overestimation of the count.
+     *
+     * @return the error bound, 0 if the count is exact
+     */
+    public long getError() {
+        return error;
+    }
+
+    /**
+     * Returns the guaranteed minimum number of accesses of this cookie.
+     *
+     * @return the count minus the error bound
+     */
+    public long getLowerBound() {
+        return count - error;
+    }
+
+    /**
+     * Compares this cookie with the specified object for equality.
+     *
+     * @param o the object to be compared for equality with this cookie
+     * @return true if the specified object is equal to this cookie
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EstimatedCookie)) return false;
+        EstimatedCookie cookie = (EstimatedCookie) o;
+        return cookieId.equals(cookie.cookieId);
+    }
+
+    /**
+     * Returns the hash code value for this cookie.
+     *
+     * @return a hash code value for this cookie
+     */
+    @Override
+    public int hashCode() {
+        return cookieId.hashCode();
+    }
+
+    /**
+     * Returns a string representation of the cookie.
+     *
+     * @return a string representation of the cookie, including its identifier, count and error bound
+     */
+    @Override
+    public String toString() {
+        return "EstimatedCookie{" +
+                "cookieId='" + cookieId + '\'' +
+                ", count=" + count +
+                ", error=" + error +
+                '}';
+    }
+}
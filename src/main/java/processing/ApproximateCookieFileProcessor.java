@@ -0,0 +1,263 @@
+package processing;
+
+import model.Cookie;
+import model.EstimatedCookie;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of the CookieFileProcessor interface that estimates the most active cookies in bounded memory.
+ * The occurrences of a date are counted into a {@link SpaceSavingCounter} whose number of counters follows from
+ * the error target and the memory budget, so the memory does not grow with the number of distinct cookies.
+ * The returned cookies are {@link EstimatedCookie} instances carrying their estimate and its error bound. <p>
+ * Optionally a second, exact pass over the files counts only the candidates of the first pass: every monitored
+ * cookie whose estimate reaches the highest guaranteed count. The candidates are returned with their exact counts,
+ * which confirms the answer, ties included, whenever its count is above the highest possible count of the cookies
+ * that were not monitored; otherwise a warning is logged.
+ */
+public class ApproximateCookieFileProcessor implements CookieFileProcessor {
+    private static final Logger LOGGER = Logger.getLogger(ApproximateCookieFileProcessor.class.getName());
+
+    private final CookieFileReader cookieFileReader;
+    private final int capacity;
+    private final boolean exactSecondPass;
+
+    /**
+     * Constructs a new ApproximateCookieFileProcessor.
+     *
+     * @param cookieFileReader the reader used to count cookies from the files
+     * @param errorTarget      the maximum error of an estimate as a fraction of all occurrences of the date
+     * @param memoryBudget     the number of bytes the counters may occupy, or 0 to size them by the error target only
+     * @param exactSecondPass  true if the candidates should be counted exactly in a second pass over the files
+     * @throws IllegalArgumentException if the error target is not between 0 and 1
+     */
+    public ApproximateCookieFileProcessor(CookieFileReader cookieFileReader, double errorTarget, long memoryBudget,
+                                          boolean exactSecondPass) {
+        this.cookieFileReader = cookieFileReader;
+        this.capacity = SpaceSavingCounter.capacityFor(errorTarget, memoryBudget);
+        this.exactSecondPass = exactSecondPass;
+        if (capacity < Math.ceil(1 / errorTarget)) {
+            LOGGER.log(Level.WARNING, "Memory budget of " + memoryBudget + " bytes only allows " + capacity
+                    + " counters, the error target " + errorTarget + " is relaxed to " + 1.0 / capacity);
+        }
+    }
+
+    /**
+     * Estimates the most active cookies for the specified date.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param date  the date for which to find the most active cookies
+     * @return the most active cookies with their estimated or, after the second pass, exact counts
+     */
+    @Override
+    public Collection<Cookie> getMostActiveCookies(Collection<File> files, Date date) {
+        return mostActiveOf(files, date, count(files, date));
+    }
+
+    /**
+     * Selects the most active cookies of the counter, confirming them by the second pass if it is enabled.
+     *
+     * @param files  the collection of cookie log files to be analyzed
+     * @param date   the date of the counter
+     * @param sketch the counted occurrences of the date
+     * @return the most active cookies with their estimated or, after the second pass, exact counts
+     */
+    private Collection<Cookie> mostActiveOf(Collection<File> files, Date date, SpaceSavingCounter sketch) {
+        if (!exactSecondPass) {
+            return new ArrayList<>(sketch.getMostActiveCookies());
+        }
+        long maxLowerBound = 0;
+        for (EstimatedCookie cookie : sketch.getTopCookies(sketch.size())) {
+            maxLowerBound = Math.max(maxLowerBound, cookie.getLowerBound());
+        }
+        CandidateCounter exact = countExactly(files, date, sketch.getCandidates(maxLowerBound));
+        List<Cookie> mostActive = new ArrayList<>();
+        for (EstimatedCookie cookie : exact.getTopCookies(Integer.MAX_VALUE)) {
+            if (cookie.getCount() == exact.getMaxCount()) {
+                mostActive.add(cookie);
+            }
+        }
+        confirm(date, exact.getMaxCount(), sketch);
+        return mostActive;
+    }
+
+    /**
+     * Estimates the most active cookies for every given date, counting every date separately.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates for which to find the most active cookies
+     * @return the most active cookies of every requested date, in ascending order of the dates
+     */
+    @Override
+    public Map<Date, Collection<Cookie>> getMostActiveCookies(Collection<File> files, Collection<Date> dates) {
+        Map<Date, Collection<Cookie>> result = new TreeMap<>();
+        for (Date date : dates) {
+            result.put(date, getMostActiveCookies(files, date));
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the k most active cookies for every given date, counting every date separately.
+     * With the second pass, every monitored cookie whose estimate reaches the k-th highest guaranteed count
+     * is counted exactly and the top k are selected by their exact counts.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates for which to find the top cookies
+     * @param k     the maximum number of cookies returned per date
+     * @return the top cookies of every requested date, the most active first
+     */
+    @Override
+    public Map<Date, List<Cookie>> getTopCookies(Collection<File> files, Collection<Date> dates, int k) {
+        Map<Date, List<Cookie>> result = new TreeMap<>();
+        for (Date date : dates) {
+            SpaceSavingCounter sketch = count(files, date);
+            List<EstimatedCookie> estimated = sketch.getTopCookies(sketch.size());
+            if (!exactSecondPass || k <= 0 || estimated.isEmpty()) {
+                result.put(date, new ArrayList<>(estimated.subList(0, Math.min(Math.max(k, 0), estimated.size()))));
+                continue;
+            }
+            List<Long> lowerBounds = new ArrayList<>();
+            for (EstimatedCookie cookie : estimated) {
+                lowerBounds.add(cookie.getLowerBound());
+            }
+            lowerBounds.sort(Comparator.reverseOrder());
+            long threshold = lowerBounds.get(Math.min(k, lowerBounds.size()) - 1);
+            List<EstimatedCookie> top = countExactly(files, date, sketch.getCandidates(threshold)).getTopCookies(k);
+            confirm(date, top.isEmpty() ? 0 : top.get(top.size() - 1).getCount(), sketch);
+            result.put(date, new ArrayList<>(top));
+        }
+        return result;
+    }
+
+    /**
+     * Summarizes every given date, counting every date separately. The distinct cookies are sketched in the
+     * same pass that counts the occurrences into the Space-Saving counter, so memory stays bounded.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates to be summarized
+     * @return the summary of every requested date with its estimated most active cookies
+     */
+    @Override
+    public Map<Date, DaySummary> getDailySummaries(Collection<File> files, Collection<Date> dates) {
+        Map<Date, DaySummary> result = new TreeMap<>();
+        for (Date date : dates) {
+            SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+            SketchingCountSink sink = new SketchingCountSink(counter);
+            cookieFileReader.countCookies(files, date, sink);
+            ReadMetrics.global().recordDistinctCookies(counter.size());
+            result.put(date, new DaySummary(date, sink.getRecords(), mostActiveOf(files, date, counter),
+                    sink.getSketch()));
+        }
+        return result;
+    }
+
+    /**
+     * Counts the occurrences of the date into a new Space-Saving counter.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param date  the date for which to count the cookies
+     * @return the counter
+     */
+    private SpaceSavingCounter count(Collection<File> files, Date date) {
+        SpaceSavingCounter sketch = new SpaceSavingCounter(capacity);
+        cookieFileReader.countCookies(files, date, sketch);
+        ReadMetrics.global().recordDistinctCookies(sketch.size());
+        return sketch;
+    }
+
+    /**
+     * Counts the occurrences of the candidates on the date exactly, ignoring all other cookies.
+     *
+     * @param files      the collection of cookie log files to be analyzed
+     * @param date       the date for which to count the cookies
+     * @param candidates the identifiers of the candidates
+     * @return the exact counts of the candidates
+     */
+    private CandidateCounter countExactly(Collection<File> files, Date date, List<String> candidates) {
+        CandidateCounter exact = new CandidateCounter(candidates);
+        cookieFileReader.countCookies(files, date, exact);
+        return exact;
+    }
+
+    /**
+     * Logs a warning if cookies that were not monitored could have reached the lowest exact count of the answer.
+     *
+     * @param date        the requested date
+     * @param lowestCount the lowest exact count of the returned cookies
+     * @param sketch      the counter of the first pass
+     */
+    private static void confirm(Date date, long lowestCount, SpaceSavingCounter sketch) {
+        if (lowestCount <= sketch.getUnmonitoredBound()) {
+            LOGGER.log(Level.WARNING, "The answer for " + date + " cannot be confirmed: unmonitored cookies may have up to "
+                    + sketch.getUnmonitoredBound() + " occurrences, raise the memory budget or lower the error target");
+        }
+    }
+
+    /**
+     * The CandidateCounter class counts the occurrences of a fixed set of cookies and ignores all others.
+     */
+    private static final class CandidateCounter implements CookieCountSink {
+        private final CookieIdDictionary dictionary;
+        private final int[] counts;
+
+        private CandidateCounter(List<String> candidates) {
+            dictionary = new CookieIdDictionary(candidates.size());
+            for (String cookieId : candidates) {
+                dictionary.idOf(cookieId);
+            }
+            counts = new int[dictionary.size()];
+        }
+
+        @Override
+        public void add(String cookieId, int count) {
+            int id = dictionary.find(cookieId);
+            if (id >= 0) {
+                counts[id] += count;
+            }
+        }
+
+        @Override
+        public void increment(ByteBuffer buffer, int from, int to) {
+            int id = dictionary.find(buffer, from, to);
+            if (id >= 0) {
+                counts[id]++;
+            }
+        }
+
+        /**
+         * Returns the highest exact count of a candidate.
+         *
+         * @return the highest count, 0 if no candidate occurred
+         */
+        private int getMaxCount() {
+            int maxCount = 0;
+            for (int count : counts) {
+                maxCount = Math.max(maxCount, count);
+            }
+            return maxCount;
+        }
+
+        /**
+         * Returns the k candidates with the highest exact counts, ordered by count and then by identifier.
+         *
+         * @param k the maximum number of cookies to return
+         * @return the top candidates with an error of 0, the most active first
+         */
+        private List<EstimatedCookie> getTopCookies(int k) {
+            List<EstimatedCookie> cookies = new ArrayList<>(counts.length);
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    cookies.add(new EstimatedCookie(dictionary.cookieIdOf(id), counts[id], 0));
+                }
+            }
+            cookies.sort(Comparator.comparingInt(EstimatedCookie::getCount).reversed()
+                    .thenComparing(EstimatedCookie::getCookieId));
+            return cookies.subList(0, Math.min(k, cookies.size()));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package processing;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class writes and reads cookie logs compressed as a sequence of independent gzip members.
+ * Every member holds whole lines only and records its own compressed size in a gzip extra field,
+ * so the members can be located without decompressing and inflated in parallel. The result is a
+ * regular multi-member gzip file that gzip, zcat and GZIPInputStream read as usual. <p>
+ * Member layout: the 10-byte gzip header with FEXTRA set, XLEN = 8, the "CK" subfield holding
+ * the total member size as a little-endian 32-bit value, the raw deflate data, CRC-32 and ISIZE.
+ */
+public final class BlockGzip {
+    private static final Logger LOGGER = Logger.getLogger(BlockGzip.class.getName());
+
+    /**
+     * The default number of uncompressed bytes per member.
+     */
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private static final int HEADER_SIZE = 20;
+    private static final int TRAILER_SIZE = 8;
+    private static final int FLAG_EXTRA = 4;
+    private static final int OS_UNKNOWN = 255;
+    private static final int EXTRA_LENGTH = 8;
+    private static final int SUBFIELD_LENGTH = 4;
+
+    private BlockGzip() {
+    }
+
+    /**
+     * Compresses the source log into the target file with the default block size.
+     *
+     * @param source the uncompressed log
+     * @param target the compressed file to write
+     * @throws IOException if the log cannot be read or the target cannot be written
+     */
+    public static void compress(File source, File target) throws IOException {
+        compress(source, target, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Compresses the source log into the target file, cutting members at the last line end within every block.
+     *
+     * @param source    the uncompressed log
+     * @param target    the compressed file to write
+     * @param blockSize the maximum number of uncompressed bytes per member
+     * @throws IOException if the log cannot be read, contains a line longer than the block size,
+     *                     or the target cannot be written
+     */
+    static void compress(File source, File target, int blockSize) throws IOException {
+        byte[] block = new byte[blockSize];
+        byte[] compressed = new byte[blockSize + blockSize / 8 + 64];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+            int filled = 0;
+            int read;
+            while ((read = in.read(block, filled, blockSize - filled)) >= 0) {
+                filled += read;
+                if (filled < blockSize) {
+                    continue;
+                }
+                int end = lastLineEnd(block, filled);
+                if (end == 0) {
+                    throw new IOException("Line is longer than the block size of " + blockSize + " bytes");
+                }
+                writeMember(out, deflater, block, end, compressed);
+                System.arraycopy(block, end, block, 0, filled - end);
+                filled -= end;
+            }
+            if (filled > 0) {
+                writeMember(out, deflater, block, filled, compressed);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Locates the members of a block-compressed file by walking their headers.
+     *
+     * @param channel the channel of the compressed file
+     * @return the offset and the size of every member, or null if the file is not block-compressed
+     * @throws IOException if the file cannot be read
+     */
+    static List<long[]> members(FileChannel channel) throws IOException {
+        List<long[]> members = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, position + header.position()) > 0) {
+                // Read the whole header
+            }
+            if (header.hasRemaining() || !isBlockHeader(header)) {
+                return null;
+            }
+            long memberSize = Integer.toUnsignedLong(header.getInt(16));
+            if (memberSize < HEADER_SIZE + TRAILER_SIZE || position + memberSize > size) {
+                return null;
+            }
+            members.add(new long[]{position, memberSize});
+            position += memberSize;
+        }
+        return members;
+    }
+
+    /**
+     * Reads and inflates a single member.
+     *
+     * @param channel the channel of the compressed file
+     * @param offset  the offset of the member
+     * @param size    the total size of the member
+     * @return the uncompressed lines of the member
+     * @throws IOException if the member cannot be read or is corrupt
+     */
+    static byte[] inflate(FileChannel channel, long offset, int size) throws IOException {
+        ByteBuffer member = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (member.hasRemaining()) {
+            if (channel.read(member, offset + member.position()) < 0) {
+                throw new EOFException("Member is truncated at offset " + offset);
+            }
+        }
+        byte[] bytes = member.array();
+        int expectedCrc = member.getInt(size - TRAILER_SIZE);
+        byte[] lines = new byte[member.getInt(size - Integer.BYTES)];
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, HEADER_SIZE, size - HEADER_SIZE - TRAILER_SIZE);
+            int inflated = 0;
+            while (inflated < lines.length && !inflater.finished()) {
+                int count = inflater.inflate(lines, inflated, lines.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != lines.length) {
+                throw new IOException("Member is corrupt at offset " + offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Member is corrupt at offset " + offset + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(lines);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch of the member at offset " + offset);
+        }
+        return lines;
+    }
+
+    /**
+     * Compresses the logs given on the command line, writing "&lt;log&gt;.gz" next to every one of them.
+     *
+     * @param args the paths of the logs
+     */
+    public static void main(String[] args) {
+        for (String path : args) {
+            File source = new File(path);
+            try {
+                compress(source, new File(path + ".gz"));
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "File cannot be compressed " + source.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deflates the lines of a block and writes them as a single member.
+     *
+     * @param out        the stream to write the member to
+     * @param deflater   the raw deflater to use
+     * @param block      the block holding the lines
+     * @param length     the number of bytes of the block to compress
+     * @param compressed the scratch buffer for the deflate data, large enough for incompressible input
+     * @throws IOException if the member cannot be written
+     */
+    private static void writeMember(OutputStream out, Deflater deflater, byte[] block, int length, byte[] compressed)
+            throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block, 0, length);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 0x1f).put((byte) 0x8b).put((byte) Deflater.DEFLATED).put((byte) FLAG_EXTRA)
+                .putInt(0).put((byte) 0).put((byte) OS_UNKNOWN)
+                .putShort((short) EXTRA_LENGTH).put((byte) 'C').put((byte) 'K').putShort((short) SUBFIELD_LENGTH)
+                .putInt(HEADER_SIZE + compressedLength + TRAILER_SIZE);
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue()).putInt(length);
+
+        out.write(header.array());
+        out.write(compressed, 0, compressedLength);
+        out.write(trailer.array());
+    }
+
+    /**
+     * Checks whether the header read from the file is a member header written by this class.
+     *
+     * @param header the first bytes of a member
+     * @return true if the header carries the member size
+     */
+    private static boolean isBlockHeader(ByteBuffer header) {
+        return (header.get(0) & 0xff) == 0x1f && (header.get(1) & 0xff) == 0x8b
+                && header.get(2) == Deflater.DEFLATED && (header.get(3) & FLAG_EXTRA) != 0
+                && header.getShort(10) == EXTRA_LENGTH && header.get(12) == 'C' && header.get(13) == 'K'
+                && header.getShort(14) == SUBFIELD_LENGTH;
+    }
+
+    /**
+     * Returns the index right after the last line terminator of the block.
+     *
+     * @param block  the block to search
+     * @param length the number of filled bytes
+     * @return the index after the last '\n', or 0 if there is none
+     */
+    private static int lastLineEnd(byte[] block, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (block[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
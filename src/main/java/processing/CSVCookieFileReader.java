@@ -1,14 +1,16 @@
 package processing;
 
 import model.Cookie;
-import model.CookieImpl;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.*;
+import java.util.function.ObjLongConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,7 +22,6 @@ public class CSVCookieFileReader implements CookieFileReader {
     private static final Logger LOGGER = Logger.getLogger(CSVCookieFileReader.class.getName());
 
     private static final String CSV_SPLIT_BY = ",";
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX");
 
     /**
      * Reads cookie data from the given collection of CSV files and returns cookies active on the target date.
@@ -31,15 +32,70 @@ public class CSVCookieFileReader implements CookieFileReader {
      */
     @Override
     public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
-        Map<String, Cookie> cookies = new HashMap<>();
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(targetDate);
-        calendar.add(Calendar.DATE, 1);
-        Date nextDay = calendar.getTime();
+        CookieTable cookies = new CookieTable();
+        readRecords(files, DayRange.of(targetDate), (cookieId, epochSecond) ->
+                cookies.cookieOf(cookieId).addTimestamp(new Date(epochSecond * 1000)));
+        return cookies.getCookies();
+    }
 
+    /**
+     * Counts the occurrences of every cookie active on the target date without retaining the timestamps.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        readRecords(files, DayRange.of(targetDate), (cookieId, epochSecond) -> counter.increment(cookieId));
+        return counter;
+    }
+
+    /**
+     * Passes every occurrence of a cookie active on the target date to the given sink.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        readRecords(files, DayRange.of(targetDate), (cookieId, epochSecond) -> sink.increment(cookieId));
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates in a single pass over the files.
+     *
+     * @param files the collection of CSV files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        DayCounters counters = new DayCounters(dates);
+        readRecords(files, counters.getSpan(), counters::add);
+        return counters.toMap();
+    }
+
+    /**
+     * Reads the given CSV files line by line and passes every record of the target day to the consumer.
+     *
+     * @param files    the collection of CSV files to be read
+     * @param day      the target day
+     * @param consumer the consumer of the cookie identifiers and timestamps in epoch seconds
+     */
+    private void readRecords(Collection<File> files, DayRange day, ObjLongConsumer<String> consumer) {
         for (File file : files) {
             if (isValidFile(file)) {
-                try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+                FileMetrics metrics = ReadMetrics.global().file(file);
+                long startNanos = System.nanoTime();
+                long lines = 0;
+                long matched = 0;
+                TimedInputStream timedStream = null;
+                try (TimedInputStream stream = new TimedInputStream(new FileInputStream(file));
+                     BufferedReader br = new BufferedReader(new InputStreamReader(stream))) {
+                    timedStream = stream;
                     LOGGER.log(Level.INFO, "Start reading file " + file.getAbsolutePath());
                     // Flag for checking the first line (header):
                     boolean isFirstLine = true;
@@ -50,77 +106,113 @@ public class CSVCookieFileReader implements CookieFileReader {
                             isFirstLine = false; // Skip the first line and continue
                             continue;
                         }
+                        lines++;
 
                         String[] cookieEntry = line.split(CSV_SPLIT_BY);
-                        Date timestamp = null;
+                        long timestamp;
                         if (cookieEntry.length == 2) {
-                            try {
-                                timestamp = DATE_FORMAT.parse(cookieEntry[1]);
-                            } catch (ParseException e) {
-                                LOGGER.log(Level.SEVERE, "Date parse exception in file: " + file.getAbsolutePath() +
-                                        ", incorrect date format: " + cookieEntry[1]);
+                            timestamp = TimestampDecoder.decode(cookieEntry[1]);
+                            if (timestamp == TimestampDecoder.INVALID_TIMESTAMP) {
+                                String invalid = line;
+                                metrics.skip(SkipReason.INVALID_TIMESTAMP, () -> invalid);
                                 continue;
                             }
                         } else {
-                            LOGGER.log(Level.SEVERE, "Incorrect file content: " + line);
+                            String invalid = line;
+                            metrics.skip(SkipReason.MALFORMED_LINE, () -> invalid);
                             continue;
                         }
 
-                        // Stop reading the file if the next day's record is reached
-                        if (timestamp.after(nextDay)) {
+                        // Records are sorted newest first, so stop once the previous day is reached
+                        if (timestamp < day.getStart()) {
                             break;
                         }
 
-                        if (isSameDay(timestamp, targetDate)) {
-                            String cookieId = cookieEntry[0];
-                            Cookie cookie = cookies.getOrDefault(cookieId, new CookieImpl(cookieId));
-                            cookie.addTimestamp(timestamp);
-                            cookies.put(cookieId, cookie);
+                        if (day.contains(timestamp)) {
+                            consumer.accept(cookieEntry[0], timestamp);
+                            matched++;
                         }
                     }
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LOGGER.log(Level.SEVERE, "File cannot be read " + file.getAbsolutePath() + ": " + e.getMessage());
                 }
+                long ioNanos = timedStream != null ? timedStream.nanos : 0;
+                long bytes = timedStream != null ? timedStream.bytes : 0;
+                metrics.addIoNanos(ioNanos);
+                metrics.addScan(bytes, lines, matched, System.nanoTime() - startNanos - ioNanos);
             } else {
-                if (file.isDirectory()) {
-                    LOGGER.log(Level.SEVERE, "File cannot be read because it is a directory " +
-                            file.getAbsolutePath());
-                } else if (file.canRead()) {
-                    LOGGER.log(Level.SEVERE, "File cannot be read " + file.getAbsolutePath());
-                } else if (!file.getName().endsWith(".csv")) {
-                    LOGGER.log(Level.SEVERE, "File cannot be read, incorrect file format " +
-                            file.getAbsolutePath());
-                }
+                logInvalidFile(file);
             }
         }
-
-        return cookies.values();
     }
 
     /**
-     * Checks if two dates are on the same calendar day.
+     * Validates if the provided file is a readable CSV file.
      *
-     * @param date1 the first date to compare
-     * @param date2 the second date to compare
-     * @return true if both dates are on the same day, false otherwise
+     * @param file the file to check
+     * @return true if the file is a valid CSV file, false otherwise
      */
-    private boolean isSameDay(Date date1, Date date2) {
-        Calendar cal1 = Calendar.getInstance();
-        Calendar cal2 = Calendar.getInstance();
-        cal1.setTime(date1);
-        cal2.setTime(date2);
-        return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR);
+    static boolean isValidFile(File file) {
+        return file.isFile() && file.canRead() && file.getName().endsWith(".csv");
     }
 
     /**
-     * Validates if the provided file is a readable CSV file.
+     * The TimedInputStream class measures the time spent in the reads of the file and counts the bytes read, which
+     * the decoder issues once per filled buffer rather than once per line. Counting below the decoder gives the size
+     * on disk whatever the line endings and the encoding of the file.
+     */
+    private static final class TimedInputStream extends FilterInputStream {
+        private long nanos;
+        private long bytes;
+
+        private TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                int b = super.read();
+                if (b >= 0) {
+                    bytes++;
+                }
+                return b;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            try {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytes += read;
+                }
+                return read;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Logs the reason why the provided file was rejected by {@link #isValidFile(File)}.
      *
-     * @param file the file to check
-     * @return true if the file is a valid CSV file, false otherwise
+     * @param file the rejected file
      */
-    private static boolean isValidFile(File file) {
-        return file.isFile() && file.canRead() && file.getName().endsWith(".csv");
+    static void logInvalidFile(File file) {
+        if (file.isDirectory()) {
+            LOGGER.log(Level.SEVERE, "File cannot be read because it is a directory " +
+                    file.getAbsolutePath());
+        } else if (file.canRead()) {
+            LOGGER.log(Level.SEVERE, "File cannot be read " + file.getAbsolutePath());
+        } else if (!file.getName().endsWith(".csv")) {
+            LOGGER.log(Level.SEVERE, "File cannot be read, incorrect file format " +
+                    file.getAbsolutePath());
+        }
     }
 }
 
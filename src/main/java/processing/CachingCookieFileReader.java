@@ -0,0 +1,244 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface with a cache of the cookie counts of every file and day
+ * in front of a delegate reader. An entry remembers the size and the modification time of its file and is dropped
+ * as soon as either of them changes. The least recently used entries are evicted once the estimated size of all
+ * entries exceeds the memory budget. The cache is shared by concurrent queries; a file missing from the cache
+ * is counted by the delegate outside of the lock, so concurrent misses of the same file may count it twice.
+ * Timestamps are not cached, so {@link #readFile(Collection, Date)} always reads through the delegate.
+ */
+public class CachingCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(CachingCookieFileReader.class.getName());
+
+    /**
+     * Estimated heap cost of a distinct cookie in a cached counter: packed identifier, count and table slots.
+     */
+    static final long BYTES_PER_COOKIE = 40;
+
+    /**
+     * Estimated heap cost of an entry besides its cookies.
+     */
+    static final long BYTES_PER_ENTRY = 256;
+
+    private final CookieFileReader delegate;
+    private final long memoryBudget;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs a new CachingCookieFileReader.
+     *
+     * @param delegate     the reader counting the files missing from the cache
+     * @param memoryBudget the estimated number of bytes the cached counts may occupy
+     */
+    public CachingCookieFileReader(CookieFileReader delegate, long memoryBudget) {
+        this.delegate = delegate;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Reads cookie data from the given collection of files through the delegate, bypassing the cache.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        return delegate.readFile(files, targetDate);
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date, taking the counts of every file
+     * from the cache where possible.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        return countCookiesByDay(files, List.of(targetDate)).get(DayRange.of(targetDate).getEpochDay());
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates. The days of a file missing from
+     * the cache are counted by the delegate in a single pass over that file.
+     *
+     * @param files the collection of files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the number of days since 1970-01-01, in ascending order
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        Map<Long, Date> days = new TreeMap<>();
+        for (Date date : dates) {
+            days.putIfAbsent(DayRange.of(date).getEpochDay(), date);
+        }
+        Map<Long, CookieCounter> counters = new TreeMap<>();
+        for (Long epochDay : days.keySet()) {
+            counters.put(epochDay, new CookieCounter());
+        }
+
+        for (File file : files) {
+            long length = file.length();
+            long lastModified = file.lastModified();
+            List<Date> missing = new ArrayList<>();
+            for (Map.Entry<Long, Date> day : days.entrySet()) {
+                CookieCounter cached = lookup(new Key(file, day.getKey()), length, lastModified);
+                if (cached != null) {
+                    counters.get(day.getKey()).merge(cached);
+                } else {
+                    missing.add(day.getValue());
+                }
+            }
+            if (missing.isEmpty()) {
+                continue;
+            }
+            Map<Long, CookieCounter> counted = delegate.countCookiesByDay(List.of(file), missing);
+            for (Date date : missing) {
+                long epochDay = DayRange.of(date).getEpochDay();
+                CookieCounter counter = counted.getOrDefault(epochDay, new CookieCounter());
+                store(new Key(file, epochDay), new Entry(counter, length, lastModified));
+                counters.get(epochDay).merge(counter);
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Returns the number of queries of a file and day answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries of a file and day passed to the delegate.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the estimated number of bytes occupied by the cached counts.
+     *
+     * @return the estimated size of the cache
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the cached counts of a file and day if they were counted from the current state of the file.
+     *
+     * @param key          the file and day
+     * @param length       the current size of the file
+     * @param lastModified the current modification time of the file
+     * @return the cached counter, or null if the entry is missing or stale
+     */
+    private synchronized CookieCounter lookup(Key key, long length, long lastModified) {
+        Entry entry = entries.get(key);
+        if (entry != null && (entry.length != length || entry.lastModified != lastModified)) {
+            LOGGER.log(Level.INFO, "Cached counts are stale for " + key.path);
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.counter;
+    }
+
+    /**
+     * Adds an entry and evicts the least recently used ones until the cache fits the memory budget.
+     * An entry larger than the whole budget is not cached.
+     *
+     * @param key   the file and day
+     * @param entry the counted entry
+     */
+    private synchronized void store(Key key, Entry entry) {
+        if (entry.bytes > memoryBudget) {
+            return;
+        }
+        remove(key);
+        entries.put(key, entry);
+        usedBytes += entry.bytes;
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > memoryBudget && eldest.hasNext()) {
+            usedBytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes an entry if it exists.
+     *
+     * @param key the file and day
+     */
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.bytes;
+        }
+    }
+
+    /**
+     * The Key class identifies the counts of a file on a day.
+     */
+    private static final class Key {
+        private final String path;
+        private final long epochDay;
+
+        private Key(File file, long epochDay) {
+            this.path = file.getAbsolutePath();
+            this.epochDay = epochDay;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return epochDay == key.epochDay && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + Long.hashCode(epochDay);
+        }
+    }
+
+    /**
+     * The Entry class holds the cached counts with the state of the file they were counted from.
+     */
+    private static final class Entry {
+        private final CookieCounter counter;
+        private final long length;
+        private final long lastModified;
+        private final long bytes;
+
+        private Entry(CookieCounter counter, long length, long lastModified) {
+            this.counter = counter;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.bytes = BYTES_PER_ENTRY + counter.size() * BYTES_PER_COOKIE;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package processing;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * This class keeps the checkpoints of incrementally ingested log files in a local directory. A checkpoint records
+ * how far the log was consumed, what identifies the log, and the cookie counts of every day seen so far. The counts
+ * of every day are kept in a day file of their own, tagged with the generation of the checkpoint that wrote it, so
+ * that saving a checkpoint only writes the days touched since the previous one. The head file of a log names the
+ * generation of the day file of every day and is replaced atomically after the new day files are written, so a crash
+ * leaves the previous checkpoint intact; day files no longer named by the head are deleted afterwards.
+ * Layout of a head file: header (magic, version), log path, file key, consumed offset, length and CRC-32 of the
+ * fingerprinted head of the log, generation, then the number of days and, per day, the epoch day and the generation
+ * of its day file. Layout of a day file: header (magic, version), log path, epoch day and its counts.
+ */
+public final class CheckpointStore {
+    private static final Logger LOGGER = Logger.getLogger(CheckpointStore.class.getName());
+
+    static final int MAGIC = 0x434B4350;
+    static final int VERSION = 2;
+    private static final String CHECKPOINT_SUFFIX = ".ckpt";
+    private static final String DAY_SUFFIX = ".day";
+
+    private final File directory;
+
+    /**
+     * Constructs a new CheckpointStore.
+     *
+     * @param directory the directory holding the checkpoints, created on first save
+     */
+    public CheckpointStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the checkpoint of the given log file with the counts of all its days.
+     *
+     * @param file the log file
+     * @return the checkpoint, or null if there is none or it cannot be read
+     */
+    public Checkpoint load(File file) {
+        File checkpointFile = checkpointOf(file);
+        if (!checkpointFile.isFile()) {
+            return null;
+        }
+        Checkpoint checkpoint;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(file.getAbsolutePath())) {
+                LOGGER.log(Level.WARNING, "Ignoring foreign checkpoint " + checkpointFile.getAbsolutePath());
+                return null;
+            }
+            checkpoint = new Checkpoint(in.readUTF(), in.readLong(), in.readInt(), in.readLong(), in.readLong());
+            int dayCount = in.readInt();
+            for (int i = 0; i < dayCount; i++) {
+                checkpoint.setDayGeneration(in.readLong(), in.readLong());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Checkpoint cannot be read " + checkpointFile.getAbsolutePath() + ": "
+                    + e.getMessage());
+            return null;
+        }
+        for (Map.Entry<Long, Long> day : checkpoint.dayGenerations.entrySet()) {
+            CookieCounter counter = loadDay(file, day.getKey(), day.getValue());
+            if (counter == null) {
+                return null;
+            }
+            checkpoint.counters.put(day.getKey(), counter);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Saves the checkpoint of the given log file, replacing the previous one. Only the days whose generation is
+     * the one of the checkpoint are written; the day files of the other days are kept from earlier checkpoints.
+     *
+     * @param file       the log file
+     * @param checkpoint the checkpoint to save
+     * @return true if the checkpoint was written, false otherwise
+     */
+    public boolean save(File file, Checkpoint checkpoint) {
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            LOGGER.log(Level.SEVERE, "Checkpoint directory cannot be created " + directory.getAbsolutePath());
+            return false;
+        }
+        for (Map.Entry<Long, Long> day : checkpoint.dayGenerations.entrySet()) {
+            if (day.getValue() != checkpoint.generation) {
+                continue;
+            }
+            CookieCounter counter = checkpoint.counters.get(day.getKey());
+            boolean written = write(dayFileOf(file, day.getKey(), day.getValue()), out -> {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(file.getAbsolutePath());
+                out.writeLong(day.getKey());
+                writeCounts(out, counter);
+            });
+            if (!written) {
+                return false;
+            }
+        }
+        boolean written = write(checkpointOf(file), out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(file.getAbsolutePath());
+            out.writeUTF(checkpoint.fileKey);
+            out.writeLong(checkpoint.offset);
+            out.writeInt(checkpoint.headLength);
+            out.writeLong(checkpoint.headChecksum);
+            out.writeLong(checkpoint.generation);
+            out.writeInt(checkpoint.dayGenerations.size());
+            for (Map.Entry<Long, Long> day : checkpoint.dayGenerations.entrySet()) {
+                out.writeLong(day.getKey());
+                out.writeLong(day.getValue());
+            }
+        });
+        if (written) {
+            deleteStaleDays(file, checkpoint);
+        }
+        return written;
+    }
+
+    /**
+     * Returns the checkpoint file of a log, named after the log and a checksum of its absolute path.
+     *
+     * @param file the log file
+     * @return the checkpoint file, which may not exist
+     */
+    File checkpointOf(File file) {
+        return new File(directory, prefixOf(file) + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Returns the file holding the counts of a day of a log written by the given generation.
+     *
+     * @param file       the log file
+     * @param epochDay   the number of days since 1970-01-01
+     * @param generation the generation of the checkpoint that wrote the counts
+     * @return the day file, which may not exist
+     */
+    File dayFileOf(File file, long epochDay, long generation) {
+        return new File(directory, prefixOf(file) + "." + epochDay + "-" + generation + DAY_SUFFIX);
+    }
+
+    /**
+     * Returns the common start of the names of the files of a log: its name and a checksum of its absolute path.
+     *
+     * @param file the log file
+     * @return the prefix of the file names
+     */
+    private static String prefixOf(File file) {
+        CRC32 crc = new CRC32();
+        crc.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return file.getName() + "-" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Loads the counts of a day of a log.
+     *
+     * @param file       the log file
+     * @param epochDay   the number of days since 1970-01-01
+     * @param generation the generation named by the head file
+     * @return the counts of the day, or null if they cannot be read
+     */
+    private CookieCounter loadDay(File file, long epochDay, long generation) {
+        File dayFile = dayFileOf(file, epochDay, generation);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dayFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(file.getAbsolutePath())
+                    || in.readLong() != epochDay) {
+                LOGGER.log(Level.WARNING, "Ignoring foreign checkpoint " + dayFile.getAbsolutePath());
+                return null;
+            }
+            int size = in.readInt();
+            CookieCounter counter = new CookieCounter(size);
+            for (int j = 0; j < size; j++) {
+                String cookieId = in.readUTF();
+                counter.add(cookieId, in.readInt());
+            }
+            return counter;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Checkpoint cannot be read " + dayFile.getAbsolutePath() + ": "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the number of cookies of a counter followed by every cookie and its count.
+     *
+     * @param out     the output of the day file
+     * @param counter the counts of the day
+     * @throws IOException if the counts cannot be written
+     */
+    private static void writeCounts(DataOutputStream out, CookieCounter counter) throws IOException {
+        out.writeInt(counter.size());
+        IOException[] failure = new IOException[1];
+        counter.forEach((cookieId, count) -> {
+            try {
+                out.writeUTF(cookieId);
+                out.writeInt(count);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Writes a file through a temporary file that replaces it atomically.
+     *
+     * @param target  the file to write
+     * @param content the writer of the content
+     * @return true if the file was written, false otherwise
+     */
+    private static boolean write(File target, Content content) {
+        File temporary = new File(target.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            content.writeTo(out);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Checkpoint cannot be written " + target.getAbsolutePath() + ": "
+                    + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+        try {
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Checkpoint cannot be written " + target.getAbsolutePath() + ": "
+                    + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the day files of a log that the saved checkpoint no longer names.
+     *
+     * @param file       the log file
+     * @param checkpoint the saved checkpoint
+     */
+    private void deleteStaleDays(File file, Checkpoint checkpoint) {
+        String prefix = prefixOf(file) + ".";
+        Set<String> current = new HashSet<>();
+        for (Map.Entry<Long, Long> day : checkpoint.dayGenerations.entrySet()) {
+            current.add(dayFileOf(file, day.getKey(), day.getValue()).getName());
+        }
+        File[] dayFiles = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(DAY_SUFFIX)
+                && !current.contains(name));
+        if (dayFiles == null) {
+            return;
+        }
+        for (File dayFile : dayFiles) {
+            if (!dayFile.delete()) {
+                LOGGER.log(Level.WARNING, "Stale checkpoint cannot be deleted " + dayFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * The Content interface writes the content of a checkpoint file.
+     */
+    private interface Content {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * The Checkpoint class holds the consumed part of a log file and the cookie counts of every day in it.
+     */
+    public static final class Checkpoint {
+        private final String fileKey;
+        private final long offset;
+        private final int headLength;
+        private final long headChecksum;
+        private final long generation;
+        private final Map<Long, CookieCounter> counters = new TreeMap<>();
+        private final Map<Long, Long> dayGenerations = new TreeMap<>();
+
+        /**
+         * Constructs a new Checkpoint without counts.
+         *
+         * @param fileKey      the identity of the log file, e.g. its inode
+         * @param offset       the number of bytes consumed, always at a line start
+         * @param headLength   the number of bytes at the start of the log covered by the checksum
+         * @param headChecksum the CRC-32 of the head of the log
+         * @param generation   the number of the checkpoint, greater than the one of every earlier checkpoint of the log
+         */
+        Checkpoint(String fileKey, long offset, int headLength, long headChecksum, long generation) {
+            this.fileKey = fileKey;
+            this.offset = offset;
+            this.headLength = headLength;
+            this.headChecksum = headChecksum;
+            this.generation = generation;
+        }
+
+        /**
+         * Returns the identity of the log file.
+         *
+         * @return the file key
+         */
+        String getFileKey() {
+            return fileKey;
+        }
+
+        /**
+         * Returns the number of bytes consumed.
+         *
+         * @return the consumed offset
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the number of bytes at the start of the log covered by the checksum.
+         *
+         * @return the length of the head
+         */
+        int getHeadLength() {
+            return headLength;
+        }
+
+        /**
+         * Returns the CRC-32 of the head of the log.
+         *
+         * @return the checksum
+         */
+        long getHeadChecksum() {
+            return headChecksum;
+        }
+
+        /**
+         * Returns the number of the checkpoint.
+         *
+         * @return the generation
+         */
+        long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Returns the generation of the checkpoint that last wrote the counts of a day.
+         *
+         * @param epochDay the number of days since 1970-01-01
+         * @return the generation of the day, or 0 if the day is unknown
+         */
+        long getDayGeneration(long epochDay) {
+            return dayGenerations.getOrDefault(epochDay, 0L);
+        }
+
+        /**
+         * Records the generation of the checkpoint that last wrote the counts of a day. Saving the checkpoint writes
+         * the days of its own generation.
+         *
+         * @param epochDay   the number of days since 1970-01-01
+         * @param generation the generation of the day
+         */
+        void setDayGeneration(long epochDay, long generation) {
+            dayGenerations.put(epochDay, generation);
+        }
+
+        /**
+         * Returns the cookie counts of every day consumed so far.
+         *
+         * @return the counters keyed by the number of days since 1970-01-01, in ascending order
+         */
+        Map<Long, CookieCounter> getCounters() {
+            return counters;
+        }
+    }
+}
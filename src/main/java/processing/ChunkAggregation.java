@@ -0,0 +1,143 @@
+package processing;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * The ChunkAggregation interface describes how the records of independently scanned chunks are collected
+ * into worker-local partial results and how these are merged on the calling thread.
+ *
+ * @param <T> the type of the partial chunk results
+ */
+interface ChunkAggregation<T> {
+
+    /**
+     * Creates an empty partial result for a chunk.
+     *
+     * @return a new partial result
+     */
+    T createPartial();
+
+    /**
+     * Adds a record to the partial result of the chunk it was found in.
+     *
+     * @param partial     the partial result of the chunk
+     * @param buffer      the scanned buffer
+     * @param idStart     the inclusive start index of the cookie identifier
+     * @param idEnd       the exclusive end index of the cookie identifier
+     * @param epochSecond the timestamp of the record in epoch seconds
+     */
+    void accept(T partial, ByteBuffer buffer, int idStart, int idEnd, long epochSecond);
+
+    /**
+     * Merges a partial result into the final one. Called in file order.
+     *
+     * @param partial the partial result of a chunk
+     */
+    void merge(T partial);
+
+    /**
+     * Creates the aggregation collecting cookies with all their timestamps.
+     *
+     * @param cookies the table to merge the cookies into
+     * @return the aggregation
+     */
+    static ChunkAggregation<CookieTable> cookies(CookieTable cookies) {
+        return new ChunkAggregation<>() {
+            @Override
+            public CookieTable createPartial() {
+                return new CookieTable();
+            }
+
+            @Override
+            public void accept(CookieTable partial, ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+                partial.cookieOf(buffer, idStart, idEnd).addTimestamp(new Date(epochSecond * 1000));
+            }
+
+            @Override
+            public void merge(CookieTable partial) {
+                cookies.mergeAll(partial.getCookies());
+            }
+        };
+    }
+
+    /**
+     * Creates the aggregation counting the occurrences of every cookie.
+     *
+     * @param counter the counter to merge the counts into
+     * @return the aggregation
+     */
+    static ChunkAggregation<CookieCounter> counts(CookieCounter counter) {
+        return new ChunkAggregation<>() {
+            @Override
+            public CookieCounter createPartial() {
+                return new CookieCounter();
+            }
+
+            @Override
+            public void accept(CookieCounter partial, ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+                partial.increment(buffer, idStart, idEnd);
+            }
+
+            @Override
+            public void merge(CookieCounter partial) {
+                counter.merge(partial);
+            }
+        };
+    }
+
+    /**
+     * Creates the aggregation counting the occurrences of every cookie into a sink.
+     *
+     * @param sink the sink receiving the counts of every chunk
+     * @return the aggregation
+     */
+    static ChunkAggregation<CookieCounter> sink(CookieCountSink sink) {
+        return new ChunkAggregation<>() {
+            @Override
+            public CookieCounter createPartial() {
+                return new CookieCounter();
+            }
+
+            @Override
+            public void accept(CookieCounter partial, ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+                partial.increment(buffer, idStart, idEnd);
+            }
+
+            @Override
+            public void merge(CookieCounter partial) {
+                partial.forEach(sink::add);
+            }
+        };
+    }
+
+    /**
+     * Creates the aggregation counting the occurrences of every cookie separately for each requested day.
+     *
+     * @param counters the counters to merge the counts into
+     * @param dates    the requested dates the counters were created for
+     * @return the aggregation
+     */
+    static ChunkAggregation<DayCounters> dayCounts(DayCounters counters, Collection<Date> dates) {
+        return new ChunkAggregation<>() {
+            @Override
+            public DayCounters createPartial() {
+                return new DayCounters(dates);
+            }
+
+            @Override
+            public void accept(DayCounters partial, ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+                CookieCounter counter = partial.counterFor(epochSecond);
+                if (counter != null) {
+                    counter.increment(buffer, idStart, idEnd);
+                }
+            }
+
+            @Override
+            public void merge(DayCounters partial) {
+                counters.merge(partial);
+            }
+        };
+    }
+}
@@ -0,0 +1,202 @@
+package processing;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class converts a cookie log into the columnar binary format read by {@link ColumnarCookieFileReader}.
+ * The log is scanned once; cookie identifiers are replaced by dense dictionary ids as they are read and,
+ * since records are sorted newest first, the columns of a day are written as soon as the first record
+ * of the previous day is reached, so only one day is kept in memory besides the dictionary.
+ * Logs that are not sorted by day are not converted.
+ */
+public final class ColumnarConverter {
+    private static final Logger LOGGER = Logger.getLogger(ColumnarConverter.class.getName());
+
+    private ColumnarConverter() {
+    }
+
+    /**
+     * Converts the given log file into "&lt;log&gt;.cols" next to it, replacing an existing one.
+     *
+     * @param file the log file
+     * @return true if the columnar file was written, false otherwise
+     */
+    public static boolean convert(File file) {
+        return convert(file, ColumnarCookieFileReader.columnarOf(file));
+    }
+
+    /**
+     * Converts the given log file into the given columnar file, replacing an existing one.
+     *
+     * @param file   the log file
+     * @param target the columnar file to write
+     * @return true if the columnar file was written, false otherwise
+     */
+    public static boolean convert(File file, File target) {
+        if (!CSVCookieFileReader.isValidFile(file)) {
+            CSVCookieFileReader.logInvalidFile(file);
+            return false;
+        }
+        File temporary = new File(target.getPath() + ".tmp");
+
+        LOGGER.log(Level.INFO, "Start converting file " + file.getAbsolutePath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileOutputStream fileOut = new FileOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(ColumnarCookieFileReader.MAGIC);
+            out.writeInt(ColumnarCookieFileReader.VERSION);
+
+            ColumnWriter writer = new ColumnWriter(out);
+            CsvRecordScanner.scanChannel(channel, CsvRecordScanner.MAX_SEGMENT_SIZE, DayRange.all(),
+                    writer::accept, ReadMetrics.global().file(file));
+            writer.finish();
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            LOGGER.log(Level.SEVERE, "File cannot be converted " + file.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+
+        try {
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "File cannot be written " + target.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Converts the log files given on the command line.
+     *
+     * @param args the paths of the log files
+     */
+    public static void main(String[] args) {
+        for (String path : args) {
+            convert(new File(path));
+        }
+    }
+
+    /**
+     * The ColumnWriter class collects the columns of the current day and writes the day blocks,
+     * the dictionary, the directory and the trailer.
+     */
+    private static final class ColumnWriter {
+        private static final int INITIAL_DAY_CAPACITY = 1024;
+
+        private final DataOutputStream out;
+        private final CookieIdDictionary dictionary = new CookieIdDictionary(0);
+        private final List<long[]> directory = new ArrayList<>();
+
+        private long position = 2 * Integer.BYTES;
+        private long currentDay = Long.MIN_VALUE;
+        private long newest;
+        private long previous;
+        private int[] ids = new int[INITIAL_DAY_CAPACITY];
+        private int[] deltas = new int[INITIAL_DAY_CAPACITY];
+        private int records;
+
+        private ColumnWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Adds a record to the current day, writing the previous day first if the record starts a new one.
+         *
+         * @param buffer      the buffer holding the cookie identifier
+         * @param idStart     the inclusive start index of the identifier
+         * @param idEnd       the exclusive end index of the identifier
+         * @param epochSecond the timestamp of the record
+         * @throws IllegalStateException if the records are not sorted newest first
+         */
+        private void accept(ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+            long epochDay = DayRange.toEpochDay(epochSecond);
+            if (epochDay != currentDay) {
+                if (records > 0 && epochDay > currentDay) {
+                    throw new IllegalStateException("records are not sorted newest first at day " + epochDay);
+                }
+                flush();
+                currentDay = epochDay;
+                newest = epochSecond;
+                previous = epochSecond;
+            }
+            if (records == ids.length) {
+                ids = Arrays.copyOf(ids, records * 2);
+                deltas = Arrays.copyOf(deltas, records * 2);
+            }
+            ids[records] = dictionary.idOf(buffer, idStart, idEnd);
+            deltas[records] = (int) (previous - epochSecond);
+            previous = epochSecond;
+            records++;
+        }
+
+        /**
+         * Writes the last day, the dictionary, the directory and the trailer.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        private void finish() throws IOException {
+            flush();
+            long dictionaryOffset = position;
+            int size = dictionary.size();
+            byte[][] names = new byte[size][];
+            int offset = 0;
+            for (int id = 0; id < size; id++) {
+                names[id] = dictionary.cookieIdOf(id).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(offset);
+                offset += names[id].length;
+            }
+            out.writeInt(offset);
+            for (byte[] name : names) {
+                out.write(name);
+            }
+            position += (long) (size + 1) * Integer.BYTES + offset;
+
+            long directoryOffset = position;
+            out.writeInt(directory.size());
+            for (long[] entry : directory) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+                out.writeInt((int) entry[2]);
+                out.writeLong(entry[3]);
+            }
+            out.writeLong(dictionaryOffset);
+            out.writeInt(size);
+            out.writeLong(directoryOffset);
+        }
+
+        /**
+         * Writes the id column and the timestamp delta column of the current day, if any.
+         */
+        private void flush() {
+            if (records == 0) {
+                return;
+            }
+            try {
+                directory.add(new long[]{currentDay, position, records, newest});
+                for (int i = 0; i < records; i++) {
+                    out.writeInt(ids[i]);
+                }
+                for (int i = 0; i < records; i++) {
+                    out.writeInt(deltas[i]);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            position += 2L * records * Integer.BYTES;
+            records = 0;
+        }
+    }
+}
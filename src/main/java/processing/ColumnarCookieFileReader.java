@@ -0,0 +1,394 @@
+package processing;
+
+import model.Cookie;
+import model.CookieImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface for cookie logs converted by {@link ColumnarConverter}
+ * into the columnar binary format ("*.cols"). Such a file holds, for every day, a column of dictionary ids
+ * of the cookies and a column of timestamp deltas, so the counts of a day are taken by memory-mapping the id
+ * column of that day and incrementing an int array indexed by id; identifiers are only decoded for the cookies
+ * seen on the day. Files that are not columnar are handed to the delegate reader. <p>
+ * Layout: header (magic, version), one block per day holding the id column and the delta column,
+ * the dictionary (offsets and UTF-8 bytes of every identifier), the day directory (epoch day, block offset,
+ * number of records, newest timestamp) and a trailer with the offset and size of the dictionary and the offset
+ * of the directory. The first delta of a day is the distance to the newest timestamp of the day, every further
+ * delta the distance to the previous record; all values are big-endian.
+ */
+public class ColumnarCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(ColumnarCookieFileReader.class.getName());
+
+    static final String COLUMNAR_SUFFIX = ".cols";
+    static final int MAGIC = 0x434B434C;
+    static final int VERSION = 1;
+
+    private static final int TRAILER_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    private static final int DIRECTORY_ENTRY_SIZE = 3 * Long.BYTES + Integer.BYTES;
+
+    private final CookieFileReader delegate;
+
+    /**
+     * Constructs a new ColumnarCookieFileReader.
+     *
+     * @param delegate the reader of the files that are not columnar
+     */
+    public ColumnarCookieFileReader(CookieFileReader delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Checks whether the file is read by this reader rather than by the delegate.
+     *
+     * @param file the file to check
+     * @return true if the file name ends with ".cols"
+     */
+    public static boolean isColumnarFile(File file) {
+        return file.getName().endsWith(COLUMNAR_SUFFIX);
+    }
+
+    /**
+     * Returns the columnar file a log file is converted into by default.
+     *
+     * @param file the log file
+     * @return the columnar file, which may not exist
+     */
+    public static File columnarOf(File file) {
+        return new File(file.getPath() + COLUMNAR_SUFFIX);
+    }
+
+    /**
+     * Reads cookie data from the given collection of files and returns cookies active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        long epochDay = DayRange.of(targetDate).getEpochDay();
+        List<File> other = new ArrayList<>();
+
+        for (File file : files) {
+            if (!isColumnarFile(file)) {
+                other.add(file);
+                continue;
+            }
+            try (ColumnarFile columns = ColumnarFile.open(file)) {
+                if (columns != null) {
+                    cookies.mergeAll(columns.readDay(epochDay));
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
+        if (!other.isEmpty()) {
+            cookies.mergeAll(delegate.readFile(other, targetDate));
+        }
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        List<File> other = countColumnar(files, List.of(targetDate), (epochDay, cookieId, count) ->
+                counter.add(cookieId, count));
+
+        if (!other.isEmpty()) {
+            counter.merge(delegate.countCookies(other, targetDate));
+        }
+        return counter;
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date into the given sink.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        List<File> other = countColumnar(files, List.of(targetDate), (epochDay, cookieId, count) ->
+                sink.add(cookieId, count));
+
+        if (!other.isEmpty()) {
+            delegate.countCookies(other, targetDate, sink);
+        }
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates, opening every file once.
+     *
+     * @param files the collection of files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01, in ascending order
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        Map<Long, CookieCounter> counters = new TreeMap<>();
+        for (Date date : dates) {
+            counters.putIfAbsent(DayRange.of(date).getEpochDay(), new CookieCounter());
+        }
+        List<File> other = countColumnar(files, dates, (epochDay, cookieId, count) ->
+                counters.get(epochDay).add(cookieId, count));
+
+        if (!other.isEmpty()) {
+            delegate.countCookiesByDay(other, dates).forEach((epochDay, counter) ->
+                    counters.computeIfAbsent(epochDay, day -> new CookieCounter()).merge(counter));
+        }
+        return counters;
+    }
+
+    /**
+     * Counts the cookies of the columnar files for each of the given dates.
+     *
+     * @param files    the collection of files to be read
+     * @param dates    the dates for which to count the cookies
+     * @param consumer the consumer of the count of every cookie and day
+     * @return the files that are not columnar and have to be read by the delegate
+     */
+    private static List<File> countColumnar(Collection<File> files, Collection<Date> dates, DayCountConsumer consumer) {
+        Set<Long> days = new TreeSet<>();
+        for (Date date : dates) {
+            days.add(DayRange.of(date).getEpochDay());
+        }
+        List<File> other = new ArrayList<>();
+
+        for (File file : files) {
+            if (!isColumnarFile(file)) {
+                other.add(file);
+                continue;
+            }
+            try (ColumnarFile columns = ColumnarFile.open(file)) {
+                if (columns != null) {
+                    for (long epochDay : days) {
+                        columns.countDay(epochDay, (cookieId, count) -> consumer.accept(epochDay, cookieId, count));
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+        return other;
+    }
+
+    /**
+     * The DayCountConsumer interface receives the count of a cookie on a day.
+     */
+    @FunctionalInterface
+    private interface DayCountConsumer {
+        void accept(long epochDay, String cookieId, int count);
+    }
+
+    /**
+     * The ColumnarFile class gives access to the directory and the dictionary of an open columnar file
+     * and scans the columns of single days.
+     */
+    private static final class ColumnarFile implements AutoCloseable {
+        private final FileChannel channel;
+        private final FileMetrics metrics;
+        private final Map<Long, long[]> directory;
+        private final int dictionarySize;
+        private final ByteBuffer dictionary;
+
+        private ColumnarFile(FileChannel channel, FileMetrics metrics, Map<Long, long[]> directory,
+                             int dictionarySize, ByteBuffer dictionary) {
+            this.channel = channel;
+            this.metrics = metrics;
+            this.directory = directory;
+            this.dictionarySize = dictionarySize;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Opens a columnar file and reads its directory and maps its dictionary.
+         *
+         * @param file the columnar file
+         * @return the open file, or null if the file cannot be read or is not in the columnar format
+         * @throws IOException if the file cannot be read
+         */
+        private static ColumnarFile open(File file) throws IOException {
+            if (!file.isFile() || !file.canRead()) {
+                CSVCookieFileReader.logInvalidFile(file);
+                return null;
+            }
+            FileMetrics metrics = ReadMetrics.global().file(file);
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                long ioStart = System.nanoTime();
+                long size = channel.size();
+                ByteBuffer header = read(channel, 0, 2 * Integer.BYTES);
+                if (size < 2 * Integer.BYTES + TRAILER_SIZE
+                        || header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+                    LOGGER.log(Level.SEVERE, "File is not in the columnar format " + file.getAbsolutePath());
+                    channel.close();
+                    return null;
+                }
+                ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+                long dictionaryOffset = trailer.getLong(0);
+                int dictionarySize = trailer.getInt(Long.BYTES);
+                long directoryOffset = trailer.getLong(Long.BYTES + Integer.BYTES);
+
+                ByteBuffer entries = read(channel, directoryOffset, (int) (size - TRAILER_SIZE - directoryOffset));
+                int dayCount = entries.getInt(0);
+                Map<Long, long[]> directory = new HashMap<>(dayCount * 2);
+                for (int i = 0; i < dayCount; i++) {
+                    int at = Integer.BYTES + i * DIRECTORY_ENTRY_SIZE;
+                    directory.put(entries.getLong(at), new long[]{entries.getLong(at + Long.BYTES),
+                            entries.getInt(at + 2 * Long.BYTES), entries.getLong(at + 2 * Long.BYTES + Integer.BYTES)});
+                }
+                long dictionaryLength = directoryOffset - dictionaryOffset;
+                if (dictionaryLength > Integer.MAX_VALUE) {
+                    throw new IOException("Dictionary is larger than a mapping");
+                }
+                MappedByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                        dictionaryLength);
+                metrics.addIoNanos(System.nanoTime() - ioStart);
+                return new ColumnarFile(channel, metrics, directory, dictionarySize, dictionary);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Counts the records of every cookie on the given day by scanning the id column of the day.
+         *
+         * @param epochDay the number of days since 1970-01-01
+         * @param consumer the consumer of the identifier and the count of every cookie seen on the day
+         * @throws IOException if the column cannot be mapped
+         */
+        private void countDay(long epochDay, ObjIntConsumer<String> consumer) throws IOException {
+            long[] entry = directory.get(epochDay);
+            if (entry == null) {
+                return;
+            }
+            int records = (int) entry[1];
+            IntBuffer ids = mapColumn(entry[0], records);
+
+            long scanStart = System.nanoTime();
+            int[] counts = new int[dictionarySize];
+            for (int i = 0; i < records; i++) {
+                counts[ids.get(i)]++;
+            }
+            for (int id = 0; id < dictionarySize; id++) {
+                if (counts[id] > 0) {
+                    consumer.accept(cookieIdOf(id), counts[id]);
+                }
+            }
+            metrics.addScan((long) records * Integer.BYTES, records, records, System.nanoTime() - scanStart);
+        }
+
+        /**
+         * Reads the cookies of the given day with their timestamps from the id and the delta columns of the day.
+         *
+         * @param epochDay the number of days since 1970-01-01
+         * @return the cookies in order of first appearance on the day
+         * @throws IOException if the columns cannot be mapped
+         */
+        private List<Cookie> readDay(long epochDay) throws IOException {
+            long[] entry = directory.get(epochDay);
+            if (entry == null) {
+                return List.of();
+            }
+            int records = (int) entry[1];
+            IntBuffer ids = mapColumn(entry[0], records);
+            IntBuffer deltas = mapColumn(entry[0] + (long) records * Integer.BYTES, records);
+
+            long scanStart = System.nanoTime();
+            Cookie[] byId = new Cookie[dictionarySize];
+            List<Cookie> cookies = new ArrayList<>();
+            long epochSecond = entry[2];
+            for (int i = 0; i < records; i++) {
+                epochSecond -= deltas.get(i);
+                int id = ids.get(i);
+                if (byId[id] == null) {
+                    byId[id] = new CookieImpl(cookieIdOf(id));
+                    cookies.add(byId[id]);
+                }
+                byId[id].addTimestamp(new Date(epochSecond * 1000));
+            }
+            metrics.addScan(2L * records * Integer.BYTES, records, records, System.nanoTime() - scanStart);
+            return cookies;
+        }
+
+        /**
+         * Maps an int column.
+         *
+         * @param offset  the file offset of the column
+         * @param records the number of values in the column
+         * @return the column
+         * @throws IOException if the column is larger than a mapping or cannot be mapped
+         */
+        private IntBuffer mapColumn(long offset, int records) throws IOException {
+            long length = (long) records * Integer.BYTES;
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Column is larger than a mapping at offset " + offset);
+            }
+            long mapStart = System.nanoTime();
+            MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            metrics.addIoNanos(System.nanoTime() - mapStart);
+            return column.asIntBuffer();
+        }
+
+        /**
+         * Decodes the identifier of a dictionary id.
+         *
+         * @param id the dictionary id
+         * @return the cookie identifier
+         */
+        private String cookieIdOf(int id) {
+            int start = dictionary.getInt(id * Integer.BYTES);
+            int end = dictionary.getInt((id + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            dictionary.get((dictionarySize + 1) * Integer.BYTES + start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads a byte range of the file into a new buffer.
+         *
+         * @param channel  the channel of the file
+         * @param position the offset of the range
+         * @param length   the number of bytes to read
+         * @return the buffer holding the bytes read
+         * @throws IOException if the range cannot be read completely
+         */
+        private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file at offset " + (position + buffer.position()));
+                }
+            }
+            return buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package processing;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * This class holds the options of a command line run of {@link CookieFileProcessorImpl}.
+ * Every group of related flags is parsed by a method of its own, which also declares the usage of the group,
+ * so that the usage message is assembled from the same place the flags are recognized in.
+ * Unknown arguments are ignored.
+ */
+final class CommandLineOptions {
+    private static final Logger LOGGER = Logger.getLogger(CommandLineOptions.class.getName());
+    private static final String STDIN = "-";
+    private static final long DEFAULT_CACHE_SIZE = 256L << 20;
+
+    private static final String INPUT_USAGE = "-f <path-to-cookie-file>|- -d <date>... | --from <date> --to <date>";
+    private static final String OUTPUT_USAGE = "[--top <k>] [--summary | --distinct] [--interval <seconds>] "
+            + "[--metrics]";
+    private static final String READER_USAGE = "[-r " + Arrays.stream(ReaderMode.values())
+            .map(mode -> mode.name().toLowerCase()).collect(Collectors.joining("|"))
+            + "] [-p <threads>] [-j <max-open-files>] [-i]";
+    private static final String COUNTING_USAGE = "[-m <megabytes>] [-a <error> [--exact]] "
+            + "[--checkpoints <directory>] [--sketches <directory>]";
+    private static final String WINDOW_USAGE = "[--zone <zone-id>] [--week] [--window <from> <to>]";
+    private static final String WORKER_USAGE = "[--workers <n> [--partitions <p>] [--work-dir <directory>] "
+            + "[--hosts <host,...>]]";
+    private static final String SERVER_USAGE = "| --serve <port> [--cache <megabytes>]";
+
+    /**
+     * The usage message listing every flag recognized by {@link #parse(String[])}.
+     */
+    static final String USAGE = String.join(" ", "Usage: CookieAnalyzerApp", INPUT_USAGE, OUTPUT_USAGE,
+            READER_USAGE, COUNTING_USAGE, WINDOW_USAGE, WORKER_USAGE, SERVER_USAGE);
+
+    private final String[] args;
+    private int position;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private final List<File> files = new ArrayList<>();
+    private final List<Date> dates = new ArrayList<>();
+    private Date from;
+    private Date to;
+
+    private int top;
+    private boolean summary;
+    private boolean distinct;
+    private long interval;
+    private boolean printMetrics;
+
+    private ReaderMode readerMode = ReaderMode.CSV;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxOpenFiles = Runtime.getRuntime().availableProcessors();
+    private boolean indexed;
+
+    private long memoryBudget;
+    private double errorTarget;
+    private boolean exactSecondPass;
+    private File checkpointDirectory;
+    private File sketchDirectory;
+
+    private ZoneId zone;
+    private boolean week;
+    private long[] window;
+    private String windowLabel;
+
+    private int workers;
+    private int partitions;
+    private File workDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private List<String> hosts = List.of();
+
+    private int port = -1;
+    private long cacheSize = DEFAULT_CACHE_SIZE;
+
+    private CommandLineOptions(String[] args) {
+        this.args = args;
+    }
+
+    /**
+     * Parses the command line arguments. A "--from" or "--to" range is expanded into its dates,
+     * which are added after the dates given with "-d".
+     *
+     * @param args the command line arguments
+     * @return the parsed options
+     * @throws ParseException if a date of a range cannot be parsed
+     */
+    static CommandLineOptions parse(String[] args) throws ParseException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        for (options.position = 0; options.position < args.length; options.position++) {
+            String flag = args[options.position];
+            boolean recognized = options.parseInput(flag) || options.parseOutput(flag) || options.parseReader(flag)
+                    || options.parseCounting(flag) || options.parseWindow(flag) || options.parseWorkers(flag)
+                    || options.parseServer(flag);
+            if (!recognized) {
+                LOGGER.log(Level.FINE, "Ignoring argument " + flag);
+            }
+        }
+        if (options.from != null || options.to != null) {
+            options.dates.addAll(expandRange(options.from != null ? options.from : options.to,
+                    options.to != null ? options.to : options.from));
+        }
+        return options;
+    }
+
+    /**
+     * Parses the files and the dates to read, see {@link #INPUT_USAGE}.
+     *
+     * @param flag the current argument
+     * @return true if the argument is one of these flags
+     * @throws ParseException if a date of a range cannot be parsed
+     */
+    private boolean parseInput(String flag) throws ParseException {
+        switch (flag) {
+            case "-f":
+                while (position + 1 < args.length
+                        && (!args[position + 1].startsWith("-") || STDIN.equals(args[position + 1]))) {
+                    files.add(new File(next()));
+                }
+                return true;
+            case "-d":
+                while (position + 1 < args.length && !args[position + 1].startsWith("-")) {
+                    try {
+                        dates.add(dateFormat.parse(next()));
+                    } catch (ParseException e) {
+                        LOGGER.log(Level.SEVERE, e.getMessage());
+                    }
+                }
+                return true;
+            case "--from":
+                from = dateFormat.parse(next());
+                return true;
+            case "--to":
+                to = dateFormat.parse(next());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses the flags choosing what is printed, see {@link #OUTPUT_USAGE}.
+     *
+     * @param flag the current argument
+     * @return true if the argument is one of these flags
+     */
+    private boolean parseOutput(String flag) {
+        switch (flag) {
+            case "--top":
+                top = Integer.parseInt(next());
+                return true;
+            case "--summary":
+                summary = true;
+                return true;
+            case "--distinct":
+                distinct = true;
+                return true;
+            case "--interval":
+                interval = Long.parseLong(next());
+                return true;
+            case "--metrics":
+                printMetrics = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses the flags choosing how the files are read, see {@link #READER_USAGE}.
+     *
+     * @param flag the current argument
+     * @return true if the argument is one of these flags
+     */
+    private boolean parseReader(String flag) {
+        switch (flag) {
+            case "-r":
+                readerMode = ReaderMode.fromName(next());
+                return true;
+            case "-p":
+                parallelism = Integer.parseInt(next());
+                return true;
+            case "-j":
+                maxOpenFiles = Integer.parseInt(next());
+                return true;
+            case "-i":
+                indexed = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses the flags choosing how the occurrences are counted and cached, see {@link #COUNTING_USAGE}.
+     *
+     * @param flag the current argument
+     * @return true if the argument is one of these flags
+     */
+    private boolean parseCounting(String flag) {
+        switch (flag) {
+            case "-m":
+                memoryBudget = Long.parseLong(next()) << 20;
+                return true;
+            case "-a":
+                errorTarget = Double.parseDouble(next());
+                return true;
+            case "--exact":
+                exactSecondPass = true;
+                return true;
+            case "--checkpoints":
+                checkpointDirectory = new File(next());
+                return true;
+            case "--sketches":
+                sketchDirectory = new File(next());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses the flags asking for windows of whole hours, see {@link #WINDOW_USAGE}.
+     *
+     * @param flag the current argument
+     * @return true if the argument is one of these flags
+     */
+    private boolean parseWindow(String flag) {
+        switch (flag) {
+            case "--zone":
+                zone = ZoneId.of(next());
+                return true;
+            case "--week":
+                week = true;
+                return true;
+            case "--window":
+                String start = next();
+                String end = next();
+                windowLabel = start + "/" + end;
+                window = new long[]{OffsetDateTime.parse(start).toEpochSecond(),
+                        OffsetDateTime.parse(end).toEpochSecond()};
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses the flags spreading the files over worker processes, see {@link #WORKER_USAGE}.
+     *
+     * @param flag the current argument
+     * @return true if the argument is one of these flags
+     */
+    private boolean parseWorkers(String flag) {
+        switch (flag) {
+            case "--workers":
+                workers = Integer.parseInt(next());
+                return true;
+            case "--partitions":
+                partitions = Integer.parseInt(next());
+                return true;
+            case "--work-dir":
+                workDirectory = new File(next());
+                return true;
+            case "--hosts":
+                hosts = List.of(next().split(","));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses the flags of the server mode, see {@link #SERVER_USAGE}.
+     *
+     * @param flag the current argument
+     * @return true if the argument is one of these flags
+     */
+    private boolean parseServer(String flag) {
+        switch (flag) {
+            case "--serve":
+                port = Integer.parseInt(next());
+                return true;
+            case "--cache":
+                cacheSize = Long.parseLong(next()) << 20;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Consumes the value following the current flag.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the flag is the last argument
+     */
+    private String next() {
+        if (position + 1 >= args.length) {
+            throw new IllegalArgumentException("Missing value after " + args[position]);
+        }
+        return args[++position];
+    }
+
+    /**
+     * Lists every calendar date from the first to the last given one.
+     *
+     * @param from the first date of the range
+     * @param to the last date of the range, inclusive
+     * @return the dates of the range, one per calendar day
+     */
+    private static List<Date> expandRange(Date from, Date to) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate last = to.toInstant().atZone(zone).toLocalDate();
+        List<Date> dates = new ArrayList<>();
+        for (LocalDate day = from.toInstant().atZone(zone).toLocalDate(); !day.isAfter(last); day = day.plusDays(1)) {
+            dates.add(Date.from(day.atStartOfDay(zone).toInstant()));
+        }
+        return dates;
+    }
+
+    /**
+     * Returns the format of the dates given and printed.
+     *
+     * @return the date format
+     */
+    SimpleDateFormat getDateFormat() {
+        return dateFormat;
+    }
+
+    /**
+     * Returns the files to read, "-" standing for the standard input.
+     *
+     * @return the files
+     */
+    List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the dates given with "-d" followed by the dates of the "--from" and "--to" range.
+     *
+     * @return the requested dates
+     */
+    List<Date> getDates() {
+        return dates;
+    }
+
+    /**
+     * Checks whether the standard input is one of the files to read.
+     *
+     * @return true if the inputs have to be streamed
+     */
+    boolean readsStandardInput() {
+        return files.contains(new File(STDIN));
+    }
+
+    /**
+     * Returns the number of top cookies printed with their counts per date.
+     *
+     * @return the number of top cookies, or 0 to print the most active ones
+     */
+    int getTop() {
+        return top;
+    }
+
+    /**
+     * Checks whether the activity summary of every date is printed.
+     *
+     * @return true if "--summary" is given
+     */
+    boolean isSummary() {
+        return summary;
+    }
+
+    /**
+     * Checks whether only the distinct cookies of every date are printed.
+     *
+     * @return true if "--distinct" is given
+     */
+    boolean isDistinct() {
+        return distinct;
+    }
+
+    /**
+     * Returns the number of seconds between printouts while the standard input is streamed.
+     *
+     * @return the interval, or 0 to print only at the end
+     */
+    long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Checks whether the read metrics are printed to the standard error at the end.
+     *
+     * @return true if "--metrics" is given
+     */
+    boolean isPrintMetrics() {
+        return printMetrics;
+    }
+
+    /**
+     * Returns the selected reader mode.
+     *
+     * @return the reader mode, CSV by default
+     */
+    ReaderMode getReaderMode() {
+        return readerMode;
+    }
+
+    /**
+     * Returns the number of threads a single reader may use.
+     *
+     * @return the parallelism, the number of available processors by default
+     */
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the maximum number of files read, or queries answered, at the same time.
+     *
+     * @return the maximum number of open files, the number of available processors by default
+     */
+    int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * Checks whether queries are answered from per-day index sidecars.
+     *
+     * @return true if "-i" is given
+     */
+    boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory used for counting.
+     *
+     * @return the memory budget, or 0 to count on the heap
+     */
+    long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the error target of an approximate count.
+     *
+     * @return the error target as a fraction of the occurrences of a date, or 0 to count exactly
+     */
+    double getErrorTarget() {
+        return errorTarget;
+    }
+
+    /**
+     * Checks whether an approximate answer is confirmed by an exact second pass.
+     *
+     * @return true if "--exact" is given
+     */
+    boolean isExactSecondPass() {
+        return exactSecondPass;
+    }
+
+    /**
+     * Returns the directory of the checkpoints of growing logs.
+     *
+     * @return the checkpoint directory, or null to read every log from the start
+     */
+    File getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    /**
+     * Returns the directory caching the distinct cookie sketches of every file.
+     *
+     * @return the sketch directory, or null to keep no sketches
+     */
+    File getSketchDirectory() {
+        return sketchDirectory;
+    }
+
+    /**
+     * Returns the time zone whose calendar days are requested.
+     *
+     * @return the zone, or null for UTC days
+     */
+    ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Checks whether every date starts a window of seven days.
+     *
+     * @return true if "--week" is given
+     */
+    boolean isWeek() {
+        return week;
+    }
+
+    /**
+     * Returns the start and the end epoch second of the window given with "--window".
+     *
+     * @return the window, or null if none is given
+     */
+    long[] getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns the label of the window given with "--window", its start and end joined by "/".
+     *
+     * @return the window label, or null if none is given
+     */
+    String getWindowLabel() {
+        return windowLabel;
+    }
+
+    /**
+     * Checks whether the query asks for windows of whole hours answered from rollup cubes.
+     *
+     * @return true if a window, a time zone or weeks are requested
+     */
+    boolean hasWindows() {
+        return window != null || ((zone != null || week) && !dates.isEmpty());
+    }
+
+    /**
+     * Returns the number of worker processes the files are spread over.
+     *
+     * @return the number of workers, or 0 to read the files in this process
+     */
+    int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Returns the number of partitions of the cookie identifiers exchanged by the workers.
+     *
+     * @return the number of partitions, the number of workers by default
+     */
+    int getPartitions() {
+        return partitions > 0 ? partitions : workers;
+    }
+
+    /**
+     * Returns the shared directory of the partial counts of the workers.
+     *
+     * @return the work directory, the system temporary directory by default
+     */
+    File getWorkDirectory() {
+        return workDirectory;
+    }
+
+    /**
+     * Returns the hosts running the workers over ssh.
+     *
+     * @return the hosts, empty to run the workers locally
+     */
+    List<String> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Returns the local port queries are answered on over HTTP.
+     *
+     * @return the port, or -1 to read the files instead
+     */
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns the number of bytes of counts cached by the server mode.
+     *
+     * @return the cache size, 256 megabytes by default
+     */
+    long getCacheSize() {
+        return cacheSize;
+    }
+}
@@ -0,0 +1,309 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class implements the CookieFileReader interface for gzip-compressed logs ("*.gz"), decompressing them
+ * in memory instead of to disk. Logs written by {@link BlockGzip} are split into independent members that are
+ * inflated and scanned on a pool while earlier members are being merged, so decompression and parsing of
+ * different blocks run at the same time. Any other gzip file is inflated on a pool thread and parsed on the
+ * calling thread through a pipe, so decompression and parsing run as a two-stage pipeline.
+ * Files that are not compressed are handed to the delegate reader.
+ */
+public class CompressedCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(CompressedCookieFileReader.class.getName());
+
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final CookieFileReader delegate;
+    private final int parallelism;
+
+    /**
+     * Constructs a new CompressedCookieFileReader that uses one thread per available processor
+     * and reads uncompressed files with a CSVCookieFileReader.
+     */
+    public CompressedCookieFileReader() {
+        this(new CSVCookieFileReader(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new CompressedCookieFileReader.
+     *
+     * @param delegate    the reader of the files that are not compressed
+     * @param parallelism the number of threads used to decompress a file
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public CompressedCookieFileReader(CookieFileReader delegate, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Incorrect parallelism " + parallelism);
+        }
+        this.delegate = delegate;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Checks whether the file is read by this reader rather than by the delegate.
+     *
+     * @param file the file to check
+     * @return true if the file name ends with ".gz"
+     */
+    public static boolean isCompressedFile(File file) {
+        return file.getName().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Reads cookie data from the given collection of files and returns cookies active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        List<File> uncompressed = readRecords(files, DayRange.of(targetDate), ChunkAggregation.cookies(cookies));
+
+        if (!uncompressed.isEmpty()) {
+            cookies.mergeAll(delegate.readFile(uncompressed, targetDate));
+        }
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        List<File> uncompressed = readRecords(files, DayRange.of(targetDate), ChunkAggregation.counts(counter));
+
+        if (!uncompressed.isEmpty()) {
+            counter.merge(delegate.countCookies(uncompressed, targetDate));
+        }
+        return counter;
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates in a single pass over the files.
+     *
+     * @param files the collection of files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        DayCounters counters = new DayCounters(dates);
+        List<File> uncompressed = readRecords(files, counters.getSpan(), ChunkAggregation.dayCounts(counters, dates));
+
+        if (!uncompressed.isEmpty()) {
+            delegate.countCookiesByDay(uncompressed, dates).forEach(counters::merge);
+        }
+        return counters.toMap();
+    }
+
+    /**
+     * Reads the compressed files and aggregates the records of the target day.
+     *
+     * @param files       the collection of files to be read
+     * @param day         the target day
+     * @param aggregation the aggregation of the block results
+     * @param <T>         the type of the partial block results
+     * @return the files that are not compressed and have to be read by the delegate
+     */
+    private <T> List<File> readRecords(Collection<File> files, DayRange day, ChunkAggregation<T> aggregation) {
+        List<File> uncompressed = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            for (File file : files) {
+                if (!isCompressedFile(file)) {
+                    uncompressed.add(file);
+                } else if (file.isFile() && file.canRead()) {
+                    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                        List<long[]> members = BlockGzip.members(channel);
+                        if (members != null) {
+                            LOGGER.log(Level.INFO, "Start reading file " + file.getAbsolutePath() + " in " +
+                                    members.size() + " blocks on " + parallelism + " threads");
+                            readBlocks(channel, members, day, executor, aggregation,
+                                    ReadMetrics.global().file(file));
+                        } else {
+                            LOGGER.log(Level.INFO, "Start reading file " + file.getAbsolutePath());
+                            readStream(file, day, executor, aggregation, ReadMetrics.global().file(file));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        LOGGER.log(Level.SEVERE, "Reading interrupted " + file.getAbsolutePath());
+                        break;
+                    } catch (Exception e) {
+                        LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " +
+                                e.getMessage());
+                    }
+                } else {
+                    CSVCookieFileReader.logInvalidFile(file);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return uncompressed;
+    }
+
+    /**
+     * Inflates and scans the members of a block-compressed file on the executor and merges the partial results
+     * in file order. At most two members per thread are in flight, and no further members are read once
+     * a record older than the target day has been reached.
+     *
+     * @param channel     the channel of the compressed file
+     * @param members     the offset and the size of every member
+     * @param day         the target day
+     * @param executor    the executor running the block tasks
+     * @param aggregation the aggregation of the block results
+     * @param metrics     the metrics of the file
+     * @param <T>         the type of the partial block results
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws ExecutionException   if a block task fails
+     */
+    private <T> void readBlocks(FileChannel channel, List<long[]> members, DayRange day, ExecutorService executor,
+                                ChunkAggregation<T> aggregation, FileMetrics metrics)
+            throws InterruptedException, ExecutionException {
+        Deque<Future<BlockResult<T>>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < members.size() || !inFlight.isEmpty()) {
+                while (next < members.size() && inFlight.size() < parallelism * 2) {
+                    long[] member = members.get(next);
+                    boolean first = next == 0;
+                    inFlight.add(executor.submit(() -> readBlock(channel, member, first, day, aggregation, metrics)));
+                    next++;
+                }
+                BlockResult<T> result = inFlight.poll().get();
+                aggregation.merge(result.partial);
+                if (!result.continues) {
+                    return;
+                }
+            }
+        } finally {
+            for (Future<BlockResult<T>> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Inflates a single member and scans its lines into a worker-local partial result.
+     *
+     * @param channel     the channel of the compressed file
+     * @param member      the offset and the size of the member
+     * @param first       true for the first member, whose first line is the header
+     * @param day         the target day
+     * @param aggregation the aggregation of the block results
+     * @param metrics     the metrics of the file
+     * @param <T>         the type of the partial block results
+     * @return the partial result of the block
+     * @throws IOException if the member cannot be read or is corrupt
+     */
+    private static <T> BlockResult<T> readBlock(FileChannel channel, long[] member, boolean first, DayRange day,
+                                                ChunkAggregation<T> aggregation, FileMetrics metrics)
+            throws IOException {
+        long inflateStart = System.nanoTime();
+        byte[] lines = BlockGzip.inflate(channel, member[0], (int) member[1]);
+        metrics.addIoNanos(System.nanoTime() - inflateStart);
+        ByteBuffer buffer = ByteBuffer.wrap(lines);
+        int start = first ? CsvRecordScanner.skipLine(buffer, 0, lines.length) : 0;
+        T partial = aggregation.createPartial();
+        boolean continues = CsvRecordScanner.scan(buffer, start, lines.length, day,
+                (chunk, idStart, idEnd, epochSecond) -> aggregation.accept(partial, chunk, idStart, idEnd, epochSecond),
+                metrics);
+        return new BlockResult<>(partial, continues);
+    }
+
+    /**
+     * Inflates a gzip file of unknown structure on the executor and scans the inflated lines on the calling thread
+     * as they arrive through a pipe. Reading stops once a record older than the target day has been reached.
+     * The time spent waiting for inflated data is recorded as I/O time.
+     *
+     * @param file        the compressed file
+     * @param day         the target day
+     * @param executor    the executor running the decompression
+     * @param aggregation the aggregation of the records
+     * @param metrics     the metrics of the file
+     * @param <T>         the type of the partial result
+     * @throws IOException          if the file cannot be read
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws ExecutionException   if the decompression fails
+     */
+    private static <T> void readStream(File file, DayRange day, ExecutorService executor,
+                                       ChunkAggregation<T> aggregation, FileMetrics metrics)
+            throws IOException, InterruptedException, ExecutionException {
+        Pipe pipe = Pipe.open();
+        Future<?> decompression = executor.submit(() -> {
+            // The sink is opened first, so that the parser sees the end of the pipe whatever fails
+            try (WritableByteChannel sink = pipe.sink();
+                 InputStream fileIn = new FileInputStream(file);
+                 InputStream in = new GZIPInputStream(fileIn, STREAM_BUFFER_SIZE)) {
+                byte[] bytes = new byte[STREAM_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(bytes)) > 0) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+                    while (buffer.hasRemaining()) {
+                        sink.write(buffer);
+                    }
+                }
+            }
+            return null;
+        });
+
+        T partial = aggregation.createPartial();
+        boolean[] completed = {true};
+        try (Pipe.SourceChannel source = pipe.source()) {
+            StreamingCookieFileReader.readLines(source, STREAM_BUFFER_SIZE, (buffer, from, to) -> {
+                completed[0] = CsvRecordScanner.scan(buffer, from, to, day, (chunk, idStart, idEnd, epochSecond) ->
+                        aggregation.accept(partial, chunk, idStart, idEnd, epochSecond), metrics);
+                return completed[0];
+            }, metrics);
+        } finally {
+            if (!completed[0]) {
+                decompression.cancel(true);
+            }
+        }
+        if (completed[0]) {
+            decompression.get();
+        }
+        aggregation.merge(partial);
+    }
+
+    /**
+     * The BlockResult class holds the partial result of a member and whether the following members are needed.
+     *
+     * @param <T> the type of the partial block results
+     */
+    private static final class BlockResult<T> {
+        private final T partial;
+        private final boolean continues;
+
+        private BlockResult(T partial, boolean continues) {
+            this.partial = partial;
+            this.continues = continues;
+        }
+    }
+}
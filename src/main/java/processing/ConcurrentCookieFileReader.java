@@ -0,0 +1,252 @@
+package processing;
+
+import model.Cookie;
+import model.CookieImpl;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface by reading several files at the same time.
+ * Every file is read on a bounded thread pool by its own delegate reader, and the cookies found are merged
+ * into a ConcurrentHashMap whose per-bin locking keeps the merge striped across cookie identifiers. Counts are
+ * kept per file without any shared lock and merged once all files are done.
+ * A file that cannot be read is logged and skipped without cancelling the other files.
+ */
+public class ConcurrentCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(ConcurrentCookieFileReader.class.getName());
+    static final int BATCH_SIZE = 1 << 14;
+
+    private final Supplier<? extends CookieFileReader> readerFactory;
+    private final int maxOpenFiles;
+
+    /**
+     * Constructs a new ConcurrentCookieFileReader.
+     *
+     * @param readerFactory the factory of the delegate readers, one reader is created per file
+     * @param maxOpenFiles  the maximum number of files read at the same time
+     * @throws IllegalArgumentException if maxOpenFiles is not positive
+     */
+    public ConcurrentCookieFileReader(Supplier<? extends CookieFileReader> readerFactory, int maxOpenFiles) {
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("Incorrect maximum number of open files " + maxOpenFiles);
+        }
+        this.readerFactory = readerFactory;
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * Reads cookie data from the given collection of files concurrently and returns cookies active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        ConcurrentMap<String, Cookie> cookies = new ConcurrentHashMap<>();
+        readConcurrently(files, file -> {
+            for (Cookie partial : readerFactory.get().readFile(List.of(file), targetDate)) {
+                merge(cookies, partial);
+            }
+        });
+        return cookies.values();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date without retaining the timestamps.
+     * Every file is counted into its own counter without any shared lock; the counters are merged once all files
+     * are done, into the largest one so that its entries are not copied.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        Collection<CookieCounter> partials = collectConcurrently(files,
+                file -> readerFactory.get().countCookies(List.of(file), targetDate));
+        CookieCounter counter = new CookieCounter();
+        for (CookieCounter partial : partials) {
+            if (partial.size() > counter.size()) {
+                CookieCounter smaller = counter;
+                counter = partial;
+                partial = smaller;
+            }
+            counter.merge(partial);
+        }
+        return counter;
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date into the given sink, reading the files
+     * concurrently. Every file is counted into a small batch of its own, which is added to the sink under its lock
+     * whenever it holds {@value #BATCH_SIZE} cookies and once the file is done, so that memory stays bounded by
+     * the sink and the lock is taken once per batch rather than once per record. A file that fails part way may
+     * have been counted up to its last added batch.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences, which does not need to be thread-safe
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        readConcurrently(files, file -> {
+            BatchingSink batch = new BatchingSink(sink);
+            readerFactory.get().countCookies(List.of(file), targetDate, batch);
+            batch.flush();
+        });
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates, reading the files concurrently.
+     * The counters of every file are merged once all files are done.
+     *
+     * @param files the collection of files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        return countCookiesByDay(files, dates, (file, partial) -> {
+        });
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates, reading the files concurrently.
+     * The counters of every file are passed to the consumer on the thread that read the file and are merged
+     * once all files are done.
+     *
+     * @param files        the collection of files to be read
+     * @param dates        the dates for which to count the cookies
+     * @param fileConsumer the consumer of every file and its counters, called from several threads at the same time
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates,
+                                                      BiConsumer<File, Map<Long, CookieCounter>> fileConsumer) {
+        Collection<Map<Long, CookieCounter>> partials = collectConcurrently(files, file -> {
+            Map<Long, CookieCounter> partial = readerFactory.get().countCookiesByDay(List.of(file), dates);
+            fileConsumer.accept(file, partial);
+            return partial;
+        });
+        DayCounters counters = new DayCounters(dates);
+        for (Map<Long, CookieCounter> partial : partials) {
+            partial.forEach(counters::merge);
+        }
+        return counters.toMap();
+    }
+
+    /**
+     * Runs the given task for every file on a bounded thread pool, waits for all of them and returns their results.
+     * A failing task is logged and has no result.
+     *
+     * @param files the collection of files to be read
+     * @param task  the task reading a single file
+     * @param <T>   the type of the result of a single file
+     * @return the results of the files that were read, in no particular order
+     */
+    private <T> Collection<T> collectConcurrently(Collection<File> files, Function<File, T> task) {
+        Queue<T> results = new ConcurrentLinkedQueue<>();
+        readConcurrently(files, file -> results.add(task.apply(file)));
+        return results;
+    }
+
+    /**
+     * Runs the given task for every file on a bounded thread pool and waits for all of them.
+     * A failing task is logged and does not affect the others.
+     *
+     * @param files the collection of files to be read
+     * @param task  the task reading a single file
+     */
+    private void readConcurrently(Collection<File> files, Consumer<File> task) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxOpenFiles, files.size())));
+
+        try {
+            Map<File, Future<?>> futures = new LinkedHashMap<>();
+            for (File file : files) {
+                futures.put(file, executor.submit(() -> task.accept(file)));
+            }
+
+            for (Map.Entry<File, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.SEVERE, "Error reading file " + entry.getKey().getAbsolutePath() + ": " +
+                            e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.SEVERE, "Reading interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Merges the timestamps of a partial cookie into the shared map.
+     * The update runs under the lock of the map bin holding the cookie identifier.
+     *
+     * @param cookies the shared map of cookies
+     * @param partial the cookie read from a single file
+     */
+    private static void merge(ConcurrentMap<String, Cookie> cookies, Cookie partial) {
+        cookies.compute(partial.getCookieId(), (cookieId, cookie) -> {
+            Cookie merged = cookie != null ? cookie : new CookieImpl(cookieId);
+            for (Date timestamp : partial.getTimestamps()) {
+                merged.addTimestamp(timestamp);
+            }
+            return merged;
+        });
+    }
+
+    /**
+     * The BatchingSink class counts the occurrences of a single file into a small on-heap counter and adds them to
+     * the shared sink under its lock whenever the counter holds {@value #BATCH_SIZE} cookies.
+     */
+    private static final class BatchingSink implements CookieCountSink {
+        private final CookieCountSink target;
+        private CookieCounter batch = new CookieCounter();
+
+        private BatchingSink(CookieCountSink target) {
+            this.target = target;
+        }
+
+        @Override
+        public void add(String cookieId, int count) {
+            batch.add(cookieId, count);
+            flushIfFull();
+        }
+
+        @Override
+        public void increment(ByteBuffer buffer, int from, int to) {
+            batch.increment(buffer, from, to);
+            flushIfFull();
+        }
+
+        private void flushIfFull() {
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Adds the counted occurrences to the shared sink and starts a new batch.
+         */
+        private void flush() {
+            synchronized (target) {
+                batch.forEach(target::add);
+            }
+            batch = new CookieCounter();
+        }
+    }
+}
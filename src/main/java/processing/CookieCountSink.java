@@ -0,0 +1,37 @@
+package processing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The CookieCountSink interface receives cookie occurrences counted by a reader.
+ * It lets readers count into stores other than an on-heap {@link CookieCounter}.
+ */
+public interface CookieCountSink {
+
+    /**
+     * Adds the given number of occurrences of the cookie.
+     *
+     * @param cookieId the cookie identifier
+     * @param count    the number of occurrences to add
+     */
+    void add(String cookieId, int count);
+
+    /**
+     * Adds a single occurrence of the cookie whose identifier is held as ASCII in the given index range
+     * of the buffer. The range is only valid for the duration of the call.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     */
+    void increment(ByteBuffer buffer, int from, int to);
+
+    /**
+     * Adds a single occurrence of the given cookie.
+     *
+     * @param cookieId the cookie identifier
+     */
+    default void increment(String cookieId) {
+        add(cookieId, 1);
+    }
+}
@@ -0,0 +1,186 @@
+package processing;
+
+import model.Cookie;
+import model.CountedCookie;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * This class counts cookie occurrences in primitive int counters indexed by the dense ids of a
+ * {@link CookieIdDictionary}, so a distinct cookie costs a few dozen bytes and counting a record read
+ * from a buffer allocates nothing. It keeps track of the highest count while counting,
+ * so the most active cookies can be selected without another pass over boxed values.
+ * Instances are not thread-safe.
+ */
+public class CookieCounter implements CookieCountSink {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final CookieIdDictionary dictionary;
+    private int[] counts;
+    private int maxCount;
+
+    /**
+     * Constructs a new empty CookieCounter.
+     */
+    public CookieCounter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new empty CookieCounter sized for the expected number of distinct cookies.
+     *
+     * @param expectedSize the expected number of distinct cookies
+     */
+    public CookieCounter(int expectedSize) {
+        dictionary = new CookieIdDictionary(expectedSize);
+        counts = new int[Math.max(DEFAULT_CAPACITY, expectedSize)];
+    }
+
+    /**
+     * Adds a single occurrence of the given cookie.
+     *
+     * @param cookieId the cookie identifier
+     */
+    @Override
+    public void increment(String cookieId) {
+        add(cookieId, 1);
+    }
+
+    /**
+     * Adds a single occurrence of the cookie whose identifier is held as ASCII in the given index range
+     * of the buffer, without creating a String for it.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     */
+    @Override
+    public void increment(ByteBuffer buffer, int from, int to) {
+        addById(dictionary.idOf(buffer, from, to), 1);
+    }
+
+    /**
+     * Adds the given number of occurrences of the cookie.
+     *
+     * @param cookieId the cookie identifier
+     * @param count    the number of occurrences to add
+     */
+    @Override
+    public void add(String cookieId, int count) {
+        addById(dictionary.idOf(cookieId), count);
+    }
+
+    /**
+     * Returns the number of occurrences of the given cookie.
+     *
+     * @param cookieId the cookie identifier
+     * @return the number of occurrences, 0 if the cookie was never counted
+     */
+    public int get(String cookieId) {
+        int id = dictionary.find(cookieId);
+        return id < 0 ? 0 : counts[id];
+    }
+
+    /**
+     * Adds all counts of another counter to this one.
+     *
+     * @param other the counter to merge
+     */
+    public void merge(CookieCounter other) {
+        for (int id = 0; id < other.dictionary.size(); id++) {
+            addById(dictionary.idOf(other.dictionary, id), other.counts[id]);
+        }
+    }
+
+    /**
+     * Passes every counted cookie with its number of occurrences to the consumer, in order of first appearance.
+     *
+     * @param consumer the consumer of the cookie identifiers and counts
+     */
+    public void forEach(ObjIntConsumer<String> consumer) {
+        for (int id = 0; id < dictionary.size(); id++) {
+            consumer.accept(dictionary.cookieIdOf(id), counts[id]);
+        }
+    }
+
+    /**
+     * Returns the identifiers of the cookies with the highest number of occurrences.
+     *
+     * @return the identifiers of the most active cookies, empty if nothing was counted
+     */
+    public List<String> getMostActiveCookieIds() {
+        List<String> mostActive = new ArrayList<>();
+        for (int id = 0; id < dictionary.size(); id++) {
+            if (counts[id] == maxCount) {
+                mostActive.add(dictionary.cookieIdOf(id));
+            }
+        }
+        return mostActive;
+    }
+
+    /**
+     * Returns the k cookies with the highest number of occurrences, ordered by count and then by identifier.
+     * The selection keeps a bounded heap of k entries, so it needs no sorting of all counted cookies.
+     *
+     * @param k the maximum number of cookies to return
+     * @return the top cookies with their counts, the most active first
+     */
+    public List<Cookie> getTopCookies(int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<Integer> byActivity = Comparator.<Integer>comparingInt(id -> counts[id])
+                .thenComparing(dictionary::cookieIdOf, Comparator.reverseOrder());
+        int size = dictionary.size();
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(k, Math.max(size, 1)) + 1, byActivity);
+        for (int id = 0; id < size; id++) {
+            if (heap.size() < k) {
+                heap.add(id);
+            } else if (counts[id] >= counts[heap.peek()] && byActivity.compare(id, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(id);
+            }
+        }
+        List<Cookie> topCookies = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            int id = heap.poll();
+            topCookies.add(new CountedCookie(dictionary.cookieIdOf(id), counts[id]));
+        }
+        Collections.reverse(topCookies);
+        return topCookies;
+    }
+
+    /**
+     * Returns the highest number of occurrences of a single cookie.
+     *
+     * @return the highest count, 0 if nothing was counted
+     */
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * Returns the number of distinct cookies counted.
+     *
+     * @return the number of distinct cookies
+     */
+    public int size() {
+        return dictionary.size();
+    }
+
+    /**
+     * Adds occurrences to the counter of the given id, growing the counters for a new id.
+     *
+     * @param id    the dense id of the cookie
+     * @param count the number of occurrences to add
+     */
+    private void addById(int id, int count) {
+        if (id == counts.length) {
+            counts = Arrays.copyOf(counts, counts.length * 2);
+        }
+        maxCount = Math.max(maxCount, counts[id] += count);
+    }
+}
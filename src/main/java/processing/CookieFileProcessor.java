@@ -5,6 +5,8 @@ import model.Cookie;
 import java.io.File;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The CookieFileProcessor interface defines the method for processing cookie files.
@@ -22,4 +24,37 @@ public interface CookieFileProcessor {
      * @return a collection of Cookie objects that were the most active on the specified date
      */
     Collection<Cookie> getMostActiveCookies(Collection<File> files, Date date);
+
+    /**
+     * Analyzes the given collection of cookie files and returns the most active cookies for each of the given dates.
+     * Implementations may read the files once for all dates, but need not; see the implementing class for when
+     * every date is read separately.
+     *
+     * @param files the collection of files to be analyzed
+     * @param dates the dates for which the most active cookies should be determined
+     * @return the most active cookies of every requested date, in ascending order of the dates
+     */
+    Map<Date, Collection<Cookie>> getMostActiveCookies(Collection<File> files, Collection<Date> dates);
+
+    /**
+     * Analyzes the given collection of cookie files and returns the k most active cookies with their counts
+     * for each of the given dates. Implementations may read the files once for all dates, but need not.
+     *
+     * @param files the collection of files to be analyzed
+     * @param dates the dates for which the top cookies should be determined
+     * @param k the maximum number of cookies returned per date
+     * @return the top cookies of every requested date, the most active first, in ascending order of the dates
+     */
+    Map<Date, List<Cookie>> getTopCookies(Collection<File> files, Collection<Date> dates, int k);
+
+    /**
+     * Analyzes the given collection of cookie files and returns the activity summary of each of the given dates:
+     * the number of records, the most active cookies and a mergeable sketch estimating the number of distinct
+     * cookies. The sketches are computed in the same pass as the most active cookies.
+     *
+     * @param files the collection of files to be analyzed
+     * @param dates the dates to be summarized
+     * @return the summary of every requested date, in ascending order of the dates
+     */
+    Map<Date, DaySummary> getDailySummaries(Collection<File> files, Collection<Date> dates);
 }
@@ -1,13 +1,25 @@
 package processing;
 
 import model.Cookie;
+import model.CountedCookie;
+import model.EstimatedCookie;
 
 import java.io.File;
-import java.text.ParseException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of the CookieFileProcessor interface that processes cookie files.
@@ -15,58 +27,113 @@ import java.util.*;
  */
 public class CookieFileProcessorImpl implements CookieFileProcessor {
     private static final Logger LOGGER = Logger.getLogger(CSVCookieFileReader.class.getName());
-    private final CSVCookieFileReader csvCookieFileReader;
+    private static final String STDIN = "-";
+    private final CookieFileReader cookieFileReader;
+    private final boolean retainTimestamps;
+    private final long memoryBudget;
+    private final SketchStore sketchStore;
 
     /**
      * Constructs a new CookieFileProcessorImpl with a default CSVCookieFileReader.
      */
     public CookieFileProcessorImpl() {
-        this.csvCookieFileReader = new CSVCookieFileReader();
+        this(new CSVCookieFileReader());
     }
 
     /**
-     * Parses the arguments to extract file paths and the target date.
-     * Then it processes the files to find the most active cookies for the specified date. <p>
-     *     Expected correct format: <p>
+     * Constructs a new CookieFileProcessorImpl with the given reader.
      *
-     *  args[0] - tag "-f" tag followed by a list of file paths<p>
-     *  args[1] - path to cookie file at least one<p>
-     *  args[n] - tag "-d" following the file list<p>
-     *  args[n+1] - the date to search for the most popular cookie file in YYYY-mm-DD format<p>
+     * @param cookieFileReader the reader used to extract cookies from the files
+     */
+    public CookieFileProcessorImpl(CookieFileReader cookieFileReader) {
+        this(cookieFileReader, false);
+    }
+
+    /**
+     * Constructs a new CookieFileProcessorImpl with the given reader.
+     * By default only the number of occurrences of every cookie is counted;
+     * the individual timestamps are kept only when explicitly requested.
+     *
+     * @param cookieFileReader the reader used to extract cookies from the files
+     * @param retainTimestamps true if the returned cookies should contain all their timestamps
+     */
+    public CookieFileProcessorImpl(CookieFileReader cookieFileReader, boolean retainTimestamps) {
+        this(cookieFileReader, retainTimestamps, 0);
+    }
+
+    /**
+     * Constructs a new CookieFileProcessorImpl with the given reader.
+     * With a positive memory budget, the occurrences of every date are counted in an {@link OffHeapCookieCounter}
+     * of that size, which spills to temporary files instead of growing the heap.
+     *
+     * @param cookieFileReader the reader used to extract cookies from the files
+     * @param retainTimestamps true if the returned cookies should contain all their timestamps
+     * @param memoryBudget the number of bytes of off-heap memory used for counting, or 0 to count on the heap
+     */
+    public CookieFileProcessorImpl(CookieFileReader cookieFileReader, boolean retainTimestamps, long memoryBudget) {
+        this(cookieFileReader, retainTimestamps, memoryBudget, null);
+    }
+
+    /**
+     * Constructs a new CookieFileProcessorImpl with the given reader.
+     * With a sketch store, the distinct cookie sketches of every file and day are cached,
+     * so that distinct counts of files that did not change are answered without reading them again.
+     *
+     * @param cookieFileReader the reader used to extract cookies from the files
+     * @param retainTimestamps true if the returned cookies should contain all their timestamps
+     * @param memoryBudget the number of bytes of off-heap memory used for counting, or 0 to count on the heap
+     * @param sketchStore the cache of the distinct cookie sketches of every file, or null to keep none
+     */
+    public CookieFileProcessorImpl(CookieFileReader cookieFileReader, boolean retainTimestamps, long memoryBudget,
+                                   SketchStore sketchStore) {
+        this.cookieFileReader = cookieFileReader;
+        this.retainTimestamps = retainTimestamps;
+        this.memoryBudget = memoryBudget;
+        this.sketchStore = sketchStore;
+    }
+
+    /**
+     * Parses the command line arguments, see {@link CommandLineOptions}, chains the readers the files need and
+     * prints the answer to the query, or starts the query server for "--serve". The flags are described one per
+     * line in the readme; an argument list without files and dates logs the usage message.
+     *
+     * @param args the command line arguments
      */
     public void parse(String[] args) {
         if (args != null && args.length > 0) {
             try {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-                ArrayList<File> files = new ArrayList<>();
-                Date date = null;
-
-                // Анализ аргументов командной строки
-                for (int i = 0; i < args.length; i++) {
-                    if ("-f".equals(args[i])) {
-                        i++;
-                        while (!args[i].equals("-d")) {
-                            files.add(new File(args[i]));
-                            i++;
-                        }
-                    }
-                    if ("-d".equals(args[i])) {
-                        try {
-                            date = dateFormat.parse(args[++i]);
-                        } catch (ParseException e) {
-                            LOGGER.log(Level.SEVERE, e.getMessage());
-                        }
-                    }
-                }
-
-                if (!files.isEmpty() && date != null) {
-                    Collection<Cookie> mostActiveCookies = getMostActiveCookies(files, date);
+                CommandLineOptions options = CommandLineOptions.parse(args);
+                List<File> files = options.getFiles();
+                List<Date> dates = options.getDates();
+                ReadMetrics.global().registerMBean();
 
-                    for (Cookie cookie : mostActiveCookies) {
-                        System.out.println(cookie.getCookieId());
+                if (options.getPort() >= 0) {
+                    new CookieQueryServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.getPort()),
+                            new CookieFileProcessorImpl(createServerReader(options), false, options.getMemoryBudget()),
+                            options.getMaxOpenFiles()).start();
+                } else if (!files.isEmpty() && options.hasWindows()) {
+                    printWindows(new CookieFileProcessorImpl(createReader(options), false, options.getMemoryBudget()),
+                            files, windowsOf(options), options.getTop(), System.out);
+                } else if (!files.isEmpty() && !dates.isEmpty()) {
+                    CookieFileProcessor processor = createProcessor(options);
+                    if (options.readsStandardInput()) {
+                        streamCookies(files, dates.get(0), options.getTop(), options.getInterval());
+                    } else if (options.isDistinct() && !(processor instanceof CookieFileProcessorImpl)) {
+                        LOGGER.log(Level.WARNING, "Usage: --distinct cannot be combined with -a or --workers");
+                    } else if (options.isDistinct()) {
+                        printDistinct((CookieFileProcessorImpl) processor, files, dates, options.getDateFormat(),
+                                System.out);
+                    } else if (options.isSummary()) {
+                        printSummaries(processor, files, dates, options.getDateFormat(), System.out);
+                    } else {
+                        printResults(processor, files, dates, options.getTop(), options.getDateFormat(), System.out);
+                    }
+                    ReadMetrics.global().logSkippedLines();
+                    if (options.isPrintMetrics()) {
+                        System.err.println(ReadMetrics.global().toJson());
                     }
                 } else {
-                    LOGGER.log(Level.WARNING, "Usage: CookieAnalyzerApp -f <path-to-cookie-file> -d <date>");
+                    LOGGER.log(Level.WARNING, CommandLineOptions.USAGE);
                 }
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error processing the cookie log: " + e.getMessage());
@@ -76,9 +143,294 @@ public class CookieFileProcessorImpl implements CookieFileProcessor {
         }
     }
 
+    /**
+     * Creates the processor answering a command line query: worker processes for "--workers", an estimate for
+     * "-a", or an exact processor on top of the reader chain of the files.
+     *
+     * @param options the parsed command line options
+     * @return the processor answering the query
+     */
+    private CookieFileProcessor createProcessor(CommandLineOptions options) {
+        if (options.getWorkers() > 0) {
+            return new ShardedCookieFileProcessor(options.getWorkers(), options.getPartitions(),
+                    options.getReaderMode(), options.getParallelism(), options.getWorkDirectory(),
+                    options.getHosts().isEmpty() ? WorkerLauncher.local() : WorkerLauncher.ssh(options.getHosts()));
+        }
+        CookieFileReader reader = createReader(options);
+        if (options.getErrorTarget() > 0) {
+            return new ApproximateCookieFileProcessor(reader, options.getErrorTarget(), options.getMemoryBudget(),
+                    options.isExactSecondPass());
+        }
+        SketchStore sketchStore = options.getSketchDirectory() != null
+                ? new SketchStore(options.getSketchDirectory()) : null;
+        return new CookieFileProcessorImpl(reader, retainTimestamps, options.getMemoryBudget(), sketchStore);
+    }
+
+    /**
+     * Creates the reader chain for a command line run. The readers of the selected mode are wrapped only by the
+     * decorators the given files and flags need, and files outside of the requested days are pruned first.
+     *
+     * @param options the parsed command line options
+     * @return the reader for the run
+     */
+    private static CookieFileReader createReader(CommandLineOptions options) {
+        List<File> files = options.getFiles();
+        CookieFileReader reader = createReader(options.getReaderMode(), options.getParallelism(),
+                options.getMaxOpenFiles(), files.size());
+        if (options.isIndexed()) {
+            reader = new IndexedCookieFileReader(reader, true);
+        }
+        if (files.stream().anyMatch(CompressedCookieFileReader::isCompressedFile)) {
+            reader = new CompressedCookieFileReader(reader, options.getParallelism());
+        }
+        if (files.stream().anyMatch(ColumnarCookieFileReader::isColumnarFile)) {
+            reader = new ColumnarCookieFileReader(reader);
+        }
+        if (files.stream().anyMatch(RollupCube::isCubeFile)) {
+            reader = new RollupCookieFileReader(reader);
+        }
+        if (options.getCheckpointDirectory() != null) {
+            reader = new IncrementalCookieFileReader(reader, new CheckpointStore(options.getCheckpointDirectory()));
+        }
+        return new PruningCookieFileReader(reader);
+    }
+
+    /**
+     * Creates the reader chain of the server mode. Since the files of later queries are not known yet, every
+     * file format is accepted and the counts are cached in front of the readers.
+     *
+     * @param options the parsed command line options
+     * @return the reader answering the queries of the server
+     */
+    private static CookieFileReader createServerReader(CommandLineOptions options) {
+        CookieFileReader reader = options.getReaderMode().createReader(options.getParallelism());
+        if (options.isIndexed()) {
+            reader = new IndexedCookieFileReader(reader, true);
+        }
+        return new PruningCookieFileReader(new CachingCookieFileReader(new RollupCookieFileReader(
+                new ColumnarCookieFileReader(new CompressedCookieFileReader(reader, options.getParallelism()))),
+                options.getCacheSize()));
+    }
+
+    /**
+     * Answers a query and prints the result in the command line format: the most active cookies one per line
+     * for a single date, prefixed by the date for several dates, or "date,cookie,count" lines for the top cookies.
+     *
+     * @param processor the processor answering the query
+     * @param files the cookie log files to be analyzed
+     * @param dates the requested dates
+     * @param top the number of top cookies printed with their counts per date, or 0 to print the most active ones
+     * @param dateFormat the format of the printed dates
+     * @param out the stream to print to
+     */
+    static void printResults(CookieFileProcessor processor, List<File> files, List<Date> dates, int top,
+                             SimpleDateFormat dateFormat, PrintStream out) {
+        if (top > 0) {
+            for (Map.Entry<Date, List<Cookie>> entry : processor.getTopCookies(files, dates, top).entrySet()) {
+                for (Cookie cookie : entry.getValue()) {
+                    out.println(dateFormat.format(entry.getKey()) + "," + cookie.getCookieId()
+                            + "," + cookie.getCount()
+                            + (cookie instanceof EstimatedCookie ? "," + ((EstimatedCookie) cookie).getError() : ""));
+                }
+            }
+        } else if (dates.size() > 1) {
+            for (Map.Entry<Date, Collection<Cookie>> entry : processor.getMostActiveCookies(files, dates).entrySet()) {
+                for (Cookie cookie : entry.getValue()) {
+                    out.println(dateFormat.format(entry.getKey()) + "," + cookie.getCookieId());
+                }
+            }
+        } else {
+            Collection<Cookie> mostActiveCookies = processor.getMostActiveCookies(files, dates.get(0));
+
+            for (Cookie cookie : mostActiveCookies) {
+                out.println(cookie.getCookieId());
+            }
+        }
+    }
+
+    /**
+     * Summarizes the dates and prints one "date,records,distinct,cookie;cookie" line per date with its number of
+     * records, its estimated number of distinct cookies and its most active cookies. With several dates a last
+     * "total,records,distinct" line merges the sketches of all dates.
+     *
+     * @param processor the processor answering the query
+     * @param files the cookie log files to be analyzed
+     * @param dates the requested dates
+     * @param dateFormat the format of the printed dates
+     * @param out the stream to print to
+     */
+    static void printSummaries(CookieFileProcessor processor, List<File> files, List<Date> dates,
+                               SimpleDateFormat dateFormat, PrintStream out) {
+        DistinctCookieSketch total = new DistinctCookieSketch();
+        long totalRecords = 0;
+        for (DaySummary summary : processor.getDailySummaries(files, dates).values()) {
+            StringJoiner mostActive = new StringJoiner(";");
+            for (Cookie cookie : summary.getMostActiveCookies()) {
+                mostActive.add(cookie.getCookieId());
+            }
+            out.println(dateFormat.format(summary.getDate()) + "," + summary.getRecords() + ","
+                    + summary.getDistinctCookies() + "," + mostActive);
+            total.merge(summary.getSketch());
+            totalRecords += summary.getRecords();
+        }
+        if (dates.size() > 1) {
+            out.println("total," + totalRecords + "," + total.estimate());
+        }
+    }
+
+    /**
+     * Estimates the distinct cookies of the dates and prints one "date,distinct" line per date.
+     * With several dates a last "total,distinct" line merges the sketches of all dates.
+     *
+     * @param processor the processor answering the query
+     * @param files the cookie log files to be analyzed
+     * @param dates the requested dates
+     * @param dateFormat the format of the printed dates
+     * @param out the stream to print to
+     */
+    static void printDistinct(CookieFileProcessorImpl processor, List<File> files, List<Date> dates,
+                              SimpleDateFormat dateFormat, PrintStream out) {
+        DistinctCookieSketch total = new DistinctCookieSketch();
+        for (Map.Entry<Date, DistinctCookieSketch> entry : processor.getDistinctCookies(files, dates).entrySet()) {
+            out.println(dateFormat.format(entry.getKey()) + "," + entry.getValue().estimate());
+            total.merge(entry.getValue());
+        }
+        if (dates.size() > 1) {
+            out.println("total," + total.estimate());
+        }
+    }
+
+    /**
+     * Answers queries for windows of whole hours from hourly rollup cubes and prints the result in the command line
+     * format: the most active cookies one per line for a single window, prefixed by the window label for several
+     * windows, or "label,cookie,count" lines for the top cookies.
+     *
+     * @param processor the processor answering the queries
+     * @param cubes the cube files to be analyzed
+     * @param windows the start and end epoch seconds of every window keyed by its label
+     * @param top the number of top cookies printed with their counts per window, or 0 to print the most active ones
+     * @param out the stream to print to
+     */
+    static void printWindows(CookieFileProcessorImpl processor, List<File> cubes, Map<String, long[]> windows,
+                             int top, PrintStream out) {
+        for (Map.Entry<String, long[]> window : windows.entrySet()) {
+            long start = window.getValue()[0];
+            long end = window.getValue()[1];
+            if (top > 0) {
+                for (Cookie cookie : processor.getTopCookiesBetween(cubes, start, end, top)) {
+                    out.println(window.getKey() + "," + cookie.getCookieId() + "," + cookie.getCount());
+                }
+                continue;
+            }
+            for (Cookie cookie : processor.getMostActiveCookiesBetween(cubes, start, end)) {
+                out.println(windows.size() > 1 ? window.getKey() + "," + cookie.getCookieId() : cookie.getCookieId());
+            }
+        }
+    }
+
+    /**
+     * Lists the windows of whole hours a command line query asks for: the window given with "--window", then a
+     * calendar day of the "--zone" time zone, or seven of them with "--week", starting at every requested date.
+     *
+     * @param options the parsed command line options
+     * @return the start and end epoch seconds of every window keyed by its label
+     */
+    static Map<String, long[]> windowsOf(CommandLineOptions options) {
+        Map<String, long[]> windows = new LinkedHashMap<>();
+        if (options.getWindow() != null) {
+            windows.put(options.getWindowLabel(), options.getWindow());
+        }
+        ZoneId zone = options.getZone() != null ? options.getZone() : ZoneOffset.UTC;
+        int length = options.isWeek() ? 7 : 1;
+        for (Date date : options.getDates()) {
+            LocalDate day = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            windows.put(options.getDateFormat().format(date), new long[]{day.atStartOfDay(zone).toEpochSecond(),
+                    day.plusDays(length).atStartOfDay(zone).toEpochSecond()});
+        }
+        return windows;
+    }
+
+    /**
+     * Streams the given inputs, "-" being the standard input, and prints the most active cookies of the date
+     * at the end and, if an interval is given, periodically while the inputs are being read.
+     *
+     * @param files the inputs to stream in order
+     * @param date the date for which to count the cookies
+     * @param top the number of top cookies printed with their counts, or 0 to print the most active ones
+     * @param interval the number of seconds between printouts while reading, or 0 to print only at the end
+     * @throws IOException if the standard input cannot be read
+     */
+    private static void streamCookies(List<File> files, Date date, int top, long interval) throws IOException {
+        StreamingCookieFileReader reader = new StreamingCookieFileReader();
+        IncrementalCookieCounter counter = new IncrementalCookieCounter(date);
+        ScheduledExecutorService printer = null;
+        if (interval > 0) {
+            printer = Executors.newSingleThreadScheduledExecutor();
+            printer.scheduleAtFixedRate(() -> {
+                printCounts(counter, top);
+                System.out.println();
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+        try {
+            for (File file : files) {
+                if (STDIN.equals(file.getPath())) {
+                    reader.readStream(System.in, counter);
+                    continue;
+                }
+                try (FileInputStream in = new FileInputStream(file)) {
+                    reader.readStream(in, counter);
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            if (printer != null) {
+                printer.shutdownNow();
+            }
+        }
+        printCounts(counter, top);
+    }
+
+    /**
+     * Prints the current most active cookies of a streaming run.
+     *
+     * @param counter the counter updated by the stream
+     * @param top the number of top cookies printed with their counts, or 0 to print the most active ones
+     */
+    private static void printCounts(IncrementalCookieCounter counter, int top) {
+        if (top > 0) {
+            for (Cookie cookie : counter.getTopCookies(top)) {
+                System.out.println(cookie.getCookieId() + "," + cookie.getCount());
+            }
+        } else {
+            for (Cookie cookie : counter.getMostActiveCookies()) {
+                System.out.println(cookie.getCookieId());
+            }
+        }
+    }
+
+    /**
+     * Creates the reader for a command line run. Several files are read concurrently,
+     * each one by its own reader of the selected mode.
+     *
+     * @param readerMode the selected reader mode
+     * @param parallelism the number of threads a single reader may use
+     * @param maxOpenFiles the maximum number of files read at the same time
+     * @param fileCount the number of files to read
+     * @return the reader for the run
+     */
+    private static CookieFileReader createReader(ReaderMode readerMode, int parallelism, int maxOpenFiles,
+                                                 int fileCount) {
+        if (fileCount > 1 && maxOpenFiles > 1) {
+            return new ConcurrentCookieFileReader(() -> readerMode.createReader(parallelism), maxOpenFiles);
+        }
+        return readerMode.createReader(parallelism);
+    }
+
     /**
      * Processes the provided collection of files and identifies the most active cookies for the specified date.
      * The most active cookies are determined by the frequency of their appearance on that particular date.
+     * Unless timestamps are retained, the occurrences are only counted and the returned cookies carry their count.
      *
      * @param files the collection of cookie log files to be analyzed
      * @param date the date for which to find the most active cookies
@@ -86,25 +438,325 @@ public class CookieFileProcessorImpl implements CookieFileProcessor {
      */
     @Override
     public Collection<Cookie> getMostActiveCookies(Collection<File> files, Date date) {
-        Collection<Cookie> cookies = csvCookieFileReader.readFile(files, date);
-        Map<Cookie, Integer> cookieCount = new HashMap<>();
-        int maxCount = 0;
+        if (!retainTimestamps && memoryBudget > 0) {
+            try (OffHeapCookieCounter counter = new OffHeapCookieCounter(memoryBudget)) {
+                countOffHeap(counter, files, date);
+                return toMostActiveCookies(counter);
+            }
+        }
+        if (!retainTimestamps) {
+            return toMostActiveCookies(cookieFileReader.countCookies(files, date));
+        }
 
-        // Подсчитываем количество вхождений каждого куки
+        Collection<Cookie> cookies = cookieFileReader.readFile(files, date);
+        ReadMetrics.global().recordDistinctCookies(cookies.size());
+        int maxCount = 0;
         for (Cookie cookie : cookies) {
-            int count = cookie.getTimestamps().size();
-            cookieCount.put(cookie, count);
-            maxCount = Math.max(maxCount, count);
+            maxCount = Math.max(maxCount, cookie.getCount());
         }
 
         // Собираем список самых активных куки
         List<Cookie> mostActiveCookies = new ArrayList<>();
-        for (Map.Entry<Cookie, Integer> entry : cookieCount.entrySet()) {
-            if (entry.getValue() == maxCount) {
-                mostActiveCookies.add(entry.getKey());
+        for (Cookie cookie : cookies) {
+            if (cookie.getCount() == maxCount) {
+                mostActiveCookies.add(cookie);
+            }
+        }
+
+        return mostActiveCookies;
+    }
+
+    /**
+     * Processes the provided collection of files and identifies the most active cookies for every given date.
+     * Counting on the heap reads the files once for all dates. When timestamps are retained or counting happens
+     * off the heap, the files are read once per date, since a single table of the memory budget is reused
+     * for every date.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates for which to find the most active cookies
+     * @return the most active cookies of every requested date, in ascending order of the dates
+     */
+    @Override
+    public Map<Date, Collection<Cookie>> getMostActiveCookies(Collection<File> files, Collection<Date> dates) {
+        Map<Date, Collection<Cookie>> result = new TreeMap<>();
+        if (retainTimestamps) {
+            for (Date date : dates) {
+                result.put(date, getMostActiveCookies(files, date));
+            }
+            return result;
+        }
+        if (memoryBudget > 0) {
+            try (OffHeapCookieCounter counter = new OffHeapCookieCounter(memoryBudget)) {
+                for (Date date : dates) {
+                    countOffHeap(counter, files, date);
+                    result.put(date, toMostActiveCookies(counter));
+                }
+            }
+            return result;
+        }
+        Map<Long, CookieCounter> counters = cookieFileReader.countCookiesByDay(files, dates);
+        for (Date date : dates) {
+            result.put(date, toMostActiveCookies(counterOf(counters, date)));
+        }
+        return result;
+    }
+
+    /**
+     * Processes the provided collection of files and selects the k most active cookies for every given date.
+     * Ties at the k-th place are broken by the cookie identifier. Counting on the heap reads the files once
+     * for all dates; with a memory budget, the files are read once per date into the same off-heap table.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates for which to find the top cookies
+     * @param k the maximum number of cookies returned per date
+     * @return the top cookies of every requested date with their counts, the most active first
+     */
+    @Override
+    public Map<Date, List<Cookie>> getTopCookies(Collection<File> files, Collection<Date> dates, int k) {
+        if (memoryBudget > 0) {
+            Map<Date, List<Cookie>> result = new TreeMap<>();
+            try (OffHeapCookieCounter counter = new OffHeapCookieCounter(memoryBudget)) {
+                for (Date date : dates) {
+                    countOffHeap(counter, files, date);
+                    ReadMetrics.global().recordDistinctCookies(counter.size());
+                    result.put(date, counter.getTopCookies(k));
+                }
             }
+            return result;
         }
+        Map<Long, CookieCounter> counters = cookieFileReader.countCookiesByDay(files, dates);
+        Map<Date, List<Cookie>> result = new TreeMap<>();
+        for (Date date : dates) {
+            CookieCounter counter = counterOf(counters, date);
+            ReadMetrics.global().recordDistinctCookies(counter.size());
+            result.put(date, counter.getTopCookies(k));
+        }
+        return result;
+    }
 
+    /**
+     * Summarizes every given date. On the heap, every file is read once by
+     * {@link CookieFileReader#countCookiesByDay(Collection, Collection, java.util.function.BiConsumer)}, so that
+     * a concurrent reader counts the files at the same time; the most active cookies and the sketch of a day are
+     * taken from the counts of all files, and with a sketch store the distinct cookies of every file are sketched
+     * from its own counts as soon as it is read. With a memory budget, the files are read once per date into the
+     * same off-heap table and the sketch is fed record by record; with a sketch store, every file then has its own
+     * sketch and is read on its own. The sketches of every file are cached in the sketch store.
+     * Timestamps are never retained.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates to be summarized
+     * @return the summary of every requested date, in ascending order of the dates
+     */
+    @Override
+    public Map<Date, DaySummary> getDailySummaries(Collection<File> files, Collection<Date> dates) {
+        Map<Date, DaySummary> result = new TreeMap<>();
+        if (memoryBudget > 0) {
+            Map<File, Map<Long, DistinctCookieSketch>> fileSketches = new LinkedHashMap<>();
+            try (OffHeapCookieCounter counter = new OffHeapCookieCounter(memoryBudget)) {
+                for (Date date : dates) {
+                    long epochDay = DayRange.of(date).getEpochDay();
+                    DistinctCookieSketch sketch = new DistinctCookieSketch();
+                    long records = 0;
+                    counter.clear();
+                    // Without a cache all files are passed at once, so that a concurrent reader counts them together
+                    for (Collection<File> batch : sketchStore == null ? List.of(files) : splitFiles(files)) {
+                        SketchingCountSink sink = new SketchingCountSink(counter);
+                        cookieFileReader.countCookies(batch, date, sink);
+                        if (sketchStore != null) {
+                            fileSketches.computeIfAbsent(batch.iterator().next(), f -> new TreeMap<>())
+                                    .put(epochDay, sink.getSketch());
+                        }
+                        sketch.merge(sink.getSketch());
+                        records += sink.getRecords();
+                    }
+                    result.put(date, new DaySummary(date, records, toMostActiveCookies(counter), sketch));
+                }
+            }
+            fileSketches.forEach(this::cacheSketches);
+        } else {
+            // Only the cache needs the sketches of every file; the sketch of a day is taken from its total counts
+            Map<Long, CookieCounter> counters = sketchStore == null
+                    ? cookieFileReader.countCookiesByDay(files, dates)
+                    : cookieFileReader.countCookiesByDay(files, dates, (file, partial) -> {
+                        Map<Long, DistinctCookieSketch> daySketches = new TreeMap<>();
+                        for (Date date : dates) {
+                            daySketches.put(DayRange.of(date).getEpochDay(), sketchOf(counterOf(partial, date)));
+                        }
+                        cacheSketches(file, daySketches);
+                    });
+            for (Date date : dates) {
+                CookieCounter counter = counterOf(counters, date);
+                long[] records = new long[1];
+                counter.forEach((cookieId, count) -> records[0] += count);
+                result.put(date, new DaySummary(date, records[0], toMostActiveCookies(counter), sketchOf(counter)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the number of distinct cookies of every given date without counting their occurrences.
+     * The sketch of a file and day is taken from the sketch store when it holds one for the unchanged file;
+     * otherwise the file is read into a new sketch, which is then cached. Memory does not grow with the number
+     * of distinct cookies. The returned sketches can be merged to estimate the distinct cookies of several dates.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates for which to estimate the distinct cookies
+     * @return the sketch of the distinct cookies of every requested date, in ascending order of the dates
+     */
+    public Map<Date, DistinctCookieSketch> getDistinctCookies(Collection<File> files, Collection<Date> dates) {
+        Map<Long, DistinctCookieSketch> sketches = new HashMap<>();
+        for (File file : files) {
+            Map<Long, DistinctCookieSketch> cached = sketchStore != null ? sketchStore.load(file) : new TreeMap<>();
+            boolean changed = false;
+            for (Date date : dates) {
+                long epochDay = DayRange.of(date).getEpochDay();
+                DistinctCookieSketch sketch = cached.get(epochDay);
+                if (sketch == null) {
+                    sketch = new DistinctCookieSketch();
+                    cookieFileReader.countCookies(List.of(file), date, sketch);
+                    cached.put(epochDay, sketch);
+                    changed = true;
+                }
+                sketches.computeIfAbsent(epochDay, day -> new DistinctCookieSketch()).merge(sketch);
+            }
+            if (changed && sketchStore != null) {
+                sketchStore.save(file, cached);
+            }
+        }
+
+        Map<Date, DistinctCookieSketch> result = new TreeMap<>();
+        for (Date date : dates) {
+            result.put(date, sketches.getOrDefault(DayRange.of(date).getEpochDay(), new DistinctCookieSketch()));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the most active cookies within a window of whole hours from hourly rollup cubes built by
+     * {@link RollupBuilder}, by summing the hours of the window instead of reading the logs.
+     *
+     * @param cubes the cube files to be analyzed
+     * @param startSecond the inclusive start of the window in epoch seconds, at a whole hour
+     * @param endSecond the exclusive end of the window in epoch seconds, at a whole hour
+     * @return the most active cookies within the window with their count
+     * @throws IllegalArgumentException if the window does not start and end at whole hours
+     */
+    public Collection<Cookie> getMostActiveCookiesBetween(Collection<File> cubes, long startSecond, long endSecond) {
+        return toMostActiveCookies(RollupCube.countAll(cubes, startSecond, endSecond));
+    }
+
+    /**
+     * Selects the k most active cookies within a window of whole hours from hourly rollup cubes.
+     * Ties at the k-th place are broken by the cookie identifier.
+     *
+     * @param cubes the cube files to be analyzed
+     * @param startSecond the inclusive start of the window in epoch seconds, at a whole hour
+     * @param endSecond the exclusive end of the window in epoch seconds, at a whole hour
+     * @param k the maximum number of cookies returned
+     * @return the top cookies within the window with their counts, the most active first
+     * @throws IllegalArgumentException if the window does not start and end at whole hours
+     */
+    public List<Cookie> getTopCookiesBetween(Collection<File> cubes, long startSecond, long endSecond, int k) {
+        CookieCounter counter = RollupCube.countAll(cubes, startSecond, endSecond);
+        ReadMetrics.global().recordDistinctCookies(counter.size());
+        return counter.getTopCookies(k);
+    }
+
+    /**
+     * Counts the occurrences of every cookie of the date into the given off-heap counter, replacing its previous
+     * counts, so that one table of the memory budget serves all dates of a call.
+     *
+     * @param counter the counter of the call
+     * @param files the collection of cookie log files to be analyzed
+     * @param date the date for which to count the cookies
+     */
+    private void countOffHeap(OffHeapCookieCounter counter, Collection<File> files, Date date) {
+        counter.clear();
+        cookieFileReader.countCookies(files, date, counter);
+    }
+
+    /**
+     * Adds freshly computed sketches of a file to the sketch store, keeping the cached sketches of other days.
+     *
+     * @param file the log file
+     * @param sketches the sketches of the file keyed by the number of days since 1970-01-01
+     */
+    private void cacheSketches(File file, Map<Long, DistinctCookieSketch> sketches) {
+        if (sketchStore == null) {
+            return;
+        }
+        Map<Long, DistinctCookieSketch> cached = sketchStore.load(file);
+        cached.putAll(sketches);
+        sketchStore.save(file, cached);
+    }
+
+    /**
+     * Splits the files into single-file collections, so that every file is counted into a sink of its own.
+     *
+     * @param files the collection of cookie log files
+     * @return one collection per file, in the order of the files
+     */
+    private static List<Collection<File>> splitFiles(Collection<File> files) {
+        List<Collection<File>> batches = new ArrayList<>(files.size());
+        for (File file : files) {
+            batches.add(List.of(file));
+        }
+        return batches;
+    }
+
+    /**
+     * Sketches the distinct cookies of the counter.
+     *
+     * @param counter the counted occurrences of a day
+     * @return the sketch of the counted cookies
+     */
+    private static DistinctCookieSketch sketchOf(CookieCounter counter) {
+        DistinctCookieSketch sketch = new DistinctCookieSketch();
+        counter.forEach((cookieId, count) -> sketch.add(cookieId));
+        return sketch;
+    }
+
+    /**
+     * Returns the counter of the day of the given date.
+     *
+     * @param counters the counters keyed by the number of days since 1970-01-01
+     * @param date the requested date
+     * @return the counter of the day, empty if the reader returned none
+     */
+    private static CookieCounter counterOf(Map<Long, CookieCounter> counters, Date date) {
+        CookieCounter counter = counters.get(DayRange.of(date).getEpochDay());
+        return counter != null ? counter : new CookieCounter();
+    }
+
+    /**
+     * Selects the cookies with the highest number of occurrences from the off-heap counter.
+     *
+     * @param counter the counted occurrences of a day
+     * @return the most active cookies with their count
+     */
+    private static List<Cookie> toMostActiveCookies(OffHeapCookieCounter counter) {
+        ReadMetrics.global().recordDistinctCookies(counter.size());
+        List<Cookie> mostActiveCookies = new ArrayList<>();
+        for (String cookieId : counter.getMostActiveCookieIds()) {
+            mostActiveCookies.add(new CountedCookie(cookieId, counter.getMaxCount()));
+        }
+        return mostActiveCookies;
+    }
+
+    /**
+     * Selects the cookies with the highest number of occurrences from the counter.
+     *
+     * @param counter the counted occurrences of a day
+     * @return the most active cookies with their count
+     */
+    private static List<Cookie> toMostActiveCookies(CookieCounter counter) {
+        ReadMetrics.global().recordDistinctCookies(counter.size());
+        List<Cookie> mostActiveCookies = new ArrayList<>();
+        for (String cookieId : counter.getMostActiveCookieIds()) {
+            mostActiveCookies.add(new CountedCookie(cookieId, counter.getMaxCount()));
+        }
         return mostActiveCookies;
     }
 }
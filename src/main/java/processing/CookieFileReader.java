@@ -5,6 +5,10 @@ import model.Cookie;
 import java.io.File;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 /**
  * The CookieFileReader interface specifies the method for reading cookie data from files.
@@ -21,4 +25,80 @@ public interface CookieFileReader {
      * @return a collection of Cookie objects with their activity on the target date
      */
     Collection<Cookie> readFile(Collection<File> files, Date targetDate);
+
+    /**
+     * Counts the occurrences of every cookie active on the specified target date without
+     * retaining the individual timestamps.
+     * The default implementation derives the counts from {@link #readFile(Collection, Date)};
+     * readers override it to count records directly.
+     *
+     * @param files the collection of files from which to read the cookie data
+     * @param targetDate the date for which the cookie data is to be counted
+     * @return the counter of cookie occurrences on the target date
+     */
+    default CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        Collection<Cookie> cookies = readFile(files, targetDate);
+        CookieCounter counter = new CookieCounter(cookies.size());
+        for (Cookie cookie : cookies) {
+            counter.add(cookie.getCookieId(), cookie.getCount());
+        }
+        return counter;
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the specified target date into the given sink.
+     * The default implementation counts into a {@link CookieCounter} with {@link #countCookies(Collection, Date)}
+     * and copies the result; readers override it to pass every record to the sink directly,
+     * so that the sink alone decides where the counts are kept.
+     *
+     * @param files the collection of files from which to read the cookie data
+     * @param targetDate the date for which the cookie data is to be counted
+     * @param sink the sink receiving the occurrences
+     */
+    default void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        countCookies(files, targetDate).forEach(sink::add);
+    }
+
+    /**
+     * Counts the occurrences of every cookie separately for each of the given dates.
+     * The default implementation counts every date separately with {@link #countCookies(Collection, Date)};
+     * readers override it to count all dates in a single pass.
+     *
+     * @param files the collection of files from which to read the cookie data
+     * @param dates the dates for which the cookie data is to be counted
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01, in ascending order
+     */
+    default Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        Map<Long, CookieCounter> counters = new TreeMap<>();
+        for (Date date : dates) {
+            long epochDay = DayRange.of(date).getEpochDay();
+            if (!counters.containsKey(epochDay)) {
+                counters.put(epochDay, countCookies(files, date));
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Counts the occurrences of every cookie separately for each of the given dates and passes the counters
+     * of every single file to the given consumer before they are added to the result, so that results per file
+     * are built in the same pass. The consumer may be called from several threads at the same time.
+     * The default implementation counts the files one after another with
+     * {@link #countCookiesByDay(Collection, Collection)}; readers reading several files at the same time override it.
+     *
+     * @param files the collection of files from which to read the cookie data
+     * @param dates the dates for which the cookie data is to be counted
+     * @param fileConsumer the consumer of every file and its counters keyed by the number of days since 1970-01-01
+     * @return the counters of all files keyed by the number of days since 1970-01-01, in ascending order
+     */
+    default Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates,
+                                                       BiConsumer<File, Map<Long, CookieCounter>> fileConsumer) {
+        DayCounters counters = new DayCounters(dates);
+        for (File file : files) {
+            Map<Long, CookieCounter> partial = countCookiesByDay(List.of(file), dates);
+            fileConsumer.accept(file, partial);
+            partial.forEach(counters::merge);
+        }
+        return counters.toMap();
+    }
 }
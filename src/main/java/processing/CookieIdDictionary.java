@@ -0,0 +1,243 @@
+package processing;
+
+import model.CookieIdCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class assigns dense int ids, in order of first appearance, to cookie identifiers.
+ * Identifiers are kept packed by {@link CookieIdCodec} in two primitive long arrays and looked up through
+ * an open-addressing table of ids, so no String is created or kept per identifier; looking up an identifier
+ * straight from the bytes of a buffer allocates nothing. The rare identifiers that cannot be packed
+ * are kept as Strings. Instances are not thread-safe.
+ */
+final class CookieIdDictionary {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] table;
+    private long[] highs;
+    private long[] lows;
+    private int size;
+    private final Map<String, Integer> unpackedIds = new HashMap<>();
+    private final Map<Integer, String> unpackedNames = new HashMap<>();
+
+    /**
+     * Constructs a new empty CookieIdDictionary sized for the expected number of identifiers.
+     *
+     * @param expectedSize the expected number of distinct identifiers
+     */
+    CookieIdDictionary(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize * 2 - 1)) << 1;
+        table = new int[capacity];
+        highs = new long[capacity / 2];
+        lows = new long[capacity / 2];
+    }
+
+    /**
+     * Returns the id of the identifier, assigning the next one if it is new.
+     *
+     * @param cookieId the cookie identifier
+     * @return the dense id
+     */
+    int idOf(String cookieId) {
+        long high = CookieIdCodec.packHigh(cookieId);
+        long low = CookieIdCodec.packLow(cookieId);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            return unpackedIdOf(cookieId);
+        }
+        return idOf(high, low);
+    }
+
+    /**
+     * Returns the id of the identifier held in the given index range of the buffer, assigning the next one if it is new.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the dense id
+     */
+    int idOf(ByteBuffer buffer, int from, int to) {
+        long high = CookieIdCodec.packHigh(buffer, from, to);
+        long low = CookieIdCodec.packLow(buffer, from, to);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            return unpackedIdOf(CsvRecordScanner.decode(buffer, from, to));
+        }
+        return idOf(high, low);
+    }
+
+    /**
+     * Returns the id of the identifier with the same spelling as an id of another dictionary.
+     *
+     * @param other the other dictionary
+     * @param id    the id in the other dictionary
+     * @return the dense id in this dictionary
+     */
+    int idOf(CookieIdDictionary other, int id) {
+        if (other.highs[id] == CookieIdCodec.INVALID) {
+            return unpackedIdOf(other.unpackedNames.get(id));
+        }
+        return idOf(other.highs[id], other.lows[id]);
+    }
+
+    /**
+     * Returns the id of the identifier without assigning one.
+     *
+     * @param cookieId the cookie identifier
+     * @return the dense id, or -1 if the identifier is unknown
+     */
+    int find(String cookieId) {
+        long high = CookieIdCodec.packHigh(cookieId);
+        long low = CookieIdCodec.packLow(cookieId);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            return unpackedIds.getOrDefault(cookieId, -1);
+        }
+        return find(high, low);
+    }
+
+    /**
+     * Returns the id of the identifier held in the given index range of the buffer without assigning one.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the dense id, or -1 if the identifier is unknown
+     */
+    int find(ByteBuffer buffer, int from, int to) {
+        long high = CookieIdCodec.packHigh(buffer, from, to);
+        long low = CookieIdCodec.packLow(buffer, from, to);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            return unpackedIds.isEmpty() ? -1 : unpackedIds.getOrDefault(CsvRecordScanner.decode(buffer, from, to), -1);
+        }
+        return find(high, low);
+    }
+
+    /**
+     * Returns the id of a packed identifier without assigning one.
+     *
+     * @param high the packed first half
+     * @param low  the packed second half
+     * @return the dense id, or -1 if the identifier is unknown
+     */
+    private int find(long high, long low) {
+        int mask = table.length - 1;
+        for (int index = hash(high, low) & mask; table[index] != 0; index = (index + 1) & mask) {
+            int id = table[index] - 1;
+            if (highs[id] == high && lows[id] == low) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the identifier of the given id.
+     *
+     * @param id the dense id
+     * @return the cookie identifier
+     */
+    String cookieIdOf(int id) {
+        return highs[id] == CookieIdCodec.INVALID ? unpackedNames.get(id) : CookieIdCodec.unpack(highs[id], lows[id]);
+    }
+
+    /**
+     * Returns the number of identifiers, which is also the next id to be assigned.
+     *
+     * @return the number of distinct identifiers
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of a packed identifier, assigning the next one if it is new.
+     *
+     * @param high the packed first half
+     * @param low  the packed second half
+     * @return the dense id
+     */
+    private int idOf(long high, long low) {
+        int mask = table.length - 1;
+        int index = hash(high, low) & mask;
+        while (table[index] != 0) {
+            int id = table[index] - 1;
+            if (highs[id] == high && lows[id] == low) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+        int id = append(high, low);
+        table[index] = id + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of an identifier that cannot be packed, assigning the next one if it is new.
+     *
+     * @param cookieId the cookie identifier
+     * @return the dense id
+     */
+    private int unpackedIdOf(String cookieId) {
+        Integer id = unpackedIds.get(cookieId);
+        if (id == null) {
+            id = append(CookieIdCodec.INVALID, CookieIdCodec.INVALID);
+            unpackedIds.put(cookieId, id);
+            unpackedNames.put(id, cookieId);
+        }
+        return id;
+    }
+
+    /**
+     * Stores the packed halves under the next id.
+     *
+     * @param high the packed first half
+     * @param low  the packed second half
+     * @return the assigned id
+     */
+    private int append(long high, long low) {
+        if (size == highs.length) {
+            highs = Arrays.copyOf(highs, size * 2);
+            lows = Arrays.copyOf(lows, size * 2);
+        }
+        highs[size] = high;
+        lows[size] = low;
+        return size++;
+    }
+
+    /**
+     * Doubles the table and re-inserts all packed ids.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            if (highs[id] == CookieIdCodec.INVALID) {
+                continue;
+            }
+            int index = hash(highs[id], lows[id]) & mask;
+            while (table[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            table[index] = id + 1;
+        }
+    }
+
+    /**
+     * Mixes both packed halves into a table hash.
+     *
+     * @param high the packed first half
+     * @param low  the packed second half
+     * @return the hash
+     */
+    static int hash(long high, long low) {
+        long hash = (high * 0x9E3779B97F4A7C15L) ^ low;
+        hash *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,167 @@
+package processing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class serves most active cookie queries over local HTTP so that one warm JVM answers many queries.
+ * A query is a GET request of "/query" with one or more "file" and "date" parameters and an optional "top"
+ * parameter, e.g. "/query?file=/logs/a.csv&amp;date=2018-12-09&amp;top=3". The response is plain text in the
+ * same format as the command line output. Requests are handled concurrently on a fixed thread pool;
+ * answers are only as fast as the processor's reader, which is typically a {@link CachingCookieFileReader}.
+ */
+public class CookieQueryServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(CookieQueryServer.class.getName());
+
+    static final String QUERY_PATH = "/query";
+    private static final String USAGE = "Usage: GET " + QUERY_PATH + "?file=<path>[&file=<path>...]"
+            + "&date=<yyyy-MM-dd>[&date=<yyyy-MM-dd>...][&top=<k>]\n";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CookieFileProcessor processor;
+
+    /**
+     * Constructs a new CookieQueryServer bound to the given address. The server does not accept
+     * requests until it is started.
+     *
+     * @param address   the local address to listen on, port 0 picks a free port
+     * @param processor the processor answering the queries, shared by all requests
+     * @param threads   the number of requests handled at the same time
+     * @throws IOException if the address cannot be bound
+     */
+    public CookieQueryServer(InetSocketAddress address, CookieFileProcessor processor, int threads) throws IOException {
+        this.processor = processor;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        server.setExecutor(executor);
+        server.createContext(QUERY_PATH, this::handle);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+        LOGGER.log(Level.INFO, "Serving cookie queries on port " + getPort());
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and releases the threads.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers a single query.
+     *
+     * @param exchange the HTTP request and response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, USAGE);
+                return;
+            }
+            Map<String, List<String>> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            List<File> files = new ArrayList<>();
+            List<Date> dates = new ArrayList<>();
+            int top;
+            try {
+                for (String path : parameters.getOrDefault("file", List.of())) {
+                    files.add(new File(path));
+                }
+                for (String date : parameters.getOrDefault("date", List.of())) {
+                    dates.add(dateFormat.parse(date));
+                }
+                top = Integer.parseInt(parameters.getOrDefault("top", List.of("0")).get(0));
+            } catch (ParseException | NumberFormatException e) {
+                respond(exchange, 400, "Incorrect query: " + e.getMessage() + "\n" + USAGE);
+                return;
+            }
+            if (files.isEmpty() || dates.isEmpty()) {
+                respond(exchange, 400, USAGE);
+                return;
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (PrintStream out = new PrintStream(body, false, StandardCharsets.UTF_8)) {
+                CookieFileProcessorImpl.printResults(processor, files, dates, top, dateFormat, out);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Error processing the query " + exchange.getRequestURI() + ": " + e.getMessage());
+                respond(exchange, 500, "Error processing the query\n");
+                return;
+            }
+            respond(exchange, 200, body.toString(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends a plain text response.
+     *
+     * @param exchange the HTTP request and response
+     * @param status   the HTTP status code
+     * @param body     the response text
+     * @throws IOException if the response cannot be sent
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Splits a raw query string into its decoded parameters, keeping repeated parameters in order.
+     *
+     * @param rawQuery the raw query string, may be null
+     * @return the values of every parameter name
+     */
+    static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), StandardCharsets.UTF_8);
+            String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            parameters.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+        return parameters;
+    }
+}
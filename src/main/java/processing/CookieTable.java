@@ -0,0 +1,76 @@
+package processing;
+
+import model.Cookie;
+import model.CookieImpl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class collects cookies with their timestamps, looking them up by the dense ids of a
+ * {@link CookieIdDictionary}. A cookie is only created the first time its identifier is seen,
+ * and identifiers read from a buffer are looked up without creating a String.
+ * Instances are not thread-safe.
+ */
+final class CookieTable {
+
+    private final CookieIdDictionary dictionary = new CookieIdDictionary(0);
+    private final List<Cookie> cookies = new ArrayList<>();
+
+    /**
+     * Returns the cookie with the given identifier, creating it if it is new.
+     *
+     * @param cookieId the cookie identifier
+     * @return the cookie
+     */
+    Cookie cookieOf(String cookieId) {
+        int id = dictionary.idOf(cookieId);
+        if (id == cookies.size()) {
+            cookies.add(new CookieImpl(cookieId));
+        }
+        return cookies.get(id);
+    }
+
+    /**
+     * Returns the cookie whose identifier is held as ASCII in the given index range of the buffer,
+     * creating it if it is new.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the cookie
+     */
+    Cookie cookieOf(ByteBuffer buffer, int from, int to) {
+        int id = dictionary.idOf(buffer, from, to);
+        if (id == cookies.size()) {
+            cookies.add(new CookieImpl(dictionary.cookieIdOf(id)));
+        }
+        return cookies.get(id);
+    }
+
+    /**
+     * Adds the timestamps of the given cookies to the cookies of this table.
+     *
+     * @param partial the cookies to merge
+     */
+    void mergeAll(Collection<Cookie> partial) {
+        for (Cookie partialCookie : partial) {
+            Cookie cookie = cookieOf(partialCookie.getCookieId());
+            for (Date timestamp : partialCookie.getTimestamps()) {
+                cookie.addTimestamp(timestamp);
+            }
+        }
+    }
+
+    /**
+     * Returns the collected cookies in order of first appearance.
+     *
+     * @return the cookies
+     */
+    Collection<Cookie> getCookies() {
+        return cookies;
+    }
+}
@@ -0,0 +1,393 @@
+package processing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongConsumer;
+
+/**
+ * This class scans "cookie,timestamp" records directly from the bytes of a buffer.
+ * It looks for ',' and '\n' byte by byte, or with a {@link ScanKernel}, and decodes the fixed-layout ISO-8601
+ * timestamp with {@link TimestampDecoder} without creating a String per line, so records outside of the target day
+ * produce no garbage.
+ */
+final class CsvRecordScanner {
+    /**
+     * The largest number of bytes that can be mapped at once.
+     */
+    static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * The RecordHandler interface receives the records of the target day found by the scanner.
+     */
+    @FunctionalInterface
+    interface RecordHandler {
+
+        /**
+         * Handles a single record. The cookie identifier is passed as a byte range of the scanned buffer
+         * and is only valid for the duration of the call.
+         *
+         * @param buffer      the scanned buffer
+         * @param idStart     the inclusive start index of the cookie identifier
+         * @param idEnd       the exclusive end index of the cookie identifier
+         * @param epochSecond the timestamp of the record in epoch seconds
+         */
+        void accept(ByteBuffer buffer, int idStart, int idEnd, long epochSecond);
+    }
+
+    private CsvRecordScanner() {
+    }
+
+    /**
+     * Scans the lines within the given index range of the buffer and passes the records of the target day
+     * to the handler. The range must start at a line start; the last line may lack a terminator.
+     *
+     * @param buffer  the buffer to scan
+     * @param from    the inclusive start index, at a line start
+     * @param to      the exclusive end index
+     * @param day     the target day
+     * @param handler the handler of the matching records
+     * @return false if a record older than the target day was reached and the rest of the file can be skipped
+     */
+    static boolean scan(ByteBuffer buffer, int from, int to, DayRange day, RecordHandler handler) {
+        return scan(buffer, from, to, day, handler, FileMetrics.UNTRACKED);
+    }
+
+    /**
+     * Scans the lines within the given index range of the buffer and passes the records of the target day
+     * to the handler, adding the tallies of the scan to the metrics of the file.
+     * The range must start at a line start; the last line may lack a terminator.
+     *
+     * @param buffer  the buffer to scan
+     * @param from    the inclusive start index, at a line start
+     * @param to      the exclusive end index
+     * @param day     the target day
+     * @param handler the handler of the matching records
+     * @param metrics the metrics of the scanned file
+     * @return false if a record older than the target day was reached and the rest of the file can be skipped
+     */
+    static boolean scan(ByteBuffer buffer, int from, int to, DayRange day, RecordHandler handler,
+                        FileMetrics metrics) {
+        return scan(buffer, from, to, day, true, handler, metrics);
+    }
+
+    /**
+     * Scans all lines within the given index range of the buffer, which may be in any order,
+     * and passes the records of the target day to the handler.
+     *
+     * @param buffer  the buffer to scan
+     * @param from    the inclusive start index, at a line start
+     * @param to      the exclusive end index
+     * @param day     the target day
+     * @param handler the handler of the matching records
+     * @param metrics the metrics of the scanned file
+     */
+    static void scanUnordered(ByteBuffer buffer, int from, int to, DayRange day, RecordHandler handler,
+                              FileMetrics metrics) {
+        scan(buffer, from, to, day, false, handler, metrics);
+    }
+
+    /**
+     * Scans the lines within the given index range of the buffer and passes the records of the target day
+     * to the handler. The line, byte and record tallies are kept in locals and added to the metrics once.
+     *
+     * @param buffer  the buffer to scan
+     * @param from    the inclusive start index, at a line start
+     * @param to      the exclusive end index
+     * @param day     the target day
+     * @param sorted  true if the records are sorted newest first, so the scan may stop at an older record
+     * @param handler the handler of the matching records
+     * @param metrics the metrics of the scanned file
+     * @return false if a record older than the target day was reached and the rest of the file can be skipped
+     */
+    private static boolean scan(ByteBuffer buffer, int from, int to, DayRange day, boolean sorted,
+                                RecordHandler handler, FileMetrics metrics) {
+        long startNanos = System.nanoTime();
+        long lines = 0;
+        long matched = 0;
+        int position = from;
+        while (position < to) {
+            int lineStart = position;
+            int comma = -1;
+            int commas = 0;
+            int lineEnd = position;
+            while (lineEnd < to) {
+                byte b = buffer.get(lineEnd);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == ',') {
+                    comma = lineEnd;
+                    commas++;
+                }
+                lineEnd++;
+            }
+            position = lineEnd + 1;
+            lines++;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+
+            if (commas != 1) {
+                int start = lineStart;
+                int end = lineEnd;
+                metrics.skip(SkipReason.MALFORMED_LINE, () -> decode(buffer, start, end));
+                continue;
+            }
+            long timestamp = TimestampDecoder.decode(buffer, comma + 1, lineEnd);
+            if (timestamp == TimestampDecoder.INVALID_TIMESTAMP) {
+                int start = lineStart;
+                int end = lineEnd;
+                metrics.skip(SkipReason.INVALID_TIMESTAMP, () -> decode(buffer, start, end));
+                continue;
+            }
+            // Records are sorted newest first, so stop once the previous day is reached
+            if (sorted && timestamp < day.getStart()) {
+                metrics.addScan(Math.min(position, to) - from, lines, matched, System.nanoTime() - startNanos);
+                return false;
+            }
+            if (day.contains(timestamp)) {
+                handler.accept(buffer, lineStart, comma, timestamp);
+                matched++;
+            }
+        }
+        metrics.addScan(to - from, lines, matched, System.nanoTime() - startNanos);
+        return true;
+    }
+
+    /**
+     * Scans the lines within the given index range of the buffer like
+     * {@link #scan(ByteBuffer, int, int, DayRange, RecordHandler, FileMetrics)}, but searches the delimiters
+     * with the given kernel. The timestamp of a well-formed line is checked in bulk right after the comma,
+     * so the common line is delimited by a single search for its comma; any other line falls back to searching
+     * its remaining delimiters. The records passed to the handler and the skipped lines are the same.
+     *
+     * @param buffer  the buffer to scan
+     * @param from    the inclusive start index, at a line start
+     * @param to      the exclusive end index
+     * @param day     the target day
+     * @param handler the handler of the matching records
+     * @param metrics the metrics of the scanned file
+     * @param kernel  the kernel searching the delimiters
+     * @return false if a record older than the target day was reached and the rest of the file can be skipped
+     */
+    static boolean scan(ByteBuffer buffer, int from, int to, DayRange day, RecordHandler handler,
+                        FileMetrics metrics, ScanKernel kernel) {
+        long startNanos = System.nanoTime();
+        long lines = 0;
+        long matched = 0;
+        int position = from;
+        while (position < to) {
+            int lineStart = position;
+            int comma = kernel.indexOfDelimiter(buffer, position, to);
+            int lineEnd;
+            boolean oneComma;
+            if (comma == to || buffer.get(comma) == '\n') {
+                lineEnd = comma;
+                oneComma = false;
+            } else {
+                int timestampEnd = comma + 1 + ScanKernel.TIMESTAMP_LENGTH;
+                if (timestampEnd <= to && (timestampEnd == to || buffer.get(timestampEnd) == '\n')
+                        && kernel.isTimestampShape(buffer, comma + 1)) {
+                    lineEnd = timestampEnd;
+                    oneComma = true;
+                } else {
+                    int next = kernel.indexOfDelimiter(buffer, comma + 1, to);
+                    oneComma = next == to || buffer.get(next) == '\n';
+                    lineEnd = oneComma ? next : kernel.indexOfLineEnd(buffer, next + 1, to);
+                }
+            }
+            position = lineEnd + 1;
+            lines++;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+
+            if (!oneComma) {
+                int start = lineStart;
+                int end = lineEnd;
+                metrics.skip(SkipReason.MALFORMED_LINE, () -> decode(buffer, start, end));
+                continue;
+            }
+            long timestamp = TimestampDecoder.decode(buffer, comma + 1, lineEnd);
+            if (timestamp == TimestampDecoder.INVALID_TIMESTAMP) {
+                int start = lineStart;
+                int end = lineEnd;
+                metrics.skip(SkipReason.INVALID_TIMESTAMP, () -> decode(buffer, start, end));
+                continue;
+            }
+            // Records are sorted newest first, so stop once the previous day is reached
+            if (timestamp < day.getStart()) {
+                metrics.addScan(Math.min(position, to) - from, lines, matched, System.nanoTime() - startNanos);
+                return false;
+            }
+            if (day.contains(timestamp)) {
+                handler.accept(buffer, lineStart, comma, timestamp);
+                matched++;
+            }
+        }
+        metrics.addScan(to - from, lines, matched, System.nanoTime() - startNanos);
+        return true;
+    }
+
+    /**
+     * Maps the whole file segment by segment and scans the records of each segment, skipping the header.
+     * Every segment except the last one is cut at its last line terminator,
+     * the next segment starts right after it.
+     *
+     * @param channel     the channel of the file to read
+     * @param segmentSize the maximum number of bytes mapped at once
+     * @param day         the target day
+     * @param handler     the handler of the matching records
+     * @throws IOException if the file cannot be mapped
+     */
+    static void scanChannel(FileChannel channel, int segmentSize, DayRange day, RecordHandler handler)
+            throws IOException {
+        scanChannel(channel, segmentSize, day, handler, FileMetrics.UNTRACKED);
+    }
+
+    /**
+     * Maps the whole file segment by segment and scans the records of each segment, skipping the header,
+     * and records the mapping time and the tallies of the scan in the metrics of the file.
+     *
+     * @param channel     the channel of the file to read
+     * @param segmentSize the maximum number of bytes mapped at once
+     * @param day         the target day
+     * @param handler     the handler of the matching records
+     * @param metrics     the metrics of the scanned file
+     * @throws IOException if the file cannot be mapped
+     */
+    static void scanChannel(FileChannel channel, int segmentSize, DayRange day, RecordHandler handler,
+                            FileMetrics metrics) throws IOException {
+        scanChannel(channel, segmentSize, day, handler, position -> {
+        }, metrics, null);
+    }
+
+    /**
+     * Maps the whole file segment by segment and scans the records of each segment with the given kernel,
+     * skipping the header, and records the mapping time and the tallies of the scan in the metrics of the file.
+     *
+     * @param channel     the channel of the file to read
+     * @param segmentSize the maximum number of bytes mapped at once
+     * @param day         the target day
+     * @param handler     the handler of the matching records
+     * @param metrics     the metrics of the scanned file
+     * @param kernel      the kernel searching the delimiters
+     * @throws IOException if the file cannot be mapped
+     */
+    static void scanChannel(FileChannel channel, int segmentSize, DayRange day, RecordHandler handler,
+                            FileMetrics metrics, ScanKernel kernel) throws IOException {
+        scanChannel(channel, segmentSize, day, handler, position -> {
+        }, metrics, kernel);
+    }
+
+    /**
+     * Maps the whole file segment by segment and scans the records of each segment, skipping the header.
+     * The listener is told the file offset of every segment before it is scanned, so that buffer indexes
+     * passed to the handler can be turned into file offsets.
+     *
+     * @param channel         the channel of the file to read
+     * @param segmentSize     the maximum number of bytes mapped at once
+     * @param day             the target day
+     * @param handler         the handler of the matching records
+     * @param segmentListener the listener of the segment offsets
+     * @throws IOException if the file cannot be mapped
+     */
+    static void scanChannel(FileChannel channel, int segmentSize, DayRange day, RecordHandler handler,
+                            LongConsumer segmentListener) throws IOException {
+        scanChannel(channel, segmentSize, day, handler, segmentListener, FileMetrics.UNTRACKED, null);
+    }
+
+    /**
+     * Maps the whole file segment by segment and scans the records of each segment, skipping the header.
+     * The listener is told the file offset of every segment before it is scanned.
+     *
+     * @param channel         the channel of the file to read
+     * @param segmentSize     the maximum number of bytes mapped at once
+     * @param day             the target day
+     * @param handler         the handler of the matching records
+     * @param segmentListener the listener of the segment offsets
+     * @param metrics         the metrics of the scanned file
+     * @param kernel          the kernel searching the delimiters, or null to scan byte by byte
+     * @throws IOException if the file cannot be mapped
+     */
+    private static void scanChannel(FileChannel channel, int segmentSize, DayRange day, RecordHandler handler,
+                                    LongConsumer segmentListener, FileMetrics metrics, ScanKernel kernel)
+            throws IOException {
+        long size = channel.size();
+        long position = 0;
+        boolean header = true;
+        while (position < size) {
+            long length = Math.min(segmentSize, size - position);
+            long mapStart = System.nanoTime();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            metrics.addIoNanos(System.nanoTime() - mapStart);
+            int end = (int) length;
+            if (position + length < size) {
+                end = lastLineEnd(buffer, end);
+                if (end == 0) {
+                    throw new IOException("Line is longer than the mapping segment at offset " + position);
+                }
+            }
+            int start = header ? skipLine(buffer, 0, end) : 0;
+            header = false;
+            segmentListener.accept(position);
+            boolean more = kernel == null ? scan(buffer, start, end, day, handler, metrics)
+                    : scan(buffer, start, end, day, handler, metrics, kernel);
+            if (!more) {
+                return;
+            }
+            position += end;
+        }
+    }
+
+    /**
+     * Returns the index right after the last line terminator of the buffer.
+     *
+     * @param buffer the buffer to search
+     * @param to     the exclusive end index
+     * @return the index after the last '\n', or 0 if there is none
+     */
+    static int lastLineEnd(ByteBuffer buffer, int to) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the index right after the first line terminator at or after the given index.
+     *
+     * @param buffer the buffer to scan
+     * @param from   the index to start from
+     * @param to     the exclusive end index
+     * @return the index of the next line start, or {@code to} if there is none
+     */
+    static int skipLine(ByteBuffer buffer, int from, int to) {
+        int position = from;
+        while (position < to) {
+            if (buffer.get(position++) == '\n') {
+                return position;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Decodes the given index range of the buffer into a String, used for reporting malformed lines.
+     *
+     * @param buffer the buffer to decode
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the decoded text
+     */
+    static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
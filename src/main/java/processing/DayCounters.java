@@ -0,0 +1,117 @@
+package processing;
+
+import java.util.*;
+
+/**
+ * This class keeps one CookieCounter per requested UTC day, so that several days can be counted
+ * in a single pass over the files. Records of days that were not requested are ignored.
+ * Instances are not thread-safe.
+ */
+final class DayCounters {
+
+    private final long firstEpochDay;
+    private final CookieCounter[] counters;
+    private final DayRange span;
+
+    /**
+     * Constructs new DayCounters for the calendar dates of the given dates.
+     *
+     * @param dates the requested dates
+     * @throws IllegalArgumentException if no date is given
+     */
+    DayCounters(Collection<Date> dates) {
+        if (dates.isEmpty()) {
+            throw new IllegalArgumentException("At least one date is required");
+        }
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (Date date : dates) {
+            long epochDay = DayRange.of(date).getEpochDay();
+            first = Math.min(first, epochDay);
+            last = Math.max(last, epochDay);
+        }
+        firstEpochDay = first;
+        counters = new CookieCounter[Math.toIntExact(last - first + 1)];
+        for (Date date : dates) {
+            int slot = (int) (DayRange.of(date).getEpochDay() - first);
+            if (counters[slot] == null) {
+                counters[slot] = new CookieCounter();
+            }
+        }
+        span = DayRange.between(first, last);
+    }
+
+    /**
+     * Returns the range from the first to the last requested day, used to filter and stop scanning.
+     *
+     * @return the range covering all requested days
+     */
+    DayRange getSpan() {
+        return span;
+    }
+
+    /**
+     * Returns the counter of the day containing the given moment.
+     *
+     * @param epochSecond the moment in epoch seconds
+     * @return the counter of the day, or null if the day was not requested
+     */
+    CookieCounter counterFor(long epochSecond) {
+        long slot = DayRange.toEpochDay(epochSecond) - firstEpochDay;
+        return slot >= 0 && slot < counters.length ? counters[(int) slot] : null;
+    }
+
+    /**
+     * Counts a record if its day was requested.
+     *
+     * @param cookieId    the cookie identifier
+     * @param epochSecond the timestamp of the record in epoch seconds
+     */
+    void add(String cookieId, long epochSecond) {
+        CookieCounter counter = counterFor(epochSecond);
+        if (counter != null) {
+            counter.increment(cookieId);
+        }
+    }
+
+    /**
+     * Adds all counts of another instance created for the same dates.
+     *
+     * @param other the counters to merge
+     */
+    void merge(DayCounters other) {
+        for (int i = 0; i < counters.length; i++) {
+            if (counters[i] != null) {
+                counters[i].merge(other.counters[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of a single day.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @param counter  the counts of that day
+     */
+    void merge(long epochDay, CookieCounter counter) {
+        CookieCounter target = counterFor(epochDay * DayRange.SECONDS_PER_DAY);
+        if (target != null) {
+            target.merge(counter);
+        }
+    }
+
+    /**
+     * Returns the counters of the requested days.
+     *
+     * @return the counters keyed by the number of days since 1970-01-01, in ascending order
+     */
+    Map<Long, CookieCounter> toMap() {
+        Map<Long, CookieCounter> result = new TreeMap<>();
+        for (int i = 0; i < counters.length; i++) {
+            if (counters[i] != null) {
+                result.put(firstEpochDay + i, counters[i]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,148 @@
+package processing;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class gives access to the per-day index sidecar of a cookie log file.
+ * The sidecar lives next to the log as "&lt;log&gt;.idx" and holds, for every day of the log,
+ * the byte range of its records and the number of hits of every cookie on that day.
+ * It records the size and the modification time of the log it was built from and is ignored
+ * as soon as either of them changes. <p>
+ * Layout: header (magic, version, log size, log modification time), one block of cookie counts per day,
+ * the day directory (epoch day, byte range start and end, block offset) and the offset of the directory.
+ */
+public final class DayIndex {
+    private static final Logger LOGGER = Logger.getLogger(DayIndex.class.getName());
+
+    static final String SIDECAR_SUFFIX = ".idx";
+    static final int MAGIC = 0x434B4958;
+    static final int VERSION = 1;
+
+    private final File sidecar;
+    private final Map<Long, Entry> entries;
+
+    private DayIndex(File sidecar, Map<Long, Entry> entries) {
+        this.sidecar = sidecar;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the sidecar file of the given log file.
+     *
+     * @param file the log file
+     * @return the sidecar file, which may not exist
+     */
+    public static File sidecarOf(File file) {
+        return new File(file.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Opens the sidecar of the given log file if it exists and matches the current state of the log.
+     *
+     * @param file the log file
+     * @return the index, or null if there is no fresh sidecar
+     */
+    public static DayIndex open(File file) {
+        File sidecar = sidecarOf(file);
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(sidecar, "r")) {
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION
+                    || raf.readLong() != file.length() || raf.readLong() != file.lastModified()) {
+                LOGGER.log(Level.INFO, "Index is stale " + sidecar.getAbsolutePath());
+                return null;
+            }
+            raf.seek(raf.length() - Long.BYTES);
+            raf.seek(raf.readLong());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            int dayCount = in.readInt();
+            Map<Long, Entry> entries = new HashMap<>(dayCount * 2);
+            for (int i = 0; i < dayCount; i++) {
+                long epochDay = in.readLong();
+                entries.put(epochDay, new Entry(in.readLong(), in.readLong(), in.readLong()));
+            }
+            return new DayIndex(sidecar, entries);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Index cannot be read " + sidecar.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the log has records on the given day.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return true if the day is present in the index
+     */
+    public boolean containsDay(long epochDay) {
+        return entries.containsKey(epochDay);
+    }
+
+    /**
+     * Returns the inclusive start offset of the records of the given day in the log.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the start offset, or -1 if the day is not present
+     */
+    public long getStart(long epochDay) {
+        Entry entry = entries.get(epochDay);
+        return entry != null ? entry.start : -1;
+    }
+
+    /**
+     * Returns the exclusive end offset of the records of the given day in the log.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the end offset, or -1 if the day is not present
+     */
+    public long getEnd(long epochDay) {
+        Entry entry = entries.get(epochDay);
+        return entry != null ? entry.end : -1;
+    }
+
+    /**
+     * Reads the cookie hit counts of the given day from the sidecar.
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the counter of cookie hits, empty if the day is not present
+     * @throws IOException if the sidecar cannot be read
+     */
+    public CookieCounter readCounts(long epochDay) throws IOException {
+        Entry entry = entries.get(epochDay);
+        if (entry == null) {
+            return new CookieCounter();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(sidecar, "r")) {
+            raf.seek(entry.blockOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            int size = in.readInt();
+            CookieCounter counter = new CookieCounter(size);
+            for (int i = 0; i < size; i++) {
+                String cookieId = in.readUTF();
+                counter.add(cookieId, in.readInt());
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * The Entry class holds the directory record of a single day.
+     */
+    private static final class Entry {
+        private final long start;
+        private final long end;
+        private final long blockOffset;
+
+        private Entry(long start, long end, long blockOffset) {
+            this.start = start;
+            this.end = end;
+            this.blockOffset = blockOffset;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package processing;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class builds the per-day index sidecar described by {@link DayIndex} for a cookie log file.
+ * The log is scanned once; since records are sorted newest first, the counts of a day are written
+ * as soon as the first record of the previous day is reached, so only one day is kept in memory.
+ * Logs that are not sorted are not indexed.
+ */
+public final class DayIndexBuilder {
+    private static final Logger LOGGER = Logger.getLogger(DayIndexBuilder.class.getName());
+
+    private DayIndexBuilder() {
+    }
+
+    /**
+     * Builds the sidecar of the given log file, replacing an existing one.
+     *
+     * @param file the log file
+     * @return true if the sidecar was written, false otherwise
+     */
+    public static boolean build(File file) {
+        if (!CSVCookieFileReader.isValidFile(file)) {
+            CSVCookieFileReader.logInvalidFile(file);
+            return false;
+        }
+        File sidecar = DayIndex.sidecarOf(file);
+        File temporary = new File(sidecar.getPath() + ".tmp");
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        LOGGER.log(Level.INFO, "Start indexing file " + file.getAbsolutePath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileOutputStream fileOut = new FileOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(DayIndex.MAGIC);
+            out.writeInt(DayIndex.VERSION);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+
+            DayWriter writer = new DayWriter(out, fileOut.getChannel());
+            long[] segmentOffset = new long[1];
+            CsvRecordScanner.scanChannel(channel, CsvRecordScanner.MAX_SEGMENT_SIZE, DayRange.all(),
+                    (buffer, idStart, idEnd, epochSecond) -> writer.accept(segmentOffset[0] + idStart,
+                            CsvRecordScanner.decode(buffer, idStart, idEnd), DayRange.toEpochDay(epochSecond)),
+                    position -> segmentOffset[0] = position);
+            writer.finish(size);
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            LOGGER.log(Level.SEVERE, "File cannot be indexed " + file.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+
+        if (file.length() != size || file.lastModified() != lastModified) {
+            LOGGER.log(Level.WARNING, "File changed while indexing " + file.getAbsolutePath());
+            temporary.delete();
+            return false;
+        }
+        try {
+            Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Index cannot be written " + sidecar.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Builds the sidecars of the log files given on the command line.
+     *
+     * @param args the paths of the log files
+     */
+    public static void main(String[] args) {
+        for (String path : args) {
+            build(new File(path));
+        }
+    }
+
+    /**
+     * The DayWriter class collects the counts of the current day and writes the day blocks and the directory.
+     */
+    private static final class DayWriter {
+        private final DataOutputStream out;
+        private final FileChannel outChannel;
+        private final List<long[]> directory = new ArrayList<>();
+
+        private long currentDay = Long.MIN_VALUE;
+        private long currentStart;
+        private CookieCounter currentCounts;
+
+        private DayWriter(DataOutputStream out, FileChannel outChannel) {
+            this.out = out;
+            this.outChannel = outChannel;
+        }
+
+        /**
+         * Adds a record to the current day, writing the previous day first if the record starts a new one.
+         *
+         * @param offset   the file offset of the record
+         * @param cookieId the cookie identifier
+         * @param epochDay the day of the record
+         * @throws IllegalStateException if the records are not sorted newest first
+         */
+        private void accept(long offset, String cookieId, long epochDay) {
+            if (epochDay != currentDay) {
+                if (currentCounts != null && epochDay > currentDay) {
+                    throw new IllegalStateException("records are not sorted newest first at offset " + offset);
+                }
+                flush(offset);
+                currentDay = epochDay;
+                currentStart = offset;
+                currentCounts = new CookieCounter();
+            }
+            currentCounts.increment(cookieId);
+        }
+
+        /**
+         * Writes the last day, the directory and the directory offset.
+         *
+         * @param end the end offset of the last day
+         * @throws IOException if the sidecar cannot be written
+         */
+        private void finish(long end) throws IOException {
+            flush(end);
+            long directoryOffset = position();
+            out.writeInt(directory.size());
+            for (long[] entry : directory) {
+                for (long value : entry) {
+                    out.writeLong(value);
+                }
+            }
+            out.writeLong(directoryOffset);
+        }
+
+        /**
+         * Writes the counts block of the current day, if any.
+         *
+         * @param end the end offset of the current day in the log
+         */
+        private void flush(long end) {
+            if (currentCounts == null) {
+                return;
+            }
+            try {
+                directory.add(new long[]{currentDay, currentStart, end, position()});
+                out.writeInt(currentCounts.size());
+                IOException[] failure = new IOException[1];
+                currentCounts.forEach((cookieId, count) -> {
+                    try {
+                        out.writeUTF(cookieId);
+                        out.writeInt(count);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            currentCounts = null;
+        }
+
+        /**
+         * Returns the current offset in the sidecar.
+         *
+         * @return the number of bytes written so far
+         * @throws IOException if the position cannot be read
+         */
+        private long position() throws IOException {
+            out.flush();
+            return outChannel.position();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package processing;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * This class represents the half-open interval [start, end) of epoch seconds covering one UTC calendar day,
+ * or several consecutive ones. The bounds are computed once per query so that every record is matched
+ * with two long comparisons.
+ */
+public final class DayRange {
+
+    static final long SECONDS_PER_DAY = 86400;
+
+    private static final DayRange ALL = new DayRange(Long.MIN_VALUE + 1, Long.MAX_VALUE);
+
+    private final long start;
+    private final long end;
+
+    private DayRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates the range of the UTC day with the calendar date of the given date.
+     * The calendar date is taken in the default time zone, which is how dates parsed
+     * from "yyyy-MM-dd" strings are built, so "-d 2018-12-09" always means 2018-12-09 in UTC.
+     *
+     * @param date any moment within the requested calendar date
+     * @return the range covering the whole UTC day
+     */
+    public static DayRange of(Date date) {
+        return of(date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+    }
+
+    /**
+     * Creates the range of the given UTC day.
+     *
+     * @param date the calendar date
+     * @return the range covering the whole UTC day
+     */
+    public static DayRange of(LocalDate date) {
+        return ofEpochDay(TimestampDecoder.toEpochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+    }
+
+    /**
+     * Creates the range of the UTC day with the given number of days since 1970-01-01.
+     *
+     * @param epochDay the number of days since the epoch
+     * @return the range covering the whole UTC day
+     */
+    public static DayRange ofEpochDay(long epochDay) {
+        return new DayRange(epochDay * SECONDS_PER_DAY, (epochDay + 1) * SECONDS_PER_DAY);
+    }
+
+    /**
+     * Creates the range covering all UTC days from the first to the last given one.
+     *
+     * @param firstEpochDay the first day, in days since 1970-01-01
+     * @param lastEpochDay  the last day, inclusive
+     * @return the range covering the days
+     */
+    public static DayRange between(long firstEpochDay, long lastEpochDay) {
+        return new DayRange(firstEpochDay * SECONDS_PER_DAY, (lastEpochDay + 1) * SECONDS_PER_DAY);
+    }
+
+    /**
+     * Returns a range containing every valid timestamp, used to scan all records of a file.
+     *
+     * @return the unbounded range
+     */
+    static DayRange all() {
+        return ALL;
+    }
+
+    /**
+     * Returns the number of the UTC day containing the given moment.
+     *
+     * @param epochSecond the moment in epoch seconds
+     * @return the number of days since 1970-01-01
+     */
+    public static long toEpochDay(long epochSecond) {
+        return Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+    }
+
+    /**
+     * Returns the number of the first day of the range since 1970-01-01.
+     *
+     * @return the epoch day of the range start
+     */
+    public long getEpochDay() {
+        return toEpochDay(start);
+    }
+
+    /**
+     * Returns the first second of the day.
+     *
+     * @return the inclusive start of the day in epoch seconds
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the first second of the following day.
+     *
+     * @return the exclusive end of the day in epoch seconds
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Checks whether the given moment falls within the day.
+     *
+     * @param epochSecond the moment in epoch seconds
+     * @return true if the moment belongs to the day, false otherwise
+     */
+    public boolean contains(long epochSecond) {
+        return epochSecond >= start && epochSecond < end;
+    }
+}
@@ -0,0 +1,79 @@
+package processing;
+
+import model.Cookie;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * This class holds the activity summary of one day returned by
+ * {@link CookieFileProcessor#getDailySummaries(Collection, Collection)}: the number of records of the day,
+ * its most active cookies and the {@link DistinctCookieSketch} estimating its number of distinct cookies.
+ * The sketches of several summaries can be merged to estimate the distinct cookies of a range of days.
+ */
+public final class DaySummary {
+    private final Date date;
+    private final long records;
+    private final Collection<Cookie> mostActiveCookies;
+    private final DistinctCookieSketch sketch;
+
+    /**
+     * Constructs a new DaySummary.
+     *
+     * @param date              the summarized date
+     * @param records           the number of records of the day
+     * @param mostActiveCookies the most active cookies of the day
+     * @param sketch            the sketch of the distinct cookies of the day
+     */
+    public DaySummary(Date date, long records, Collection<Cookie> mostActiveCookies, DistinctCookieSketch sketch) {
+        this.date = date;
+        this.records = records;
+        this.mostActiveCookies = mostActiveCookies;
+        this.sketch = sketch;
+    }
+
+    /**
+     * Returns the summarized date.
+     *
+     * @return the date
+     */
+    public Date getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the number of records of the day, one per cookie occurrence.
+     *
+     * @return the number of records
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the most active cookies of the day with their count.
+     *
+     * @return the most active cookies
+     */
+    public Collection<Cookie> getMostActiveCookies() {
+        return mostActiveCookies;
+    }
+
+    /**
+     * Returns the estimated number of distinct cookies of the day.
+     *
+     * @return the estimate of the sketch
+     */
+    public long getDistinctCookies() {
+        return sketch.estimate();
+    }
+
+    /**
+     * Returns the sketch of the distinct cookies of the day, e.g. to merge it with the sketches of other days.
+     *
+     * @return the sketch
+     */
+    public DistinctCookieSketch getSketch() {
+        return sketch;
+    }
+}
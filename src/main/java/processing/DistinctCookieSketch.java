@@ -0,0 +1,282 @@
+package processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class estimates the number of distinct cookies with a HyperLogLog sketch. Every identifier is hashed
+ * to 64 bits; the first bits of the hash select one of 2^precision registers, which keeps the longest run of
+ * leading zeros seen in the remaining bits. The memory is one byte per register whatever the number of cookies,
+ * and the standard error of the estimate is about 1.04 / sqrt(2^precision), 0.8% with the default precision. <p>
+ * Sketches of the same precision are merged by keeping the larger register, so the sketch of several files or
+ * days is the merge of their sketches, and a merge never counts a cookie twice. A sketch can be written to and
+ * read from a stream to be cached between runs. It also implements {@link CookieCountSink}, so a reader can
+ * count distinct cookies into it directly. Instances are not thread-safe.
+ */
+public final class DistinctCookieSketch implements CookieCountSink {
+
+    /**
+     * The default precision, 16384 registers of one byte.
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Constructs a new empty sketch with the default precision.
+     */
+    public DistinctCookieSketch() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs a new empty sketch.
+     *
+     * @param precision the number of hash bits selecting a register, from 4 to 18
+     * @throws IllegalArgumentException if the precision is out of range
+     */
+    public DistinctCookieSketch(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and "
+                    + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a cookie.
+     *
+     * @param cookieId the cookie identifier
+     */
+    public void add(String cookieId) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < cookieId.length(); i++) {
+            char c = cookieId.charAt(i);
+            if (c >= 0x80) {
+                // Hash the UTF-8 bytes, as the identifiers scanned from a buffer are
+                addHash(hash(cookieId.getBytes(StandardCharsets.UTF_8)));
+                return;
+            }
+            hash = (hash ^ c) * FNV_PRIME;
+        }
+        addHash(mix(hash));
+    }
+
+    /**
+     * Adds a cookie whose identifier is held in the given index range of the buffer.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     */
+    public void add(ByteBuffer buffer, int from, int to) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (buffer.get(i) & 0xff)) * FNV_PRIME;
+        }
+        addHash(mix(hash));
+    }
+
+    /**
+     * Adds a cookie; the number of its occurrences does not change the sketch.
+     *
+     * @param cookieId the cookie identifier
+     * @param count    the number of occurrences, ignored
+     */
+    @Override
+    public void add(String cookieId, int count) {
+        add(cookieId);
+    }
+
+    /**
+     * Adds a cookie whose identifier is held in the given index range of the buffer.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     */
+    @Override
+    public void increment(ByteBuffer buffer, int from, int to) {
+        add(buffer, from, to);
+    }
+
+    /**
+     * Adds the cookies of another sketch to this one.
+     *
+     * @param other the sketch to merge, which is not modified
+     * @throws IllegalArgumentException if the sketches have different precisions
+     */
+    public void merge(DistinctCookieSketch other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + precision + " and "
+                    + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of distinct cookies added. Small cardinalities, where many registers are still empty,
+     * are estimated from the number of empty registers, which is more accurate in that range.
+     *
+     * @return the estimated number of distinct cookies
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && empty > 0) {
+            estimate = m * Math.log((double) m / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns the precision of the sketch.
+     *
+     * @return the number of hash bits selecting a register
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns the standard error of the estimate relative to the true number of distinct cookies.
+     *
+     * @return the relative standard error, e.g. 0.008 for 0.8%
+     */
+    public double getStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * Checks whether no cookie was added.
+     *
+     * @return true if every register is empty
+     */
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the sketch: its precision followed by its registers.
+     *
+     * @param out the output to write to
+     * @throws IOException if the sketch cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        out.write(registers);
+    }
+
+    /**
+     * Reads a sketch written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the sketch read
+     * @throws IOException if the sketch cannot be read or is corrupt
+     */
+    public static DistinctCookieSketch readFrom(DataInput in) throws IOException {
+        int precision = in.readUnsignedByte();
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IOException("Invalid sketch precision " + precision);
+        }
+        DistinctCookieSketch sketch = new DistinctCookieSketch(precision);
+        in.readFully(sketch.registers);
+        for (byte register : sketch.registers) {
+            if (register < 0 || register > 64 - precision + 1) {
+                throw new IOException("Invalid sketch register " + register);
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * Updates the register selected by the hash of a cookie.
+     *
+     * @param hash the 64-bit hash of the identifier
+     */
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The bit below the remaining ones bounds the rank when they are all zero
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Hashes the given bytes.
+     *
+     * @param bytes the bytes to hash
+     * @return the 64-bit hash
+     */
+    private static long hash(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Spreads the bits of an FNV-1a hash over the whole word with the MurmurHash3 finalizer,
+     * so that the leading bits used by the sketch are uniform.
+     *
+     * @param hash the hash to mix
+     * @return the mixed hash
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Returns the bias correction constant of HyperLogLog for the given number of registers.
+     *
+     * @param m the number of registers
+     * @return the constant
+     */
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package processing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class collects the read metrics of a single file. Readers add their tallies once per scanned buffer
+ * rather than once per line, so the counters stay off the hot path. Skipped lines are always counted, but only
+ * the first few of every file are logged, so a file full of malformed lines does not flood the log.
+ * Instances are thread-safe; the chunks of a file may be scanned on several threads at once.
+ */
+public final class FileMetrics {
+    private static final Logger LOGGER = Logger.getLogger(FileMetrics.class.getName());
+
+    /**
+     * The number of skipped lines of a file that are logged one by one.
+     */
+    static final int MAX_LOGGED_LINES = 10;
+
+    /**
+     * Collects the metrics of reads that are not attributed to any file.
+     */
+    static final FileMetrics UNTRACKED = new FileMetrics("");
+
+    private final String path;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder linesParsed = new LongAdder();
+    private final LongAdder matchedRecords = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder[] linesSkipped = new LongAdder[SkipReason.values().length];
+    private final AtomicInteger loggedLines = new AtomicInteger();
+
+    /**
+     * Constructs new empty metrics of the given file.
+     *
+     * @param path the path of the file
+     */
+    FileMetrics(String path) {
+        this.path = path;
+        for (int i = 0; i < linesSkipped.length; i++) {
+            linesSkipped[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds the tallies of a scanned buffer.
+     *
+     * @param bytes   the number of bytes scanned
+     * @param lines   the number of lines examined, including skipped ones
+     * @param matched the number of records of the requested days
+     * @param nanos   the time spent scanning and aggregating
+     */
+    void addScan(long bytes, long lines, long matched, long nanos) {
+        bytesRead.add(bytes);
+        linesParsed.add(lines);
+        matchedRecords.add(matched);
+        parseNanos.add(nanos);
+    }
+
+    /**
+     * Adds time spent reading, mapping or inflating the file.
+     *
+     * @param nanos the I/O time in nanoseconds
+     */
+    void addIoNanos(long nanos) {
+        ioNanos.add(nanos);
+    }
+
+    /**
+     * Counts a skipped line and logs it if fewer than {@link #MAX_LOGGED_LINES} lines of the file were logged.
+     * The text of the line is only produced when it is logged.
+     *
+     * @param reason the reason why the line is skipped
+     * @param line   the supplier of the text of the line
+     */
+    void skip(SkipReason reason, Supplier<String> line) {
+        linesSkipped[reason.ordinal()].increment();
+        int logged = loggedLines.incrementAndGet();
+        if (logged <= MAX_LOGGED_LINES) {
+            LOGGER.log(Level.SEVERE, "Incorrect file content in " + path + " (" + reason + "): " + line.get());
+        }
+        if (logged == MAX_LOGGED_LINES) {
+            LOGGER.log(Level.SEVERE, "Further skipped lines of " + path + " are only counted");
+        }
+    }
+
+    /**
+     * Returns the path of the file.
+     *
+     * @return the file path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of bytes scanned.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Returns the number of lines examined, including skipped ones.
+     *
+     * @return the number of lines parsed
+     */
+    public long getLinesParsed() {
+        return linesParsed.sum();
+    }
+
+    /**
+     * Returns the number of lines skipped for the given reason.
+     *
+     * @param reason the reason
+     * @return the number of lines skipped
+     */
+    public long getLinesSkipped(SkipReason reason) {
+        return linesSkipped[reason.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of lines skipped for any reason.
+     *
+     * @return the number of lines skipped
+     */
+    public long getLinesSkipped() {
+        long skipped = 0;
+        for (LongAdder adder : linesSkipped) {
+            skipped += adder.sum();
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of records of the requested days.
+     *
+     * @return the number of matched records
+     */
+    public long getMatchedRecords() {
+        return matchedRecords.sum();
+    }
+
+    /**
+     * Returns the time spent reading, mapping or inflating the file.
+     *
+     * @return the I/O time in nanoseconds
+     */
+    public long getIoNanos() {
+        return ioNanos.sum();
+    }
+
+    /**
+     * Returns the time spent scanning and aggregating the lines of the file.
+     *
+     * @return the parse time in nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+}
@@ -0,0 +1,101 @@
+package processing;
+
+import model.Cookie;
+import model.CountedCookie;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class keeps the cookie counts of one day up to date while a stream is being read.
+ * Batches of complete lines are added by the reading thread; the current most active cookies can be
+ * queried from any other thread at any time. Memory grows only with the number of distinct cookies of the day.
+ */
+public class IncrementalCookieCounter {
+
+    private final DayRange day;
+    private final CookieCounter counter = new CookieCounter();
+    private long matchedRecords;
+
+    /**
+     * Constructs a new IncrementalCookieCounter for the given date.
+     *
+     * @param date the date for which to count the cookies
+     */
+    public IncrementalCookieCounter(Date date) {
+        this.day = DayRange.of(date);
+    }
+
+    /**
+     * Counts the records of the target day found in the given index range of complete lines.
+     * Records of other days are ignored without stopping, since a stream may be in any order.
+     *
+     * @param buffer the buffer holding the lines
+     * @param from   the inclusive start index, at a line start
+     * @param to     the exclusive end index, right after a line terminator or at the end of the stream
+     */
+    void addLines(ByteBuffer buffer, int from, int to) {
+        addLines(buffer, from, to, FileMetrics.UNTRACKED);
+    }
+
+    /**
+     * Counts the records of the target day found in the given index range of complete lines
+     * and adds the tallies of the scan to the metrics of the stream.
+     *
+     * @param buffer  the buffer holding the lines
+     * @param from    the inclusive start index, at a line start
+     * @param to      the exclusive end index, right after a line terminator or at the end of the stream
+     * @param metrics the metrics of the stream
+     */
+    synchronized void addLines(ByteBuffer buffer, int from, int to, FileMetrics metrics) {
+        CsvRecordScanner.scanUnordered(buffer, from, to, day, (chunk, idStart, idEnd, epochSecond) -> {
+            counter.increment(chunk, idStart, idEnd);
+            matchedRecords++;
+        }, metrics);
+    }
+
+    /**
+     * Returns the cookies with the highest number of occurrences counted so far.
+     *
+     * @return the most active cookies with their count
+     */
+    public synchronized List<Cookie> getMostActiveCookies() {
+        List<Cookie> mostActiveCookies = new ArrayList<>();
+        for (String cookieId : counter.getMostActiveCookieIds()) {
+            mostActiveCookies.add(new CountedCookie(cookieId, counter.getMaxCount()));
+        }
+        return mostActiveCookies;
+    }
+
+    /**
+     * Returns the k cookies with the highest number of occurrences counted so far.
+     *
+     * @param k the maximum number of cookies to return
+     * @return the top cookies with their counts, the most active first
+     */
+    public synchronized List<Cookie> getTopCookies(int k) {
+        return counter.getTopCookies(k);
+    }
+
+    /**
+     * Returns the number of records of the target day counted so far.
+     *
+     * @return the number of matched records
+     */
+    public synchronized long getMatchedRecords() {
+        return matchedRecords;
+    }
+
+    /**
+     * Returns a copy of the counts collected so far.
+     *
+     * @return the counter of cookie occurrences on the target day
+     */
+    public synchronized CookieCounter snapshot() {
+        CookieCounter copy = new CookieCounter(counter.size());
+        copy.merge(counter);
+        return copy;
+    }
+}
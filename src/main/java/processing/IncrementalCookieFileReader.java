@@ -0,0 +1,310 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements the CookieFileReader interface for logs that keep growing by appended lines.
+ * The cookie counts of every day of a log are kept in a checkpoint together with the offset up to which the log
+ * was consumed, so every query only parses the bytes appended since the previous one and merges them into the
+ * saved counts. A trailing line without terminator is counted for the current query only and left out of the
+ * checkpoint, since it may still be growing. The checkpoint also records the file key and a checksum of the head of the log; if the log became shorter than the consumed offset, was replaced
+ * by another file, or its head changed, the log is rescanned from the start. Checkpoints are kept in memory
+ * between queries and persisted in a {@link CheckpointStore}, so later runs resume where earlier ones stopped.
+ * Timestamps are not checkpointed, so {@link #readFile(Collection, Date)} and files other than CSV logs
+ * are read by the delegate reader.
+ */
+public class IncrementalCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(IncrementalCookieFileReader.class.getName());
+
+    /**
+     * The number of bytes at the start of a log covered by the checksum of a checkpoint.
+     */
+    static final int HEAD_SIZE = 4096;
+
+    private static final String LOG_SUFFIX = ".csv";
+
+    private final CookieFileReader delegate;
+    private final CheckpointStore store;
+    private final Map<String, CheckpointStore.Checkpoint> checkpoints = new HashMap<>();
+
+    /**
+     * Constructs a new IncrementalCookieFileReader.
+     *
+     * @param delegate the reader of timestamps and of the files that are not CSV logs
+     * @param store    the store persisting the checkpoints
+     */
+    public IncrementalCookieFileReader(CookieFileReader delegate, CheckpointStore store) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    /**
+     * Reads cookie data from the given collection of files through the delegate, since timestamps are not checkpointed.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        return delegate.readFile(files, targetDate);
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date, ingesting only the appended bytes.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        return countCookiesByDay(files, List.of(targetDate)).get(DayRange.of(targetDate).getEpochDay());
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date into the given sink,
+     * ingesting only the appended bytes.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        countCookies(files, targetDate).forEach(sink::add);
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates, ingesting only the appended bytes
+     * of every log once.
+     *
+     * @param files the collection of files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01, in ascending order
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        Map<Long, CookieCounter> counters = new TreeMap<>();
+        for (Date date : dates) {
+            counters.putIfAbsent(DayRange.of(date).getEpochDay(), new CookieCounter());
+        }
+        List<File> other = new ArrayList<>();
+
+        for (File file : files) {
+            Map<Long, CookieCounter> tail = new HashMap<>();
+            Map<Long, CookieCounter> ingested = ingest(file, tail);
+            if (ingested == null) {
+                other.add(file);
+                continue;
+            }
+            for (Map.Entry<Long, CookieCounter> day : counters.entrySet()) {
+                CookieCounter counter = ingested.get(day.getKey());
+                if (counter != null) {
+                    day.getValue().merge(counter);
+                }
+                CookieCounter tailCounter = tail.get(day.getKey());
+                if (tailCounter != null) {
+                    day.getValue().merge(tailCounter);
+                }
+            }
+        }
+
+        if (!other.isEmpty()) {
+            delegate.countCookiesByDay(other, dates).forEach((epochDay, counter) ->
+                    counters.computeIfAbsent(epochDay, day -> new CookieCounter()).merge(counter));
+        }
+        return counters;
+    }
+
+    /**
+     * Brings the checkpoint of a log up to date by parsing the bytes appended since it was taken,
+     * or the whole log if there is no valid checkpoint. A last line without a terminator is counted into the
+     * given tail counters only, since it may still be growing and is parsed again by the next run.
+     *
+     * @param file the log file
+     * @param tail the counters receiving the last line of the log if it lacks a terminator
+     * @return the counts of every day of the log, or null if the file has to be read by the delegate
+     */
+    private synchronized Map<Long, CookieCounter> ingest(File file, Map<Long, CookieCounter> tail) {
+        if (!file.getName().endsWith(LOG_SUFFIX) || !CSVCookieFileReader.isValidFile(file)) {
+            return null;
+        }
+        String path = file.getAbsolutePath();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            String fileKey = String.valueOf(Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+            CheckpointStore.Checkpoint previous = checkpoints.get(path);
+            if (previous == null) {
+                previous = store.load(file);
+            }
+            CheckpointStore.Checkpoint checkpoint = previous;
+            if (checkpoint != null && !isValid(checkpoint, channel, size, fileKey)) {
+                LOGGER.log(Level.INFO, "File was truncated or replaced, rescanning " + path);
+                checkpoint = null;
+            }
+
+            long offset = checkpoint != null ? checkpoint.getOffset() : 0;
+            Map<Long, CookieCounter> counters = checkpoint != null ? checkpoint.getCounters() : new TreeMap<>();
+            Set<Long> touched = new HashSet<>();
+            long consumed = consume(channel, offset, size, counters, touched, ReadMetrics.global().file(file));
+            if (checkpoint == null || consumed != offset) {
+                // Only the days touched by the appended lines are written again by the store
+                int headLength = (int) Math.min(HEAD_SIZE, consumed);
+                long generation = previous != null ? previous.getGeneration() + 1 : 1;
+                CheckpointStore.Checkpoint next = new CheckpointStore.Checkpoint(fileKey, consumed, headLength,
+                        checksum(channel, headLength), generation);
+                next.getCounters().putAll(counters);
+                for (Long epochDay : counters.keySet()) {
+                    next.setDayGeneration(epochDay, checkpoint == null || touched.contains(epochDay)
+                            ? generation : checkpoint.getDayGeneration(epochDay));
+                }
+                checkpoint = next;
+                store.save(file, checkpoint);
+            }
+            checkpoints.put(path, checkpoint);
+            countTail(channel, consumed, size, tail, ReadMetrics.global().file(file));
+            return checkpoint.getCounters();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error reading file " + path + ": " + e.getMessage());
+            checkpoints.remove(path);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a checkpoint still describes a prefix of the log.
+     *
+     * @param checkpoint the checkpoint
+     * @param channel    the channel of the log
+     * @param size       the current size of the log
+     * @param fileKey    the current identity of the log
+     * @return true if the log was only appended to since the checkpoint was taken
+     * @throws IOException if the head of the log cannot be read
+     */
+    private static boolean isValid(CheckpointStore.Checkpoint checkpoint, FileChannel channel, long size,
+                                   String fileKey) throws IOException {
+        return checkpoint.getFileKey().equals(fileKey) && checkpoint.getOffset() <= size
+                && checkpoint.getHeadLength() <= checkpoint.getOffset()
+                && checksum(channel, checkpoint.getHeadLength()) == checkpoint.getHeadChecksum();
+    }
+
+    /**
+     * Counts the complete lines between the consumed offset and the end of the log into the counters of their days.
+     *
+     * @param channel  the channel of the log
+     * @param offset   the consumed offset, at a line start
+     * @param size     the current size of the log
+     * @param counters the counters of every day to add to
+     * @param touched  the set receiving the days of the consumed lines
+     * @param metrics  the metrics of the log
+     * @return the new consumed offset, right after the last complete line
+     * @throws IOException if the log cannot be mapped or holds a line longer than a mapping
+     */
+    private static long consume(FileChannel channel, long offset, long size, Map<Long, CookieCounter> counters,
+                                Set<Long> touched, FileMetrics metrics) throws IOException {
+        DayAccumulator accumulator = new DayAccumulator(counters, touched);
+        long position = offset;
+        while (position < size) {
+            long length = Math.min(CsvRecordScanner.MAX_SEGMENT_SIZE, size - position);
+            long mapStart = System.nanoTime();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            metrics.addIoNanos(System.nanoTime() - mapStart);
+            int end = CsvRecordScanner.lastLineEnd(buffer, (int) length);
+            if (end == 0) {
+                if (length == CsvRecordScanner.MAX_SEGMENT_SIZE) {
+                    throw new IOException("Line is longer than the mapping segment at offset " + position);
+                }
+                break;
+            }
+            int start = position == 0 ? CsvRecordScanner.skipLine(buffer, 0, end) : 0;
+            CsvRecordScanner.scanUnordered(buffer, start, end, DayRange.all(), accumulator, metrics);
+            position += end;
+        }
+        return position;
+    }
+
+    /**
+     * Counts the bytes after the last complete line, an unterminated last line, into the counters of their days.
+     *
+     * @param channel  the channel of the log
+     * @param consumed the consumed offset, right after the last complete line
+     * @param size     the current size of the log
+     * @param counters the counters of every day to add to
+     * @param metrics  the metrics of the log
+     * @throws IOException if the log cannot be mapped
+     */
+    private static void countTail(FileChannel channel, long consumed, long size, Map<Long, CookieCounter> counters,
+                                  FileMetrics metrics) throws IOException {
+        if (consumed >= size) {
+            return;
+        }
+        // consume stops before a mapping segment without a line terminator, so the tail fits in one mapping
+        int length = (int) (size - consumed);
+        long mapStart = System.nanoTime();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, consumed, length);
+        metrics.addIoNanos(System.nanoTime() - mapStart);
+        int start = consumed == 0 ? CsvRecordScanner.skipLine(buffer, 0, length) : 0;
+        CsvRecordScanner.scanUnordered(buffer, start, length, DayRange.all(),
+                new DayAccumulator(counters, new HashSet<>()), metrics);
+    }
+
+    /**
+     * Computes the CRC-32 of the head of the log.
+     *
+     * @param channel the channel of the log
+     * @param length  the number of bytes of the head
+     * @return the checksum
+     * @throws IOException if the head cannot be read
+     */
+    private static long checksum(FileChannel channel, int length) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(length);
+        while (head.hasRemaining() && channel.read(head, head.position()) >= 0) {
+            // Read until the head is complete or the file ends
+        }
+        head.flip();
+        CRC32 crc = new CRC32();
+        crc.update(head);
+        return crc.getValue();
+    }
+
+    /**
+     * The DayAccumulator class counts records into the counter of their day, creating counters for new days,
+     * and collects the days it counted into.
+     */
+    private static final class DayAccumulator implements CsvRecordScanner.RecordHandler {
+        private final Map<Long, CookieCounter> counters;
+        private final Set<Long> touched;
+        private long currentDay = Long.MIN_VALUE;
+        private CookieCounter current;
+
+        private DayAccumulator(Map<Long, CookieCounter> counters, Set<Long> touched) {
+            this.counters = counters;
+            this.touched = touched;
+        }
+
+        @Override
+        public void accept(ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+            long epochDay = DayRange.toEpochDay(epochSecond);
+            if (epochDay != currentDay) {
+                currentDay = epochDay;
+                touched.add(epochDay);
+                current = counters.computeIfAbsent(epochDay, day -> new CookieCounter());
+            }
+            current.increment(buffer, idStart, idEnd);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface on top of the per-day index sidecars of the files.
+ * Counts of files with a fresh sidecar are read straight from it and timestamps are read from the indexed
+ * byte range of the day only. Files without a fresh sidecar are handed to the delegate reader,
+ * optionally after building the missing sidecar for the next query.
+ */
+public class IndexedCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(IndexedCookieFileReader.class.getName());
+
+    private final CookieFileReader delegate;
+    private final boolean buildMissing;
+
+    /**
+     * Constructs a new IndexedCookieFileReader.
+     *
+     * @param delegate     the reader of the files without a fresh sidecar
+     * @param buildMissing true if missing or stale sidecars should be built before reading
+     */
+    public IndexedCookieFileReader(CookieFileReader delegate, boolean buildMissing) {
+        this.delegate = delegate;
+        this.buildMissing = buildMissing;
+    }
+
+    /**
+     * Reads cookie data from the given collection of files and returns cookies active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        DayRange day = DayRange.of(targetDate);
+        List<File> unindexed = new ArrayList<>();
+
+        for (File file : files) {
+            DayIndex index = openIndex(file);
+            if (index == null || !readIndexedRange(file, index, day, cookies)) {
+                unindexed.add(file);
+            }
+        }
+
+        if (!unindexed.isEmpty()) {
+            cookies.mergeAll(delegate.readFile(unindexed, targetDate));
+        }
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date, using the sidecar counts where possible.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        long epochDay = DayRange.of(targetDate).getEpochDay();
+        List<File> unindexed = new ArrayList<>();
+
+        for (File file : files) {
+            DayIndex index = openIndex(file);
+            if (index == null) {
+                unindexed.add(file);
+                continue;
+            }
+            try {
+                counter.merge(index.readCounts(epochDay));
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Index cannot be read for " + file.getAbsolutePath() + ": " + e.getMessage());
+                unindexed.add(file);
+            }
+        }
+
+        if (!unindexed.isEmpty()) {
+            counter.merge(delegate.countCookies(unindexed, targetDate));
+        }
+        return counter;
+    }
+
+    /**
+     * Opens the sidecar of the file, building it first if it is missing or stale and building is enabled.
+     *
+     * @param file the log file
+     * @return the index, or null if there is no fresh sidecar
+     */
+    private DayIndex openIndex(File file) {
+        DayIndex index = DayIndex.open(file);
+        if (index == null && buildMissing && DayIndexBuilder.build(file)) {
+            index = DayIndex.open(file);
+        }
+        return index;
+    }
+
+    /**
+     * Scans only the indexed byte range of the target day.
+     *
+     * @param file    the log file
+     * @param index   the fresh index of the file
+     * @param day     the target day
+     * @param cookies the table to collect the cookies into
+     * @return true if the range was read, false if the file has to be read by the delegate
+     */
+    private static boolean readIndexedRange(File file, DayIndex index, DayRange day, CookieTable cookies) {
+        long epochDay = day.getEpochDay();
+        if (!index.containsDay(epochDay)) {
+            return true;
+        }
+        long start = index.getStart(epochDay);
+        long length = index.getEnd(epochDay) - start;
+        if (length > CsvRecordScanner.MAX_SEGMENT_SIZE) {
+            return false;
+        }
+        CookieTable fileCookies = new CookieTable();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileMetrics metrics = ReadMetrics.global().file(file);
+            long mapStart = System.nanoTime();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            metrics.addIoNanos(System.nanoTime() - mapStart);
+            CsvRecordScanner.scan(buffer, 0, (int) length, day, (chunk, idStart, idEnd, epochSecond) ->
+                    fileCookies.cookieOf(chunk, idStart, idEnd)
+                            .addTimestamp(new Date(epochSecond * 1000)), metrics);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+            return false;
+        }
+        cookies.mergeAll(fileCookies.getCookies());
+        return true;
+    }
+}
@@ -0,0 +1,136 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface on top of memory-mapped files.
+ * It scans the ASCII bytes of the mapping directly for ',' and '\n' and creates a cookie identifier
+ * only for records that fall on the target day. Files larger than a single mapping are processed
+ * in several segments aligned to line boundaries.
+ */
+public class MappedCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(MappedCookieFileReader.class.getName());
+
+    private final int segmentSize;
+    private final ScanKernel kernel;
+
+    /**
+     * Constructs a new MappedCookieFileReader that maps files in the largest possible segments.
+     */
+    public MappedCookieFileReader() {
+        this(CsvRecordScanner.MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs a new MappedCookieFileReader with the given mapping segment size.
+     *
+     * @param segmentSize the maximum number of bytes mapped at once
+     */
+    MappedCookieFileReader(int segmentSize) {
+        this(segmentSize, null);
+    }
+
+    /**
+     * Constructs a new MappedCookieFileReader with the given mapping segment size and scan kernel.
+     *
+     * @param segmentSize the maximum number of bytes mapped at once
+     * @param kernel      the kernel searching the delimiters, or null to scan byte by byte
+     */
+    MappedCookieFileReader(int segmentSize, ScanKernel kernel) {
+        this.segmentSize = segmentSize;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Reads cookie data from the given collection of CSV files and returns cookies active on the target date.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        readRecords(files, DayRange.of(targetDate), (buffer, idStart, idEnd, epochSecond) ->
+                cookies.cookieOf(buffer, idStart, idEnd)
+                        .addTimestamp(new Date(epochSecond * 1000)));
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date without retaining the timestamps.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        readRecords(files, DayRange.of(targetDate), (buffer, idStart, idEnd, epochSecond) ->
+                counter.increment(buffer, idStart, idEnd));
+        return counter;
+    }
+
+    /**
+     * Passes every occurrence of a cookie active on the target date to the given sink.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        readRecords(files, DayRange.of(targetDate), (buffer, idStart, idEnd, epochSecond) ->
+                sink.increment(buffer, idStart, idEnd));
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates in a single pass over the files.
+     *
+     * @param files the collection of CSV files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        DayCounters counters = new DayCounters(dates);
+        readRecords(files, counters.getSpan(), (buffer, idStart, idEnd, epochSecond) -> {
+            CookieCounter counter = counters.counterFor(epochSecond);
+            if (counter != null) {
+                counter.increment(buffer, idStart, idEnd);
+            }
+        });
+        return counters.toMap();
+    }
+
+    /**
+     * Maps every file and passes the records of the target day to the handler.
+     *
+     * @param files   the collection of CSV files to be read
+     * @param day     the target day
+     * @param handler the handler of the matching records
+     */
+    private void readRecords(Collection<File> files, DayRange day, CsvRecordScanner.RecordHandler handler) {
+        for (File file : files) {
+            if (CSVCookieFileReader.isValidFile(file)) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    LOGGER.log(Level.INFO, "Start mapping file " + file.getAbsolutePath());
+                    CsvRecordScanner.scanChannel(channel, segmentSize, day, handler, ReadMetrics.global().file(file),
+                            kernel);
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+                }
+            } else {
+                CSVCookieFileReader.logInvalidFile(file);
+            }
+        }
+    }
+}
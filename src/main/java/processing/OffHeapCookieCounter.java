@@ -0,0 +1,636 @@
+package processing;
+
+import model.Cookie;
+import model.CookieIdCodec;
+import model.CountedCookie;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class counts cookie occurrences in an open-addressing table kept outside of the Java heap, so the number
+ * of distinct cookies of a day is bounded by the disk rather than by the heap. Identifiers are packed by
+ * {@link CookieIdCodec} into 24-byte slots of a direct buffer of the configured memory budget. Once the table is
+ * three quarters full, its slots are sorted by packed identifier and spilled to a temporary run file, and the
+ * table starts over empty. Queries merge all runs, summing the counts of equal identifiers, in a single pass.
+ * The rare identifiers that cannot be packed are counted on the heap. Instances are not thread-safe
+ * and must be closed to delete their run files. The table is allocated once per instance, so counting several days
+ * one after another should reuse one instance and {@link #clear()} it between the days rather than allocate
+ * a table of the full budget per day.
+ */
+public class OffHeapCookieCounter implements CookieCountSink, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(OffHeapCookieCounter.class.getName());
+
+    /**
+     * Size of a slot: packed first half, packed second half, count and padding.
+     */
+    static final int SLOT_SIZE = 24;
+
+    private static final int COUNT_OFFSET = 16;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final int MAX_MERGE_FAN_IN = 64;
+
+    private final ByteBuffer table;
+    private final int capacity;
+    private final int spillThreshold;
+    private final File spillDirectory;
+    private final List<Run> runs = new ArrayList<>();
+    private final Map<String, Integer> unpackedCounts = new HashMap<>();
+    private int size;
+    private Summary summary;
+
+    /**
+     * Constructs a new empty OffHeapCookieCounter spilling to the default temporary directory.
+     *
+     * @param memoryBudget the number of bytes of the off-heap table
+     */
+    public OffHeapCookieCounter(long memoryBudget) {
+        this(memoryBudget, null);
+    }
+
+    /**
+     * Constructs a new empty OffHeapCookieCounter.
+     *
+     * @param memoryBudget   the number of bytes of the off-heap table
+     * @param spillDirectory the directory of the run files, or null for the default temporary directory
+     */
+    public OffHeapCookieCounter(long memoryBudget, File spillDirectory) {
+        long slots = Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, memoryBudget / SLOT_SIZE));
+        capacity = Integer.highestOneBit((int) slots);
+        spillThreshold = capacity / 4 * 3;
+        table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Adds a single occurrence of the cookie whose identifier is held as ASCII in the given index range
+     * of the buffer, without creating a String for it.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     */
+    @Override
+    public void increment(ByteBuffer buffer, int from, int to) {
+        long high = CookieIdCodec.packHigh(buffer, from, to);
+        long low = CookieIdCodec.packLow(buffer, from, to);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            addUnpacked(CsvRecordScanner.decode(buffer, from, to), 1);
+        } else {
+            addPacked(high, low, 1);
+        }
+    }
+
+    /**
+     * Adds the given number of occurrences of the cookie. Counts of zero are ignored.
+     *
+     * @param cookieId the cookie identifier
+     * @param count    the number of occurrences to add
+     */
+    @Override
+    public void add(String cookieId, int count) {
+        if (count == 0) {
+            return;
+        }
+        long high = CookieIdCodec.packHigh(cookieId);
+        long low = CookieIdCodec.packLow(cookieId);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            addUnpacked(cookieId, count);
+        } else {
+            addPacked(high, low, count);
+        }
+    }
+
+    /**
+     * Passes every counted cookie with its total number of occurrences to the consumer.
+     * Cookies are passed in no particular order.
+     *
+     * @param consumer the consumer of the cookie identifiers and counts
+     */
+    public void forEach(ObjIntConsumer<String> consumer) {
+        forEachPacked((high, low, count) -> consumer.accept(CookieIdCodec.unpack(high, low), count));
+        unpackedCounts.forEach(consumer::accept);
+    }
+
+    /**
+     * Returns the identifiers of the cookies with the highest number of occurrences.
+     *
+     * @return the identifiers of the most active cookies, empty if nothing was counted
+     */
+    public List<String> getMostActiveCookieIds() {
+        return new ArrayList<>(summarize().mostActive);
+    }
+
+    /**
+     * Returns the highest number of occurrences of a single cookie.
+     *
+     * @return the highest count, 0 if nothing was counted
+     */
+    public int getMaxCount() {
+        return summarize().maxCount;
+    }
+
+    /**
+     * Returns the number of distinct cookies counted.
+     *
+     * @return the number of distinct cookies
+     */
+    public long size() {
+        return summarize().distinct;
+    }
+
+    /**
+     * Returns the k cookies with the highest number of occurrences, ordered by count and then by identifier.
+     * Only the identifiers that may enter the bounded heap of k entries are unpacked.
+     *
+     * @param k the maximum number of cookies to return
+     * @return the top cookies with their counts, the most active first
+     */
+    public List<Cookie> getTopCookies(int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<CountedCookie> byActivity = Comparator.comparingInt(CountedCookie::getCount)
+                .thenComparing(CountedCookie::getCookieId, Comparator.reverseOrder());
+        PriorityQueue<CountedCookie> heap = new PriorityQueue<>(k + 1, byActivity);
+        ObjIntConsumer<String> offer = (cookieId, count) -> {
+            CountedCookie cookie = new CountedCookie(cookieId, count);
+            if (heap.size() < k) {
+                heap.add(cookie);
+            } else if (byActivity.compare(cookie, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(cookie);
+            }
+        };
+        forEachPacked((high, low, count) -> {
+            if (heap.size() < k || count >= heap.peek().getCount()) {
+                offer.accept(CookieIdCodec.unpack(high, low), count);
+            }
+        });
+        unpackedCounts.forEach(offer::accept);
+
+        List<Cookie> topCookies = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            topCookies.add(heap.poll());
+        }
+        Collections.reverse(topCookies);
+        return topCookies;
+    }
+
+    /**
+     * Returns the number of run files spilled so far.
+     *
+     * @return the number of runs
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Deletes the run files and forgets all counts, keeping the off-heap table for the next counts.
+     */
+    public void clear() {
+        for (Run run : runs) {
+            if (!run.file.delete()) {
+                LOGGER.log(Level.WARNING, "Run file cannot be deleted " + run.file.getAbsolutePath());
+            }
+        }
+        runs.clear();
+        unpackedCounts.clear();
+        clearTable(0, capacity);
+        size = 0;
+        summary = null;
+    }
+
+    /**
+     * Deletes the run files and forgets all counts. The off-heap table is released with the counter.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Adds occurrences of a packed identifier to the table, spilling the table once it is too full.
+     *
+     * @param high  the packed first half
+     * @param low   the packed second half
+     * @param count the number of occurrences to add
+     */
+    private void addPacked(long high, long low, int count) {
+        summary = null;
+        int mask = capacity - 1;
+        for (int index = CookieIdDictionary.hash(high, low) & mask; ; index = (index + 1) & mask) {
+            int offset = index * SLOT_SIZE;
+            int current = table.getInt(offset + COUNT_OFFSET);
+            if (current == 0) {
+                table.putLong(offset, high);
+                table.putLong(offset + Long.BYTES, low);
+                table.putInt(offset + COUNT_OFFSET, count);
+                if (++size > spillThreshold) {
+                    spill();
+                }
+                return;
+            }
+            if (table.getLong(offset) == high && table.getLong(offset + Long.BYTES) == low) {
+                table.putInt(offset + COUNT_OFFSET, current + count);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds occurrences of an identifier that cannot be packed.
+     *
+     * @param cookieId the cookie identifier
+     * @param count    the number of occurrences to add
+     */
+    private void addUnpacked(String cookieId, int count) {
+        summary = null;
+        unpackedCounts.merge(cookieId, count, Integer::sum);
+    }
+
+    /**
+     * Passes every packed identifier with its total count to the consumer. Without runs, the table is read
+     * directly; otherwise the table is spilled as the last run and all runs are merged.
+     *
+     * @param consumer the consumer of the packed identifiers and counts
+     */
+    private void forEachPacked(PackedCountConsumer consumer) {
+        if (runs.isEmpty()) {
+            for (int index = 0; index < capacity; index++) {
+                int offset = index * SLOT_SIZE;
+                int count = table.getInt(offset + COUNT_OFFSET);
+                if (count != 0) {
+                    consumer.accept(table.getLong(offset), table.getLong(offset + Long.BYTES), count);
+                }
+            }
+            return;
+        }
+        spill();
+        try {
+            while (runs.size() > MAX_MERGE_FAN_IN) {
+                List<Run> batch = new ArrayList<>(runs.subList(0, MAX_MERGE_FAN_IN));
+                RunWriter writer = new RunWriter(createRunFile());
+                try (writer) {
+                    merge(batch, writer);
+                }
+                runs.removeAll(batch);
+                runs.add(writer.toRun());
+                for (Run run : batch) {
+                    run.file.delete();
+                }
+            }
+            merge(runs, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Computes the highest count, the most active identifiers and the number of distinct identifiers
+     * unless they are known from a previous query.
+     *
+     * @return the summary of the current counts
+     */
+    private Summary summarize() {
+        if (summary != null) {
+            return summary;
+        }
+        Summary current = new Summary();
+        forEachPacked((high, low, count) -> current.accept(count, () -> CookieIdCodec.unpack(high, low)));
+        unpackedCounts.forEach((cookieId, count) -> current.accept(count, () -> cookieId));
+        summary = current;
+        return current;
+    }
+
+    /**
+     * Sorts the used slots of the table by packed identifier, writes them to a new run file and empties the table.
+     */
+    private void spill() {
+        if (size == 0) {
+            return;
+        }
+        int used = 0;
+        for (int index = 0; index < capacity; index++) {
+            int offset = index * SLOT_SIZE;
+            if (table.getInt(offset + COUNT_OFFSET) != 0) {
+                if (index != used) {
+                    copySlot(index, used);
+                    table.putInt(offset + COUNT_OFFSET, 0);
+                }
+                used++;
+            }
+        }
+        sortSlots(0, used - 1);
+
+        try {
+            RunWriter writer = new RunWriter(createRunFile());
+            try (writer) {
+                for (int index = 0; index < used; index++) {
+                    int offset = index * SLOT_SIZE;
+                    writer.accept(table.getLong(offset), table.getLong(offset + Long.BYTES),
+                            table.getInt(offset + COUNT_OFFSET));
+                }
+            }
+            runs.add(writer.toRun());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        clearTable(0, used);
+        size = 0;
+    }
+
+    /**
+     * Creates an empty run file in the spill directory.
+     *
+     * @return the run file
+     * @throws IOException if the file cannot be created
+     */
+    private File createRunFile() throws IOException {
+        File file = spillDirectory != null
+                ? Files.createTempFile(spillDirectory.toPath(), "cookie-counts", ".run").toFile()
+                : Files.createTempFile("cookie-counts", ".run").toFile();
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Merges sorted runs, passing every packed identifier once with the sum of its counts in all runs.
+     *
+     * @param sources  the runs to merge
+     * @param consumer the consumer of the merged identifiers and counts, in ascending order of packed identifier
+     * @throws IOException if a run cannot be read
+     */
+    private static void merge(List<Run> sources, PackedCountConsumer consumer) throws IOException {
+        PriorityQueue<RunCursor> cursors = new PriorityQueue<>(sources.size());
+        try {
+            for (Run run : sources) {
+                RunCursor cursor = new RunCursor(run);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+            while (!cursors.isEmpty()) {
+                RunCursor first = cursors.poll();
+                long high = first.high;
+                long low = first.low;
+                int count = first.count;
+                requeue(cursors, first);
+                while (!cursors.isEmpty() && cursors.peek().high == high && cursors.peek().low == low) {
+                    RunCursor next = cursors.poll();
+                    count += next.count;
+                    requeue(cursors, next);
+                }
+                consumer.accept(high, low, count);
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Moves the cursor to its next record and puts it back into the queue, or closes it at the end of its run.
+     *
+     * @param cursors the queue of open cursors
+     * @param cursor  the cursor just consumed
+     * @throws IOException if the run cannot be read
+     */
+    private static void requeue(PriorityQueue<RunCursor> cursors, RunCursor cursor) throws IOException {
+        if (cursor.advance()) {
+            cursors.add(cursor);
+        } else {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Sorts the slots in the given inclusive index range by packed identifier with an in-place quicksort.
+     *
+     * @param from the first slot index
+     * @param to   the last slot index
+     */
+    private void sortSlots(int from, int to) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            long pivotHigh = table.getLong(middle * SLOT_SIZE);
+            long pivotLow = table.getLong(middle * SLOT_SIZE + Long.BYTES);
+            int left = from;
+            int right = to;
+            while (left <= right) {
+                while (compareSlot(left, pivotHigh, pivotLow) < 0) {
+                    left++;
+                }
+                while (compareSlot(right, pivotHigh, pivotLow) > 0) {
+                    right--;
+                }
+                if (left <= right) {
+                    swapSlots(left++, right--);
+                }
+            }
+            if (right - from < to - left) {
+                sortSlots(from, right);
+                from = left;
+            } else {
+                sortSlots(left, to);
+                to = right;
+            }
+        }
+    }
+
+    /**
+     * Compares the packed identifier of a slot with the given one.
+     *
+     * @param index the slot index
+     * @param high  the packed first half to compare with
+     * @param low   the packed second half to compare with
+     * @return a negative number, zero or a positive number as the slot sorts before, with or after the identifier
+     */
+    private int compareSlot(int index, long high, long low) {
+        int offset = index * SLOT_SIZE;
+        int result = Long.compare(table.getLong(offset), high);
+        return result != 0 ? result : Long.compare(table.getLong(offset + Long.BYTES), low);
+    }
+
+    /**
+     * Exchanges the contents of two slots.
+     *
+     * @param first  the first slot index
+     * @param second the second slot index
+     */
+    private void swapSlots(int first, int second) {
+        int a = first * SLOT_SIZE;
+        int b = second * SLOT_SIZE;
+        long high = table.getLong(a);
+        long low = table.getLong(a + Long.BYTES);
+        int count = table.getInt(a + COUNT_OFFSET);
+        table.putLong(a, table.getLong(b));
+        table.putLong(a + Long.BYTES, table.getLong(b + Long.BYTES));
+        table.putInt(a + COUNT_OFFSET, table.getInt(b + COUNT_OFFSET));
+        table.putLong(b, high);
+        table.putLong(b + Long.BYTES, low);
+        table.putInt(b + COUNT_OFFSET, count);
+    }
+
+    /**
+     * Copies the contents of a slot into another one.
+     *
+     * @param source the source slot index
+     * @param target the target slot index
+     */
+    private void copySlot(int source, int target) {
+        int from = source * SLOT_SIZE;
+        int to = target * SLOT_SIZE;
+        table.putLong(to, table.getLong(from));
+        table.putLong(to + Long.BYTES, table.getLong(from + Long.BYTES));
+        table.putInt(to + COUNT_OFFSET, table.getInt(from + COUNT_OFFSET));
+    }
+
+    /**
+     * Marks the slots in the given index range as empty.
+     *
+     * @param from the first slot index
+     * @param to   the exclusive last slot index
+     */
+    private void clearTable(int from, int to) {
+        for (int index = from; index < to; index++) {
+            table.putInt(index * SLOT_SIZE + COUNT_OFFSET, 0);
+        }
+    }
+
+    /**
+     * The PackedCountConsumer interface receives a packed identifier with its count.
+     */
+    private interface PackedCountConsumer {
+        void accept(long high, long low, int count);
+    }
+
+    /**
+     * The Run class describes a run file holding records sorted by packed identifier.
+     */
+    private static final class Run {
+        private final File file;
+        private final long records;
+
+        private Run(File file, long records) {
+            this.file = file;
+            this.records = records;
+        }
+    }
+
+    /**
+     * The RunWriter class writes records of packed identifier and count to a run file.
+     */
+    private static final class RunWriter implements PackedCountConsumer, Closeable {
+        private final File file;
+        private final DataOutputStream out;
+        private long records;
+
+        private RunWriter(File file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        @Override
+        public void accept(long high, long low, int count) {
+            try {
+                out.writeLong(high);
+                out.writeLong(low);
+                out.writeInt(count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            records++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private Run toRun() {
+            return new Run(file, records);
+        }
+    }
+
+    /**
+     * The RunCursor class reads the records of a run file in order.
+     */
+    private static final class RunCursor implements Comparable<RunCursor>, Closeable {
+        private final DataInputStream in;
+        private long remaining;
+        private long high;
+        private long low;
+        private int count;
+
+        private RunCursor(Run run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file)));
+            this.remaining = run.records;
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return true if a record was read, false at the end of the run
+         * @throws IOException if the run cannot be read
+         */
+        private boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            high = in.readLong();
+            low = in.readLong();
+            count = in.readInt();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunCursor other) {
+            int result = Long.compare(high, other.high);
+            return result != 0 ? result : Long.compare(low, other.low);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * The Summary class collects the highest count and the most active identifiers in a single pass.
+     */
+    private static final class Summary {
+        private final List<String> mostActive = new ArrayList<>();
+        private int maxCount;
+        private long distinct;
+
+        /**
+         * Takes an identifier into account, unpacking it only if it is among the most active so far.
+         *
+         * @param count    the total count of the identifier
+         * @param cookieId the supplier of the identifier
+         */
+        private void accept(int count, Supplier<String> cookieId) {
+            distinct++;
+            if (count > maxCount) {
+                maxCount = count;
+                mostActive.clear();
+            }
+            if (count == maxCount) {
+                mostActive.add(cookieId.get());
+            }
+        }
+    }
+}
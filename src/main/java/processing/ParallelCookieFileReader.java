@@ -0,0 +1,259 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface by processing a single file on several threads.
+ * Each file is split into byte ranges aligned to line boundaries, every range is memory-mapped and scanned
+ * by its own worker into a worker-local map, and the maps are merged in file order at the end,
+ * so the result is identical to the one of the sequential readers.
+ */
+public class ParallelCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(ParallelCookieFileReader.class.getName());
+
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+    private static final int BOUNDARY_BUFFER_SIZE = 4096;
+
+    private final int parallelism;
+    private final long maxChunkSize;
+
+    /**
+     * Constructs a new ParallelCookieFileReader that uses one thread per available processor.
+     */
+    public ParallelCookieFileReader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new ParallelCookieFileReader with the given parallelism level.
+     *
+     * @param parallelism the number of threads used to process a file
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public ParallelCookieFileReader(int parallelism) {
+        this(parallelism, MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a new ParallelCookieFileReader with the given parallelism level and maximum chunk size.
+     *
+     * @param parallelism  the number of threads used to process a file
+     * @param maxChunkSize the maximum number of bytes processed by a single task
+     * @throws IllegalArgumentException if parallelism or maxChunkSize is not positive
+     */
+    ParallelCookieFileReader(int parallelism, long maxChunkSize) {
+        if (parallelism < 1 || maxChunkSize < 1 || maxChunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Incorrect parallelism " + parallelism +
+                    " or chunk size " + maxChunkSize);
+        }
+        this.parallelism = parallelism;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * Reads cookie data from the given collection of CSV files and returns cookies active on the target date.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        readRecords(files, DayRange.of(targetDate), ChunkAggregation.cookies(cookies));
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date without retaining the timestamps.
+     * Every worker counts into its own counter, and the counters are merged at the end.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        readRecords(files, DayRange.of(targetDate), ChunkAggregation.counts(counter));
+        return counter;
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date into the given sink.
+     * Every worker counts into its own counter, and the counters are copied into the sink in file order.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        readRecords(files, DayRange.of(targetDate), ChunkAggregation.sink(sink));
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates in a single pass over the files.
+     *
+     * @param files the collection of CSV files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        DayCounters counters = new DayCounters(dates);
+        readRecords(files, counters.getSpan(), ChunkAggregation.dayCounts(counters, dates));
+        return counters.toMap();
+    }
+
+    /**
+     * Reads every file in parallel chunks and aggregates the records of the target day.
+     *
+     * @param files       the collection of CSV files to be read
+     * @param day         the target day
+     * @param aggregation the aggregation of the chunk results
+     * @param <T>         the type of the partial chunk results
+     */
+    private <T> void readRecords(Collection<File> files, DayRange day, ChunkAggregation<T> aggregation) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            for (File file : files) {
+                if (CSVCookieFileReader.isValidFile(file)) {
+                    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                        LOGGER.log(Level.INFO, "Start reading file " + file.getAbsolutePath() +
+                                " on " + parallelism + " threads");
+                        readChannel(channel, day, executor, aggregation, ReadMetrics.global().file(file));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        LOGGER.log(Level.SEVERE, "Reading interrupted " + file.getAbsolutePath());
+                        break;
+                    } catch (Exception e) {
+                        LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " +
+                                e.getMessage());
+                    }
+                } else {
+                    CSVCookieFileReader.logInvalidFile(file);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the file into chunks, scans them on the executor and merges the partial results in file order.
+     *
+     * @param channel     the channel of the file to read
+     * @param day         the target day
+     * @param executor    the executor running the chunk tasks
+     * @param aggregation the aggregation of the chunk results
+     * @param metrics     the metrics of the file
+     * @param <T>         the type of the partial chunk results
+     * @throws IOException          if the file cannot be read
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws ExecutionException   if a chunk task fails
+     */
+    private <T> void readChannel(FileChannel channel, DayRange day, ExecutorService executor,
+                                 ChunkAggregation<T> aggregation, FileMetrics metrics)
+            throws IOException, InterruptedException, ExecutionException {
+        long[] boundaries = splitIntoChunks(channel);
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            long start = boundaries[i];
+            long end = boundaries[i + 1];
+            tasks.add(() -> readChunk(channel, start, end, day, aggregation, metrics));
+        }
+
+        for (Future<T> future : executor.invokeAll(tasks)) {
+            aggregation.merge(future.get());
+        }
+    }
+
+    /**
+     * Scans the records of a single chunk into a worker-local partial result.
+     *
+     * @param channel     the channel of the file to read
+     * @param start       the inclusive start offset of the chunk, at a line start
+     * @param end         the exclusive end offset of the chunk, at a line start or the end of the file
+     * @param day         the target day
+     * @param aggregation the aggregation of the chunk results
+     * @param metrics     the metrics of the file
+     * @param <T>         the type of the partial chunk results
+     * @return the partial result of the chunk
+     * @throws IOException if the chunk cannot be mapped
+     */
+    private static <T> T readChunk(FileChannel channel, long start, long end, DayRange day,
+                                   ChunkAggregation<T> aggregation, FileMetrics metrics) throws IOException {
+        T partial = aggregation.createPartial();
+        long mapStart = System.nanoTime();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        metrics.addIoNanos(System.nanoTime() - mapStart);
+        CsvRecordScanner.scan(buffer, 0, (int) (end - start), day, (chunk, idStart, idEnd, epochSecond) ->
+                aggregation.accept(partial, chunk, idStart, idEnd, epochSecond), metrics);
+        return partial;
+    }
+
+    /**
+     * Computes the chunk boundaries of the file. The first chunk starts after the header and
+     * every other boundary is moved forward to the next line start.
+     *
+     * @param channel the channel of the file to split
+     * @return the ascending offsets of the chunk boundaries, including the start and the end of the data
+     * @throws IOException if the file cannot be read
+     */
+    private long[] splitIntoChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long dataStart = nextLineStart(channel, 0);
+        long dataSize = size - dataStart;
+        long chunkCount = Math.max(parallelism, (dataSize + maxChunkSize - 1) / maxChunkSize);
+        long chunkSize = Math.max(1, (dataSize + chunkCount - 1) / chunkCount);
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(dataStart);
+        long previous = dataStart;
+        while (previous < size) {
+            long next = previous + chunkSize >= size ? size : nextLineStart(channel, previous + chunkSize - 1);
+            if (next - previous > MAX_CHUNK_SIZE) {
+                throw new IOException("Line is longer than the chunk size at offset " + previous);
+            }
+            boundaries.add(next);
+            previous = next;
+        }
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Returns the offset right after the first line terminator at or after the given position.
+     *
+     * @param channel  the channel of the file to read
+     * @param position the position to start from
+     * @return the offset of the next line start, or the file size if there is none
+     * @throws IOException if the file cannot be read
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_BUFFER_SIZE);
+        long offset = position;
+        int read;
+        while ((read = channel.read(buffer.clear(), offset)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return channel.size();
+    }
+}
@@ -0,0 +1,561 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface as a pipeline of three stages running on their own threads,
+ * so the disk is read while earlier data is parsed and counted:
+ * <ul>
+ *     <li>the I/O stage reads the files ahead into large direct buffers, cut at the last complete line;</li>
+ *     <li>the parse stage scans the buffers into batches of (cookie identifier, epoch second) records;</li>
+ *     <li>the aggregation stage counts the batches into stage-local partial results, merged at the end.</li>
+ * </ul>
+ * The stages hand whole buffers and batches over through bounded rings. All buffers and batches are allocated
+ * once per read and recycled through rings of free items, so a stage that runs ahead blocks until the next stage
+ * returns an item, which bounds memory and provides backpressure. The number of threads of every stage is tunable,
+ * and the {@link StageMetrics} of the last read show which stage is the bottleneck. Records are not kept in file
+ * order across threads, so cookies and their timestamps may be returned in another order than by the sequential
+ * readers; the counts are the same.
+ */
+public class PipelinedCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(PipelinedCookieFileReader.class.getName());
+
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    static final int DEFAULT_RING_SIZE = 8;
+    private static final int BATCH_RECORDS = 8192;
+
+    private final int ioThreads;
+    private final int parseThreads;
+    private final int aggregateThreads;
+    private final int blockSize;
+    private final int ringSize;
+    private volatile List<StageMetrics> lastStageMetrics = List.of();
+
+    /**
+     * Constructs a new PipelinedCookieFileReader that parses on one thread per available processor.
+     */
+    public PipelinedCookieFileReader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new PipelinedCookieFileReader with one I/O thread, the given number of parse threads
+     * and one aggregation thread.
+     *
+     * @param parseThreads the number of threads of the parse stage
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public PipelinedCookieFileReader(int parseThreads) {
+        this(1, parseThreads, 1, DEFAULT_BLOCK_SIZE, DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * Constructs a new PipelinedCookieFileReader.
+     *
+     * @param ioThreads        the number of threads of the I/O stage, each reading whole files
+     * @param parseThreads     the number of threads of the parse stage
+     * @param aggregateThreads the number of threads of the aggregation stage
+     * @param blockSize        the size of a read buffer, which also limits the length of a line
+     * @param ringSize         the number of buffers and batches that may wait between two stages
+     * @throws IllegalArgumentException if a number of threads is not positive, the block size is smaller
+     *                                  than 1 KiB or the ring holds fewer than two items
+     */
+    public PipelinedCookieFileReader(int ioThreads, int parseThreads, int aggregateThreads, int blockSize,
+                                     int ringSize) {
+        if (ioThreads < 1 || parseThreads < 1 || aggregateThreads < 1 || blockSize < 1024 || ringSize < 2) {
+            throw new IllegalArgumentException("Incorrect pipeline " + ioThreads + "/" + parseThreads + "/"
+                    + aggregateThreads + " threads, block size " + blockSize + " or ring size " + ringSize);
+        }
+        this.ioThreads = ioThreads;
+        this.parseThreads = parseThreads;
+        this.aggregateThreads = aggregateThreads;
+        this.blockSize = blockSize;
+        this.ringSize = ringSize;
+    }
+
+    /**
+     * Reads cookie data from the given collection of CSV files and returns cookies active on the target date.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        readRecords(files, DayRange.of(targetDate), ChunkAggregation.cookies(cookies));
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date without retaining the timestamps.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        readRecords(files, DayRange.of(targetDate), ChunkAggregation.counts(counter));
+        return counter;
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date into the given sink.
+     * Every aggregation thread counts into its own counter, and the counters are copied into the sink at the end.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        readRecords(files, DayRange.of(targetDate), ChunkAggregation.sink(sink));
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates in a single pass over the files.
+     *
+     * @param files the collection of CSV files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        DayCounters counters = new DayCounters(dates);
+        readRecords(files, counters.getSpan(), ChunkAggregation.dayCounts(counters, dates));
+        return counters.toMap();
+    }
+
+    /**
+     * Returns the metrics of the I/O, parse and aggregation stages of the last read.
+     *
+     * @return the metrics of every stage in pipeline order, empty before the first read
+     */
+    public List<StageMetrics> getStageMetrics() {
+        return lastStageMetrics;
+    }
+
+    /**
+     * Runs the pipeline over the valid files and aggregates the records of the target day.
+     *
+     * @param files       the collection of CSV files to be read
+     * @param day         the target day
+     * @param aggregation the aggregation of the records
+     * @param <T>         the type of the partial results of the aggregation threads
+     */
+    private <T> void readRecords(Collection<File> files, DayRange day, ChunkAggregation<T> aggregation) {
+        List<File> valid = new ArrayList<>();
+        for (File file : files) {
+            if (CSVCookieFileReader.isValidFile(file)) {
+                valid.add(file);
+            } else {
+                CSVCookieFileReader.logInvalidFile(file);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+        Pipeline<T> pipeline = new Pipeline<>(valid, day, aggregation);
+        pipeline.run();
+        lastStageMetrics = List.of(pipeline.ioMetrics, pipeline.parseMetrics, pipeline.aggregateMetrics);
+        for (StageMetrics metrics : lastStageMetrics) {
+            LOGGER.log(Level.INFO, "Pipeline stage " + metrics);
+        }
+    }
+
+    /**
+     * The FileTask class holds the state of a file shared by the stages.
+     */
+    private static final class FileTask {
+        private final File file;
+        private final FileMetrics metrics;
+        private final AtomicLong stopBlock = new AtomicLong(Long.MAX_VALUE);
+
+        private FileTask(File file) {
+            this.file = file;
+            this.metrics = ReadMetrics.global().file(file);
+        }
+
+        /**
+         * Records that the given block reached records older than the target day, so the blocks after it
+         * hold no record of the day, since records are sorted newest first.
+         *
+         * @param sequence the number of the block within the file
+         */
+        private void stopAfter(long sequence) {
+            stopBlock.accumulateAndGet(sequence, Math::min);
+        }
+
+        private boolean isStoppedBefore(long sequence) {
+            return stopBlock.get() < sequence;
+        }
+    }
+
+    /**
+     * The Block class is a read buffer handed from the I/O stage to the parse stage.
+     */
+    private static final class Block {
+        private final ByteBuffer buffer;
+        private FileTask file;
+        private long sequence;
+        private int limit;
+
+        private Block(int size) {
+            this.buffer = size > 0 ? ByteBuffer.allocateDirect(size) : null;
+        }
+    }
+
+    /**
+     * The RecordBatch class is a batch of records handed from the parse stage to the aggregation stage.
+     * The identifiers are copied one after the other into a heap buffer.
+     */
+    private static final class RecordBatch {
+        private final ByteBuffer ids;
+        private final int[] ends;
+        private final long[] epochSeconds;
+        private int size;
+
+        private RecordBatch(int bytes, int records) {
+            this.ids = ByteBuffer.allocate(bytes);
+            this.ends = new int[records];
+            this.epochSeconds = new long[records];
+        }
+
+        /**
+         * Appends a record if there is room for it.
+         *
+         * @param buffer      the scanned buffer
+         * @param idStart     the inclusive start index of the cookie identifier
+         * @param idEnd       the exclusive end index of the cookie identifier
+         * @param epochSecond the timestamp of the record
+         * @return true if the record was appended, false if the batch is full
+         */
+        private boolean add(ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+            int start = size > 0 ? ends[size - 1] : 0;
+            int length = idEnd - idStart;
+            if (size == ends.length || start + length > ids.capacity()) {
+                return false;
+            }
+            ids.put(start, buffer, idStart, length);
+            ends[size] = start + length;
+            epochSeconds[size] = epochSecond;
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * The Pipeline class holds the rings and the stage threads of a single read.
+     *
+     * @param <T> the type of the partial results of the aggregation threads
+     */
+    private final class Pipeline<T> {
+        private final Block endOfBlocks = new Block(0);
+        private final RecordBatch endOfBatches = new RecordBatch(0, 0);
+
+        private final List<FileTask> files = new ArrayList<>();
+        private final AtomicInteger nextFile = new AtomicInteger();
+        private final DayRange day;
+        private final ChunkAggregation<T> aggregation;
+
+        private final BlockingQueue<Block> freeBlocks;
+        private final BlockingQueue<Block> filledBlocks;
+        private final BlockingQueue<RecordBatch> freeBatches;
+        private final BlockingQueue<RecordBatch> filledBatches;
+
+        private final StageMetrics ioMetrics = new StageMetrics("io");
+        private final StageMetrics parseMetrics = new StageMetrics("parse");
+        private final StageMetrics aggregateMetrics = new StageMetrics("aggregate");
+
+        private ExecutorService executor;
+
+        private Pipeline(List<File> files, DayRange day, ChunkAggregation<T> aggregation) {
+            for (File file : files) {
+                this.files.add(new FileTask(file));
+            }
+            this.day = day;
+            this.aggregation = aggregation;
+            int blocks = ringSize + ioThreads;
+            int batches = ringSize + parseThreads;
+            freeBlocks = new ArrayBlockingQueue<>(blocks);
+            filledBlocks = new ArrayBlockingQueue<>(blocks + parseThreads);
+            freeBatches = new ArrayBlockingQueue<>(batches);
+            filledBatches = new ArrayBlockingQueue<>(batches + aggregateThreads);
+            for (int i = 0; i < blocks; i++) {
+                freeBlocks.add(new Block(blockSize));
+            }
+            for (int i = 0; i < batches; i++) {
+                freeBatches.add(new RecordBatch(blockSize, BATCH_RECORDS));
+            }
+        }
+
+        /**
+         * Starts the threads of every stage, ends the stages one after the other once their input is exhausted
+         * and merges the partial results of the aggregation threads.
+         */
+        private void run() {
+            executor = Executors.newFixedThreadPool(ioThreads + parseThreads + aggregateThreads);
+            try {
+                List<Future<?>> readers = new ArrayList<>();
+                List<Future<?>> parsers = new ArrayList<>();
+                List<Future<T>> aggregators = new ArrayList<>();
+                for (int i = 0; i < ioThreads; i++) {
+                    readers.add(executor.submit(guarded(this::readFiles)));
+                }
+                for (int i = 0; i < parseThreads; i++) {
+                    parsers.add(executor.submit(guarded(this::parseBlocks)));
+                }
+                for (int i = 0; i < aggregateThreads; i++) {
+                    aggregators.add(executor.submit(guarded(this::aggregateBatches)));
+                }
+
+                for (Future<?> reader : readers) {
+                    reader.get();
+                }
+                for (int i = 0; i < parseThreads; i++) {
+                    filledBlocks.put(endOfBlocks);
+                }
+                for (Future<?> parser : parsers) {
+                    parser.get();
+                }
+                for (int i = 0; i < aggregateThreads; i++) {
+                    filledBatches.put(endOfBatches);
+                }
+                for (Future<T> aggregator : aggregators) {
+                    aggregation.merge(aggregator.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.log(Level.SEVERE, "Reading interrupted");
+            } catch (ExecutionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                LOGGER.log(Level.SEVERE, "Error reading files: " + cause.getMessage());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Wraps a stage task so that a failing thread stops the whole pipeline instead of leaving the other
+         * stages blocked on their rings.
+         *
+         * @param task the stage task
+         * @param <R>  the type of the result of the task
+         * @return the wrapped task
+         */
+        private <R> Callable<R> guarded(Callable<R> task) {
+            return () -> {
+                try {
+                    return task.call();
+                } catch (Exception e) {
+                    if (!(e instanceof InterruptedException)) {
+                        executor.shutdownNow();
+                    }
+                    throw e;
+                }
+            };
+        }
+
+        /**
+         * Runs an I/O thread, which reads the files it takes from the shared list one after the other.
+         *
+         * @return nothing
+         * @throws InterruptedException if the thread is interrupted while waiting for a free block
+         */
+        private Void readFiles() throws InterruptedException {
+            int index;
+            while ((index = nextFile.getAndIncrement()) < files.size()) {
+                readFile(files.get(index));
+            }
+            return null;
+        }
+
+        /**
+         * Reads a file into blocks that end at the last complete line; the rest of the line is carried over
+         * to the start of the next block. Reading stops early once the parse stage found the records to be
+         * older than the target day.
+         *
+         * @param task the file
+         * @throws InterruptedException if the thread is interrupted while waiting for a free block
+         */
+        private void readFile(FileTask task) throws InterruptedException {
+            LOGGER.log(Level.INFO, "Start reading file " + task.file.getAbsolutePath() + " through the pipeline");
+            Block block = null;
+            try (FileChannel channel = FileChannel.open(task.file.toPath(), StandardOpenOption.READ)) {
+                long sequence = 0;
+                long busyNanos = 0;
+                block = takeFreeBlock(task, sequence);
+                while (!task.isStoppedBefore(sequence)) {
+                    long readStart = System.nanoTime();
+                    int read = channel.read(block.buffer);
+                    long readNanos = System.nanoTime() - readStart;
+                    task.metrics.addIoNanos(readNanos);
+                    busyNanos += readNanos;
+                    if (read < 0) {
+                        if (block.buffer.position() > 0) {
+                            block.limit = block.buffer.position();
+                            ioMetrics.addItem(block.limit, busyNanos);
+                            filledBlocks.put(block);
+                            block = null;
+                        }
+                        break;
+                    }
+                    if (block.buffer.hasRemaining()) {
+                        continue;
+                    }
+
+                    Block next = takeFreeBlock(task, sequence + 1);
+                    long cutStart = System.nanoTime();
+                    int position = block.buffer.position();
+                    int end = CsvRecordScanner.lastLineEnd(block.buffer, position);
+                    if (end == 0) {
+                        freeBlocks.put(next);
+                        throw new IOException("Line is longer than the block size in block " + sequence);
+                    }
+                    next.buffer.put(0, block.buffer, end, position - end).position(position - end);
+                    block.limit = end;
+                    ioMetrics.addItem(end, busyNanos + System.nanoTime() - cutStart);
+                    busyNanos = 0;
+                    filledBlocks.put(block);
+                    block = next;
+                    sequence++;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error reading file " + task.file.getAbsolutePath() + ": " + e.getMessage());
+            } finally {
+                if (block != null) {
+                    freeBlocks.put(block);
+                }
+            }
+        }
+
+        /**
+         * Takes a free block for the next part of a file, waiting for the parse stage to return one.
+         *
+         * @param task     the file
+         * @param sequence the number of the block within the file
+         * @return the cleared block
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        private Block takeFreeBlock(FileTask task, long sequence) throws InterruptedException {
+            long waitStart = System.nanoTime();
+            Block block = freeBlocks.take();
+            ioMetrics.addOutputWait(System.nanoTime() - waitStart);
+            block.buffer.clear();
+            block.file = task;
+            block.sequence = sequence;
+            return block;
+        }
+
+        /**
+         * Runs a parse thread, which scans the filled blocks into record batches.
+         *
+         * @return nothing
+         * @throws InterruptedException if the thread is interrupted while waiting for a block or a batch
+         */
+        private Void parseBlocks() throws InterruptedException {
+            long[] waitNanos = new long[1];
+            RecordBatch[] batch = {takeFreeBatch(waitNanos)};
+            InterruptedException[] interrupted = new InterruptedException[1];
+            CsvRecordScanner.RecordHandler handler = (buffer, idStart, idEnd, epochSecond) -> {
+                if (interrupted[0] != null || batch[0].add(buffer, idStart, idEnd, epochSecond)) {
+                    return;
+                }
+                try {
+                    filledBatches.put(batch[0]);
+                    batch[0] = takeFreeBatch(waitNanos);
+                    batch[0].add(buffer, idStart, idEnd, epochSecond);
+                } catch (InterruptedException e) {
+                    interrupted[0] = e;
+                }
+            };
+
+            while (true) {
+                long waitStart = System.nanoTime();
+                Block block = filledBlocks.take();
+                parseMetrics.addInputWait(System.nanoTime() - waitStart);
+                if (block == endOfBlocks) {
+                    break;
+                }
+                long parseStart = System.nanoTime();
+                waitNanos[0] = 0;
+                FileTask task = block.file;
+                int limit = block.limit;
+                if (!task.isStoppedBefore(block.sequence)) {
+                    int from = block.sequence == 0 ? CsvRecordScanner.skipLine(block.buffer, 0, limit) : 0;
+                    if (!CsvRecordScanner.scan(block.buffer, from, limit, day, handler, task.metrics)) {
+                        task.stopAfter(block.sequence);
+                    }
+                }
+                freeBlocks.put(block);
+                if (interrupted[0] != null) {
+                    throw interrupted[0];
+                }
+                parseMetrics.addItem(limit, System.nanoTime() - parseStart - waitNanos[0]);
+            }
+            if (batch[0].size > 0) {
+                filledBatches.put(batch[0]);
+            } else {
+                freeBatches.put(batch[0]);
+            }
+            return null;
+        }
+
+        /**
+         * Takes a free batch, waiting for the aggregation stage to return one.
+         *
+         * @param waitNanos the waiting time of the calling thread, increased by the time spent waiting
+         * @return the emptied batch
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        private RecordBatch takeFreeBatch(long[] waitNanos) throws InterruptedException {
+            long waitStart = System.nanoTime();
+            RecordBatch batch = freeBatches.take();
+            long waited = System.nanoTime() - waitStart;
+            parseMetrics.addOutputWait(waited);
+            waitNanos[0] += waited;
+            batch.size = 0;
+            return batch;
+        }
+
+        /**
+         * Runs an aggregation thread, which counts the record batches into its own partial result.
+         *
+         * @return the partial result of the thread
+         * @throws InterruptedException if the thread is interrupted while waiting for a batch
+         */
+        private T aggregateBatches() throws InterruptedException {
+            T partial = aggregation.createPartial();
+            while (true) {
+                long waitStart = System.nanoTime();
+                RecordBatch batch = filledBatches.take();
+                aggregateMetrics.addInputWait(System.nanoTime() - waitStart);
+                if (batch == endOfBatches) {
+                    return partial;
+                }
+                long aggregateStart = System.nanoTime();
+                int start = 0;
+                for (int i = 0; i < batch.size; i++) {
+                    aggregation.accept(partial, batch.ids, start, batch.ends[i], batch.epochSeconds[i]);
+                    start = batch.ends[i];
+                }
+                aggregateMetrics.addItem(start, System.nanoTime() - aggregateStart);
+                freeBatches.put(batch);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface by planning which files can contain the requested days
+ * before handing them to a delegate reader. Since every file is sorted newest first, its first record and its last
+ * record bound the time range of the whole file; both are read with one small read at the head and one at the tail.
+ * Files whose range does not intersect any requested day are skipped without being opened by the delegate, so a query
+ * over a month of hourly shards only reads the shards of the requested day. Files whose first or last record cannot
+ * be decoded, compressed files and anything that is not a regular file are always passed on.
+ */
+public class PruningCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(PruningCookieFileReader.class.getName());
+
+    /**
+     * The number of bytes read at the head and at the tail of a file, enough for the header and a record.
+     */
+    static final int PROBE_SIZE = 4096;
+
+    private final CookieFileReader delegate;
+
+    /**
+     * Constructs a new PruningCookieFileReader.
+     *
+     * @param delegate the reader of the files that may contain the requested days
+     */
+    public PruningCookieFileReader(CookieFileReader delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Reads cookie data from the files that may contain the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        return delegate.readFile(prune(files, List.of(DayRange.of(targetDate))), targetDate);
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date in the files that may contain it.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        return delegate.countCookies(prune(files, List.of(DayRange.of(targetDate))), targetDate);
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date into the given sink,
+     * reading only the files that may contain it.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        delegate.countCookies(prune(files, List.of(DayRange.of(targetDate))), targetDate, sink);
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates in the files that may contain
+     * at least one of them.
+     *
+     * @param files the collection of files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        return delegate.countCookiesByDay(prune(files, daysOf(dates)), dates);
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates in the files that may contain
+     * at least one of them, passing the counters of every file read to the consumer.
+     *
+     * @param files        the collection of files to be read
+     * @param dates        the dates for which to count the cookies
+     * @param fileConsumer the consumer of every file read and its counters
+     * @return the counters keyed by the number of days since 1970-01-01
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates,
+                                                      BiConsumer<File, Map<Long, CookieCounter>> fileConsumer) {
+        return delegate.countCookiesByDay(prune(files, daysOf(dates)), dates, fileConsumer);
+    }
+
+    /**
+     * Returns the UTC days of the given dates.
+     *
+     * @param dates the requested dates
+     * @return the day of every date
+     */
+    private static List<DayRange> daysOf(Collection<Date> dates) {
+        List<DayRange> days = new ArrayList<>();
+        for (Date date : dates) {
+            days.add(DayRange.of(date));
+        }
+        return days;
+    }
+
+    /**
+     * Selects the files whose time range intersects at least one of the given days, keeping their order.
+     *
+     * @param files the files to plan
+     * @param days  the requested days
+     * @return the files to read
+     */
+    static List<File> prune(Collection<File> files, Collection<DayRange> days) {
+        List<File> selected = new ArrayList<>(files.size());
+        for (File file : files) {
+            long[] range = timeRange(file);
+            if (range == null || intersects(range, days)) {
+                selected.add(file);
+            } else {
+                LOGGER.log(Level.INFO, "Skipping file outside of the requested days " + file.getAbsolutePath());
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Reads the timestamps of the last and the first record of a sorted CSV file.
+     *
+     * @param file the file to probe
+     * @return the oldest and the newest timestamp in epoch seconds, or null if the range is unknown
+     */
+    static long[] timeRange(File file) {
+        if (!file.isFile() || !file.getName().endsWith(".csv")) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            ByteBuffer head = read(raf, 0, (int) Math.min(PROBE_SIZE, length));
+            int firstStart = CsvRecordScanner.skipLine(head, 0, head.limit());
+            long newest = decodeLine(head, firstStart, lineEnd(head, firstStart, head.limit() == length));
+
+            long tailStart = Math.max(0, length - PROBE_SIZE);
+            ByteBuffer tail = read(raf, tailStart, (int) (length - tailStart));
+            int end = tail.limit();
+            while (end > 0 && (tail.get(end - 1) == '\n' || tail.get(end - 1) == '\r')) {
+                end--;
+            }
+            int lastStart = CsvRecordScanner.lastLineEnd(tail, end);
+            if (lastStart == 0 && tailStart > 0) {
+                return null;
+            }
+            long oldest = decodeLine(tail, lastStart, end);
+            if (newest == TimestampDecoder.INVALID_TIMESTAMP || oldest == TimestampDecoder.INVALID_TIMESTAMP) {
+                return null;
+            }
+            return new long[]{oldest, newest};
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "File cannot be probed " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a time range intersects any of the days.
+     *
+     * @param range the oldest and the newest timestamp in epoch seconds
+     * @param days  the requested days
+     * @return true if at least one day overlaps the range
+     */
+    private static boolean intersects(long[] range, Collection<DayRange> days) {
+        for (DayRange day : days) {
+            if (range[0] < day.getEnd() && range[1] >= day.getStart()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a byte range of the file into a new buffer.
+     *
+     * @param raf      the file to read
+     * @param position the offset of the range
+     * @param length   the number of bytes to read
+     * @return the buffer holding the bytes read, with its limit at the end of the data
+     * @throws IOException if the file cannot be read
+     */
+    private static ByteBuffer read(RandomAccessFile raf, long position, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        raf.seek(position);
+        raf.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Returns the end of the line starting at the given index, excluding the line terminator.
+     *
+     * @param buffer    the buffer holding the line
+     * @param from      the index of the line start
+     * @param wholeFile true if the buffer holds the whole file, so that the last line may lack a terminator
+     * @return the exclusive end index of the line, or -1 if the line is not complete within the buffer
+     */
+    static int lineEnd(ByteBuffer buffer, int from, boolean wholeFile) {
+        int end = from;
+        while (end < buffer.limit() && buffer.get(end) != '\n') {
+            end++;
+        }
+        if (end == buffer.limit() && !wholeFile) {
+            return -1;
+        }
+        return end > from && buffer.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    /**
+     * Decodes the timestamp of a single record.
+     *
+     * @param buffer the buffer holding the record
+     * @param from   the inclusive start index of the line
+     * @param to     the exclusive end index of the line, or -1 if the line is incomplete
+     * @return the timestamp in epoch seconds, or {@link TimestampDecoder#INVALID_TIMESTAMP} if it cannot be decoded
+     */
+    static long decodeLine(ByteBuffer buffer, int from, int to) {
+        if (to < 0 || to <= from) {
+            return TimestampDecoder.INVALID_TIMESTAMP;
+        }
+        int comma = -1;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == ',') {
+                if (comma >= 0) {
+                    return TimestampDecoder.INVALID_TIMESTAMP;
+                }
+                comma = i;
+            }
+        }
+        return comma < 0 ? TimestampDecoder.INVALID_TIMESTAMP : TimestampDecoder.decode(buffer, comma + 1, to);
+    }
+}
@@ -0,0 +1,262 @@
+package processing;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class collects the read metrics of all files read by the process: bytes, parsed and skipped lines,
+ * matched records, I/O and parse time per file, and the size of the aggregations. The readers record into
+ * the process-wide instance returned by {@link #global()}, which can be registered as an MXBean and printed
+ * as a JSON summary at the end of a run. I/O time covers explicit reads, mappings and decompression;
+ * page faults of mapped files are part of the parse time.
+ */
+public final class ReadMetrics implements ReadMetricsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(ReadMetrics.class.getName());
+
+    /**
+     * The name of the MXBean.
+     */
+    public static final String OBJECT_NAME = "processing:type=ReadMetrics";
+
+    /**
+     * The path under which reads of unnamed streams are recorded.
+     */
+    static final String STREAM_PATH = "<stream>";
+
+    private static final ReadMetrics GLOBAL = new ReadMetrics();
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final Map<String, FileMetrics> files = new ConcurrentHashMap<>();
+    private final AtomicLong distinctCookies = new AtomicLong();
+    private final AtomicLong peakDistinctCookies = new AtomicLong();
+
+    /**
+     * Constructs new empty metrics.
+     */
+    ReadMetrics() {
+    }
+
+    /**
+     * Returns the process-wide metrics the readers record into.
+     *
+     * @return the global metrics
+     */
+    public static ReadMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the metrics of the given file, creating them on first use.
+     *
+     * @param file the file being read
+     * @return the metrics of the file
+     */
+    public FileMetrics file(File file) {
+        return file(file.getAbsolutePath());
+    }
+
+    /**
+     * Returns the metrics of the given path, creating them on first use.
+     *
+     * @param path the path of the file being read
+     * @return the metrics of the file
+     */
+    public FileMetrics file(String path) {
+        return files.computeIfAbsent(path, FileMetrics::new);
+    }
+
+    /**
+     * Records the number of distinct cookies of a finished aggregation.
+     *
+     * @param distinct the number of distinct cookies
+     */
+    public void recordDistinctCookies(long distinct) {
+        distinctCookies.set(distinct);
+        peakDistinctCookies.accumulateAndGet(distinct, Math::max);
+    }
+
+    /**
+     * Returns the metrics of every file read so far.
+     *
+     * @return the file metrics in order of the paths
+     */
+    public List<FileMetrics> getFiles() {
+        List<FileMetrics> result = new ArrayList<>(files.values());
+        result.sort(Comparator.comparing(FileMetrics::getPath));
+        return result;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under {@link #OBJECT_NAME}, unless already registered.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by an earlier run in the same process
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Metrics cannot be registered: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Logs the number of skipped lines of every file with skipped lines, one line per file.
+     */
+    public void logSkippedLines() {
+        for (FileMetrics file : getFiles()) {
+            if (file.getLinesSkipped() > 0) {
+                StringBuilder message = new StringBuilder("Skipped ").append(file.getLinesSkipped())
+                        .append(" lines of ").append(file.getPath()).append(':');
+                for (SkipReason reason : SkipReason.values()) {
+                    message.append(' ').append(reason).append('=').append(file.getLinesSkipped(reason));
+                }
+                LOGGER.log(Level.WARNING, message.toString());
+            }
+        }
+    }
+
+    @Override
+    public long getBytesRead() {
+        return sum(FileMetrics::getBytesRead);
+    }
+
+    @Override
+    public long getLinesParsed() {
+        return sum(FileMetrics::getLinesParsed);
+    }
+
+    @Override
+    public long getLinesSkipped() {
+        return sum(FileMetrics::getLinesSkipped);
+    }
+
+    @Override
+    public long getMatchedRecords() {
+        return sum(FileMetrics::getMatchedRecords);
+    }
+
+    @Override
+    public long getIoMillis() {
+        return sum(FileMetrics::getIoNanos) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getParseMillis() {
+        return sum(FileMetrics::getParseNanos) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getDistinctCookies() {
+        return distinctCookies.get();
+    }
+
+    @Override
+    public long getPeakDistinctCookies() {
+        return peakDistinctCookies.get();
+    }
+
+    @Override
+    public Map<String, Long> getBytesReadByFile() {
+        Map<String, Long> bytes = new TreeMap<>();
+        for (FileMetrics file : files.values()) {
+            bytes.put(file.getPath(), file.getBytesRead());
+        }
+        return bytes;
+    }
+
+    @Override
+    public Map<String, Long> getLinesSkippedByReason() {
+        Map<String, Long> skipped = new TreeMap<>();
+        for (SkipReason reason : SkipReason.values()) {
+            skipped.put(reason.name(), sum(file -> file.getLinesSkipped(reason)));
+        }
+        return skipped;
+    }
+
+    @Override
+    public void reset() {
+        files.clear();
+        distinctCookies.set(0);
+        peakDistinctCookies.set(0);
+    }
+
+    /**
+     * Formats the metrics as a JSON object with the totals and the metrics of every file.
+     *
+     * @return the JSON summary
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"bytesRead\":").append(getBytesRead())
+                .append(",\"linesParsed\":").append(getLinesParsed())
+                .append(",\"linesSkipped\":").append(getLinesSkipped())
+                .append(",\"matchedRecords\":").append(getMatchedRecords())
+                .append(",\"ioMillis\":").append(getIoMillis())
+                .append(",\"parseMillis\":").append(getParseMillis())
+                .append(",\"distinctCookies\":").append(getDistinctCookies())
+                .append(",\"peakDistinctCookies\":").append(getPeakDistinctCookies())
+                .append(",\"files\":[");
+        String separator = "";
+        for (FileMetrics file : getFiles()) {
+            json.append(separator).append("{\"path\":");
+            appendString(json, file.getPath());
+            json.append(",\"bytesRead\":").append(file.getBytesRead())
+                    .append(",\"linesParsed\":").append(file.getLinesParsed())
+                    .append(",\"matchedRecords\":").append(file.getMatchedRecords())
+                    .append(",\"ioMillis\":").append(file.getIoNanos() / NANOS_PER_MILLI)
+                    .append(",\"parseMillis\":").append(file.getParseNanos() / NANOS_PER_MILLI)
+                    .append(",\"linesSkipped\":{");
+            String reasonSeparator = "";
+            for (SkipReason reason : SkipReason.values()) {
+                json.append(reasonSeparator).append('"').append(reason).append("\":").append(file.getLinesSkipped(reason));
+                reasonSeparator = ",";
+            }
+            json.append("}}");
+            separator = ",";
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Sums a metric over all files.
+     *
+     * @param metric the metric of a file
+     * @return the total
+     */
+    private long sum(ToLongFunction<FileMetrics> metric) {
+        long total = 0;
+        for (FileMetrics file : files.values()) {
+            total += metric.applyAsLong(file);
+        }
+        return total;
+    }
+
+    /**
+     * Appends a string as a quoted JSON string.
+     *
+     * @param json  the JSON being built
+     * @param value the string to append
+     */
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,84 @@
+package processing;
+
+import java.util.Map;
+
+/**
+ * The ReadMetricsMXBean interface exposes the totals of {@link ReadMetrics} over JMX.
+ */
+public interface ReadMetricsMXBean {
+
+    /**
+     * Returns the number of bytes scanned in all files.
+     *
+     * @return the number of bytes read
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the number of lines examined in all files, including skipped ones.
+     *
+     * @return the number of lines parsed
+     */
+    long getLinesParsed();
+
+    /**
+     * Returns the number of skipped lines in all files.
+     *
+     * @return the number of lines skipped
+     */
+    long getLinesSkipped();
+
+    /**
+     * Returns the number of records of the requested days in all files.
+     *
+     * @return the number of matched records
+     */
+    long getMatchedRecords();
+
+    /**
+     * Returns the time spent reading, mapping or inflating the files.
+     *
+     * @return the I/O time in milliseconds
+     */
+    long getIoMillis();
+
+    /**
+     * Returns the time spent scanning and aggregating the lines.
+     *
+     * @return the parse time in milliseconds
+     */
+    long getParseMillis();
+
+    /**
+     * Returns the number of distinct cookies of the last aggregation.
+     *
+     * @return the number of distinct cookies
+     */
+    long getDistinctCookies();
+
+    /**
+     * Returns the highest number of distinct cookies held by a single aggregation.
+     *
+     * @return the peak aggregation size
+     */
+    long getPeakDistinctCookies();
+
+    /**
+     * Returns the number of bytes scanned per file.
+     *
+     * @return the bytes read keyed by the file path
+     */
+    Map<String, Long> getBytesReadByFile();
+
+    /**
+     * Returns the number of skipped lines per reason.
+     *
+     * @return the lines skipped keyed by the reason
+     */
+    Map<String, Long> getLinesSkippedByReason();
+
+    /**
+     * Forgets all recorded metrics.
+     */
+    void reset();
+}
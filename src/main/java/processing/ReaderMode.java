@@ -0,0 +1,97 @@
+package processing;
+
+/**
+ * The ReaderMode enum lists the available CookieFileReader implementations
+ * that can be selected from the command line with the "-r" option.
+ */
+public enum ReaderMode {
+
+    /**
+     * Sequential line-by-line reading of CSV files, see {@link CSVCookieFileReader}.
+     */
+    CSV {
+        @Override
+        public CookieFileReader createReader(int parallelism) {
+            return new CSVCookieFileReader();
+        }
+    },
+
+    /**
+     * Binary search of the target day within sorted CSV files, see {@link SeekableCSVCookieFileReader}.
+     */
+    SEEK {
+        @Override
+        public CookieFileReader createReader(int parallelism) {
+            return new SeekableCSVCookieFileReader();
+        }
+    },
+
+    /**
+     * Zero-copy scanning of memory-mapped CSV files, see {@link MappedCookieFileReader}.
+     */
+    MAPPED {
+        @Override
+        public CookieFileReader createReader(int parallelism) {
+            return new MappedCookieFileReader();
+        }
+    },
+
+    /**
+     * Chunked processing of every file on several threads, see {@link ParallelCookieFileReader}.
+     */
+    PARALLEL {
+        @Override
+        public CookieFileReader createReader(int parallelism) {
+            return new ParallelCookieFileReader(parallelism);
+        }
+    },
+
+    /**
+     * Incremental reading of pipes, standard input and other read-once inputs, see {@link StreamingCookieFileReader}.
+     */
+    STREAM {
+        @Override
+        public CookieFileReader createReader(int parallelism) {
+            return new StreamingCookieFileReader();
+        }
+    },
+
+    /**
+     * Reading, parsing and counting as pipeline stages on separate threads, see {@link PipelinedCookieFileReader}.
+     */
+    PIPELINE {
+        @Override
+        public CookieFileReader createReader(int parallelism) {
+            return new PipelinedCookieFileReader(parallelism);
+        }
+    },
+
+    /**
+     * Scanning of memory-mapped CSV files with the Vector API when it is available, see {@link VectorizedCookieFileReader}.
+     */
+    VECTOR {
+        @Override
+        public CookieFileReader createReader(int parallelism) {
+            return new VectorizedCookieFileReader();
+        }
+    };
+
+    /**
+     * Creates a new reader instance for this mode.
+     *
+     * @param parallelism the number of threads a reader may use, ignored by sequential modes
+     * @return a new CookieFileReader
+     */
+    public abstract CookieFileReader createReader(int parallelism);
+
+    /**
+     * Resolves a reader mode by its case-insensitive command line name.
+     *
+     * @param name the name of the mode, e.g. "csv" or "seek"
+     * @return the matching reader mode
+     * @throws IllegalArgumentException if there is no mode with the given name
+     */
+    public static ReaderMode fromName(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,244 @@
+package processing;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class aggregates cookie logs once into the hourly rollup cube read by {@link RollupCube}.
+ * Every record is counted into the cell of its cookie and its UTC hour; identifiers are replaced by dense
+ * dictionary ids as they are read, and every hour keeps its cells in a small open-addressing table,
+ * so memory grows with the number of distinct cookies per hour rather than with the number of records.
+ * The records of the logs may come in any order.
+ */
+public final class RollupBuilder {
+    private static final Logger LOGGER = Logger.getLogger(RollupBuilder.class.getName());
+
+    private RollupBuilder() {
+    }
+
+    /**
+     * Aggregates the given log files into the given cube file, replacing an existing one.
+     * Files that cannot be read are logged and skipped.
+     *
+     * @param files  the log files
+     * @param target the cube file to write
+     * @return true if the cube file was written, false otherwise
+     */
+    public static boolean build(Collection<File> files, File target) {
+        CubeWriter writer = new CubeWriter();
+        for (File file : files) {
+            if (!CSVCookieFileReader.isValidFile(file)) {
+                CSVCookieFileReader.logInvalidFile(file);
+                continue;
+            }
+            LOGGER.log(Level.INFO, "Start aggregating file " + file.getAbsolutePath());
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                CsvRecordScanner.scanChannel(channel, CsvRecordScanner.MAX_SEGMENT_SIZE, DayRange.all(),
+                        writer::accept, ReadMetrics.global().file(file));
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
+        File temporary = new File(target.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            writer.write(out);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "File cannot be written " + target.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+
+        try {
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "File cannot be written " + target.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Aggregates the log files given on the command line. Expected arguments: the path of the cube file
+     * followed by the paths of the log files.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            LOGGER.log(Level.WARNING, "Usage: RollupBuilder <cube-file> <log-file>...");
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            files.add(new File(args[i]));
+        }
+        build(files, new File(args[0]));
+    }
+
+    /**
+     * The CubeWriter class collects the cells of every hour and writes the cells, the dictionary,
+     * the directory and the trailer.
+     */
+    private static final class CubeWriter {
+        private final CookieIdDictionary dictionary = new CookieIdDictionary(0);
+        private final TreeMap<Long, HourCells> hours = new TreeMap<>();
+
+        private long currentHour = Long.MIN_VALUE;
+        private HourCells current;
+
+        /**
+         * Counts a record into the cell of its cookie and hour.
+         *
+         * @param buffer      the buffer holding the cookie identifier
+         * @param idStart     the inclusive start index of the identifier
+         * @param idEnd       the exclusive end index of the identifier
+         * @param epochSecond the timestamp of the record
+         */
+        private void accept(ByteBuffer buffer, int idStart, int idEnd, long epochSecond) {
+            long epochHour = Math.floorDiv(epochSecond, RollupCube.SECONDS_PER_HOUR);
+            if (epochHour != currentHour) {
+                currentHour = epochHour;
+                current = hours.computeIfAbsent(epochHour, hour -> new HourCells());
+            }
+            current.increment(dictionary.idOf(buffer, idStart, idEnd));
+        }
+
+        /**
+         * Writes the cube.
+         *
+         * @param out the stream of the cube file
+         * @throws IOException if the file cannot be written
+         */
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(RollupCube.MAGIC);
+            out.writeInt(RollupCube.VERSION);
+            long position = 2 * Integer.BYTES;
+
+            long firstHour = hours.isEmpty() ? 0 : hours.firstKey();
+            int hourCount = hours.isEmpty() ? 0 : (int) (hours.lastKey() - firstHour + 1);
+            long[] cellOffsets = new long[hourCount + 1];
+            for (int hour = 0; hour < hourCount; hour++) {
+                cellOffsets[hour] = position;
+                HourCells cells = hours.get(firstHour + hour);
+                if (cells != null) {
+                    position += cells.write(out);
+                }
+            }
+            cellOffsets[hourCount] = position;
+
+            long dictionaryOffset = position;
+            int size = dictionary.size();
+            byte[][] names = new byte[size][];
+            int offset = 0;
+            for (int id = 0; id < size; id++) {
+                names[id] = dictionary.cookieIdOf(id).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(offset);
+                offset += names[id].length;
+            }
+            out.writeInt(offset);
+            for (byte[] name : names) {
+                out.write(name);
+            }
+            position += (long) (size + 1) * Integer.BYTES + offset;
+
+            long directoryOffset = position;
+            out.writeLong(firstHour);
+            out.writeInt(hourCount);
+            for (long cellOffset : cellOffsets) {
+                out.writeLong(cellOffset);
+            }
+            out.writeLong(dictionaryOffset);
+            out.writeInt(size);
+            out.writeLong(directoryOffset);
+        }
+    }
+
+    /**
+     * The HourCells class counts the records of one hour per dictionary id in an open-addressing table.
+     */
+    private static final class HourCells {
+        private static final int INITIAL_CAPACITY = 16;
+        private static final int EMPTY = -1;
+
+        private int[] ids = emptyTable(INITIAL_CAPACITY);
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * Counts a record of the cookie with the given dictionary id.
+         *
+         * @param id the dictionary id
+         */
+        private void increment(int id) {
+            int mask = ids.length - 1;
+            int slot = (id * 0x9E3779B9) & mask;
+            while (ids[slot] != EMPTY && ids[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (ids[slot] == EMPTY) {
+                ids[slot] = id;
+                if (++size * 4 > ids.length * 3) {
+                    counts[slot] = 1;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot]++;
+        }
+
+        /**
+         * Writes the id and the count of every cell.
+         *
+         * @param out the stream of the cube file
+         * @return the number of bytes written
+         * @throws IOException if the file cannot be written
+         */
+        private long write(DataOutputStream out) throws IOException {
+            for (int slot = 0; slot < ids.length; slot++) {
+                if (ids[slot] != EMPTY) {
+                    out.writeInt(ids[slot]);
+                    out.writeInt(counts[slot]);
+                }
+            }
+            return (long) size * RollupCube.CELL_SIZE;
+        }
+
+        /**
+         * Doubles the table and reinserts every cell.
+         */
+        private void grow() {
+            int[] oldIds = ids;
+            int[] oldCounts = counts;
+            ids = emptyTable(oldIds.length * 2);
+            counts = new int[oldIds.length * 2];
+            int mask = ids.length - 1;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) {
+                    int slot = (oldIds[i] * 0x9E3779B9) & mask;
+                    while (ids[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    ids[slot] = oldIds[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int[] emptyTable(int capacity) {
+            int[] table = new int[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+    }
+}
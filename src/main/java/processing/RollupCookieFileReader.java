@@ -0,0 +1,147 @@
+package processing;
+
+import model.Cookie;
+import model.CookieImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface for the hourly rollup cubes ("*.cube") written by
+ * {@link RollupBuilder}. The counts of a UTC day are taken by summing the 24 hours of the day in the cube.
+ * A cube does not keep the individual timestamps, so {@link #readFile(Collection, Date)} returns every
+ * occurrence at the start of its hour. Files that are not cubes are handed to the delegate reader.
+ */
+public class RollupCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(RollupCookieFileReader.class.getName());
+
+    private final CookieFileReader delegate;
+
+    /**
+     * Constructs a new RollupCookieFileReader.
+     *
+     * @param delegate the reader of the files that are not cubes
+     */
+    public RollupCookieFileReader(CookieFileReader delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Reads cookie data from the given collection of files and returns cookies active on the target date.
+     * The timestamps of the occurrences read from cubes are truncated to the hour.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        DayRange day = DayRange.of(targetDate);
+        Map<String, Cookie> cookies = new LinkedHashMap<>();
+        List<File> other = new ArrayList<>();
+
+        for (File file : files) {
+            if (!RollupCube.isCubeFile(file)) {
+                other.add(file);
+                continue;
+            }
+            try (RollupCube cube = RollupCube.open(file)) {
+                if (cube != null) {
+                    cube.forEachCell(day.getStart(), day.getEnd(), (epochHour, id, count) -> {
+                        Cookie cookie = cookies.computeIfAbsent(cube.cookieIdOf(id), CookieImpl::new);
+                        Date timestamp = new Date(epochHour * RollupCube.SECONDS_PER_HOUR * 1000);
+                        for (int i = 0; i < count; i++) {
+                            cookie.addTimestamp(timestamp);
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
+        if (!other.isEmpty()) {
+            for (Cookie cookie : delegate.readFile(other, targetDate)) {
+                Cookie merged = cookies.computeIfAbsent(cookie.getCookieId(), CookieImpl::new);
+                for (Date timestamp : cookie.getTimestamps()) {
+                    merged.addTimestamp(timestamp);
+                }
+            }
+        }
+        return new ArrayList<>(cookies.values());
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        return countCookiesByDay(files, List.of(targetDate)).get(DayRange.of(targetDate).getEpochDay());
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date into the given sink.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        List<File> cubes = new ArrayList<>();
+        List<File> other = new ArrayList<>();
+        split(files, cubes, other);
+        DayRange day = DayRange.of(targetDate);
+        RollupCube.countAll(cubes, day.getStart(), day.getEnd()).forEach(sink::add);
+
+        if (!other.isEmpty()) {
+            delegate.countCookies(other, targetDate, sink);
+        }
+    }
+
+    /**
+     * Counts the occurrences of every cookie for each of the given dates, summing the hours of every day.
+     *
+     * @param files the collection of files to be read
+     * @param dates the dates for which to count the cookies
+     * @return the counters keyed by the UTC day as the number of days since 1970-01-01, in ascending order
+     */
+    @Override
+    public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+        List<File> cubes = new ArrayList<>();
+        List<File> other = new ArrayList<>();
+        split(files, cubes, other);
+        Map<Long, CookieCounter> counters = new TreeMap<>();
+        for (Date date : dates) {
+            DayRange day = DayRange.of(date);
+            counters.computeIfAbsent(day.getEpochDay(), epochDay ->
+                    RollupCube.countAll(cubes, day.getStart(), day.getEnd()));
+        }
+
+        if (!other.isEmpty()) {
+            delegate.countCookiesByDay(other, dates).forEach((epochDay, counter) ->
+                    counters.computeIfAbsent(epochDay, day -> new CookieCounter()).merge(counter));
+        }
+        return counters;
+    }
+
+    /**
+     * Separates the cubes from the files read by the delegate.
+     *
+     * @param files the collection of files to be read
+     * @param cubes the list receiving the cubes
+     * @param other the list receiving the other files
+     */
+    private static void split(Collection<File> files, List<File> cubes, List<File> other) {
+        for (File file : files) {
+            (RollupCube.isCubeFile(file) ? cubes : other).add(file);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package processing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class gives access to an hourly rollup cube ("*.cube") written by {@link RollupBuilder}.
+ * The cube holds the number of records of every cookie in every UTC hour, so the counts of any window
+ * made of whole hours, such as a UTC day, a week, an hour range or the calendar day of a time zone
+ * with a whole-hour offset, are taken by summing the cells of the hours of the window instead of
+ * re-reading the logs. The cells of consecutive hours are stored one after the other, so a window
+ * is one contiguous range of the file, which is memory-mapped. <p>
+ * Layout: header (magic, version), the cells of every hour from the first to the last one, each cell
+ * holding a dictionary id and a count, the dictionary (offsets and UTF-8 bytes of every identifier),
+ * the directory (first epoch hour, number of hours and the file offsets of the cells of every hour
+ * followed by the end offset) and a trailer with the offset and size of the dictionary and the offset
+ * of the directory. All values are big-endian.
+ */
+public final class RollupCube implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(RollupCube.class.getName());
+
+    static final String CUBE_SUFFIX = ".cube";
+    static final int MAGIC = 0x434B4855;
+    static final int VERSION = 1;
+    static final long SECONDS_PER_HOUR = 3600;
+    static final int CELL_SIZE = 2 * Integer.BYTES;
+
+    private static final int TRAILER_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    private static final long MAX_MAPPED_CELLS = Integer.MAX_VALUE / CELL_SIZE;
+
+    private final FileChannel channel;
+    private final FileMetrics metrics;
+    private final long firstHour;
+    private final long[] cellOffsets;
+    private final int dictionarySize;
+    private final ByteBuffer dictionary;
+
+    private RollupCube(FileChannel channel, FileMetrics metrics, long firstHour, long[] cellOffsets,
+                       int dictionarySize, ByteBuffer dictionary) {
+        this.channel = channel;
+        this.metrics = metrics;
+        this.firstHour = firstHour;
+        this.cellOffsets = cellOffsets;
+        this.dictionarySize = dictionarySize;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Checks whether the file is an hourly rollup cube.
+     *
+     * @param file the file to check
+     * @return true if the file name ends with ".cube"
+     */
+    public static boolean isCubeFile(File file) {
+        return file.getName().endsWith(CUBE_SUFFIX);
+    }
+
+    /**
+     * Opens a cube file, reading its directory and mapping its dictionary.
+     *
+     * @param file the cube file
+     * @return the open cube, or null if the file cannot be read or is not a cube
+     * @throws IOException if the file cannot be read
+     */
+    public static RollupCube open(File file) throws IOException {
+        if (!file.isFile() || !file.canRead()) {
+            CSVCookieFileReader.logInvalidFile(file);
+            return null;
+        }
+        FileMetrics metrics = ReadMetrics.global().file(file);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long ioStart = System.nanoTime();
+            long size = channel.size();
+            ByteBuffer header = read(channel, 0, Math.min(size, 2 * Integer.BYTES));
+            if (size < 2 * Integer.BYTES + TRAILER_SIZE
+                    || header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+                LOGGER.log(Level.SEVERE, "File is not a rollup cube " + file.getAbsolutePath());
+                channel.close();
+                return null;
+            }
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long dictionaryOffset = trailer.getLong(0);
+            int dictionarySize = trailer.getInt(Long.BYTES);
+            long directoryOffset = trailer.getLong(Long.BYTES + Integer.BYTES);
+
+            ByteBuffer directory = read(channel, directoryOffset, size - TRAILER_SIZE - directoryOffset);
+            long firstHour = directory.getLong(0);
+            int hourCount = directory.getInt(Long.BYTES);
+            long[] cellOffsets = new long[hourCount + 1];
+            for (int hour = 0; hour <= hourCount; hour++) {
+                cellOffsets[hour] = directory.getLong(Long.BYTES + Integer.BYTES + hour * Long.BYTES);
+            }
+            long dictionaryLength = directoryOffset - dictionaryOffset;
+            if (dictionaryLength > Integer.MAX_VALUE) {
+                throw new IOException("Dictionary is larger than a mapping");
+            }
+            MappedByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                    dictionaryLength);
+            metrics.addIoNanos(System.nanoTime() - ioStart);
+            return new RollupCube(channel, metrics, firstHour, cellOffsets, dictionarySize, dictionary);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Counts the occurrences of every cookie within a window over several cube files.
+     * Files that cannot be read are logged and skipped.
+     *
+     * @param files       the cube files
+     * @param startSecond the inclusive start of the window in epoch seconds, at a whole hour
+     * @param endSecond   the exclusive end of the window in epoch seconds, at a whole hour
+     * @return the counter of cookie occurrences within the window
+     * @throws IllegalArgumentException if the window does not start and end at whole hours
+     */
+    public static CookieCounter countAll(Collection<File> files, long startSecond, long endSecond) {
+        checkWindow(startSecond, endSecond);
+        CookieCounter counter = new CookieCounter();
+        for (File file : files) {
+            try (RollupCube cube = open(file)) {
+                if (cube != null) {
+                    cube.count(startSecond, endSecond, counter::add);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Counts the occurrences of every cookie within a window.
+     *
+     * @param startSecond the inclusive start of the window in epoch seconds, at a whole hour
+     * @param endSecond   the exclusive end of the window in epoch seconds, at a whole hour
+     * @return the counter of cookie occurrences within the window
+     * @throws IOException              if the cells cannot be mapped
+     * @throws IllegalArgumentException if the window does not start and end at whole hours
+     */
+    public CookieCounter count(long startSecond, long endSecond) throws IOException {
+        CookieCounter counter = new CookieCounter();
+        count(startSecond, endSecond, counter::add);
+        return counter;
+    }
+
+    /**
+     * Sums the cells of the hours of a window per cookie.
+     *
+     * @param startSecond the inclusive start of the window in epoch seconds, at a whole hour
+     * @param endSecond   the exclusive end of the window in epoch seconds, at a whole hour
+     * @param consumer    the consumer of the identifier and the count of every cookie seen within the window
+     * @throws IOException              if the cells cannot be mapped
+     * @throws IllegalArgumentException if the window does not start and end at whole hours
+     */
+    void count(long startSecond, long endSecond, ObjIntConsumer<String> consumer) throws IOException {
+        checkWindow(startSecond, endSecond);
+        int[] counts = new int[dictionarySize];
+        boolean found = forEachCell(startSecond, endSecond, (hour, id, count) -> counts[id] += count);
+        if (!found) {
+            return;
+        }
+        for (int id = 0; id < dictionarySize; id++) {
+            if (counts[id] > 0) {
+                consumer.accept(cookieIdOf(id), counts[id]);
+            }
+        }
+    }
+
+    /**
+     * Passes the cells of every hour of a window to the consumer, in ascending order of the hours.
+     *
+     * @param startSecond the inclusive start of the window in epoch seconds, at a whole hour
+     * @param endSecond   the exclusive end of the window in epoch seconds, at a whole hour
+     * @param consumer    the consumer of every cell
+     * @return true if the window holds at least one cell
+     * @throws IOException              if the cells cannot be mapped
+     * @throws IllegalArgumentException if the window does not start and end at whole hours
+     */
+    boolean forEachCell(long startSecond, long endSecond, CellConsumer consumer) throws IOException {
+        checkWindow(startSecond, endSecond);
+        int hourCount = cellOffsets.length - 1;
+        long from = Math.max(0, Math.min(hourCount, startSecond / SECONDS_PER_HOUR - firstHour));
+        long to = Math.max(from, Math.min(hourCount, endSecond / SECONDS_PER_HOUR - firstHour));
+        if (cellOffsets[(int) from] == cellOffsets[(int) to]) {
+            return false;
+        }
+
+        int hour = (int) from;
+        long offset = cellOffsets[hour];
+        while (offset < cellOffsets[(int) to]) {
+            long cells = Math.min(MAX_MAPPED_CELLS, (cellOffsets[(int) to] - offset) / CELL_SIZE);
+            long mapStart = System.nanoTime();
+            IntBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, cells * CELL_SIZE).asIntBuffer();
+            metrics.addIoNanos(System.nanoTime() - mapStart);
+
+            long scanStart = System.nanoTime();
+            for (int cell = 0; cell < cells; cell++) {
+                long cellOffset = offset + (long) cell * CELL_SIZE;
+                while (cellOffset >= cellOffsets[hour + 1]) {
+                    hour++;
+                }
+                consumer.accept(firstHour + hour, mapped.get(2 * cell), mapped.get(2 * cell + 1));
+            }
+            metrics.addScan(cells * CELL_SIZE, cells, cells, System.nanoTime() - scanStart);
+            offset += cells * CELL_SIZE;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first hour of the cube.
+     *
+     * @return the number of hours since 1970-01-01T00:00Z of the first hour with a record
+     */
+    public long getFirstHour() {
+        return firstHour;
+    }
+
+    /**
+     * Returns the number of hours covered by the cube, from the first to the last one with a record.
+     *
+     * @return the number of hours
+     */
+    public int getHourCount() {
+        return cellOffsets.length - 1;
+    }
+
+    /**
+     * Decodes the identifier of a dictionary id.
+     *
+     * @param id the dictionary id
+     * @return the cookie identifier
+     */
+    String cookieIdOf(int id) {
+        int start = dictionary.getInt(id * Integer.BYTES);
+        int end = dictionary.getInt((id + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        dictionary.get((dictionarySize + 1) * Integer.BYTES + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that a window starts and ends at whole hours.
+     *
+     * @param startSecond the inclusive start of the window in epoch seconds
+     * @param endSecond   the exclusive end of the window in epoch seconds
+     * @throws IllegalArgumentException if the window does not start and end at whole hours or ends before it starts
+     */
+    private static void checkWindow(long startSecond, long endSecond) {
+        if (startSecond % SECONDS_PER_HOUR != 0 || endSecond % SECONDS_PER_HOUR != 0 || endSecond < startSecond) {
+            throw new IllegalArgumentException("Window is not made of whole hours: " + startSecond + " - " + endSecond);
+        }
+    }
+
+    /**
+     * Reads a byte range of the file into a new buffer.
+     *
+     * @param channel  the channel of the file
+     * @param position the offset of the range
+     * @param length   the number of bytes to read
+     * @return the buffer holding the bytes read
+     * @throws IOException if the range cannot be read completely or is larger than a buffer
+     */
+    private static ByteBuffer read(FileChannel channel, long position, long length) throws IOException {
+        if (position < 0 || length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Incorrect range at offset " + position);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at offset " + (position + buffer.position()));
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The CellConsumer interface receives a cell of the cube.
+     */
+    @FunctionalInterface
+    interface CellConsumer {
+        void accept(long epochHour, int id, int count);
+    }
+}
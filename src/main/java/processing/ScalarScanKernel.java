@@ -0,0 +1,62 @@
+package processing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class implements the ScanKernel interface one byte at a time. It is used when the
+ * {@code jdk.incubator.vector} module is not available and serves as the reference of {@link VectorScanKernel}.
+ */
+final class ScalarScanKernel implements ScanKernel {
+
+    @Override
+    public int indexOfDelimiter(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == ',' || b == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    @Override
+    public int indexOfLineEnd(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    @Override
+    public boolean isTimestampShape(ByteBuffer buffer, int from) {
+        return matchesShape(buffer, from);
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Checks the shape of a timestamp with an offset one byte at a time.
+     *
+     * @param buffer the buffer to check
+     * @param from   the index of the first byte
+     * @return true if every byte is a digit, a sign or the separator expected at its position
+     */
+    static boolean matchesShape(ByteBuffer buffer, int from) {
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            byte b = buffer.get(from + i);
+            char expected = TIMESTAMP_SHAPE.charAt(i);
+            boolean matches = expected == '0' ? b >= '0' && b <= '9'
+                    : expected == '+' ? b == '+' || b == '-'
+                    : b == expected;
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
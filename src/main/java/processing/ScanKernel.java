@@ -0,0 +1,87 @@
+package processing;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ScanKernel interface holds the byte searches of the record scan: finding the next delimiter of a line,
+ * finding the end of a line and checking the fixed shape of a timestamp with an offset.
+ * {@link VectorScanKernel} does this on wide chunks with the Vector API of the {@code jdk.incubator.vector}
+ * module, {@link ScalarScanKernel} one byte at a time; {@link #create()} picks the former when the module
+ * is available at runtime.
+ */
+interface ScanKernel {
+
+    /**
+     * Length of a timestamp with an offset, e.g. "2018-12-09T14:19:00+00:00".
+     */
+    int TIMESTAMP_LENGTH = 25;
+
+    /**
+     * Shape of a timestamp with an offset: '0' stands for a digit, '+' for the sign of the offset
+     * and every other character for itself.
+     */
+    String TIMESTAMP_SHAPE = "0000-00-00T00:00:00+00:00";
+
+    /**
+     * Name of the module holding the Vector API.
+     */
+    String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * Returns the index of the first ',' or '\n' within the given index range of the buffer.
+     *
+     * @param buffer the buffer to search
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the index of the first delimiter, or {@code to} if there is none
+     */
+    int indexOfDelimiter(ByteBuffer buffer, int from, int to);
+
+    /**
+     * Returns the index of the first '\n' within the given index range of the buffer.
+     *
+     * @param buffer the buffer to search
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the index of the first line terminator, or {@code to} if there is none
+     */
+    int indexOfLineEnd(ByteBuffer buffer, int from, int to);
+
+    /**
+     * Checks whether the {@value #TIMESTAMP_LENGTH} bytes at the given index have the shape of a timestamp
+     * with an offset. Only the shape is checked, the ranges of the fields are left to {@link TimestampDecoder}.
+     *
+     * @param buffer the buffer to check
+     * @param from   the index of the first byte, at least {@value #TIMESTAMP_LENGTH} bytes before the limit
+     * @return true if every byte is a digit, a sign or the separator expected at its position
+     */
+    boolean isTimestampShape(ByteBuffer buffer, int from);
+
+    /**
+     * Returns the name of the kernel, used for logging.
+     *
+     * @return the kernel name
+     */
+    String getName();
+
+    /**
+     * Creates the vector kernel if the {@code jdk.incubator.vector} module was added to the runtime,
+     * e.g. with "--add-modules jdk.incubator.vector", and the scalar kernel otherwise.
+     *
+     * @return the fastest kernel available
+     */
+    static ScanKernel create() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // Loaded by name so that this interface never links against the incubator module
+                return (ScanKernel) Class.forName("processing.VectorScanKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                Logger.getLogger(ScanKernel.class.getName()).log(Level.WARNING,
+                        "Vector scan kernel is not available, falling back to the scalar one: " + e);
+            }
+        }
+        return new ScalarScanKernel();
+    }
+}
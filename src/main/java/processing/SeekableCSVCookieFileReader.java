@@ -0,0 +1,294 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.ObjLongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface for CSV files sorted by timestamp, newest first.
+ * Instead of scanning a file from the header down, it binary-searches the byte offsets of the first and the
+ * last record of the target day and parses only that slice, so a lookup costs O(log n) seeks plus the size
+ * of the day.
+ */
+public class SeekableCSVCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(SeekableCSVCookieFileReader.class.getName());
+
+    private static final String CSV_SPLIT_BY = ",";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROBE_SIZE = 4096;
+
+    /**
+     * Reads cookie data from the given collection of sorted CSV files and returns cookies active on the target date.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        readRecords(files, DayRange.of(targetDate), (cookieId, epochSecond) ->
+                cookies.cookieOf(cookieId).addTimestamp(new Date(epochSecond * 1000)));
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date without retaining the timestamps.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        CookieCounter counter = new CookieCounter();
+        readRecords(files, DayRange.of(targetDate), (cookieId, epochSecond) -> counter.increment(cookieId));
+        return counter;
+    }
+
+    /**
+     * Passes every occurrence of a cookie active on the target date to the given sink.
+     *
+     * @param files      the collection of CSV files to be read
+     * @param targetDate the date for which to count the cookies
+     * @param sink       the sink receiving the occurrences
+     */
+    @Override
+    public void countCookies(Collection<File> files, Date targetDate, CookieCountSink sink) {
+        readRecords(files, DayRange.of(targetDate), (cookieId, epochSecond) -> sink.increment(cookieId));
+    }
+
+    /**
+     * Locates the slice of the target day in every file and passes its records to the consumer.
+     *
+     * @param files    the collection of CSV files to be read
+     * @param day      the target day
+     * @param consumer the consumer of the cookie identifiers and timestamps in epoch seconds
+     */
+    private void readRecords(Collection<File> files, DayRange day, ObjLongConsumer<String> consumer) {
+        for (File file : files) {
+            if (CSVCookieFileReader.isValidFile(file)) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    LOGGER.log(Level.INFO, "Start seeking file " + file.getAbsolutePath());
+                    FileMetrics metrics = ReadMetrics.global().file(file);
+                    long searchStart = System.nanoTime();
+                    ByteBuffer window = ByteBuffer.allocate(PROBE_SIZE);
+                    long dataStart = lineStartAfter(channel, window, 0);
+                    // The first record of the day is the first one older than the next day,
+                    // the first record of the previous day ends the slice.
+                    long sliceStart = findFirstOlderThan(channel, window, dataStart, day.getEnd());
+                    long sliceEnd = findFirstOlderThan(channel, window, sliceStart, day.getStart());
+                    metrics.addIoNanos(System.nanoTime() - searchStart);
+                    readSlice(channel, sliceStart, sliceEnd, day, consumer, metrics);
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+                }
+            } else {
+                CSVCookieFileReader.logInvalidFile(file);
+            }
+        }
+    }
+
+    /**
+     * Binary-searches the offset of the first line whose timestamp is strictly before the given bound.
+     * Since records are sorted newest first, the predicate "older than bound" is monotone over the file.
+     *
+     * @param channel the channel of the file to search
+     * @param window  the buffer receiving the probed bytes
+     * @param from    the offset of a line start from which to search
+     * @param bound   the bound in epoch seconds
+     * @return the offset of the found line start, or the file length if there is no such line
+     * @throws IOException if the file cannot be read
+     */
+    private long findFirstOlderThan(FileChannel channel, ByteBuffer window, long from, long bound)
+            throws IOException {
+        long low = from;
+        long high = channel.size();
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            long lineStart = mid == from ? from : lineStartAfter(channel, window, mid - 1);
+            if (isOlderThan(channel, window, lineStart, bound)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low == from ? from : lineStartAfter(channel, window, low - 1);
+    }
+
+    /**
+     * Checks whether the first well-formed line at or after the given offset is older than the bound.
+     * Malformed lines are stepped over so that they do not break the ordering the search relies on.
+     *
+     * @param channel   the channel of the file to read
+     * @param window    the buffer receiving the probed bytes
+     * @param lineStart the offset of a line start
+     * @param bound     the bound in epoch seconds
+     * @return true if the line is older than the bound or the end of the file is reached
+     * @throws IOException if the file cannot be read
+     */
+    private boolean isOlderThan(FileChannel channel, ByteBuffer window, long lineStart, long bound)
+            throws IOException {
+        long size = channel.size();
+        long position = lineStart;
+        while (position < size) {
+            int limit = read(channel, window, position);
+            boolean reachesEnd = position + limit >= size;
+            int from = 0;
+            while (from < limit) {
+                int end = PruningCookieFileReader.lineEnd(window, from, reachesEnd);
+                if (end < 0) {
+                    break;
+                }
+                long timestamp = PruningCookieFileReader.decodeLine(window, from, end);
+                if (timestamp != TimestampDecoder.INVALID_TIMESTAMP) {
+                    return timestamp < bound;
+                }
+                from = CsvRecordScanner.skipLine(window, from, limit);
+            }
+            // A line longer than the window cannot be a record, so it is stepped over as a whole.
+            position = from == 0 ? lineStartAfter(channel, window, position) : position + from;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset right after the line terminator following the given position.
+     *
+     * @param channel  the channel of the file to read
+     * @param window   the buffer receiving the probed bytes
+     * @param position the position to start from
+     * @return the offset of the next line start, or the file length if there is none
+     * @throws IOException if the file cannot be read
+     */
+    private static long lineStartAfter(FileChannel channel, ByteBuffer window, long position) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            int limit = read(channel, window, position);
+            if (limit == 0) {
+                break;
+            }
+            int next = CsvRecordScanner.skipLine(window, 0, limit);
+            if (next < limit || window.get(limit - 1) == '\n') {
+                return position + next;
+            }
+            position += limit;
+        }
+        return size;
+    }
+
+    /**
+     * Fills the window with the bytes of the file starting at the given position.
+     *
+     * @param channel  the channel of the file to read
+     * @param window   the buffer to fill
+     * @param position the offset of the first byte to read
+     * @return the number of bytes read, less than the window capacity only at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static int read(FileChannel channel, ByteBuffer window, long position) throws IOException {
+        window.clear();
+        while (window.hasRemaining()) {
+            if (channel.read(window, position + window.position()) < 0) {
+                break;
+            }
+        }
+        window.flip();
+        return window.limit();
+    }
+
+    /**
+     * Parses the lines within the given byte range and collects the ones active on the target day.
+     *
+     * @param channel  the channel of the file to read
+     * @param start    the inclusive start offset of the slice
+     * @param end      the exclusive end offset of the slice
+     * @param day      the target day
+     * @param consumer the consumer of the records of the target day
+     * @param metrics  the metrics of the file
+     * @throws IOException if the file cannot be read
+     */
+    private void readSlice(FileChannel channel, long start, long end, DayRange day,
+                           ObjLongConsumer<String> consumer, FileMetrics metrics) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        long startNanos = System.nanoTime();
+        long ioNanos = 0;
+        long[] tallies = new long[2];
+        long position = start;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            long readStart = System.nanoTime();
+            int read = channel.read(buffer, position);
+            ioNanos += System.nanoTime() - readStart;
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    addRecord(line.toString(StandardCharsets.UTF_8), day, consumer, tallies, metrics);
+                    line.reset();
+                } else if (b != '\r') {
+                    line.write(b);
+                }
+            }
+        }
+        if (line.size() > 0) {
+            addRecord(line.toString(StandardCharsets.UTF_8), day, consumer, tallies, metrics);
+        }
+        metrics.addIoNanos(ioNanos);
+        metrics.addScan(position - start, tallies[0], tallies[1], System.nanoTime() - startNanos - ioNanos);
+    }
+
+    /**
+     * Parses a single CSV line and passes it to the consumer if it falls on the target day.
+     *
+     * @param line     the CSV line
+     * @param day      the target day
+     * @param consumer the consumer of the records of the target day
+     * @param tallies  the numbers of parsed lines and matched records so far, updated in place
+     * @param metrics  the metrics of the file
+     */
+    private void addRecord(String line, DayRange day, ObjLongConsumer<String> consumer, long[] tallies,
+                           FileMetrics metrics) {
+        tallies[0]++;
+        long timestamp = parseTimestamp(line);
+        if (timestamp == TimestampDecoder.INVALID_TIMESTAMP) {
+            metrics.skip(line.split(CSV_SPLIT_BY).length != 2 ? SkipReason.MALFORMED_LINE : SkipReason.INVALID_TIMESTAMP,
+                    () -> line);
+            return;
+        }
+        if (day.contains(timestamp)) {
+            consumer.accept(line.substring(0, line.indexOf(CSV_SPLIT_BY)), timestamp);
+            tallies[1]++;
+        }
+    }
+
+    /**
+     * Parses the timestamp column of a CSV line.
+     *
+     * @param line the CSV line
+     * @return the timestamp in epoch seconds, or {@link TimestampDecoder#INVALID_TIMESTAMP} if the line is malformed
+     */
+    private static long parseTimestamp(String line) {
+        String[] cookieEntry = line.split(CSV_SPLIT_BY);
+        if (cookieEntry.length != 2) {
+            return TimestampDecoder.INVALID_TIMESTAMP;
+        }
+        return TimestampDecoder.decode(cookieEntry[1]);
+    }
+}
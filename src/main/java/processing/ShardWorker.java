@@ -0,0 +1,221 @@
+package processing;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class is the worker process of the scatter/gather mode of {@link ShardedCookieFileProcessor}.
+ * A worker counts the cookies of its share of the files for the requested dates and writes the counts
+ * hash-partitioned by cookie identifier into one partial count file per partition, so the coordinator
+ * can merge every partition on its own. A partial count file is only renamed into place once it is complete. <p>
+ * Layout of a partial count file: header (magic, version), the number of days and, per day, the epoch day,
+ * the number of cookies and the identifier and count of every cookie of the partition.
+ */
+public final class ShardWorker {
+    private static final Logger LOGGER = Logger.getLogger(ShardWorker.class.getName());
+
+    static final int MAGIC = 0x434B5053;
+    static final int VERSION = 1;
+
+    private ShardWorker() {
+    }
+
+    /**
+     * Returns the partition of a cookie. The partition only depends on the identifier,
+     * so every worker process assigns a cookie to the same partition.
+     *
+     * @param cookieId   the cookie identifier
+     * @param partitions the number of partitions
+     * @return the partition, from 0 to partitions - 1
+     */
+    static int partitionOf(String cookieId, int partitions) {
+        int hash = cookieId.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), partitions);
+    }
+
+    /**
+     * Returns the partial count file of a worker and partition.
+     *
+     * @param directory the job directory
+     * @param worker    the index of the worker
+     * @param partition the partition
+     * @return the partial count file, which may not exist
+     */
+    static File partitionFile(File directory, int worker, int partition) {
+        return new File(directory, "part-" + worker + "-" + partition + ".cnt");
+    }
+
+    /**
+     * Counts the cookies of the files for every date and writes the partial count files of the worker.
+     *
+     * @param reader     the reader counting the files
+     * @param files      the files of the worker
+     * @param dates      the requested dates
+     * @param partitions the number of partitions
+     * @param directory  the job directory
+     * @param worker     the index of the worker
+     * @return true if all partial count files were written, false otherwise
+     */
+    public static boolean run(CookieFileReader reader, Collection<File> files, Collection<Date> dates, int partitions,
+                              File directory, int worker) {
+        LOGGER.log(Level.INFO, "Worker " + worker + " counting " + files.size() + " files");
+        Map<Long, CookieCounter> counters = reader.countCookiesByDay(files, dates);
+        for (int partition = 0; partition < partitions; partition++) {
+            if (!write(counters, partition, partitions, partitionFile(directory, worker, partition))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a partial count file.
+     *
+     * @param file the partial count file
+     * @return the counters of the partition keyed by the number of days since 1970-01-01
+     * @throws IOException if the file cannot be read or is not a partial count file
+     */
+    static Map<Long, CookieCounter> read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a partial count file " + file.getAbsolutePath());
+            }
+            int dayCount = in.readInt();
+            Map<Long, CookieCounter> counters = new TreeMap<>();
+            for (int i = 0; i < dayCount; i++) {
+                long epochDay = in.readLong();
+                int size = in.readInt();
+                CookieCounter counter = new CookieCounter(size);
+                for (int j = 0; j < size; j++) {
+                    String cookieId = in.readUTF();
+                    counter.add(cookieId, in.readInt());
+                }
+                counters.put(epochDay, counter);
+            }
+            return counters;
+        }
+    }
+
+    /**
+     * Writes the cookies of one partition of every day.
+     *
+     * @param counters   the counters of every day
+     * @param partition  the partition to write
+     * @param partitions the number of partitions
+     * @param file       the partial count file
+     * @return true if the file was written, false otherwise
+     */
+    private static boolean write(Map<Long, CookieCounter> counters, int partition, int partitions, File file) {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(counters.size());
+            IOException[] failure = new IOException[1];
+            for (Map.Entry<Long, CookieCounter> day : counters.entrySet()) {
+                int[] size = new int[1];
+                day.getValue().forEach((cookieId, count) -> {
+                    if (partitionOf(cookieId, partitions) == partition) {
+                        size[0]++;
+                    }
+                });
+                out.writeLong(day.getKey());
+                out.writeInt(size[0]);
+                day.getValue().forEach((cookieId, count) -> {
+                    if (partitionOf(cookieId, partitions) != partition) {
+                        return;
+                    }
+                    try {
+                        out.writeUTF(cookieId);
+                        out.writeInt(count);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Partial counts cannot be written " + file.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Partial counts cannot be written " + file.getAbsolutePath() + ": " + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Runs a worker process. Expected arguments: "-o" followed by the job directory, "-w" followed by the index
+     * of the worker, "-n" followed by the number of partitions, "-l" followed by a file listing the paths of the
+     * files to count one per line, "-d" followed by the dates in yyyy-MM-dd format, and optionally "-r" followed
+     * by the reader mode and "-p" followed by the number of threads of the reader.
+     * The process exits with status 1 if the partial count files cannot be written.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        File directory = null;
+        File fileList = null;
+        int worker = 0;
+        int partitions = 1;
+        ReaderMode readerMode = ReaderMode.CSV;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        List<Date> dates = new ArrayList<>();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("-o".equals(args[i])) {
+                    directory = new File(args[++i]);
+                } else if ("-w".equals(args[i])) {
+                    worker = Integer.parseInt(args[++i]);
+                } else if ("-n".equals(args[i])) {
+                    partitions = Integer.parseInt(args[++i]);
+                } else if ("-l".equals(args[i])) {
+                    fileList = new File(args[++i]);
+                } else if ("-r".equals(args[i])) {
+                    readerMode = ReaderMode.fromName(args[++i]);
+                } else if ("-p".equals(args[i])) {
+                    parallelism = Integer.parseInt(args[++i]);
+                } else if ("-d".equals(args[i])) {
+                    while (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        dates.add(dateFormat.parse(args[++i]));
+                    }
+                }
+            }
+            if (directory == null || fileList == null || dates.isEmpty()) {
+                LOGGER.log(Level.WARNING, "Usage: ShardWorker -o <job-directory> -w <worker> -n <partitions> " +
+                        "-l <file-list> -d <date>... [-r csv|seek|mapped|parallel] [-p <threads>]");
+                System.exit(1);
+            }
+            List<File> files = new ArrayList<>();
+            for (String path : Files.readAllLines(fileList.toPath(), StandardCharsets.UTF_8)) {
+                if (!path.isEmpty()) {
+                    files.add(new File(path));
+                }
+            }
+            CookieFileReader reader = new ColumnarCookieFileReader(
+                    new CompressedCookieFileReader(readerMode.createReader(parallelism), parallelism));
+            if (!run(reader, files, dates, partitions, directory, worker)) {
+                System.exit(1);
+            }
+        } catch (IOException | ParseException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Worker " + worker + " failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package processing;
+
+import model.Cookie;
+import model.CountedCookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of the CookieFileProcessor interface that spreads the files over several worker processes.
+ * The coordinator assigns every file to one of the workers, balancing them by file size, and starts a
+ * {@link ShardWorker} process per worker through a {@link WorkerLauncher}. Every worker writes its counts
+ * hash-partitioned by cookie identifier into partial count files in a job directory. The coordinator then merges
+ * the files of one partition at a time, so it never holds more than one partition of the cookies, and combines
+ * the most active cookies of the partitions, which never share a cookie. The job directory is deleted afterwards.
+ * Since workers only communicate through files, they can run on other nodes sharing the filesystem.
+ */
+public class ShardedCookieFileProcessor implements CookieFileProcessor {
+    private static final Logger LOGGER = Logger.getLogger(ShardedCookieFileProcessor.class.getName());
+
+    private final int workers;
+    private final int partitions;
+    private final ReaderMode readerMode;
+    private final int parallelism;
+    private final File workDirectory;
+    private final WorkerLauncher launcher;
+
+    /**
+     * Constructs a new ShardedCookieFileProcessor.
+     *
+     * @param workers       the maximum number of worker processes
+     * @param partitions    the number of partitions of the cookie identifiers
+     * @param readerMode    the reader mode used by the workers
+     * @param parallelism   the number of threads a worker's reader may use
+     * @param workDirectory the directory in which the job directories are created, visible to all workers
+     * @param launcher      the launcher of the worker processes
+     * @throws IllegalArgumentException if the number of workers or partitions is not positive
+     */
+    public ShardedCookieFileProcessor(int workers, int partitions, ReaderMode readerMode, int parallelism,
+                                      File workDirectory, WorkerLauncher launcher) {
+        if (workers < 1 || partitions < 1) {
+            throw new IllegalArgumentException("Incorrect number of workers " + workers + " or partitions " + partitions);
+        }
+        this.workers = workers;
+        this.partitions = partitions;
+        this.readerMode = readerMode;
+        this.parallelism = parallelism;
+        this.workDirectory = workDirectory;
+        this.launcher = launcher;
+    }
+
+    /**
+     * Finds the most active cookies for the specified date with the worker processes.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param date  the date for which to find the most active cookies
+     * @return a collection of the most active cookies for the specified date
+     */
+    @Override
+    public Collection<Cookie> getMostActiveCookies(Collection<File> files, Date date) {
+        return getMostActiveCookies(files, List.of(date)).get(date);
+    }
+
+    /**
+     * Finds the most active cookies for every given date in a single run of the worker processes.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates for which to find the most active cookies
+     * @return the most active cookies of every requested date, in ascending order of the dates
+     */
+    @Override
+    public Map<Date, Collection<Cookie>> getMostActiveCookies(Collection<File> files, Collection<Date> dates) {
+        Map<Long, Integer> maxCounts = new HashMap<>();
+        Map<Long, List<String>> mostActive = new HashMap<>();
+        gather(files, dates, (epochDay, counter) -> {
+            int maxCount = counter.getMaxCount();
+            int best = maxCounts.getOrDefault(epochDay, 0);
+            if (maxCount == 0 || maxCount < best) {
+                return;
+            }
+            if (maxCount > best) {
+                maxCounts.put(epochDay, maxCount);
+                mostActive.put(epochDay, new ArrayList<>());
+            }
+            mostActive.get(epochDay).addAll(counter.getMostActiveCookieIds());
+        });
+
+        Map<Date, Collection<Cookie>> result = new TreeMap<>();
+        for (Date date : dates) {
+            long epochDay = DayRange.of(date).getEpochDay();
+            List<Cookie> cookies = new ArrayList<>();
+            for (String cookieId : mostActive.getOrDefault(epochDay, List.of())) {
+                cookies.add(new CountedCookie(cookieId, maxCounts.get(epochDay)));
+            }
+            result.put(date, cookies);
+        }
+        return result;
+    }
+
+    /**
+     * Selects the k most active cookies for every given date in a single run of the worker processes.
+     * Ties at the k-th place are broken by the cookie identifier.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates for which to find the top cookies
+     * @param k     the maximum number of cookies returned per date
+     * @return the top cookies of every requested date with their counts, the most active first
+     */
+    @Override
+    public Map<Date, List<Cookie>> getTopCookies(Collection<File> files, Collection<Date> dates, int k) {
+        Comparator<Cookie> byActivity = Comparator.comparingInt(Cookie::getCount).reversed()
+                .thenComparing(Cookie::getCookieId);
+        Map<Long, List<Cookie>> candidates = new HashMap<>();
+        gather(files, dates, (epochDay, counter) -> {
+            List<Cookie> top = candidates.computeIfAbsent(epochDay, day -> new ArrayList<>());
+            top.addAll(counter.getTopCookies(k));
+            top.sort(byActivity);
+            top.subList(Math.min(Math.max(k, 0), top.size()), top.size()).clear();
+        });
+
+        Map<Date, List<Cookie>> result = new TreeMap<>();
+        for (Date date : dates) {
+            result.put(date, new ArrayList<>(candidates.getOrDefault(DayRange.of(date).getEpochDay(), List.of())));
+        }
+        return result;
+    }
+
+    /**
+     * Summarizes every given date in a single run of the worker processes. Since the partitions hold disjoint
+     * cookies, the records and the sketch of a day are accumulated over the merged counts of every partition,
+     * and the most active cookies are combined like in {@link #getMostActiveCookies(Collection, Collection)}.
+     *
+     * @param files the collection of cookie log files to be analyzed
+     * @param dates the dates to be summarized
+     * @return the summary of every requested date, in ascending order of the dates
+     */
+    @Override
+    public Map<Date, DaySummary> getDailySummaries(Collection<File> files, Collection<Date> dates) {
+        Map<Long, Integer> maxCounts = new HashMap<>();
+        Map<Long, List<String>> mostActive = new HashMap<>();
+        Map<Long, Long> records = new HashMap<>();
+        Map<Long, DistinctCookieSketch> sketches = new HashMap<>();
+        gather(files, dates, (epochDay, counter) -> {
+            DistinctCookieSketch sketch = sketches.computeIfAbsent(epochDay, day -> new DistinctCookieSketch());
+            long[] dayRecords = new long[1];
+            counter.forEach((cookieId, count) -> {
+                sketch.add(cookieId);
+                dayRecords[0] += count;
+            });
+            records.merge(epochDay, dayRecords[0], Long::sum);
+
+            int maxCount = counter.getMaxCount();
+            int best = maxCounts.getOrDefault(epochDay, 0);
+            if (maxCount == 0 || maxCount < best) {
+                return;
+            }
+            if (maxCount > best) {
+                maxCounts.put(epochDay, maxCount);
+                mostActive.put(epochDay, new ArrayList<>());
+            }
+            mostActive.get(epochDay).addAll(counter.getMostActiveCookieIds());
+        });
+
+        Map<Date, DaySummary> result = new TreeMap<>();
+        for (Date date : dates) {
+            long epochDay = DayRange.of(date).getEpochDay();
+            List<Cookie> cookies = new ArrayList<>();
+            for (String cookieId : mostActive.getOrDefault(epochDay, List.of())) {
+                cookies.add(new CountedCookie(cookieId, maxCounts.get(epochDay)));
+            }
+            result.put(date, new DaySummary(date, records.getOrDefault(epochDay, 0L), cookies,
+                    sketches.getOrDefault(epochDay, new DistinctCookieSketch())));
+        }
+        return result;
+    }
+
+    /**
+     * Runs the workers on the files and passes the merged counts of every partition and day to the consumer,
+     * one partition at a time.
+     *
+     * @param files    the collection of cookie log files to be analyzed
+     * @param dates    the requested dates
+     * @param consumer the consumer of the counts of a partition on a day
+     * @throws IllegalStateException if a worker fails
+     * @throws UncheckedIOException  if the job directory or a partial count file cannot be accessed
+     */
+    private void gather(Collection<File> files, Collection<Date> dates, PartitionConsumer consumer) {
+        List<List<File>> assignments = assign(files);
+        File job = null;
+        try {
+            job = Files.createTempDirectory(workDirectory.toPath(), "cookie-job").toFile();
+            scatter(job, assignments, dates);
+            for (int partition = 0; partition < partitions; partition++) {
+                Map<Long, CookieCounter> merged = new TreeMap<>();
+                for (int worker = 0; worker < assignments.size(); worker++) {
+                    ShardWorker.read(ShardWorker.partitionFile(job, worker, partition)).forEach((epochDay, counter) ->
+                            merged.computeIfAbsent(epochDay, day -> new CookieCounter()).merge(counter));
+                }
+                for (Map.Entry<Long, CookieCounter> day : merged.entrySet()) {
+                    consumer.accept(day.getKey(), day.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (job != null) {
+                delete(job);
+            }
+        }
+    }
+
+    /**
+     * Starts one worker process per assignment and waits for all of them.
+     *
+     * @param job         the job directory
+     * @param assignments the files of every worker
+     * @param dates       the requested dates
+     * @throws IOException           if a process cannot be started or its file list cannot be written
+     * @throws IllegalStateException if a worker fails or the coordinator is interrupted
+     */
+    private void scatter(File job, List<List<File>> assignments, Collection<Date> dates) throws IOException {
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int worker = 0; worker < assignments.size(); worker++) {
+                File fileList = new File(job, "worker-" + worker + ".files");
+                List<String> paths = new ArrayList<>();
+                for (File file : assignments.get(worker)) {
+                    paths.add(file.getAbsolutePath());
+                }
+                Files.write(fileList.toPath(), paths, StandardCharsets.UTF_8);
+                processes.add(launcher.launch(worker, command(job, worker, fileList, dates),
+                        new File(job, "worker-" + worker + ".log")));
+            }
+            LOGGER.log(Level.INFO, "Started " + processes.size() + " workers in " + job.getAbsolutePath());
+            for (int worker = 0; worker < processes.size(); worker++) {
+                int status = processes.get(worker).waitFor();
+                if (status != 0) {
+                    String log = Files.readString(new File(job, "worker-" + worker + ".log").toPath());
+                    throw new IllegalStateException("Worker " + worker + " failed with status " + status + ": " + log);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the workers", e);
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Builds the command running a worker with the Java installation and the class path of this process.
+     *
+     * @param job      the job directory
+     * @param worker   the index of the worker
+     * @param fileList the file listing the files of the worker
+     * @param dates    the requested dates
+     * @return the command
+     */
+    private List<String> command(File job, int worker, File fileList, Collection<Date> dates) {
+        List<String> command = new ArrayList<>(List.of(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                ShardWorker.class.getName(),
+                "-o", job.getAbsolutePath(),
+                "-w", String.valueOf(worker),
+                "-n", String.valueOf(partitions),
+                "-l", fileList.getAbsolutePath(),
+                "-r", readerMode.name(),
+                "-p", String.valueOf(parallelism),
+                "-d"));
+        for (Date date : dates) {
+            command.add(LocalDate.ofEpochDay(DayRange.of(date).getEpochDay()).toString());
+        }
+        return command;
+    }
+
+    /**
+     * Assigns the files to the workers, the largest file first to the worker with the fewest bytes so far.
+     *
+     * @param files the files to assign
+     * @return the files of every worker that has at least one
+     */
+    private List<List<File>> assign(Collection<File> files) {
+        List<File> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparingLong(File::length).reversed());
+        int count = Math.max(1, Math.min(workers, sorted.size()));
+        List<List<File>> assignments = new ArrayList<>();
+        long[] bytes = new long[count];
+        for (int worker = 0; worker < count; worker++) {
+            assignments.add(new ArrayList<>());
+        }
+        for (File file : sorted) {
+            int lightest = 0;
+            for (int worker = 1; worker < count; worker++) {
+                if (bytes[worker] < bytes[lightest]) {
+                    lightest = worker;
+                }
+            }
+            assignments.get(lightest).add(file);
+            bytes[lightest] += file.length();
+        }
+        return assignments;
+    }
+
+    /**
+     * Deletes a job directory with its files.
+     *
+     * @param job the job directory
+     */
+    private static void delete(File job) {
+        File[] children = job.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        if (!job.delete()) {
+            LOGGER.log(Level.WARNING, "Job directory cannot be deleted " + job.getAbsolutePath());
+        }
+    }
+
+    /**
+     * The PartitionConsumer interface receives the merged counts of a partition on a day.
+     */
+    @FunctionalInterface
+    private interface PartitionConsumer {
+        void accept(long epochDay, CookieCounter counter);
+    }
+}
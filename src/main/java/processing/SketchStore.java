@@ -0,0 +1,127 @@
+package processing;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * This class caches the distinct cookie sketches of log files in a local directory, one small file per log
+ * holding the {@link DistinctCookieSketch} of every day counted so far. The sketches of a log are only used
+ * while its length and modification time are the ones recorded with them, so a changed log is read again.
+ * The cache file is replaced atomically. Layout: header (magic, version), log path, log length, log modification
+ * time, the number of days and, per day, the epoch day and its sketch.
+ */
+public final class SketchStore {
+    private static final Logger LOGGER = Logger.getLogger(SketchStore.class.getName());
+
+    static final int MAGIC = 0x434B484C;
+    static final int VERSION = 1;
+    private static final String SKETCH_SUFFIX = ".hll";
+
+    private final File directory;
+
+    /**
+     * Constructs a new SketchStore.
+     *
+     * @param directory the directory holding the sketches, created on first save
+     */
+    public SketchStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the sketches of the given log file.
+     *
+     * @param file the log file
+     * @return the sketches keyed by the number of days since 1970-01-01, or an empty map if there are none,
+     * they cannot be read or the log changed since they were saved
+     */
+    public Map<Long, DistinctCookieSketch> load(File file) {
+        Map<Long, DistinctCookieSketch> sketches = new TreeMap<>();
+        File sketchFile = sketchFileOf(file);
+        if (!sketchFile.isFile()) {
+            return sketches;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sketchFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(file.getAbsolutePath())) {
+                LOGGER.log(Level.WARNING, "Ignoring foreign sketches " + sketchFile.getAbsolutePath());
+                return sketches;
+            }
+            if (in.readLong() != file.length() || in.readLong() != file.lastModified()) {
+                LOGGER.log(Level.INFO, "Ignoring stale sketches of " + file.getAbsolutePath());
+                return sketches;
+            }
+            int dayCount = in.readInt();
+            for (int i = 0; i < dayCount; i++) {
+                long epochDay = in.readLong();
+                sketches.put(epochDay, DistinctCookieSketch.readFrom(in));
+            }
+            return sketches;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Sketches cannot be read " + sketchFile.getAbsolutePath() + ": "
+                    + e.getMessage());
+            return new TreeMap<>();
+        }
+    }
+
+    /**
+     * Saves the sketches of the given log file, replacing the previous ones.
+     *
+     * @param file     the log file
+     * @param sketches the sketches keyed by the number of days since 1970-01-01
+     * @return true if the sketches were written, false otherwise
+     */
+    public boolean save(File file, Map<Long, DistinctCookieSketch> sketches) {
+        File sketchFile = sketchFileOf(file);
+        File temporary = new File(sketchFile.getPath() + ".tmp");
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            LOGGER.log(Level.SEVERE, "Sketch directory cannot be created " + directory.getAbsolutePath());
+            return false;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(file.getAbsolutePath());
+            out.writeLong(file.length());
+            out.writeLong(file.lastModified());
+            out.writeInt(sketches.size());
+            for (Map.Entry<Long, DistinctCookieSketch> day : sketches.entrySet()) {
+                out.writeLong(day.getKey());
+                day.getValue().writeTo(out);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Sketches cannot be written " + sketchFile.getAbsolutePath() + ": "
+                    + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+        try {
+            Files.move(temporary.toPath(), sketchFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Sketches cannot be written " + sketchFile.getAbsolutePath() + ": "
+                    + e.getMessage());
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the sketch file of a log, named after the log and a checksum of its absolute path.
+     *
+     * @param file the log file
+     * @return the sketch file, which may not exist
+     */
+    File sketchFileOf(File file) {
+        CRC32 crc = new CRC32();
+        crc.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return new File(directory, file.getName() + "-" + Long.toHexString(crc.getValue()) + SKETCH_SUFFIX);
+    }
+}
@@ -0,0 +1,55 @@
+package processing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class passes the occurrences counted by a reader on to another sink while adding every cookie to
+ * a {@link DistinctCookieSketch} and counting the records, so that the distinct cookies of a day are sketched
+ * in the same pass that counts them.
+ */
+final class SketchingCountSink implements CookieCountSink {
+    private final CookieCountSink delegate;
+    private final DistinctCookieSketch sketch = new DistinctCookieSketch();
+    private long records;
+
+    /**
+     * Constructs a new SketchingCountSink.
+     *
+     * @param delegate the sink receiving the occurrences
+     */
+    SketchingCountSink(CookieCountSink delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void add(String cookieId, int count) {
+        delegate.add(cookieId, count);
+        sketch.add(cookieId);
+        records += count;
+    }
+
+    @Override
+    public void increment(ByteBuffer buffer, int from, int to) {
+        delegate.increment(buffer, from, to);
+        sketch.add(buffer, from, to);
+        records++;
+    }
+
+    /**
+     * Returns the sketch of the cookies passed through the sink.
+     *
+     * @return the sketch
+     */
+    DistinctCookieSketch getSketch() {
+        return sketch;
+    }
+
+    /**
+     * Returns the number of occurrences passed through the sink.
+     *
+     * @return the number of records
+     */
+    long getRecords() {
+        return records;
+    }
+}
@@ -0,0 +1,22 @@
+package processing;
+
+/**
+ * The reasons why a line of a cookie log is skipped instead of being counted.
+ */
+public enum SkipReason {
+
+    /**
+     * The line does not consist of exactly a cookie identifier and a timestamp separated by a comma.
+     */
+    MALFORMED_LINE,
+
+    /**
+     * The timestamp of the line cannot be decoded.
+     */
+    INVALID_TIMESTAMP,
+
+    /**
+     * The line does not fit into the read buffer of a streaming reader.
+     */
+    LINE_TOO_LONG
+}
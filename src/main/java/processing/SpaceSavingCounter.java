@@ -0,0 +1,389 @@
+package processing;
+
+import model.CookieIdCodec;
+import model.EstimatedCookie;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * This class estimates the most active cookies in a fixed number of counters with the Space-Saving algorithm.
+ * A cookie that is already monitored has its counter incremented; a new cookie takes over the counter with
+ * the lowest count once all counters are in use, inheriting that count as its error. Every estimate is therefore
+ * an upper bound of the true count, overestimating it by at most the recorded error, and any cookie with more
+ * than {@code total / capacity} occurrences is guaranteed to be monitored. <p>
+ * Identifiers are kept packed by {@link CookieIdCodec} in primitive arrays and looked up through an open-addressing
+ * table; the counters are ordered by a binary min-heap, so every occurrence costs one lookup and a short sift.
+ * Instances are not thread-safe.
+ */
+public class SpaceSavingCounter implements CookieCountSink {
+
+    /**
+     * Estimated memory of a single counter: packed identifier, count, error, heap and table slots.
+     */
+    static final long BYTES_PER_COUNTER = 48;
+
+    private final int capacity;
+    private final long[] highs;
+    private final long[] lows;
+    private final String[] unpackedNames;
+    private final int[] counts;
+    private final int[] errors;
+    private final int[] heap;
+    private final int[] heapIndex;
+    private final int[] table;
+    private final Map<String, Integer> unpackedSlots = new HashMap<>();
+    private int size;
+    private long total;
+    private boolean evicted;
+
+    /**
+     * Constructs a new SpaceSavingCounter with the given number of counters.
+     *
+     * @param capacity the number of cookies monitored at the same time
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public SpaceSavingCounter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Incorrect capacity " + capacity);
+        }
+        this.capacity = capacity;
+        highs = new long[capacity];
+        lows = new long[capacity];
+        unpackedNames = new String[capacity];
+        counts = new int[capacity];
+        errors = new int[capacity];
+        heap = new int[capacity];
+        heapIndex = new int[capacity];
+        table = new int[Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1];
+    }
+
+    /**
+     * Returns the number of counters needed to keep the error of every estimate within the given fraction
+     * of all counted occurrences, limited to the counters fitting the memory budget.
+     *
+     * @param errorTarget  the maximum error as a fraction of the total count, between 0 and 1
+     * @param memoryBudget the number of bytes the counters may occupy, or 0 for no limit
+     * @return the number of counters
+     * @throws IllegalArgumentException if the error target is not between 0 and 1
+     */
+    public static int capacityFor(double errorTarget, long memoryBudget) {
+        if (!(errorTarget > 0 && errorTarget < 1)) {
+            throw new IllegalArgumentException("Incorrect error target " + errorTarget);
+        }
+        long capacity = (long) Math.ceil(1 / errorTarget);
+        if (memoryBudget > 0) {
+            capacity = Math.min(capacity, Math.max(1, memoryBudget / BYTES_PER_COUNTER));
+        }
+        return (int) Math.min(capacity, 1 << 28);
+    }
+
+    /**
+     * Adds the given number of occurrences of the cookie.
+     *
+     * @param cookieId the cookie identifier
+     * @param count    the number of occurrences to add
+     */
+    @Override
+    public void add(String cookieId, int count) {
+        long high = CookieIdCodec.packHigh(cookieId);
+        long low = CookieIdCodec.packLow(cookieId);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            addUnpacked(cookieId, count);
+        } else {
+            add(high, low, count);
+        }
+    }
+
+    /**
+     * Adds a single occurrence of the cookie whose identifier is held as ASCII in the given index range
+     * of the buffer.
+     *
+     * @param buffer the buffer holding the identifier
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     */
+    @Override
+    public void increment(ByteBuffer buffer, int from, int to) {
+        long high = CookieIdCodec.packHigh(buffer, from, to);
+        long low = CookieIdCodec.packLow(buffer, from, to);
+        if (high == CookieIdCodec.INVALID || low == CookieIdCodec.INVALID) {
+            addUnpacked(CsvRecordScanner.decode(buffer, from, to), 1);
+        } else {
+            add(high, low, 1);
+        }
+    }
+
+    /**
+     * Returns the number of counters.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of cookies currently monitored.
+     *
+     * @return the number of counters in use
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of occurrences counted so far.
+     *
+     * @return the total count
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the highest possible true count of a cookie that is not monitored.
+     * As long as no counter was taken over, every count is exact and this is 0.
+     *
+     * @return the bound of the counts of unmonitored cookies, at most {@code total / capacity}
+     */
+    public long getUnmonitoredBound() {
+        return evicted ? counts[heap[0]] : 0;
+    }
+
+    /**
+     * Returns the identifiers of all monitored cookies whose estimate is at least the given count.
+     *
+     * @param minCount the minimum estimate
+     * @return the identifiers of the cookies
+     */
+    public List<String> getCandidates(long minCount) {
+        List<String> candidates = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            if (counts[slot] >= minCount) {
+                candidates.add(cookieIdOf(slot));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the k monitored cookies with the highest estimates, ordered by estimate and then by identifier.
+     *
+     * @param k the maximum number of cookies to return
+     * @return the top cookies with their estimates and error bounds, the most active first
+     */
+    public List<EstimatedCookie> getTopCookies(int k) {
+        List<EstimatedCookie> cookies = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            cookies.add(new EstimatedCookie(cookieIdOf(slot), counts[slot], errors[slot]));
+        }
+        cookies.sort(Comparator.comparingInt(EstimatedCookie::getCount).reversed()
+                .thenComparing(EstimatedCookie::getCookieId));
+        return new ArrayList<>(cookies.subList(0, Math.min(Math.max(k, 0), cookies.size())));
+    }
+
+    /**
+     * Returns the monitored cookies with the highest estimate.
+     *
+     * @return the most active cookies with their estimates and error bounds, empty if nothing was counted
+     */
+    public List<EstimatedCookie> getMostActiveCookies() {
+        int maxCount = 0;
+        for (int slot = 0; slot < size; slot++) {
+            maxCount = Math.max(maxCount, counts[slot]);
+        }
+        List<EstimatedCookie> cookies = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            if (counts[slot] == maxCount) {
+                cookies.add(new EstimatedCookie(cookieIdOf(slot), counts[slot], errors[slot]));
+            }
+        }
+        return cookies;
+    }
+
+    /**
+     * Adds occurrences of a packed identifier.
+     *
+     * @param high  the packed first half
+     * @param low   the packed second half
+     * @param count the number of occurrences to add
+     */
+    private void add(long high, long low, int count) {
+        total += count;
+        int mask = table.length - 1;
+        int index = CookieIdDictionary.hash(high, low) & mask;
+        while (table[index] != 0) {
+            int slot = table[index] - 1;
+            if (highs[slot] == high && lows[slot] == low) {
+                increase(slot, count);
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        int slot = claimSlot();
+        highs[slot] = high;
+        lows[slot] = low;
+        insert(slot);
+        increase(slot, count);
+    }
+
+    /**
+     * Adds occurrences of an identifier that cannot be packed.
+     *
+     * @param cookieId the cookie identifier
+     * @param count    the number of occurrences to add
+     */
+    private void addUnpacked(String cookieId, int count) {
+        total += count;
+        Integer existing = unpackedSlots.get(cookieId);
+        if (existing != null) {
+            increase(existing, count);
+            return;
+        }
+        int slot = claimSlot();
+        highs[slot] = CookieIdCodec.INVALID;
+        unpackedNames[slot] = cookieId;
+        unpackedSlots.put(cookieId, slot);
+        increase(slot, count);
+    }
+
+    /**
+     * Returns a free counter, or takes over the counter with the lowest count once all are in use.
+     * A taken over counter keeps its count, which becomes the error of the new cookie.
+     *
+     * @return the slot of the counter
+     */
+    private int claimSlot() {
+        if (size < capacity) {
+            int slot = size++;
+            counts[slot] = 0;
+            errors[slot] = 0;
+            heap[slot] = slot;
+            heapIndex[slot] = slot;
+            siftUp(slot);
+            return slot;
+        }
+        evicted = true;
+        int slot = heap[0];
+        if (highs[slot] == CookieIdCodec.INVALID) {
+            unpackedSlots.remove(unpackedNames[slot]);
+            unpackedNames[slot] = null;
+        } else {
+            remove(slot);
+        }
+        errors[slot] = counts[slot];
+        return slot;
+    }
+
+    /**
+     * Increases the count of a counter and restores the heap order.
+     *
+     * @param slot  the slot of the counter
+     * @param count the number of occurrences to add
+     */
+    private void increase(int slot, int count) {
+        counts[slot] += count;
+        siftDown(heapIndex[slot]);
+    }
+
+    /**
+     * Moves a heap entry up while its count is lower than the count of its parent.
+     *
+     * @param index the heap index
+     */
+    private void siftUp(int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            place(index, heap[parent]);
+            index = parent;
+        }
+        place(index, slot);
+    }
+
+    /**
+     * Moves a heap entry down while its count is higher than the count of one of its children.
+     *
+     * @param index the heap index
+     */
+    private void siftDown(int index) {
+        int slot = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            place(index, heap[child]);
+            index = child;
+        }
+        place(index, slot);
+    }
+
+    /**
+     * Stores a counter at a heap index.
+     *
+     * @param index the heap index
+     * @param slot  the slot of the counter
+     */
+    private void place(int index, int slot) {
+        heap[index] = slot;
+        heapIndex[slot] = index;
+    }
+
+    /**
+     * Inserts the packed identifier of a counter into the lookup table.
+     *
+     * @param slot the slot of the counter
+     */
+    private void insert(int slot) {
+        int mask = table.length - 1;
+        int index = CookieIdDictionary.hash(highs[slot], lows[slot]) & mask;
+        while (table[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        table[index] = slot + 1;
+    }
+
+    /**
+     * Removes the packed identifier of a counter from the lookup table, shifting later entries of its probe
+     * sequence back so that no tombstones are needed.
+     *
+     * @param slot the slot of the counter
+     */
+    private void remove(int slot) {
+        int mask = table.length - 1;
+        int hole = CookieIdDictionary.hash(highs[slot], lows[slot]) & mask;
+        while (table[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int index = (hole + 1) & mask; table[index] != 0; index = (index + 1) & mask) {
+            int other = table[index] - 1;
+            int home = CookieIdDictionary.hash(highs[other], lows[other]) & mask;
+            if (((index - home) & mask) >= ((index - hole) & mask)) {
+                table[hole] = table[index];
+                hole = index;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    /**
+     * Returns the identifier of a counter.
+     *
+     * @param slot the slot of the counter
+     * @return the cookie identifier
+     */
+    private String cookieIdOf(int slot) {
+        return highs[slot] == CookieIdCodec.INVALID ? unpackedNames[slot] : CookieIdCodec.unpack(highs[slot], lows[slot]);
+    }
+}
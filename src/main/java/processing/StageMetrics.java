@@ -0,0 +1,129 @@
+package processing;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects the throughput counters of one stage of a {@link PipelinedCookieFileReader}.
+ * Besides the items and bytes a stage handled and the time it was busy, it counts the time its threads waited
+ * for input from the previous stage and for free room in the next one: a stage that mostly waits for input is
+ * starved by the stage before it, a stage that mostly waits for output is held back by the stage after it,
+ * and the stage that does neither is the bottleneck. Instances are thread-safe.
+ */
+public final class StageMetrics {
+    private final String name;
+    private final LongAdder items = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder inputWaitNanos = new LongAdder();
+    private final LongAdder outputWaitNanos = new LongAdder();
+
+    /**
+     * Constructs new empty metrics of the given stage.
+     *
+     * @param name the name of the stage
+     */
+    StageMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds a handled item.
+     *
+     * @param itemBytes the number of bytes of the item
+     * @param nanos     the time spent handling it
+     */
+    void addItem(long itemBytes, long nanos) {
+        items.increment();
+        bytes.add(itemBytes);
+        busyNanos.add(nanos);
+    }
+
+    /**
+     * Adds time spent waiting for an item of the previous stage.
+     *
+     * @param nanos the waiting time in nanoseconds
+     */
+    void addInputWait(long nanos) {
+        inputWaitNanos.add(nanos);
+    }
+
+    /**
+     * Adds time spent waiting for room in the next stage or for a free buffer.
+     *
+     * @param nanos the waiting time in nanoseconds
+     */
+    void addOutputWait(long nanos) {
+        outputWaitNanos.add(nanos);
+    }
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return the stage name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of items, buffers or record batches, handled by the stage.
+     *
+     * @return the number of items
+     */
+    public long getItems() {
+        return items.sum();
+    }
+
+    /**
+     * Returns the number of bytes handled by the stage.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Returns the time the threads of the stage spent handling items.
+     *
+     * @return the busy time in nanoseconds, summed over the threads
+     */
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * Returns the time the threads of the stage spent waiting for input.
+     *
+     * @return the waiting time in nanoseconds, summed over the threads
+     */
+    public long getInputWaitNanos() {
+        return inputWaitNanos.sum();
+    }
+
+    /**
+     * Returns the time the threads of the stage spent waiting for room in the next stage.
+     *
+     * @return the waiting time in nanoseconds, summed over the threads
+     */
+    public long getOutputWaitNanos() {
+        return outputWaitNanos.sum();
+    }
+
+    /**
+     * Returns the throughput of the stage while it was busy.
+     *
+     * @return the number of megabytes handled per busy second, summed over the threads
+     */
+    public double getBusyMegabytesPerSecond() {
+        long busy = getBusyNanos();
+        return busy == 0 ? 0 : getBytes() / (busy / 1e9) / (1 << 20);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d items, %d bytes, %.1f MB/s busy, busy %d ms, input wait %d ms, output wait %d ms",
+                name, getItems(), getBytes(), getBusyMegabytesPerSecond(), getBusyNanos() / 1_000_000,
+                getInputWaitNanos() / 1_000_000, getOutputWaitNanos() / 1_000_000);
+    }
+}
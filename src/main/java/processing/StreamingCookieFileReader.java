@@ -0,0 +1,239 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface for inputs that can only be read once from start to end,
+ * such as pipes, standard input or a growing log. The input is read through a single bounded buffer and every
+ * batch of complete lines is handed over as soon as it arrives, so memory does not grow with the input size.
+ * Records are not assumed to be sorted and the whole input is always read.
+ */
+public class StreamingCookieFileReader implements CookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(StreamingCookieFileReader.class.getName());
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final String HEADER = "cookie,timestamp";
+
+    private final int bufferSize;
+
+    /**
+     * Constructs a new StreamingCookieFileReader with a 64 KiB buffer.
+     */
+    public StreamingCookieFileReader() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new StreamingCookieFileReader.
+     *
+     * @param bufferSize the size of the read buffer, which also limits the length of a line
+     */
+    public StreamingCookieFileReader(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Reads cookie data from the given collection of files and returns cookies active on the target date.
+     * Any readable file is accepted, including named pipes and device files such as /dev/stdin.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to filter the cookies
+     * @return a collection of Cookie objects active on the specified date
+     */
+    @Override
+    public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+        CookieTable cookies = new CookieTable();
+        DayRange day = DayRange.of(targetDate);
+        for (File file : files) {
+            FileMetrics metrics = ReadMetrics.global().file(file);
+            readFile(file, (buffer, from, to) -> {
+                CsvRecordScanner.scanUnordered(buffer, from, to, day, (chunk, idStart, idEnd, epochSecond) ->
+                        cookies.cookieOf(chunk, idStart, idEnd).addTimestamp(new Date(epochSecond * 1000)), metrics);
+                return true;
+            }, metrics);
+        }
+        return cookies.getCookies();
+    }
+
+    /**
+     * Counts the occurrences of every cookie active on the target date.
+     *
+     * @param files      the collection of files to be read
+     * @param targetDate the date for which to count the cookies
+     * @return the counter of cookie occurrences on the target date
+     */
+    @Override
+    public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+        IncrementalCookieCounter counter = new IncrementalCookieCounter(targetDate);
+        for (File file : files) {
+            FileMetrics metrics = ReadMetrics.global().file(file);
+            readFile(file, (buffer, from, to) -> {
+                counter.addLines(buffer, from, to, metrics);
+                return true;
+            }, metrics);
+        }
+        return counter.snapshot();
+    }
+
+    /**
+     * Reads the stream to its end and keeps the given counter up to date while reading.
+     * The stream is not closed.
+     *
+     * @param in      the stream to read
+     * @param counter the counter to update
+     * @throws IOException if the stream cannot be read
+     */
+    public void readStream(InputStream in, IncrementalCookieCounter counter) throws IOException {
+        readStream(Channels.newChannel(in), counter);
+    }
+
+    /**
+     * Reads the channel to its end and keeps the given counter up to date while reading.
+     * The channel is not closed.
+     *
+     * @param channel the channel to read
+     * @param counter the counter to update
+     * @throws IOException if the channel cannot be read
+     */
+    public void readStream(ReadableByteChannel channel, IncrementalCookieCounter counter) throws IOException {
+        FileMetrics metrics = ReadMetrics.global().file(ReadMetrics.STREAM_PATH);
+        readLines(channel, bufferSize, (buffer, from, to) -> {
+            counter.addLines(buffer, from, to, metrics);
+            return true;
+        }, metrics);
+    }
+
+    /**
+     * Opens a single file as a stream and reads all of its lines.
+     *
+     * @param file    the file to read
+     * @param handler the handler of the line batches
+     * @param metrics the metrics of the file
+     */
+    private void readFile(File file, LineBatchHandler handler, FileMetrics metrics) {
+        if (file.isDirectory() || !file.canRead()) {
+            CSVCookieFileReader.logInvalidFile(file);
+            return;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            LOGGER.log(Level.INFO, "Start streaming file " + file.getAbsolutePath());
+            readLines(in.getChannel(), bufferSize, handler, metrics);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error reading file " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the channel through a bounded buffer and passes every batch of complete lines to the handler
+     * until the end of the channel or until the handler asks to stop.
+     * A leading header line is skipped. A line that does not fit into the buffer is counted as skipped and dropped.
+     * The time spent in reads of the channel is recorded as I/O time.
+     *
+     * @param channel    the channel to read
+     * @param bufferSize the size of the read buffer
+     * @param handler    the handler of the line batches
+     * @param metrics    the metrics of the channel
+     * @throws IOException if the channel cannot be read
+     */
+    static void readLines(ReadableByteChannel channel, int bufferSize, LineBatchHandler handler,
+                          FileMetrics metrics) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        boolean firstLine = true;
+        boolean dropping = false;
+        while (read(channel, buffer, metrics) >= 0) {
+            if (dropping) {
+                int filled = buffer.position();
+                int next = CsvRecordScanner.skipLine(buffer, 0, filled);
+                dropping = next == filled && (filled == 0 || buffer.get(filled - 1) != '\n');
+                buffer.limit(filled).position(next);
+                buffer.compact();
+                if (dropping) {
+                    continue;
+                }
+            }
+            int filled = buffer.position();
+            int end = CsvRecordScanner.lastLineEnd(buffer, filled);
+            if (end == 0) {
+                if (filled == buffer.capacity()) {
+                    metrics.skip(SkipReason.LINE_TOO_LONG, () -> "line longer than the buffer of " + bufferSize + " bytes");
+                    dropping = true;
+                    buffer.clear();
+                }
+                continue;
+            }
+            int start = 0;
+            if (firstLine) {
+                start = skipHeader(buffer, 0, end);
+                firstLine = false;
+            }
+            if (!handler.accept(buffer, start, end)) {
+                return;
+            }
+            buffer.limit(filled).position(end);
+            buffer.compact();
+        }
+        int filled = buffer.position();
+        if (filled > 0 && !dropping) {
+            int start = firstLine ? skipHeader(buffer, 0, filled) : 0;
+            handler.accept(buffer, start, filled);
+        }
+    }
+
+    /**
+     * Reads from the channel into the buffer and records the time spent.
+     *
+     * @param channel the channel to read
+     * @param buffer  the buffer to fill
+     * @param metrics the metrics of the channel
+     * @return the number of bytes read, or -1 at the end of the channel
+     * @throws IOException if the channel cannot be read
+     */
+    private static int read(ReadableByteChannel channel, ByteBuffer buffer, FileMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        int read = channel.read(buffer);
+        metrics.addIoNanos(System.nanoTime() - start);
+        return read;
+    }
+
+    /**
+     * Returns the index after the header line if the first line is the "cookie,timestamp" header.
+     *
+     * @param buffer the buffer holding the first line
+     * @param from   the index of the first line
+     * @param to     the exclusive end index of the complete lines
+     * @return the index of the first record
+     */
+    private static int skipHeader(ByteBuffer buffer, int from, int to) {
+        int next = CsvRecordScanner.skipLine(buffer, from, to);
+        String line = CsvRecordScanner.decode(buffer, from, next).strip();
+        return HEADER.equals(line) ? next : from;
+    }
+
+    /**
+     * The LineBatchHandler interface receives batches of complete lines read from the stream.
+     */
+    @FunctionalInterface
+    interface LineBatchHandler {
+
+        /**
+         * Handles the lines within the given index range of the buffer. The range is only valid during the call.
+         *
+         * @param buffer the read buffer
+         * @param from   the inclusive start index, at a line start
+         * @param to     the exclusive end index
+         * @return true to continue reading, false to stop
+         */
+        boolean accept(ByteBuffer buffer, int from, int to);
+    }
+}
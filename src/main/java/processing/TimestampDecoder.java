@@ -0,0 +1,207 @@
+package processing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class decodes the fixed-format ISO-8601 timestamps of the cookie logs into epoch seconds.
+ * Both "yyyy-MM-ddTHH:mm:ss+HH:MM" and "yyyy-MM-ddTHH:mm:ssZ" are accepted. The conversion uses plain
+ * arithmetic without any Calendar, Date or formatter state, so it allocates nothing and is thread-safe.
+ */
+public final class TimestampDecoder {
+
+    /**
+     * Returned by the decode methods for malformed timestamps.
+     */
+    public static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * Length of a timestamp with an offset, e.g. "2018-12-09T14:19:00+00:00".
+     */
+    private static final int OFFSET_TIMESTAMP_LENGTH = 25;
+
+    /**
+     * Length of a timestamp in UTC, e.g. "2018-12-09T14:19:00Z".
+     */
+    private static final int UTC_TIMESTAMP_LENGTH = 20;
+
+    private static final int SECONDS_PER_DAY = 86400;
+
+    private TimestampDecoder() {
+    }
+
+    /**
+     * Decodes a timestamp from a character sequence.
+     *
+     * @param text the timestamp text
+     * @return the timestamp in epoch seconds, or {@link #INVALID_TIMESTAMP} if it is malformed
+     */
+    public static long decode(CharSequence text) {
+        int length = text.length();
+        if (length != OFFSET_TIMESTAMP_LENGTH && length != UTC_TIMESTAMP_LENGTH) {
+            return INVALID_TIMESTAMP;
+        }
+        if (text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return INVALID_TIMESTAMP;
+        }
+        char sign = text.charAt(19);
+        int offsetSeconds;
+        if (length == UTC_TIMESTAMP_LENGTH) {
+            offsetSeconds = sign == 'Z' ? 0 : -1;
+        } else {
+            offsetSeconds = text.charAt(22) == ':'
+                    ? toOffsetSeconds(sign, digits(text, 20, 2), digits(text, 23, 2)) : -1;
+        }
+        return toEpochSecond(digits(text, 0, 4), digits(text, 5, 2), digits(text, 8, 2),
+                digits(text, 11, 2), digits(text, 14, 2), digits(text, 17, 2), offsetSeconds, sign);
+    }
+
+    /**
+     * Decodes a timestamp from the given index range of a byte buffer holding ASCII text.
+     *
+     * @param buffer the buffer containing the timestamp
+     * @param from   the inclusive start index
+     * @param to     the exclusive end index
+     * @return the timestamp in epoch seconds, or {@link #INVALID_TIMESTAMP} if it is malformed
+     */
+    public static long decode(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        if (length != OFFSET_TIMESTAMP_LENGTH && length != UTC_TIMESTAMP_LENGTH) {
+            return INVALID_TIMESTAMP;
+        }
+        if (buffer.get(from + 4) != '-' || buffer.get(from + 7) != '-' || buffer.get(from + 10) != 'T'
+                || buffer.get(from + 13) != ':' || buffer.get(from + 16) != ':') {
+            return INVALID_TIMESTAMP;
+        }
+        char sign = (char) buffer.get(from + 19);
+        int offsetSeconds;
+        if (length == UTC_TIMESTAMP_LENGTH) {
+            offsetSeconds = sign == 'Z' ? 0 : -1;
+        } else {
+            offsetSeconds = buffer.get(from + 22) == ':'
+                    ? toOffsetSeconds(sign, digits(buffer, from + 20, 2), digits(buffer, from + 23, 2)) : -1;
+        }
+        return toEpochSecond(digits(buffer, from, 4), digits(buffer, from + 5, 2), digits(buffer, from + 8, 2),
+                digits(buffer, from + 11, 2), digits(buffer, from + 14, 2), digits(buffer, from + 17, 2),
+                offsetSeconds, sign);
+    }
+
+    /**
+     * Converts a proleptic Gregorian date into the number of days since 1970-01-01.
+     *
+     * @param year  the year
+     * @param month the month, 1 to 12
+     * @param day   the day of the month, 1 to 31
+     * @return the number of days since the epoch
+     */
+    public static long toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    /**
+     * Validates the decoded fields and combines them into epoch seconds.
+     * Fields that failed to decode are passed as -1.
+     *
+     * @param year          the year
+     * @param month         the month
+     * @param day           the day of the month
+     * @param hour          the hour
+     * @param minute        the minute
+     * @param second        the second
+     * @param offsetSeconds the absolute value of the offset in seconds, or -1 if the offset is malformed
+     * @param sign          the sign of the offset, '+', '-' or 'Z'
+     * @return the timestamp in epoch seconds, or {@link #INVALID_TIMESTAMP} if a field is out of range
+     */
+    private static long toEpochSecond(int year, int month, int day, int hour, int minute, int second,
+                                      int offsetSeconds, char sign) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+                || offsetSeconds < 0) {
+            return INVALID_TIMESTAMP;
+        }
+        long localSeconds = toEpochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+        return sign == '-' ? localSeconds + offsetSeconds : localSeconds - offsetSeconds;
+    }
+
+    /**
+     * Converts the offset fields into seconds.
+     *
+     * @param sign    the sign of the offset
+     * @param hours   the hours of the offset
+     * @param minutes the minutes of the offset
+     * @return the absolute value of the offset in seconds, or -1 if it is malformed
+     */
+    private static int toOffsetSeconds(char sign, int hours, int minutes) {
+        if ((sign != '+' && sign != '-') || hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+            return -1;
+        }
+        return hours * 3600 + minutes * 60;
+    }
+
+    /**
+     * Returns the number of days in the given month.
+     *
+     * @param year  the year
+     * @param month the month, 1 to 12
+     * @return the number of days in the month
+     */
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Parses a fixed number of ASCII digits.
+     *
+     * @param text  the text containing the digits
+     * @param from  the index of the first digit
+     * @param count the number of digits
+     * @return the parsed value, or -1 if a non-digit character is found
+     */
+    private static int digits(CharSequence text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a fixed number of ASCII digits.
+     *
+     * @param buffer the buffer containing the digits
+     * @param from   the index of the first digit
+     * @param count  the number of digits
+     * @return the parsed value, or -1 if a non-digit byte is found
+     */
+    private static int digits(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
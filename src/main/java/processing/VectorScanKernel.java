@@ -0,0 +1,110 @@
+package processing;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class implements the ScanKernel interface with the Vector API of the {@code jdk.incubator.vector} module.
+ * Delimiters are searched by comparing a whole vector of bytes against ',' and '\n' at once and taking the first
+ * set lane of the resulting mask. The vectors are 256 bits wide rather than the preferred width, since a typical
+ * identifier and its comma fit in 32 bytes and wider loads near the end of a line are mostly wasted. A timestamp
+ * is checked by loading its 25 bytes into one vector and testing the digit, sign and separator lanes in bulk.
+ * The class may only be loaded when the module was added to the runtime, see {@link ScanKernel#create()}.
+ */
+final class VectorScanKernel implements ScanKernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_256;
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    private static final ByteVector SEPARATORS;
+    private static final VectorMask<Byte> DIGIT_LANES;
+    private static final VectorMask<Byte> SIGN_LANES;
+    private static final VectorMask<Byte> SEPARATOR_LANES;
+    private static final VectorMask<Byte> PADDING_LANES;
+
+    static {
+        int lanes = SPECIES.length();
+        byte[] separators = new byte[lanes];
+        boolean[] digits = new boolean[lanes];
+        boolean[] signs = new boolean[lanes];
+        boolean[] others = new boolean[lanes];
+        boolean[] padding = new boolean[lanes];
+        for (int i = 0; i < lanes; i++) {
+            char expected = i < TIMESTAMP_LENGTH ? TIMESTAMP_SHAPE.charAt(i) : 0;
+            digits[i] = expected == '0';
+            signs[i] = expected == '+';
+            others[i] = i < TIMESTAMP_LENGTH && !digits[i] && !signs[i];
+            padding[i] = i >= TIMESTAMP_LENGTH;
+            separators[i] = others[i] ? (byte) expected : 0;
+        }
+        SEPARATORS = ByteVector.fromArray(SPECIES, separators, 0);
+        DIGIT_LANES = VectorMask.fromArray(SPECIES, digits, 0);
+        SIGN_LANES = VectorMask.fromArray(SPECIES, signs, 0);
+        SEPARATOR_LANES = VectorMask.fromArray(SPECIES, others, 0);
+        PADDING_LANES = VectorMask.fromArray(SPECIES, padding, 0);
+    }
+
+    @Override
+    public int indexOfDelimiter(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector chunk = ByteVector.fromByteBuffer(SPECIES, buffer, i, ORDER);
+            VectorMask<Byte> delimiters = chunk.eq((byte) ',').or(chunk.eq((byte) '\n'));
+            if (delimiters.anyTrue()) {
+                return i + delimiters.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == ',' || b == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    @Override
+    public int indexOfLineEnd(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> terminators = ByteVector.fromByteBuffer(SPECIES, buffer, i, ORDER).eq((byte) '\n');
+            if (terminators.anyTrue()) {
+                return i + terminators.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    @Override
+    public boolean isTimestampShape(ByteBuffer buffer, int from) {
+        // The vector load reads past the timestamp, which is only allowed within the limit of the buffer
+        if (from + SPECIES.length() > buffer.limit()) {
+            return ScalarScanKernel.matchesShape(buffer, from);
+        }
+        ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, buffer, from, ORDER);
+        VectorMask<Byte> digits = bytes.sub((byte) '0').compare(VectorOperators.UNSIGNED_LT, (byte) 10);
+        VectorMask<Byte> signs = bytes.eq((byte) '+').or(bytes.eq((byte) '-'));
+        VectorMask<Byte> separators = bytes.eq(SEPARATORS);
+        return digits.and(DIGIT_LANES)
+                .or(signs.and(SIGN_LANES))
+                .or(separators.and(SEPARATOR_LANES))
+                .or(PADDING_LANES)
+                .allTrue();
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + SPECIES.vectorBitSize() + "-bit";
+    }
+}
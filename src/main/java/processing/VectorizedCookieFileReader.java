@@ -0,0 +1,54 @@
+package processing;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the CookieFileReader interface on top of memory-mapped files like
+ * {@link MappedCookieFileReader}, but searches the delimiters and checks the timestamps of the records
+ * with a {@link ScanKernel}. With the {@code jdk.incubator.vector} module added to the runtime
+ * ("--add-modules jdk.incubator.vector") the bytes are handled in wide vector chunks; without it
+ * the reader falls back to the scalar kernel and returns the same results.
+ */
+public class VectorizedCookieFileReader extends MappedCookieFileReader {
+    private static final Logger LOGGER = Logger.getLogger(VectorizedCookieFileReader.class.getName());
+
+    private final ScanKernel kernel;
+
+    /**
+     * Constructs a new VectorizedCookieFileReader with the fastest kernel available at runtime.
+     */
+    public VectorizedCookieFileReader() {
+        this(ScanKernel.create());
+    }
+
+    /**
+     * Constructs a new VectorizedCookieFileReader with the given kernel.
+     *
+     * @param kernel the kernel searching the delimiters
+     */
+    VectorizedCookieFileReader(ScanKernel kernel) {
+        this(CsvRecordScanner.MAX_SEGMENT_SIZE, kernel);
+    }
+
+    /**
+     * Constructs a new VectorizedCookieFileReader with the given mapping segment size and kernel.
+     *
+     * @param segmentSize the maximum number of bytes mapped at once
+     * @param kernel      the kernel searching the delimiters
+     */
+    VectorizedCookieFileReader(int segmentSize, ScanKernel kernel) {
+        super(segmentSize, kernel);
+        this.kernel = kernel;
+        LOGGER.log(Level.FINE, "Using the " + kernel.getName() + " scan kernel");
+    }
+
+    /**
+     * Returns the name of the kernel used by the reader, e.g. "scalar" or "vector 256-bit".
+     *
+     * @return the kernel name
+     */
+    public String getKernelName() {
+        return kernel.getName();
+    }
+}
@@ -0,0 +1,65 @@
+package processing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The WorkerLauncher interface starts the worker processes of {@link ShardedCookieFileProcessor}.
+ * Workers exchange all data through files, so they may run on any node that sees the job directory,
+ * the log files, the Java installation and the class path under the same paths.
+ */
+@FunctionalInterface
+public interface WorkerLauncher {
+
+    /**
+     * Starts a worker process.
+     *
+     * @param worker  the index of the worker
+     * @param command the command running the worker on the local node
+     * @param log     the file receiving the output of the worker
+     * @return the started process
+     * @throws IOException if the process cannot be started
+     */
+    Process launch(int worker, List<String> command, File log) throws IOException;
+
+    /**
+     * Returns the launcher starting every worker as a process on the local node.
+     *
+     * @return the local launcher
+     */
+    static WorkerLauncher local() {
+        return (worker, command, log) -> new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    /**
+     * Returns the launcher starting the workers over ssh on the given hosts in turn.
+     * The hosts have to share the filesystem holding the logs and the job directory.
+     *
+     * @param hosts the hosts running the workers
+     * @return the ssh launcher
+     * @throws IllegalArgumentException if no host is given
+     */
+    static WorkerLauncher ssh(List<String> hosts) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("No worker hosts");
+        }
+        return (worker, command, log) -> {
+            StringBuilder remote = new StringBuilder();
+            for (String argument : command) {
+                remote.append(remote.length() > 0 ? " " : "").append('\'')
+                        .append(argument.replace("'", "'\\''")).append('\'');
+            }
+            List<String> sshCommand = new ArrayList<>(List.of("ssh", hosts.get(worker % hosts.size())));
+            sshCommand.add(remote.toString());
+            return new ProcessBuilder(sshCommand)
+                    .redirectErrorStream(true)
+                    .redirectOutput(log)
+                    .start();
+        };
+    }
+}
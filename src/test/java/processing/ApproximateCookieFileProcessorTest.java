@@ -0,0 +1,111 @@
+package processing;
+
+import model.Cookie;
+import model.EstimatedCookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApproximateCookieFileProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEstimatesStayWithinErrorBounds() {
+        Random random = new Random(7);
+        Map<String, Integer> exact = new HashMap<>();
+        SpaceSavingCounter sketch = new SpaceSavingCounter(100);
+        for (int i = 0; i < 200_000; i++) {
+            String cookieId = "c" + (int) Math.floor(Math.pow(random.nextDouble(), 4) * 20_000);
+            if (i % 1000 == 0) {
+                cookieId = "odd_cookie-" + (i / 1000 % 7);
+            }
+            exact.merge(cookieId, 1, Integer::sum);
+            sketch.increment(cookieId);
+        }
+
+        assertEquals(100, sketch.size());
+        assertEquals(200_000, sketch.getTotal());
+        assertTrue(sketch.getUnmonitoredBound() <= sketch.getTotal() / sketch.getCapacity(),
+                "Unmonitored cookies should be bounded by total / capacity.");
+        for (EstimatedCookie cookie : sketch.getTopCookies(100)) {
+            int trueCount = exact.get(cookie.getCookieId());
+            assertTrue(cookie.getCount() >= trueCount, "Estimate should not undercount " + cookie);
+            assertTrue(cookie.getLowerBound() <= trueCount, "Lower bound should not overcount " + cookie);
+        }
+        for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+            if (entry.getValue() > sketch.getTotal() / sketch.getCapacity()) {
+                assertFalse(sketch.getCandidates(entry.getValue()).isEmpty());
+                assertTrue(sketch.getCandidates(entry.getValue()).contains(entry.getKey()),
+                        "Heavy hitter " + entry.getKey() + " should be monitored.");
+            }
+        }
+        assertEquals("c0", sketch.getTopCookies(1).get(0).getCookieId());
+    }
+
+    @Test
+    void testExactSecondPassMatchesExactProcessor() throws Exception {
+        StringBuilder log = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(3);
+        for (int i = 0; i < 40_000; i++) {
+            int second = 86_000 - 2 * i;
+            String cookieId;
+            if (i % 50 == 0) {
+                cookieId = "heavyA";
+            } else if (i % 50 == 1) {
+                cookieId = "heavyB";
+            } else {
+                cookieId = "cookie" + random.nextInt(5000);
+            }
+            log.append(cookieId).append(String.format(",2018-12-09T%02d:%02d:%02d+00:00\n",
+                    second / 3600, second / 60 % 60, second % 60));
+        }
+        File file = tempDir.resolve("cookie_log.csv").toFile();
+        Files.writeString(file.toPath(), log.toString());
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        List<File> files = List.of(file);
+
+        CookieFileProcessor exact = new CookieFileProcessorImpl(new MappedCookieFileReader());
+        CookieFileProcessor confirmed = new ApproximateCookieFileProcessor(new MappedCookieFileReader(), 0.01, 0, true);
+        CookieFileProcessor estimated = new ApproximateCookieFileProcessor(new MappedCookieFileReader(), 0.01, 0, false);
+
+        Set<String> expectedIds = new TreeSet<>();
+        for (Cookie cookie : exact.getMostActiveCookies(files, date)) {
+            expectedIds.add(cookie.getCookieId());
+        }
+        assertEquals(Set.of("heavyA", "heavyB"), expectedIds, "The test log should have a tie.");
+        Set<String> confirmedIds = new TreeSet<>();
+        for (Cookie cookie : confirmed.getMostActiveCookies(files, date)) {
+            confirmedIds.add(cookie.getCookieId());
+            assertEquals(0, ((EstimatedCookie) cookie).getError(), "Confirmed counts should be exact.");
+        }
+        assertEquals(expectedIds, confirmedIds, "The second pass should confirm the tie.");
+
+        List<Cookie> expectedTop = exact.getTopCookies(files, List.of(date), 2).get(date);
+        List<Cookie> confirmedTop = confirmed.getTopCookies(files, List.of(date), 2).get(date);
+        List<Cookie> estimatedTop = estimated.getTopCookies(files, List.of(date), 2).get(date);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expectedTop.get(i).getCookieId(), confirmedTop.get(i).getCookieId());
+            assertEquals(expectedTop.get(i).getCount(), confirmedTop.get(i).getCount());
+            EstimatedCookie estimate = (EstimatedCookie) estimatedTop.get(i);
+            assertTrue(estimate.getLowerBound() <= expectedTop.get(i).getCount()
+                    && expectedTop.get(i).getCount() <= estimate.getCount(), "Estimate should bound " + estimate);
+        }
+    }
+
+    @Test
+    void testCapacityFollowsErrorTargetAndBudget() {
+        assertEquals(1000, SpaceSavingCounter.capacityFor(0.001, 0));
+        assertEquals(100, SpaceSavingCounter.capacityFor(0.001, 100 * SpaceSavingCounter.BYTES_PER_COUNTER));
+        assertThrows(IllegalArgumentException.class, () -> SpaceSavingCounter.capacityFor(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> SpaceSavingCounter.capacityFor(1.5, 0));
+    }
+}
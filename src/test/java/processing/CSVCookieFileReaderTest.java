@@ -7,6 +7,8 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -62,4 +64,35 @@ class CSVCookieFileReaderTest {
         assertFalse(cookies.stream().anyMatch(cookie -> cookie.getCookieId().equals("cookie2")),
                 "Invalid cookie 'cookie2' should be ignored due to incorrect date format.");
     }
+
+    @Test
+    void testReadFileSkipsNewerDays(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_newer_days.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            out.println("cookie3,2018-12-10T14:19:00+00:00");
+            out.println("cookie1,2018-12-09T14:19:00+00:00");
+            out.println("cookie2,2018-12-08T10:13:00+00:00");
+        }
+
+        Date targetDate = dateFormat.parse("2018-12-09");
+        Collection<Cookie> cookies = reader.readFile(Collections.singletonList(tempFile), targetDate);
+
+        assertEquals(1, cookies.size(), "Should read only the cookie of the target date.");
+        assertEquals("cookie1", cookies.iterator().next().getCookieId());
+    }
+
+    @Test
+    void testBytesReadAreCountedFromTheFile(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_crlf.csv").toFile();
+        Files.write(tempFile.toPath(), ("cookie,timestamp\r\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\r\n"
+                + "cookie2,2018-12-09T10:13:00+00:00\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        Date targetDate = dateFormat.parse("2018-12-09");
+        assertEquals(2, reader.countCookies(Collections.singletonList(tempFile), targetDate).size(),
+                "Should read the cookies of a file with CRLF line endings.");
+        assertEquals(tempFile.length(), ReadMetrics.global().file(tempFile).getBytesRead(),
+                "Should count the bytes of the file including the carriage returns.");
+    }
 }
@@ -0,0 +1,128 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingCookieFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCountsAreCachedUntilFileChanges() throws Exception {
+        File log = TestLogs.writeLog(tempDir, "first.csv", "cookie,timestamp\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\n"
+                + "cookie1,2018-12-09T10:13:00+00:00\n"
+                + "cookie2,2018-12-08T22:03:00+00:00\n");
+        AtomicInteger reads = new AtomicInteger();
+        CachingCookieFileReader reader = new CachingCookieFileReader(countingReader(reads), 1 << 20);
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+
+        assertEquals(2, reader.countCookies(List.of(log), date).get("cookie1"));
+        assertEquals(2, reader.countCookies(List.of(log), date).get("cookie1"));
+        assertEquals(1, reads.get(), "The second query should be answered from the cache.");
+        assertEquals(1, reader.getHits());
+
+        Files.writeString(log.toPath(), "cookie,timestamp\ncookie3,2018-12-09T14:19:00+00:00\n");
+        log.setLastModified(log.lastModified() + 2000);
+        CookieCounter changed = reader.countCookies(List.of(log), date);
+        assertEquals(0, changed.get("cookie1"), "A modified file should be read again.");
+        assertEquals(1, changed.get("cookie3"));
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        File first = TestLogs.writeLog(tempDir, "a.csv", "cookie,timestamp\ncookie1,2018-12-09T14:19:00+00:00\n");
+        File second = TestLogs.writeLog(tempDir, "b.csv", "cookie,timestamp\ncookie2,2018-12-09T14:19:00+00:00\n");
+        AtomicInteger reads = new AtomicInteger();
+        long entrySize = CachingCookieFileReader.BYTES_PER_ENTRY + CachingCookieFileReader.BYTES_PER_COOKIE;
+        CachingCookieFileReader reader = new CachingCookieFileReader(countingReader(reads), entrySize);
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+
+        reader.countCookies(List.of(first), date);
+        reader.countCookies(List.of(second), date);
+        assertEquals(entrySize, reader.getUsedBytes(), "Only one entry should fit the budget.");
+        reader.countCookies(List.of(second), date);
+        assertEquals(2, reads.get());
+        reader.countCookies(List.of(first), date);
+        assertEquals(3, reads.get(), "The evicted file should be read again.");
+    }
+
+    @Test
+    void testServerAnswersConcurrentQueries() throws Exception {
+        File log = TestLogs.writeLog(tempDir, "server.csv", "cookie,timestamp\n"
+                + "AtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00\n"
+                + "SAZuXPGUrfbcn5UA,2018-12-09T10:13:00+00:00\n"
+                + "AtY0laUfhglK3lC7,2018-12-09T06:19:00+00:00\n"
+                + "SAZuXPGUrfbcn5UA,2018-12-08T22:03:00+00:00\n");
+        AtomicInteger reads = new AtomicInteger();
+        CachingCookieFileReader reader = new CachingCookieFileReader(countingReader(reads), 1 << 20);
+        try (CookieQueryServer server = new CookieQueryServer(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new CookieFileProcessorImpl(reader), 4)) {
+            server.start();
+            String base = "http://localhost:" + server.getPort() + CookieQueryServer.QUERY_PATH
+                    + "?file=" + URLEncoder.encode(log.getAbsolutePath(), StandardCharsets.UTF_8);
+            HttpClient client = HttpClient.newHttpClient();
+
+            assertEquals("AtY0laUfhglK3lC7\n", get(client, base + "&date=2018-12-09").body());
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    responses.add(executor.submit(() ->
+                            get(client, base + "&date=2018-12-08&date=2018-12-09&top=1")));
+                }
+                for (Future<HttpResponse<String>> response : responses) {
+                    assertEquals(200, response.get().statusCode());
+                    assertEquals("2018-12-08,SAZuXPGUrfbcn5UA,1\n2018-12-09,AtY0laUfhglK3lC7,2\n",
+                            response.get().body());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertTrue(reads.get() <= 17, "Repeated queries should be answered from the cache.");
+            assertEquals(400, get(client, base + "&date=09.12.2018").statusCode());
+            assertEquals(400, get(client, base).statusCode());
+        }
+    }
+
+    private static HttpResponse<String> get(HttpClient client, String uri) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static CookieFileReader countingReader(AtomicInteger reads) {
+        CookieFileReader delegate = new CSVCookieFileReader();
+        return new CookieFileReader() {
+            @Override
+            public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+                return delegate.readFile(files, targetDate);
+            }
+
+            @Override
+            public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+                reads.incrementAndGet();
+                return delegate.countCookiesByDay(files, dates);
+            }
+        };
+    }
+}
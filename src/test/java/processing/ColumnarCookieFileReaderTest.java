@@ -0,0 +1,104 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarCookieFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConvertedFileGivesSameResultsAsCsv() throws Exception {
+        StringBuilder log = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(42);
+        for (int day = 9; day >= 6; day--) {
+            for (int second = 86_000; second >= 0; second -= 1 + random.nextInt(400)) {
+                log.append("cookie").append(random.nextInt(50)).append(String.format(",2018-12-%02dT%02d:%02d:%02d+00:00\n",
+                        day, second / 3600, second / 60 % 60, second % 60));
+            }
+            if (day == 8) {
+                log.append("broken line\n");
+            }
+        }
+        File csv = tempDir.resolve("cookie_log.csv").toFile();
+        Files.writeString(csv.toPath(), log.toString());
+
+        assertTrue(ColumnarConverter.convert(csv));
+        File columnar = ColumnarCookieFileReader.columnarOf(csv);
+        assertTrue(columnar.isFile(), "The columnar file should be written next to the log.");
+
+        CookieFileProcessor expected = new CookieFileProcessorImpl(new CSVCookieFileReader());
+        CookieFileProcessor actual = new CookieFileProcessorImpl(new ColumnarCookieFileReader(new CSVCookieFileReader()));
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        List<Date> dates = new ArrayList<>();
+        for (String date : List.of("2018-12-09", "2018-12-08", "2018-12-06", "2018-12-01")) {
+            dates.add(dateFormat.parse(date));
+        }
+
+        for (Date date : dates) {
+            assertEquals(ids(expected.getMostActiveCookies(List.of(csv), date)),
+                    ids(actual.getMostActiveCookies(List.of(columnar), date)),
+                    "Most active cookies should match on " + dateFormat.format(date));
+        }
+        Map<Date, List<Cookie>> expectedTop = expected.getTopCookies(List.of(csv), dates, 5);
+        Map<Date, List<Cookie>> actualTop = actual.getTopCookies(List.of(columnar), dates, 5);
+        for (Date date : dates) {
+            assertEquals(TestLogs.countsOf(expectedTop.get(date)), TestLogs.countsOf(actualTop.get(date)),
+                    "Top cookies should match on " + dateFormat.format(date));
+        }
+
+        CookieFileReader csvReader = new CSVCookieFileReader();
+        CookieFileReader columnarReader = new ColumnarCookieFileReader(csvReader);
+        assertEquals(TestLogs.timestampsById(csvReader.readFile(List.of(csv), dates.get(1))),
+                TestLogs.timestampsById(columnarReader.readFile(List.of(columnar), dates.get(1))),
+                "Timestamps should be restored from the deltas.");
+    }
+
+    @Test
+    void testOtherFilesAreReadByDelegate() throws Exception {
+        File csv = tempDir.resolve("plain.csv").toFile();
+        Files.writeString(csv.toPath(), "cookie,timestamp\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\n"
+                + "cookie2,2018-12-09T10:13:00+00:00\n");
+        File other = tempDir.resolve("other.csv").toFile();
+        Files.writeString(other.toPath(), "cookie,timestamp\n"
+                + "cookie2,2018-12-09T09:19:00+00:00\n");
+        File columnar = tempDir.resolve("other.cols").toFile();
+        assertTrue(ColumnarConverter.convert(other, columnar));
+
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        CookieCounter counter = new ColumnarCookieFileReader(new CSVCookieFileReader())
+                .countCookies(List.of(csv, columnar), date);
+        assertEquals(1, counter.get("cookie1"));
+        assertEquals(2, counter.get("cookie2"));
+    }
+
+    @Test
+    void testUnsortedLogIsNotConverted() throws Exception {
+        File csv = tempDir.resolve("unsorted.csv").toFile();
+        Files.writeString(csv.toPath(), "cookie,timestamp\n"
+                + "cookie1,2018-12-08T14:19:00+00:00\n"
+                + "cookie2,2018-12-09T10:13:00+00:00\n");
+
+        assertFalse(ColumnarConverter.convert(csv));
+        assertFalse(ColumnarCookieFileReader.columnarOf(csv).exists(), "No columnar file should be left behind.");
+    }
+
+    private static Set<String> ids(Collection<Cookie> cookies) {
+        Set<String> ids = new TreeSet<>();
+        for (Cookie cookie : cookies) {
+            ids.add(cookie.getCookieId());
+        }
+        return ids;
+    }
+}
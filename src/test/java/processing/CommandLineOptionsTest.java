@@ -0,0 +1,65 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.text.ParseException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandLineOptionsTest {
+
+    @Test
+    void testParseExpandsRangeAfterListedDates() throws ParseException {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"-f", "a.csv", "-", "b.csv",
+                "-d", "2018-12-01", "--from", "2018-12-07", "--to", "2018-12-09", "--top", "3", "-r", "seek"});
+
+        assertEquals(List.of(new File("a.csv"), new File("-"), new File("b.csv")), options.getFiles(),
+                "Files should be listed in order, including the standard input");
+        assertTrue(options.readsStandardInput(), "The standard input should be detected among the files");
+        List<String> dates = new ArrayList<>();
+        for (Date date : options.getDates()) {
+            dates.add(options.getDateFormat().format(date));
+        }
+        assertEquals(List.of("2018-12-01", "2018-12-07", "2018-12-08", "2018-12-09"), dates,
+                "The range should be expanded after the dates given with -d");
+        assertEquals(3, options.getTop(), "--top should be parsed");
+        assertEquals(ReaderMode.SEEK, options.getReaderMode(), "-r should select the reader mode");
+    }
+
+    @Test
+    void testParseKeepsDefaultsOfMissingFlags() throws ParseException {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"-f", "a.csv", "-d", "2018-12-09",
+                "--workers", "4"});
+
+        assertEquals(ReaderMode.CSV, options.getReaderMode(), "The csv reader should be the default");
+        assertEquals(4, options.getPartitions(), "Partitions should default to the number of workers");
+        assertEquals(-1, options.getPort(), "No server should be started by default");
+        assertEquals(256L << 20, options.getCacheSize(), "The cache should default to 256 megabytes");
+        assertFalse(options.hasWindows(), "A plain date query should not ask for windows");
+    }
+
+    @Test
+    void testParseRejectsFlagWithoutValue() {
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"-f", "a.csv",
+                "--top"}), "A flag missing its value should be rejected");
+    }
+
+    @Test
+    void testWindowsOfZoneWeekAndExplicitWindow() throws ParseException {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"-f", "logs.cube", "-d", "2018-12-03",
+                "--week", "--zone", "+02:00", "--window", "2018-12-09T06:00:00Z", "2018-12-09T12:00:00Z"});
+
+        Map<String, long[]> windows = CookieFileProcessorImpl.windowsOf(options);
+
+        assertTrue(options.hasWindows(), "A window should be detected");
+        assertEquals(List.of("2018-12-09T06:00:00Z/2018-12-09T12:00:00Z", "2018-12-03"),
+                new ArrayList<>(windows.keySet()), "The explicit window should come before the dates");
+        assertArrayEquals(new long[]{1544335200L, 1544356800L},
+                windows.get("2018-12-09T06:00:00Z/2018-12-09T12:00:00Z"),
+                "The explicit window should span its timestamps");
+        assertArrayEquals(new long[]{1543788000L, 1544392800L}, windows.get("2018-12-03"),
+                "A week should start at midnight of the date in the zone and last seven days");
+    }
+}
@@ -0,0 +1,75 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedCookieFileReaderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    @Test
+    void testReadBlockCompressedFile(@TempDir Path tempDir) throws IOException, ParseException {
+        File source = TestLogs.writeHourlyLog(tempDir.resolve("cookie_several_days.csv").toFile());
+        File compressed = tempDir.resolve("cookie_several_days.csv.gz").toFile();
+        BlockGzip.compress(source, compressed, 200);
+
+        try (InputStream in = new GZIPInputStream(new FileInputStream(compressed))) {
+            assertArrayEquals(Files.readAllBytes(source.toPath()), in.readAllBytes(),
+                    "Block-compressed file should be readable as a regular gzip file.");
+        }
+
+        CompressedCookieFileReader reader = new CompressedCookieFileReader(new CSVCookieFileReader(), 3);
+        for (int day = 0; day <= 11; day++) {
+            Date targetDate = dateFormat.parse(String.format("2018-12-%02d", day == 0 ? 31 : day));
+            assertEquals(TestLogs.countsOf(new CSVCookieFileReader().countCookies(List.of(source), targetDate)),
+                    TestLogs.countsOf(reader.countCookies(List.of(compressed), targetDate)),
+                    "Compressed reader should count the same cookies as the sequential reader for day " + day);
+            assertEquals(new CSVCookieFileReader().readFile(List.of(source), targetDate).size(),
+                    reader.readFile(List.of(compressed), targetDate).size());
+        }
+    }
+
+    @Test
+    void testReadRegularGzipFileAndUncompressedFile(@TempDir Path tempDir) throws IOException, ParseException {
+        File source = TestLogs.writeHourlyLog(tempDir.resolve("cookie_several_days.csv").toFile());
+        File compressed = tempDir.resolve("archive.csv.gz").toFile();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+            Files.copy(source.toPath(), out);
+        }
+        List<Date> dates = List.of(dateFormat.parse("2018-12-09"), dateFormat.parse("2018-12-03"));
+
+        Map<Long, CookieCounter> expected = new CSVCookieFileReader().countCookiesByDay(List.of(source), dates);
+        Map<Long, CookieCounter> actual = new CompressedCookieFileReader(new CSVCookieFileReader(), 2)
+                .countCookiesByDay(List.of(compressed, source), dates);
+
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Long epochDay : expected.keySet()) {
+            Map<String, Integer> doubled = new HashMap<>();
+            TestLogs.countsOf(expected.get(epochDay)).forEach((cookieId, count) -> doubled.put(cookieId, count * 2));
+            assertEquals(doubled, TestLogs.countsOf(actual.get(epochDay)),
+                    "Counts of the gzip file and the uncompressed file should be added.");
+        }
+    }
+
+    @Test
+    void testCorruptFileIsSkipped(@TempDir Path tempDir) throws IOException, ParseException {
+        File corrupt = tempDir.resolve("corrupt.csv.gz").toFile();
+        Files.write(corrupt.toPath(), "not gzip at all".getBytes());
+
+        CookieCounter counter = new CompressedCookieFileReader().countCookies(List.of(corrupt),
+                dateFormat.parse("2018-12-09"));
+
+        assertEquals(0, counter.size(), "A corrupt file should be logged and skipped.");
+    }
+}
@@ -0,0 +1,77 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CookieCounterTest {
+
+    @Test
+    void testCountsAndMaximum() {
+        CookieCounter counter = new CookieCounter();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String cookieId = "cookie" + (i % 1_000);
+            counter.increment(cookieId);
+            expected.merge(cookieId, 1, Integer::sum);
+        }
+        counter.add("cookie7", 5);
+        expected.merge("cookie7", 5, Integer::sum);
+
+        Map<String, Integer> actual = new HashMap<>();
+        counter.forEach(actual::put);
+
+        assertEquals(expected, actual, "Counts should survive resizing of the table.");
+        assertEquals(1_000, counter.size());
+        assertEquals(15, counter.getMaxCount());
+        assertEquals(List.of("cookie7"), counter.getMostActiveCookieIds());
+        assertEquals(0, counter.get("unknown"));
+    }
+
+    @Test
+    void testMergeKeepsTies() {
+        CookieCounter first = new CookieCounter();
+        first.add("cookie1", 2);
+        first.add("cookie2", 1);
+        CookieCounter second = new CookieCounter();
+        second.add("cookie2", 1);
+
+        first.merge(second);
+
+        assertEquals(2, first.getMaxCount());
+        assertEquals(2, first.getMostActiveCookieIds().size(), "Both cookies should be the most active.");
+    }
+
+    @Test
+    void testTopCookies() {
+        CookieCounter counter = new CookieCounter();
+        for (int i = 0; i < 100; i++) {
+            counter.add("cookie" + i, i % 10);
+        }
+
+        List<Cookie> topCookies = counter.getTopCookies(12);
+
+        assertEquals(12, topCookies.size());
+        assertEquals("cookie19", topCookies.get(0).getCookieId(), "Ties should be ordered by identifier.");
+        assertEquals(9, topCookies.get(0).getCount());
+        assertEquals("cookie99", topCookies.get(9).getCookieId());
+        assertEquals("cookie18", topCookies.get(10).getCookieId());
+        assertEquals(8, topCookies.get(11).getCount());
+        assertEquals(100, counter.getTopCookies(1_000).size());
+        assertTrue(counter.getTopCookies(0).isEmpty());
+    }
+
+    @Test
+    void testEmptyCounter() {
+        CookieCounter counter = new CookieCounter();
+
+        assertEquals(0, counter.getMaxCount());
+        assertTrue(counter.getMostActiveCookieIds().isEmpty());
+        assertTrue(counter.getTopCookies(3).isEmpty());
+    }
+}
@@ -3,14 +3,20 @@ package processing;
 import model.Cookie;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 public class CookieFileProcessorImplTest {
 
@@ -115,4 +121,189 @@ public class CookieFileProcessorImplTest {
         assertEquals(expectedActiveCookieCount, mostActiveCookies.size(),
                 "The number of most active cookies does not match the expected value.");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReadSeveralFilesConcurrently() throws Exception {
+        CookieFileProcessorImpl concurrentProcessor =
+                new CookieFileProcessorImpl(new ConcurrentCookieFileReader(CSVCookieFileReader::new, 2));
+        List<File> files = List.of(new File("src/test/resources/cookie_three_most_active_cookies.csv"),
+                new File("src/test/resources/incorrect_format.txt"),
+                new File("src/test/resources/cookie_one_line.csv"),
+                new File("src/test/resources/directory"));
+
+        Date testDate = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        Collection<Cookie> mostActiveCookies = concurrentProcessor.getMostActiveCookies(files, testDate);
+
+        int expectedActiveCookieCount = 1;
+        assertEquals(expectedActiveCookieCount, mostActiveCookies.size(),
+                "The number of most active cookies does not match the expected value.");
+        Cookie cookie = mostActiveCookies.iterator().next();
+        assertEquals("cookie1", cookie.getCookieId(),
+                "The expected most active cookie 'cookie1' was not found.");
+        assertEquals(3, cookie.getCount(),
+                "Timestamps of 'cookie1' from both files should be merged.");
+
+        CookieFileProcessorImpl offHeapProcessor = new CookieFileProcessorImpl(
+                new ConcurrentCookieFileReader(CSVCookieFileReader::new, 2), false, 1 << 20);
+        Collection<Cookie> offHeapCookies = offHeapProcessor.getMostActiveCookies(files, testDate);
+        assertEquals(List.of("cookie1"), idsOf(offHeapCookies),
+                "Files counted concurrently into one off-heap counter should give the same answer.");
+        assertEquals(3, offHeapCookies.iterator().next().getCount(),
+                "Occurrences of 'cookie1' from both files should be added to the shared sink.");
+    }
+
+    @Test
+    public void testRetainTimestamps() throws Exception {
+        CookieFileProcessorImpl retainingProcessor = new CookieFileProcessorImpl(new CSVCookieFileReader(), true);
+        List<File> files = List.of(new File("src/test/resources/cookie_given_source.csv"));
+
+        Date testDate = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        Collection<Cookie> countedCookies = processor.getMostActiveCookies(files, testDate);
+        Collection<Cookie> retainedCookies = retainingProcessor.getMostActiveCookies(files, testDate);
+
+        assertEquals(2, countedCookies.iterator().next().getCount(),
+                "The most active cookie should be counted twice.");
+        assertTrue(countedCookies.iterator().next().getTimestamps().isEmpty(),
+                "Timestamps should not be retained by default.");
+        assertEquals(2, retainedCookies.iterator().next().getTimestamps().size(),
+                "Timestamps should be retained when requested.");
+        assertThrows(UnsupportedOperationException.class,
+                () -> retainedCookies.iterator().next().getTimestamps().add(testDate),
+                "Timestamps should only be added through the cookie.");
+    }
+
+    @Test
+    public void testTopCookiesForSeveralDates() throws Exception {
+        List<File> files = List.of(new File("src/test/resources/cookie_given_source.csv"));
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        List<Date> dates = List.of(dateFormat.parse("2018-12-10"), dateFormat.parse("2018-12-09"),
+                dateFormat.parse("2018-12-08"), dateFormat.parse("2018-12-07"));
+
+        List<CookieFileReader> readers = new ArrayList<>();
+        for (ReaderMode mode : ReaderMode.values()) {
+            readers.add(mode.createReader(2));
+        }
+        readers.add(new ConcurrentCookieFileReader(CSVCookieFileReader::new, 2));
+
+        for (CookieFileReader reader : readers) {
+            CookieFileProcessorImpl topProcessor = new CookieFileProcessorImpl(reader);
+            Map<Date, List<Cookie>> topCookies = topProcessor.getTopCookies(files, dates, 2);
+            String name = reader.getClass().getSimpleName();
+
+            assertEquals(List.of(dates.get(3), dates.get(2), dates.get(1), dates.get(0)),
+                    new ArrayList<>(topCookies.keySet()), name + " should answer every date in order.");
+            assertEquals(List.of("AtY0laUfhglK3lC7", "5UAVanZf6UtGyKVS"), idsOf(topCookies.get(dates.get(1))),
+                    name + " should rank by count and then by identifier.");
+            assertEquals(2, topCookies.get(dates.get(1)).get(0).getCount());
+            assertEquals(List.of("4sMM2LxV07bPJzwf", "SAZuXPGUrfbcn5UA"), idsOf(topCookies.get(dates.get(2))));
+            assertEquals(List.of("4sMM2LxV07bPJzwf"), idsOf(topCookies.get(dates.get(3))));
+            assertTrue(topCookies.get(dates.get(0)).isEmpty(), name + " should find nothing on a missing day.");
+
+            Map<Date, Collection<Cookie>> mostActiveCookies = topProcessor.getMostActiveCookies(files, dates);
+            assertEquals(List.of("AtY0laUfhglK3lC7"), idsOf(mostActiveCookies.get(dates.get(1))));
+            assertEquals(3, mostActiveCookies.get(dates.get(2)).size(), name + " should keep all tied cookies.");
+        }
+    }
+
+    @Test
+    public void testDailySummaries(@TempDir Path tempDir) throws Exception {
+        File first = tempDir.resolve("cookie_first.csv").toFile();
+        try (PrintWriter out = new PrintWriter(first)) {
+            out.println("cookie,timestamp");
+            out.println("AtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00");
+            out.println("SAZuXPGUrfbcn5UA,2018-12-09T10:13:00+00:00");
+            out.println("AtY0laUfhglK3lC7,2018-12-09T06:19:00+00:00");
+            out.println("5UAVanZf6UtGyKVS,2018-12-08T22:03:00+00:00");
+        }
+        File second = tempDir.resolve("cookie_second.csv").toFile();
+        try (PrintWriter out = new PrintWriter(second)) {
+            out.println("cookie,timestamp");
+            out.println("4sMM2LxV07bPJzwf,2018-12-09T21:30:00+00:00");
+            out.println("AtY0laUfhglK3lC7,2018-12-09T02:30:00+00:00");
+            out.println("5UAVanZf6UtGyKVS,2018-12-08T12:00:00+00:00");
+            out.println("fbcn5UAVanZf6UtG,2018-12-08T09:30:00+00:00");
+        }
+        List<File> files = List.of(first, second);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Date day9 = dateFormat.parse("2018-12-09");
+        Date day8 = dateFormat.parse("2018-12-08");
+        Date day7 = dateFormat.parse("2018-12-07");
+
+        SketchStore store = new SketchStore(tempDir.resolve("sketches").toFile());
+        List<CookieFileProcessor> processors = List.of(processor,
+                new CookieFileProcessorImpl(new MappedCookieFileReader(), false, 1 << 20),
+                new CookieFileProcessorImpl(new ConcurrentCookieFileReader(CSVCookieFileReader::new, 2), false, 1 << 20),
+                new CookieFileProcessorImpl(new PruningCookieFileReader(
+                        new ConcurrentCookieFileReader(CSVCookieFileReader::new, 2)), false, 0, store),
+                new ApproximateCookieFileProcessor(new CSVCookieFileReader(), 0.1, 0, false));
+        for (CookieFileProcessor summaryProcessor : processors) {
+            String name = summaryProcessor.getClass().getSimpleName();
+            Map<Date, DaySummary> summaries = summaryProcessor.getDailySummaries(files, List.of(day9, day8, day7));
+
+            assertEquals(List.of(day7, day8, day9), new ArrayList<>(summaries.keySet()),
+                    name + " should summarize every date in order.");
+            assertEquals(5, summaries.get(day9).getRecords(), name + " should count the records of both files.");
+            assertEquals(3, summaries.get(day9).getDistinctCookies(), name + " should count shared cookies once.");
+            assertEquals(List.of("AtY0laUfhglK3lC7"), idsOf(summaries.get(day9).getMostActiveCookies()));
+            assertEquals(3, summaries.get(day9).getMostActiveCookies().iterator().next().getCount());
+            assertEquals(3, summaries.get(day8).getRecords());
+            assertEquals(2, summaries.get(day8).getDistinctCookies());
+            assertEquals(0, summaries.get(day7).getDistinctCookies(), name + " should find nothing on a missing day.");
+
+            DistinctCookieSketch total = new DistinctCookieSketch();
+            summaries.values().forEach(summary -> total.merge(summary.getSketch()));
+            assertEquals(5, total.estimate(), name + " should merge the sketches of several days.");
+        }
+        assertEquals(2, store.load(first).get(DayRange.of(day9).getEpochDay()).estimate(),
+                "Files counted concurrently should cache the sketches of every file.");
+        assertEquals(2, store.load(second).get(DayRange.of(day8).getEpochDay()).estimate());
+    }
+
+    @Test
+    public void testDistinctCookiesFromCachedSketches(@TempDir Path tempDir) throws Exception {
+        File log = tempDir.resolve("cookie_log.csv").toFile();
+        try (PrintWriter out = new PrintWriter(log)) {
+            out.println("cookie,timestamp");
+            out.println("AtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00");
+            out.println("SAZuXPGUrfbcn5UA,2018-12-09T10:13:00+00:00");
+            out.println("5UAVanZf6UtGyKVS,2018-12-08T22:03:00+00:00");
+        }
+        int[] reads = new int[1];
+        CookieFileReader countingReader = (files, targetDate) -> {
+            reads[0]++;
+            return new CSVCookieFileReader().readFile(files, targetDate);
+        };
+        SketchStore store = new SketchStore(tempDir.resolve("sketches").toFile());
+        CookieFileProcessorImpl cachingProcessor = new CookieFileProcessorImpl(countingReader, false, 0, store);
+        Date day9 = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        Date day8 = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-08");
+
+        assertEquals(2, cachingProcessor.getDistinctCookies(List.of(log), List.of(day9)).get(day9).estimate());
+        assertEquals(1, reads[0], "First query should read the log.");
+        assertTrue(store.sketchFileOf(log).isFile(), "Sketches of the log should be cached.");
+
+        Map<Date, DistinctCookieSketch> sketches = cachingProcessor.getDistinctCookies(List.of(log), List.of(day9, day8));
+        assertEquals(2, sketches.get(day9).estimate(), "Cached sketch should give the same estimate.");
+        assertEquals(1, sketches.get(day8).estimate());
+        assertEquals(2, reads[0], "Only the day missing from the cache should be read.");
+
+        cachingProcessor.getDistinctCookies(List.of(log), List.of(day9, day8));
+        assertEquals(2, reads[0], "Cached days should not be read again.");
+
+        try (PrintWriter out = new PrintWriter(new FileWriter(log, true))) {
+            out.println("4sMM2LxV07bPJzwf,2018-12-08T01:00:00+00:00");
+        }
+        assertTrue(log.setLastModified(log.lastModified() + 2000));
+        assertEquals(2, cachingProcessor.getDistinctCookies(List.of(log), List.of(day8)).get(day8).estimate(),
+                "Changed log should be read again.");
+        assertEquals(3, reads[0]);
+    }
+
+    private static List<String> idsOf(Collection<Cookie> cookies) {
+        List<String> ids = new ArrayList<>();
+        for (Cookie cookie : cookies) {
+            ids.add(cookie.getCookieId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,88 @@
+package processing;
+
+import model.CookieIdCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CookieIdDictionaryTest {
+
+    @Test
+    void testPackedIdsRoundTrip() {
+        for (String cookieId : List.of("", "0", "AtY0laUfhglK3lC7", "zzzzzzzzzzzzzzzzzzzz", "abcdefghij")) {
+            long high = CookieIdCodec.packHigh(cookieId);
+            long low = CookieIdCodec.packLow(cookieId);
+            assertNotEquals(CookieIdCodec.INVALID, high, cookieId + " should be packable.");
+            assertEquals(cookieId, CookieIdCodec.unpack(high, low), "Packing should be reversible.");
+        }
+        assertEquals(CookieIdCodec.INVALID, CookieIdCodec.packHigh("cookie-1"));
+        assertEquals(CookieIdCodec.INVALID, CookieIdCodec.packLow("123456789012345678901"));
+    }
+
+    @Test
+    void testPackedIdsKeepTheOrderOfIdentifiers() {
+        String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            String first = randomId(random, alphabet);
+            String second = random.nextInt(4) == 0 ? first.substring(0, random.nextInt(first.length() + 1))
+                    : randomId(random, alphabet);
+            int packedOrder = Long.compare(CookieIdCodec.packHigh(first), CookieIdCodec.packHigh(second));
+            if (packedOrder == 0) {
+                packedOrder = Long.compare(CookieIdCodec.packLow(first), CookieIdCodec.packLow(second));
+            }
+            assertEquals(Integer.signum(first.compareTo(second)), Integer.signum(packedOrder),
+                    first + " and " + second + " should compare like their packed halves.");
+        }
+    }
+
+    @Test
+    void testDenseIdsFromStringsAndBytes() {
+        CookieIdDictionary dictionary = new CookieIdDictionary(0);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.idOf("cookie" + i), "Ids should be assigned in order of first appearance.");
+        }
+        assertEquals(10_000, dictionary.idOf("not base62!"));
+
+        for (String cookieId : List.of("cookie0", "cookie9999", "not base62!")) {
+            ByteBuffer buffer = ByteBuffer.wrap(("x," + cookieId + ",y").getBytes(StandardCharsets.UTF_8));
+            int id = dictionary.idOf(buffer, 2, 2 + cookieId.length());
+            assertEquals(dictionary.find(cookieId), id, "Bytes and Strings should map to the same id.");
+            assertEquals(cookieId, dictionary.cookieIdOf(id));
+        }
+        assertEquals(10_001, dictionary.size());
+        assertEquals(-1, dictionary.find("unknown"));
+    }
+
+    @Test
+    void testCounterMergesAcrossDictionaries() {
+        CookieCounter first = new CookieCounter();
+        first.increment("cookie1");
+        first.increment("cookie:2");
+        CookieCounter second = new CookieCounter();
+        second.increment(ByteBuffer.wrap("cookie:2cookie1".getBytes(StandardCharsets.US_ASCII)), 0, 8);
+        second.increment(ByteBuffer.wrap("cookie:2cookie1".getBytes(StandardCharsets.US_ASCII)), 8, 15);
+        second.increment("cookie3");
+
+        first.merge(second);
+
+        assertEquals(2, first.get("cookie1"));
+        assertEquals(2, first.get("cookie:2"));
+        assertEquals(1, first.get("cookie3"));
+        assertEquals(3, first.size());
+    }
+
+    private static String randomId(Random random, String alphabet) {
+        StringBuilder id = new StringBuilder();
+        int length = 1 + random.nextInt(CookieIdCodec.MAX_PACKED_LENGTH);
+        for (int i = 0; i < length; i++) {
+            id.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return id.toString();
+    }
+}
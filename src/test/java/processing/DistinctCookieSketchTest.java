@@ -0,0 +1,62 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctCookieSketchTest {
+
+    @Test
+    void testEstimateIsWithinErrorBound() {
+        DistinctCookieSketch sketch = new DistinctCookieSketch();
+        assertEquals(0, sketch.estimate(), "Empty sketch should estimate no cookies.");
+        assertTrue(sketch.isEmpty(), "New sketch should be empty.");
+
+        for (int i = 0; i < 10; i++) {
+            sketch.add("cookie" + i);
+            sketch.add("cookie" + i);
+        }
+        assertEquals(10, sketch.estimate(), "Small cardinalities should be counted almost exactly.");
+
+        for (int i = 10; i < 200_000; i++) {
+            sketch.add("cookie" + i);
+        }
+        double error = Math.abs(sketch.estimate() - 200_000) / 200_000.0;
+        assertTrue(error < 3 * sketch.getStandardError(),
+                "Estimate " + sketch.estimate() + " should be within three standard errors.");
+    }
+
+    @Test
+    void testMergeAndSerialization() throws IOException {
+        DistinctCookieSketch first = new DistinctCookieSketch();
+        DistinctCookieSketch second = new DistinctCookieSketch();
+        for (int i = 0; i < 30_000; i++) {
+            byte[] id = ("cookie" + i).getBytes(StandardCharsets.US_ASCII);
+            first.add(ByteBuffer.wrap(id), 0, id.length);
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            second.add("cookie" + i);
+        }
+        first.merge(second);
+        double error = Math.abs(first.estimate() - 50_000) / 50_000.0;
+        assertTrue(error < 3 * first.getStandardError(),
+                "Merged estimate " + first.estimate() + " should count the shared cookies once.");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        first.writeTo(new DataOutputStream(bytes));
+        assertEquals(1 + (1 << DistinctCookieSketch.DEFAULT_PRECISION), bytes.size(),
+                "Sketch should be written as its precision and one byte per register.");
+        DistinctCookieSketch read = DistinctCookieSketch.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(first.estimate(), read.estimate(), "Read sketch should give the same estimate.");
+
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new DistinctCookieSketch(10)),
+                "Sketches of different precisions should not be merged.");
+        assertThrows(IOException.class, () -> DistinctCookieSketch.readFrom(
+                new DataInputStream(new ByteArrayInputStream(new byte[]{99}))), "Corrupt sketch should be rejected.");
+    }
+}
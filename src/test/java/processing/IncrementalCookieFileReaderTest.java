@@ -0,0 +1,145 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalCookieFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOnlyAppendedBytesAreParsed() throws Exception {
+        File log = tempDir.resolve("current.csv").toFile();
+        Files.writeString(log.toPath(), "cookie,timestamp\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\n"
+                + "cookie2,2018-12-09T10:13:00+00:00\n");
+        CheckpointStore store = new CheckpointStore(tempDir.resolve("checkpoints").toFile());
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        FileMetrics metrics = ReadMetrics.global().file(log);
+
+        IncrementalCookieFileReader reader = new IncrementalCookieFileReader(new CSVCookieFileReader(), store);
+        assertEquals(1, reader.countCookies(List.of(log), date).get("cookie1"));
+
+        String appended = "cookie1,2018-12-09T15:00:00+00:00\n"
+                + "cookie3,2018-12-10T01:00:00+00:00\n";
+        String partial = "cookie1,2018-12-09T16";
+        Files.writeString(log.toPath(), appended + partial, StandardOpenOption.APPEND);
+        long bytesBefore = metrics.getBytesRead();
+        CookieCounter counter = reader.countCookies(List.of(log), date);
+        assertEquals(2, counter.get("cookie1"));
+        assertEquals(1, counter.get("cookie2"));
+        assertEquals(appended.length() + partial.length(), metrics.getBytesRead() - bytesBefore,
+                "Only the appended bytes should be parsed.");
+
+        Files.writeString(log.toPath(), ":00:00+00:00\n", StandardOpenOption.APPEND);
+        IncrementalCookieFileReader resumed = new IncrementalCookieFileReader(new CSVCookieFileReader(), store);
+        bytesBefore = metrics.getBytesRead();
+        assertEquals(3, resumed.countCookies(List.of(log), date).get("cookie1"),
+                "A new reader should resume from the saved checkpoint and complete the partial line.");
+        assertEquals("cookie1,2018-12-09T16:00:00+00:00\n".length(), metrics.getBytesRead() - bytesBefore);
+        long epochDay = DayRange.of(date).getEpochDay();
+        assertEquals(new CSVCookieFileReader().countCookiesByDay(List.of(log), List.of(date)).get(epochDay).size(),
+                resumed.countCookiesByDay(List.of(log), List.of(date)).get(epochDay).size());
+    }
+
+    @Test
+    void testLastLineWithoutTerminatorIsCountedOnce() throws Exception {
+        File log = tempDir.resolve("unterminated.csv").toFile();
+        Files.writeString(log.toPath(), "cookie,timestamp\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\n"
+                + "cookie2,2018-12-09T10:13:00+00:00\n"
+                + "cookie2,2018-12-08T22:03:00+00:00");
+        CheckpointStore store = new CheckpointStore(tempDir.resolve("checkpoints").toFile());
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        List<Date> dates = List.of(dateFormat.parse("2018-12-09"), dateFormat.parse("2018-12-08"));
+        long epochDay8 = DayRange.of(dates.get(1)).getEpochDay();
+        IncrementalCookieFileReader reader = new IncrementalCookieFileReader(new CSVCookieFileReader(), store);
+
+        Map<Long, CookieCounter> expected = new CSVCookieFileReader().countCookiesByDay(List.of(log), dates);
+        for (int query = 1; query <= 2; query++) {
+            Map<Long, CookieCounter> counters = reader.countCookiesByDay(List.of(log), dates);
+            assertEquals(expected.keySet(), counters.keySet());
+            for (Long epochDay : expected.keySet()) {
+                assertEquals(TestLogs.countsOf(expected.get(epochDay)), TestLogs.countsOf(counters.get(epochDay)),
+                        "Query " + query + " should count the unterminated last line like the CSV reader.");
+            }
+        }
+
+        Files.writeString(log.toPath(), "\ncookie3,2018-12-08T21:30:00+00:00\n", StandardOpenOption.APPEND);
+        CookieCounter completed = reader.countCookies(List.of(log), dates.get(1));
+        assertEquals(1, completed.get("cookie2"), "The completed line should be counted once.");
+        assertEquals(TestLogs.countsOf(new CSVCookieFileReader().countCookiesByDay(List.of(log), dates).get(epochDay8)),
+                TestLogs.countsOf(completed), "The completed log should be counted like the CSV reader.");
+    }
+
+    @Test
+    void testTruncatedOrRotatedLogIsRescanned() throws Exception {
+        File log = tempDir.resolve("rotating.csv").toFile();
+        Files.writeString(log.toPath(), "cookie,timestamp\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\n"
+                + "cookie1,2018-12-09T10:13:00+00:00\n");
+        CheckpointStore store = new CheckpointStore(tempDir.resolve("checkpoints").toFile());
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        IncrementalCookieFileReader reader = new IncrementalCookieFileReader(new CSVCookieFileReader(), store);
+        assertEquals(2, reader.countCookies(List.of(log), date).get("cookie1"));
+
+        Files.writeString(log.toPath(), "cookie,timestamp\n"
+                + "cookie2,2018-12-09T11:00:00+00:00\n");
+        CookieCounter truncated = reader.countCookies(List.of(log), date);
+        assertEquals(0, truncated.get("cookie1"), "A truncated log should be rescanned.");
+        assertEquals(1, truncated.get("cookie2"));
+
+        File rotated = tempDir.resolve("next.csv").toFile();
+        Files.writeString(rotated.toPath(), "cookie,timestamp\n"
+                + "cookie3,2018-12-09T12:00:00+00:00\n"
+                + "cookie3,2018-12-09T11:00:00+00:00\n");
+        Files.move(rotated.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        CookieCounter replaced = reader.countCookies(List.of(log), date);
+        assertEquals(0, replaced.get("cookie2"), "A replaced log should be rescanned.");
+        assertEquals(2, replaced.get("cookie3"));
+    }
+
+    @Test
+    void testOnlyTouchedDaysAreSaved() throws Exception {
+        File log = tempDir.resolve("growing.csv").toFile();
+        Files.writeString(log.toPath(), "cookie,timestamp\n"
+                + "cookie1,2018-12-09T01:00:00+00:00\n"
+                + "cookie2,2018-12-08T23:00:00+00:00\n");
+        CheckpointStore store = new CheckpointStore(tempDir.resolve("checkpoints").toFile());
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Date day9 = dateFormat.parse("2018-12-09");
+        Date day8 = dateFormat.parse("2018-12-08");
+        long epochDay9 = DayRange.of(day9).getEpochDay();
+        long epochDay8 = DayRange.of(day8).getEpochDay();
+
+        IncrementalCookieFileReader reader = new IncrementalCookieFileReader(new CSVCookieFileReader(), store);
+        reader.countCookiesByDay(List.of(log), List.of(day9, day8));
+        assertTrue(store.dayFileOf(log, epochDay9, 1).isFile(), "Every day of a new log should be saved.");
+        long savedDay8 = store.dayFileOf(log, epochDay8, 1).lastModified();
+
+        Files.writeString(log.toPath(), "cookie3,2018-12-09T20:00:00+00:00\n", StandardOpenOption.APPEND);
+        assertEquals(1, reader.countCookies(List.of(log), day9).get("cookie3"));
+        assertTrue(store.dayFileOf(log, epochDay9, 2).isFile(), "The day of the appended line should be saved.");
+        assertFalse(store.dayFileOf(log, epochDay9, 1).exists(), "The superseded day file should be deleted.");
+        assertEquals(savedDay8, store.dayFileOf(log, epochDay8, 1).lastModified(),
+                "A day without appended lines should not be written again.");
+
+        IncrementalCookieFileReader resumed = new IncrementalCookieFileReader(new CSVCookieFileReader(), store);
+        Map<Long, CookieCounter> counters = resumed.countCookiesByDay(List.of(log), List.of(day9, day8));
+        assertEquals(2, counters.get(epochDay9).size(), "Saved and appended counts should be resumed.");
+        assertEquals(1, counters.get(epochDay8).get("cookie2"));
+    }
+}
@@ -0,0 +1,100 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedCookieFileReaderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    @Test
+    void testIndexMatchesSequentialReader(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = writeSeveralDays(tempDir);
+
+        assertTrue(DayIndexBuilder.build(tempFile), "Index should be built for a sorted file.");
+        assertNotNull(DayIndex.open(tempFile), "Fresh index should be opened.");
+
+        CSVCookieFileReader sequential = new CSVCookieFileReader();
+        IndexedCookieFileReader reader = new IndexedCookieFileReader(new FailingReader(), false);
+        for (int day = 1; day <= 6; day++) {
+            Date targetDate = dateFormat.parse(String.format("2018-12-%02d", day));
+            assertEquals(TestLogs.countsOf(sequential.countCookies(List.of(tempFile), targetDate)),
+                    TestLogs.countsOf(reader.countCookies(List.of(tempFile), targetDate)),
+                    "Indexed counts should match the sequential reader for day " + day);
+            assertEquals(TestLogs.timestampsById(sequential.readFile(List.of(tempFile), targetDate)),
+                    TestLogs.timestampsById(reader.readFile(List.of(tempFile), targetDate)),
+                    "Indexed timestamps should match the sequential reader for day " + day);
+        }
+    }
+
+    @Test
+    void testStaleIndexFallsBackToScanning(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = writeSeveralDays(tempDir);
+        assertTrue(DayIndexBuilder.build(tempFile));
+        try (PrintWriter out = new PrintWriter(new FileWriter(tempFile, true))) {
+            out.println("cookie9,2018-12-01T00:00:01+00:00");
+        }
+
+        assertNull(DayIndex.open(tempFile), "Index should be stale after the file was modified.");
+        Date targetDate = dateFormat.parse("2018-12-01");
+        CookieCounter counter = new IndexedCookieFileReader(new CSVCookieFileReader(), false)
+                .countCookies(List.of(tempFile), targetDate);
+        assertEquals(1, counter.get("cookie9"), "New record should be found by the fallback reader.");
+
+        counter = new IndexedCookieFileReader(new FailingReader(), true).countCookies(List.of(tempFile), targetDate);
+        assertEquals(1, counter.get("cookie9"), "Rebuilt index should contain the new record.");
+    }
+
+    @Test
+    void testUnsortedFileIsNotIndexed(@TempDir Path tempDir) throws IOException {
+        File tempFile = tempDir.resolve("cookie_unsorted.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            out.println("cookie1,2018-12-08T14:19:00+00:00");
+            out.println("cookie2,2018-12-09T10:13:00+00:00");
+        }
+
+        assertFalse(DayIndexBuilder.build(tempFile), "Index should not be built for an unsorted file.");
+        assertFalse(DayIndex.sidecarOf(tempFile).exists());
+    }
+
+    private static File writeSeveralDays(Path tempDir) throws IOException {
+        File tempFile = tempDir.resolve("cookie_several_days.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            for (int day = 5; day >= 2; day--) {
+                for (int hour = 23; hour >= 0; hour -= 2) {
+                    out.printf("cookie%d,2018-12-%02dT%02d:00:00+00:00%n", (hour * day) % 5, day, hour);
+                }
+            }
+        }
+        return tempFile;
+    }
+
+    /**
+     * Reader that fails the test if the indexed reader falls back to scanning.
+     */
+    private static class FailingReader implements CookieFileReader {
+        @Override
+        public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+            return fail("Files should be answered from the index");
+        }
+
+        @Override
+        public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+            return fail("Files should be answered from the index");
+        }
+    }
+}
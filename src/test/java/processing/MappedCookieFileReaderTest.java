@@ -0,0 +1,62 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCookieFileReaderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    @Test
+    void testReadFileInSeveralSegments(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_several_days.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            for (int day = 10; day >= 1; day--) {
+                for (int hour = 23; hour >= 0; hour -= 3) {
+                    out.printf("cookie%d,2018-12-%02dT%02d:30:00+00:00%n", hour % 4, day, hour);
+                }
+            }
+        }
+
+        MappedCookieFileReader reader = new MappedCookieFileReader(100);
+        for (int day = 1; day <= 10; day++) {
+            Date targetDate = dateFormat.parse(String.format("2018-12-%02d", day));
+            assertEquals(TestLogs.countsOf(new CSVCookieFileReader().readFile(List.of(tempFile), targetDate)),
+                    TestLogs.countsOf(reader.readFile(List.of(tempFile), targetDate)),
+                    "Mapped reader should return the same cookies as the sequential reader for day " + day);
+        }
+    }
+
+    @Test
+    void testReadFileWithEmptyLinesAndIncorrectFormat(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_incorrect_data.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            out.println("cookie1,2018-12-09T14:19:00+00:00");
+            out.println(",");
+            out.println();
+            out.println("cookie2,not-a-date");
+            out.print("cookie1,2018-12-09T02:00:00+01:00");
+        }
+
+        Collection<Cookie> cookies = new MappedCookieFileReader().readFile(List.of(tempFile),
+                dateFormat.parse("2018-12-09"));
+
+        assertEquals(Map.of("cookie1", 2), TestLogs.countsOf(cookies), "Should read 2 valid records of 'cookie1'.");
+        Date expected = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX").parse("2018-12-09T01:00:00Z");
+        assertTrue(cookies.iterator().next().getTimestamps().contains(expected),
+                "Timestamp offsets should be applied.");
+    }
+}
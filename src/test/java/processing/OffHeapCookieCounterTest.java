@@ -0,0 +1,103 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCookieCounterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSpilledCountsMatchHeapCounter() {
+        CookieCounter expected = new CookieCounter();
+        Map<String, Integer> actual = new HashMap<>();
+        try (OffHeapCookieCounter counter = new OffHeapCookieCounter(0, tempDir.toFile())) {
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 60_000; i += round + 1) {
+                    String cookieId = "cookie" + i;
+                    counter.increment(cookieId);
+                    expected.increment(cookieId);
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.wrap("cookie7,not base62!".getBytes(StandardCharsets.US_ASCII));
+            counter.increment(buffer, 0, 7);
+            counter.increment(buffer, 8, buffer.limit());
+            counter.add("not base62!", 2);
+            expected.increment("cookie7");
+            expected.add("not base62!", 3);
+
+            assertTrue(counter.getRunCount() > 64, "A tiny budget should force many spilled runs.");
+            counter.forEach(actual::put);
+            assertEquals(expected.size(), counter.size(), "Every cookie should be counted once.");
+            assertEquals(expected.getMaxCount(), counter.getMaxCount());
+            assertEquals(new TreeSet<>(expected.getMostActiveCookieIds()),
+                    new TreeSet<>(counter.getMostActiveCookieIds()));
+            assertEquals(expected.getTopCookies(10), counter.getTopCookies(10),
+                    "Top cookies should not depend on the counter.");
+        }
+        expected.forEach((cookieId, count) -> assertEquals(count, actual.get(cookieId), cookieId));
+        assertEquals(expected.size(), actual.size());
+    }
+
+    @Test
+    void testCloseDeletesRunFiles() throws Exception {
+        OffHeapCookieCounter counter = new OffHeapCookieCounter(0, tempDir.toFile());
+        for (int i = 0; i < 5_000; i++) {
+            counter.increment("cookie" + i);
+        }
+        assertTrue(counter.getRunCount() > 0, "The table should have been spilled.");
+        assertEquals(5_000, counter.size());
+
+        counter.clear();
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "Run files should be deleted on clear.");
+        }
+        counter.increment("cookie1");
+        counter.increment("cookie1");
+        assertEquals(List.of("cookie1"), counter.getMostActiveCookieIds(), "A cleared counter should count again.");
+        assertEquals(2, counter.getMaxCount(), "Counts from before the clear should be forgotten.");
+
+        counter.close();
+
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "Run files should be deleted on close.");
+        }
+        assertEquals(0, counter.size());
+    }
+
+    @Test
+    void testProcessorWithMemoryBudget() throws Exception {
+        File log = tempDir.resolve("cookies.csv").toFile();
+        StringBuilder content = new StringBuilder("cookie,timestamp\n");
+        for (int i = 0; i < 3_000; i++) {
+            content.append("id").append(i).append(",2018-12-09T10:13:00+00:00\n");
+        }
+        content.append("id42,2018-12-09T09:13:00+00:00\n").append("id7,2018-12-08T09:13:00+00:00\n");
+        Files.writeString(log.toPath(), content);
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+
+        for (ReaderMode mode : ReaderMode.values()) {
+            CookieFileProcessor processor = new CookieFileProcessorImpl(mode.createReader(2), false, 1);
+            Collection<Cookie> mostActive = processor.getMostActiveCookies(List.of(log), date);
+            assertEquals(1, mostActive.size(), mode + " should find a single most active cookie.");
+            Cookie cookie = mostActive.iterator().next();
+            assertEquals("id42", cookie.getCookieId(), mode.toString());
+            assertEquals(2, cookie.getCount(), mode.toString());
+
+            List<Cookie> top = processor.getTopCookies(List.of(log), List.of(date), 2).get(date);
+            assertEquals(List.of("id42", "id0"), top.stream().map(Cookie::getCookieId).toList(), mode.toString());
+        }
+    }
+}
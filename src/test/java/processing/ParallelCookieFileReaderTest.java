@@ -0,0 +1,65 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelCookieFileReaderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    @Test
+    void testReadFileMatchesSequentialReader(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_several_days.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            for (int day = 10; day >= 1; day--) {
+                for (int minute = 1439; minute >= 0; minute -= 7) {
+                    out.printf("cookie%d,2018-12-%02dT%02d:%02d:00+00:00%n",
+                            (minute * 31) % 17, day, minute / 60, minute % 60);
+                    if (minute % 100 == 0) {
+                        out.println("cookie,broken");
+                    }
+                }
+            }
+        }
+
+        CSVCookieFileReader sequential = new CSVCookieFileReader();
+        for (ParallelCookieFileReader reader : List.of(new ParallelCookieFileReader(1),
+                new ParallelCookieFileReader(4), new ParallelCookieFileReader(3, 1000))) {
+            for (int day = 1; day <= 10; day++) {
+                Date targetDate = dateFormat.parse(String.format("2018-12-%02d", day));
+                assertEquals(TestLogs.timestampsById(sequential.readFile(List.of(tempFile), targetDate)),
+                        TestLogs.timestampsById(reader.readFile(List.of(tempFile), targetDate)),
+                        "Parallel reader should return the same cookies as the sequential reader for day " + day);
+            }
+        }
+    }
+
+    @Test
+    void testReadSeveralFiles() throws ParseException {
+        List<File> files = List.of(new File("src/test/resources/cookie_three_most_active_cookies.csv"),
+                new File("src/test/resources/cookie_one_line.csv"),
+                new File("src/test/resources/cookie_empty_line.csv"),
+                new File("src/test/resources/directory"));
+        Date targetDate = dateFormat.parse("2018-12-09");
+
+        assertEquals(TestLogs.timestampsById(new CSVCookieFileReader().readFile(files, targetDate)),
+                TestLogs.timestampsById(new ParallelCookieFileReader(2).readFile(files, targetDate)),
+                "Parallel reader should return the same cookies as the sequential reader.");
+    }
+
+    @Test
+    void testIncorrectParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelCookieFileReader(0));
+    }
+}
@@ -0,0 +1,101 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedCookieFileReaderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    @Test
+    void testPipelineMatchesSequentialReader(@TempDir Path tempDir) throws IOException, ParseException {
+        List<File> files = new ArrayList<>();
+        for (int f = 0; f < 3; f++) {
+            File file = tempDir.resolve("cookie_log" + f + ".csv").toFile();
+            try (PrintWriter out = new PrintWriter(file)) {
+                out.println("cookie,timestamp");
+                for (int day = 10; day >= 1; day--) {
+                    for (int minute = 1439; minute >= 0; minute -= 5 + f) {
+                        out.printf("cookie%d,2018-12-%02dT%02d:%02d:00+00:00%n",
+                                (minute * 31 + f) % 23, day, minute / 60, minute % 60);
+                        if (minute % 100 == 0) {
+                            out.println("cookie,broken");
+                        }
+                    }
+                }
+            }
+            files.add(file);
+        }
+        List<Date> dates = List.of(dateFormat.parse("2018-12-02"), dateFormat.parse("2018-12-09"),
+                dateFormat.parse("2018-12-10"));
+
+        CSVCookieFileReader sequential = new CSVCookieFileReader();
+        Map<Long, CookieCounter> expected = sequential.countCookiesByDay(files, dates);
+        for (PipelinedCookieFileReader reader : List.of(new PipelinedCookieFileReader(1),
+                new PipelinedCookieFileReader(2, 3, 2, 1024, 2), new PipelinedCookieFileReader(1, 4, 1, 4096, 3))) {
+            for (Date date : dates) {
+                assertEquals(TestLogs.timestampsById(sequential.readFile(files, date)),
+                        TestLogs.timestampsById(reader.readFile(files, date)),
+                        "The pipeline should return the same cookies as the sequential reader on " + date);
+                assertEquals(TestLogs.countsOf(sequential.countCookies(files, date)),
+                        TestLogs.countsOf(reader.countCookies(files, date)));
+            }
+            Map<Long, CookieCounter> actual = reader.countCookiesByDay(files, dates);
+            for (Map.Entry<Long, CookieCounter> day : expected.entrySet()) {
+                assertEquals(TestLogs.countsOf(day.getValue()), TestLogs.countsOf(actual.get(day.getKey())));
+            }
+        }
+    }
+
+    @Test
+    void testStageMetricsAndEarlyStop(@TempDir Path tempDir) throws IOException, ParseException {
+        File file = tempDir.resolve("cookie_log.csv").toFile();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("cookie,timestamp");
+            for (int day = 20; day >= 1; day--) {
+                for (int minute = 1439; minute >= 0; minute--) {
+                    out.printf("cookie%d,2018-12-%02dT%02d:%02d:00+00:00%n", minute % 13, day, minute / 60,
+                            minute % 60);
+                }
+            }
+        }
+        PipelinedCookieFileReader reader = new PipelinedCookieFileReader(1, 2, 1, 4096, 2);
+        CookieCounter counter = reader.countCookies(List.of(file), dateFormat.parse("2018-12-20"));
+        assertEquals(1440, TestLogs.countsOf(counter).values().stream().mapToInt(Integer::intValue).sum(),
+                "Every record of the newest day should be counted.");
+
+        List<StageMetrics> stages = reader.getStageMetrics();
+        assertEquals(List.of("io", "parse", "aggregate"),
+                stages.stream().map(StageMetrics::getName).collect(Collectors.toList()));
+        assertTrue(stages.get(0).getBytes() < file.length() / 2,
+                "Reading should stop soon after the records get older than the requested day.");
+        assertTrue(stages.get(1).getItems() > 0 && stages.get(2).getItems() > 0);
+        assertEquals(stages.get(0).getBytes(), stages.get(1).getBytes(),
+                "Every block read should be handed to the parse stage.");
+    }
+
+    @Test
+    void testLineLongerThanBlockIsReported(@TempDir Path tempDir) throws IOException, ParseException {
+        File file = tempDir.resolve("cookie_long.csv").toFile();
+        Files.writeString(file.toPath(), "cookie,timestamp\n" + "x".repeat(5000) + ",2018-12-09T14:19:00+00:00\n");
+        File valid = new File("src/test/resources/cookie_three_most_active_cookies.csv");
+        Date date = dateFormat.parse("2018-12-09");
+        assertEquals(TestLogs.countsOf(new CSVCookieFileReader().countCookies(List.of(valid), date)),
+                TestLogs.countsOf(new PipelinedCookieFileReader(1, 1, 1, 1024, 2)
+                        .countCookies(List.of(file, valid), date)),
+                "A file with a line longer than a block should be skipped.");
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedCookieFileReader(1, 0, 1, 4096, 2));
+    }
+}
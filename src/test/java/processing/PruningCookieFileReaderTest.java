@@ -0,0 +1,95 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PruningCookieFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOnlyShardsOfTheDayAreRead() throws Exception {
+        List<File> shards = new ArrayList<>();
+        for (int day = 30; day >= 1; day--) {
+            String date = String.format("2018-11-%02d", day);
+            shards.add(TestLogs.writeLog(tempDir, "shard-" + day + ".csv", "cookie,timestamp\n"
+                    + "cookie" + day + "," + date + "T23:00:00+00:00\n"
+                    + "cookie" + day + "," + date + "T01:00:00+00:00\n"
+                    + "other," + date + "T00:00:00+00:00\n"));
+        }
+        List<File> read = new ArrayList<>();
+        PruningCookieFileReader reader = new PruningCookieFileReader(recordingReader(read));
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+        CookieCounter counter = reader.countCookies(shards, dateFormat.parse("2018-11-15"));
+        assertEquals(List.of(shards.get(15)), read, "Only the shard of the day should be read.");
+        assertEquals(2, counter.get("cookie15"));
+        assertEquals(1, counter.get("other"));
+
+        read.clear();
+        reader.countCookiesByDay(shards, List.of(dateFormat.parse("2018-11-02"), dateFormat.parse("2018-11-29")));
+        assertEquals(List.of(shards.get(1), shards.get(28)), read, "Shards of every requested day should be read.");
+
+        read.clear();
+        assertEquals(0, reader.countCookies(shards, dateFormat.parse("2018-12-09")).size());
+        assertTrue(read.isEmpty(), "No shard should be read for a day outside of all shards.");
+    }
+
+    @Test
+    void testFilesWithUnknownRangeAreKept() throws Exception {
+        File malformedTail = TestLogs.writeLog(tempDir, "malformed.csv", "cookie,timestamp\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\n"
+                + "broken line");
+        File headerOnly = TestLogs.writeLog(tempDir, "empty.csv", "cookie,timestamp\n");
+        File sameDay = TestLogs.writeLog(tempDir, "crlf.csv", "cookie,timestamp\r\n"
+                + "cookie1,2018-12-09T14:19:00+00:00\r\n"
+                + "cookie2,2018-12-09T10:19:00+00:00\r\n");
+        File otherDay = TestLogs.writeLog(tempDir, "other.csv", "cookie,timestamp\n"
+                + "cookie1,2018-12-07T14:19:00+00:00\n");
+
+        assertNull(PruningCookieFileReader.timeRange(malformedTail));
+        assertNull(PruningCookieFileReader.timeRange(headerOnly));
+        assertNull(PruningCookieFileReader.timeRange(new File(tempDir.toFile(), "missing.csv")));
+        long[] range = PruningCookieFileReader.timeRange(sameDay);
+        assertNotNull(range);
+        assertEquals(TimestampDecoder.decode("2018-12-09T10:19:00+00:00"), range[0]);
+        assertEquals(TimestampDecoder.decode("2018-12-09T14:19:00+00:00"), range[1]);
+
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        assertEquals(List.of(malformedTail, headerOnly, sameDay),
+                PruningCookieFileReader.prune(List.of(malformedTail, headerOnly, sameDay, otherDay),
+                        List.of(DayRange.of(date))));
+    }
+
+    private static CookieFileReader recordingReader(List<File> read) {
+        CookieFileReader delegate = new CSVCookieFileReader();
+        return new CookieFileReader() {
+            @Override
+            public Collection<Cookie> readFile(Collection<File> files, Date targetDate) {
+                read.addAll(files);
+                return delegate.readFile(files, targetDate);
+            }
+
+            @Override
+            public CookieCounter countCookies(Collection<File> files, Date targetDate) {
+                read.addAll(files);
+                return delegate.countCookies(files, targetDate);
+            }
+
+            @Override
+            public Map<Long, CookieCounter> countCookiesByDay(Collection<File> files, Collection<Date> dates) {
+                read.addAll(files);
+                return delegate.countCookiesByDay(files, dates);
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEveryReaderRecordsFileMetrics() throws Exception {
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        for (ReaderMode mode : ReaderMode.values()) {
+            File log = TestLogs.writeNoisyLog(tempDir, mode.name().toLowerCase() + ".csv", 2);
+            mode.createReader(2).countCookies(List.of(log), date);
+
+            FileMetrics metrics = ReadMetrics.global().file(log);
+            assertEquals(2, metrics.getMatchedRecords(), mode + " should count the records of the day.");
+            assertEquals(1, metrics.getLinesSkipped(SkipReason.MALFORMED_LINE), mode.toString());
+            assertEquals(1, metrics.getLinesSkipped(SkipReason.INVALID_TIMESTAMP), mode.toString());
+            assertTrue(metrics.getLinesParsed() >= 4, mode + " should count the parsed lines.");
+            assertTrue(metrics.getBytesRead() > 0, mode + " should count the bytes read.");
+        }
+    }
+
+    @Test
+    void testSkippedLinesAreRateLimited() throws Exception {
+        File log = TestLogs.writeNoisyLog(tempDir, "noisy.csv", 50);
+        List<LogRecord> records = new ArrayList<>();
+        Logger logger = Logger.getLogger(FileMetrics.class.getName());
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage().contains(log.getAbsolutePath())) {
+                    records.add(record);
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        logger.addHandler(handler);
+        try {
+            new MappedCookieFileReader().countCookies(List.of(log), new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09"));
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        FileMetrics metrics = ReadMetrics.global().file(log);
+        assertEquals(50, metrics.getLinesSkipped(SkipReason.MALFORMED_LINE) + metrics.getLinesSkipped(SkipReason.INVALID_TIMESTAMP));
+        assertEquals(FileMetrics.MAX_LOGGED_LINES + 1, records.size(),
+                "Only the first skipped lines and a notice should be logged.");
+    }
+
+    @Test
+    void testMetricsAreExposedOverJmxAndJson() throws Exception {
+        File log = TestLogs.writeNoisyLog(tempDir, "exposed.csv", 0);
+        new CSVCookieFileReader().countCookies(List.of(log), new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09"));
+        ReadMetrics.global().registerMBean();
+        ReadMetrics.global().registerMBean();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ReadMetrics.OBJECT_NAME);
+        assertTrue((Long) server.getAttribute(name, "MatchedRecords") >= 2);
+        assertNotNull(server.getAttribute(name, "BytesReadByFile"));
+
+        String json = ReadMetrics.global().toJson();
+        assertTrue(json.startsWith("{\"bytesRead\":") && json.endsWith("]}"), json);
+        assertTrue(json.contains("\"path\":\"" + log.getAbsolutePath().replace("\\", "\\\\") + "\""), json);
+    }
+}
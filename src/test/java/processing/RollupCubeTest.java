@@ -0,0 +1,129 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupCubeTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String[]> records = new ArrayList<>();
+
+    @Test
+    void testDaysMatchRawLogs() throws Exception {
+        List<File> logs = writeLogs();
+        File cube = tempDir.resolve("logs.cube").toFile();
+        assertTrue(RollupBuilder.build(logs, cube));
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        List<Date> dates = List.of(dateFormat.parse("2018-12-03"), dateFormat.parse("2018-12-07"),
+                dateFormat.parse("2018-12-09"), dateFormat.parse("2018-12-20"));
+        Map<Long, CookieCounter> expected = new CSVCookieFileReader().countCookiesByDay(logs, dates);
+        Map<Long, CookieCounter> actual = new RollupCookieFileReader(new CSVCookieFileReader())
+                .countCookiesByDay(List.of(cube), dates);
+        for (Date date : dates) {
+            long epochDay = DayRange.of(date).getEpochDay();
+            assertEquals(TestLogs.countsOf(expected.get(epochDay)), TestLogs.countsOf(actual.get(epochDay)),
+                    "The cube should count " + dateFormat.format(date) + " like the logs.");
+        }
+
+        CookieFileProcessor processor = new CookieFileProcessorImpl(new RollupCookieFileReader(new CSVCookieFileReader()));
+        assertEquals(ids(new CookieFileProcessorImpl().getMostActiveCookies(logs, dates.get(1))),
+                ids(processor.getMostActiveCookies(List.of(cube), dates.get(1))));
+        Collection<Cookie> cookies = new RollupCookieFileReader(new CSVCookieFileReader())
+                .readFile(List.of(cube), dates.get(1));
+        assertEquals(expected.get(DayRange.of(dates.get(1)).getEpochDay()).size(), cookies.size());
+    }
+
+    @Test
+    void testWindowsAreSummedFromHours() throws Exception {
+        List<File> logs = writeLogs();
+        File cube = tempDir.resolve("logs.cube").toFile();
+        assertTrue(RollupBuilder.build(logs, cube));
+        CookieFileProcessorImpl processor = new CookieFileProcessorImpl();
+
+        long hourStart = Instant.parse("2018-12-05T07:00:00Z").getEpochSecond();
+        long hourEnd = Instant.parse("2018-12-05T19:00:00Z").getEpochSecond();
+        long weekStart = Instant.parse("2018-12-03T00:00:00Z").getEpochSecond();
+        long weekEnd = weekStart + 7 * DayRange.SECONDS_PER_DAY;
+        ZoneId zone = ZoneId.of("America/New_York");
+        long zoneStart = LocalDate.of(2018, 12, 6).atStartOfDay(zone).toEpochSecond();
+        long zoneEnd = LocalDate.of(2018, 12, 7).atStartOfDay(zone).toEpochSecond();
+
+        for (long[] window : List.of(new long[]{hourStart, hourEnd}, new long[]{weekStart, weekEnd},
+                new long[]{zoneStart, zoneEnd})) {
+            Map<String, Integer> expected = expectedCounts(window[0], window[1]);
+            assertEquals(expected, TestLogs.countsOf(RollupCube.countAll(List.of(cube), window[0], window[1])),
+                    "The window " + window[0] + " - " + window[1] + " should sum its hours.");
+            int max = Collections.max(expected.values());
+            Set<String> mostActive = new TreeSet<>();
+            expected.forEach((cookieId, count) -> {
+                if (count == max) {
+                    mostActive.add(cookieId);
+                }
+            });
+            assertEquals(mostActive, new TreeSet<>(ids(processor.getMostActiveCookiesBetween(List.of(cube),
+                    window[0], window[1]))));
+            assertEquals(max, processor.getTopCookiesBetween(List.of(cube), window[0], window[1], 3).get(0).getCount());
+        }
+        assertTrue(processor.getMostActiveCookiesBetween(List.of(cube), 0, 3600).isEmpty(),
+                "A window outside the cube should be empty.");
+        assertThrows(IllegalArgumentException.class,
+                () -> processor.getMostActiveCookiesBetween(List.of(cube), hourStart + 1800, hourEnd));
+    }
+
+    private List<File> writeLogs() throws Exception {
+        long newest = Instant.parse("2018-12-09T23:30:00Z").getEpochSecond();
+        StringBuilder sorted = new StringBuilder("cookie,timestamp\n");
+        for (int i = 0; i < 2000; i++) {
+            long second = newest - i * 337L;
+            String cookieId = "cookie" + (i * i % 17);
+            records.add(new String[]{cookieId, String.valueOf(second)});
+            sorted.append(cookieId).append(',').append(Instant.ofEpochSecond(second)).append('\n');
+        }
+        StringBuilder unordered = new StringBuilder("cookie,timestamp\n");
+        for (int i = 0; i < 500; i++) {
+            long second = newest - (i * 7919L % 500) * 1201L;
+            String cookieId = "other" + (i % 5);
+            records.add(new String[]{cookieId, String.valueOf(second)});
+            unordered.append(cookieId).append(',').append(Instant.ofEpochSecond(second)).append('\n');
+        }
+        File first = tempDir.resolve("sorted.csv").toFile();
+        File second = tempDir.resolve("unordered.csv").toFile();
+        Files.writeString(first.toPath(), sorted);
+        Files.writeString(second.toPath(), unordered);
+        return List.of(first, second);
+    }
+
+    private Map<String, Integer> expectedCounts(long start, long end) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String[] record : records) {
+            long second = Long.parseLong(record[1]);
+            if (second >= start && second < end) {
+                counts.merge(record[0], 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static List<String> ids(Collection<Cookie> cookies) {
+        List<String> ids = new ArrayList<>();
+        for (Cookie cookie : cookies) {
+            ids.add(cookie.getCookieId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,78 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeekableCSVCookieFileReaderTest {
+
+    private SeekableCSVCookieFileReader reader;
+    private SimpleDateFormat dateFormat;
+
+    @BeforeEach
+    void setUp() {
+        reader = new SeekableCSVCookieFileReader();
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    }
+
+    @Test
+    void testReadFileFindsDayInTheMiddle(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_several_days.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            for (int day = 20; day >= 1; day--) {
+                for (int hour = 23; hour >= 0; hour -= 4) {
+                    out.printf("cookie%d,2018-12-%02dT%02d:00:00+00:00%n", hour % 3, day, hour);
+                }
+            }
+        }
+
+        for (int day = 1; day <= 20; day++) {
+            Date targetDate = dateFormat.parse(String.format("2018-12-%02d", day));
+            assertEquals(TestLogs.countsOf(new CSVCookieFileReader().readFile(List.of(tempFile), targetDate)),
+                    TestLogs.countsOf(reader.readFile(List.of(tempFile), targetDate)),
+                    "Seekable reader should return the same cookies as the sequential reader for day " + day);
+        }
+    }
+
+    @Test
+    void testReadFileOutsideOfFileRange() throws ParseException {
+        File file = new File("src/test/resources/cookie_given_source.csv");
+
+        assertTrue(reader.readFile(List.of(file), dateFormat.parse("2018-12-10")).isEmpty(),
+                "No cookies should be found after the newest record.");
+        assertTrue(reader.readFile(List.of(file), dateFormat.parse("2018-12-06")).isEmpty(),
+                "No cookies should be found before the oldest record.");
+        assertEquals(1, reader.readFile(List.of(file), dateFormat.parse("2018-12-07")).size(),
+                "The oldest record should be found.");
+    }
+
+    @Test
+    void testReadFileWithEmptyLinesAndIncorrectFormat(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_incorrect_data.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            out.println("cookie3,2018-12-10T14:19:00+00:00");
+            out.println("cookie1,2018-12-09T14:19:00+00:00");
+            out.println(",");
+            out.println("cookie2,not-a-date");
+            out.println("cookie1,2018-12-09T01:19:00+00:00");
+            out.println("cookie4,2018-12-08T01:19:00+00:00");
+        }
+
+        Collection<Cookie> cookies = reader.readFile(List.of(tempFile), dateFormat.parse("2018-12-09"));
+
+        assertEquals(Map.of("cookie1", 2), TestLogs.countsOf(cookies), "Should read 2 valid records of 'cookie1'.");
+    }
+}
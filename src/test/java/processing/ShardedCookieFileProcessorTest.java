@@ -0,0 +1,87 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedCookieFileProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testShardedResultMatchesSingleProcess() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int f = 0; f < 3; f++) {
+            StringBuilder log = new StringBuilder("cookie,timestamp\n");
+            int lines = 300 * (f + 1);
+            for (int i = 0; i < lines; i++) {
+                Instant timestamp = Instant.parse("2018-12-10T23:59:00Z").minusSeconds(3L * 86400 * i / lines);
+                log.append("cookie").append((i * 7 + f) % 41).append(',').append(timestamp).append('\n');
+            }
+            File file = tempDir.resolve("log" + f + ".csv").toFile();
+            Files.writeString(file.toPath(), log);
+            files.add(file);
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        List<Date> dates = List.of(dateFormat.parse("2018-12-08"), dateFormat.parse("2018-12-09"),
+                dateFormat.parse("2018-12-10"), dateFormat.parse("2018-12-11"));
+        File workDirectory = Files.createDirectory(tempDir.resolve("work")).toFile();
+
+        CookieFileProcessor expected = new CookieFileProcessorImpl(new CSVCookieFileReader());
+        CookieFileProcessor sharded = new ShardedCookieFileProcessor(2, 3, ReaderMode.CSV, 1, workDirectory,
+                WorkerLauncher.local());
+
+        Map<Date, Collection<Cookie>> mostActive = sharded.getMostActiveCookies(files, dates);
+        Map<Date, List<Cookie>> top = sharded.getTopCookies(files, dates, 5);
+        Map<Date, List<Cookie>> expectedTop = expected.getTopCookies(files, dates, 5);
+        Map<Date, DaySummary> summaries = sharded.getDailySummaries(files, dates);
+        Map<Date, DaySummary> expectedSummaries = expected.getDailySummaries(files, dates);
+        for (Date date : dates) {
+            assertEquals(expectedSummaries.get(date).getRecords(), summaries.get(date).getRecords(),
+                    "Records should match on " + dateFormat.format(date));
+            assertEquals(expectedSummaries.get(date).getDistinctCookies(), summaries.get(date).getDistinctCookies(),
+                    "Distinct cookies should match on " + dateFormat.format(date));
+            assertEquals(new TreeSet<>(ids(expected.getMostActiveCookies(files, date))),
+                    new TreeSet<>(ids(mostActive.get(date))),
+                    "Most active cookies should match on " + dateFormat.format(date));
+            assertEquals(ids(expectedTop.get(date)), ids(top.get(date)),
+                    "Top cookies should match on " + dateFormat.format(date));
+            for (int i = 0; i < top.get(date).size(); i++) {
+                assertEquals(expectedTop.get(date).get(i).getCount(), top.get(date).get(i).getCount());
+            }
+        }
+        assertFalse(mostActive.get(dates.get(1)).isEmpty(), "The workers should have counted the logs.");
+        assertTrue(mostActive.get(dates.get(3)).isEmpty(), "A day without records should have no cookies.");
+        assertArrayEquals(new String[0], workDirectory.list(), "The job directory should be deleted.");
+    }
+
+    @Test
+    void testFailingWorkerIsReported() throws Exception {
+        File file = tempDir.resolve("log.csv").toFile();
+        Files.writeString(file.toPath(), "cookie,timestamp\ncookie1,2018-12-09T14:19:00+00:00\n");
+        Date date = new SimpleDateFormat("yyyy-MM-dd").parse("2018-12-09");
+        CookieFileProcessor sharded = new ShardedCookieFileProcessor(1, 1, ReaderMode.CSV, 1, tempDir.toFile(),
+                (worker, command, log) -> new ProcessBuilder(command.get(0), "NoSuchWorker")
+                        .redirectOutput(log).redirectErrorStream(true).start());
+        assertThrows(IllegalStateException.class, () -> sharded.getMostActiveCookies(List.of(file), date),
+                "A worker exiting with an error should fail the query.");
+    }
+
+    private static List<String> ids(Collection<Cookie> cookies) {
+        List<String> ids = new ArrayList<>();
+        for (Cookie cookie : cookies) {
+            ids.add(cookie.getCookieId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,78 @@
+package processing;
+
+import model.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCookieFileReaderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    @Test
+    void testReadFileWithSmallBuffer(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_stream.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile)) {
+            out.println("cookie,timestamp");
+            for (int day = 10; day >= 1; day--) {
+                for (int hour = 23; hour >= 0; hour -= 3) {
+                    out.printf("cookie%d,2018-12-%02dT%02d:30:00+00:00%n", hour % 4, day, hour);
+                }
+            }
+        }
+
+        StreamingCookieFileReader reader = new StreamingCookieFileReader(50);
+        for (int day = 1; day <= 10; day++) {
+            Date targetDate = dateFormat.parse(String.format("2018-12-%02d", day));
+            CookieCounter expected = new MappedCookieFileReader().countCookies(List.of(tempFile), targetDate);
+            assertEquals(TestLogs.countsOf(expected),
+                    TestLogs.countsOf(reader.countCookies(List.of(tempFile), targetDate)),
+                    "Streaming reader should count the same cookies as the mapped reader for day " + day);
+            assertEquals(expected.size(), reader.readFile(List.of(tempFile), targetDate).size());
+        }
+    }
+
+    @Test
+    void testReadUnsortedStreamIncrementally() throws IOException, ParseException {
+        String input = "cookie,timestamp\n"
+                + "cookie1,2018-12-08T23:00:00+00:00\n"
+                + "cookie2,2018-12-09T01:00:00+00:00\n"
+                + "cookie" + "x".repeat(100) + ",2018-12-09T02:00:00+00:00\n"
+                + "not a record\n"
+                + "cookie2,2018-12-09T03:00:00+00:00\r\n"
+                + "cookie1,2018-12-09T04:00:00Z";
+        IncrementalCookieCounter counter = new IncrementalCookieCounter(dateFormat.parse("2018-12-09"));
+
+        new StreamingCookieFileReader(40).readStream(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII)), counter);
+
+        assertEquals(Map.of("cookie2", 2, "cookie1", 1), TestLogs.countsOf(counter.snapshot()),
+                "Records after an older one and after an over-long line should still be counted.");
+        assertEquals(3, counter.getMatchedRecords());
+        List<Cookie> mostActiveCookies = counter.getMostActiveCookies();
+        assertEquals(1, mostActiveCookies.size());
+        assertEquals("cookie2", mostActiveCookies.get(0).getCookieId());
+    }
+
+    @Test
+    void testStreamWithoutHeader() throws IOException, ParseException {
+        IncrementalCookieCounter counter = new IncrementalCookieCounter(dateFormat.parse("2018-12-09"));
+
+        new StreamingCookieFileReader().readStream(new ByteArrayInputStream(
+                "cookie1,2018-12-09T04:00:00Z\n".getBytes(StandardCharsets.US_ASCII)), counter);
+
+        assertEquals(Map.of("cookie1", 1), TestLogs.countsOf(counter.snapshot()),
+                "The first record should not be skipped.");
+    }
+}
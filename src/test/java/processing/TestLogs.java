@@ -0,0 +1,118 @@
+package processing;
+
+import model.Cookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Log fixtures and comparable views of reader results shared by the reader tests.
+ */
+final class TestLogs {
+
+    private TestLogs() {
+    }
+
+    /**
+     * Writes a log with the given content.
+     *
+     * @param directory the directory of the log
+     * @param name      the file name of the log
+     * @param content   the content of the log
+     * @return the written log
+     * @throws IOException if the log cannot be written
+     */
+    static File writeLog(Path directory, String name, String content) throws IOException {
+        File file = directory.resolve(name).toFile();
+        Files.writeString(file.toPath(), content);
+        return file;
+    }
+
+    /**
+     * Writes a log of three records around 2018-12-09 with the given number of skipped lines in between,
+     * alternating malformed lines and lines with an invalid timestamp.
+     *
+     * @param directory    the directory of the log
+     * @param name         the file name of the log
+     * @param skippedLines the number of lines a reader has to skip
+     * @return the written log
+     * @throws IOException if the log cannot be written
+     */
+    static File writeNoisyLog(Path directory, String name, int skippedLines) throws IOException {
+        StringBuilder content = new StringBuilder("cookie,timestamp\n")
+                .append("cookie1,2018-12-09T14:19:00+00:00\n");
+        for (int i = 0; i < skippedLines; i++) {
+            content.append(i % 2 == 0 ? "broken line\n" : "cookie9,yesterday\n");
+        }
+        content.append("cookie2,2018-12-09T10:13:00+00:00\n")
+                .append("cookie3,2018-12-08T22:03:00+00:00\n");
+        return writeLog(directory, name, content.toString());
+    }
+
+    /**
+     * Writes a log sorted newest first with a record of one of seven cookies every hour from 2018-12-10 down to
+     * 2018-12-01.
+     *
+     * @param file the file to write
+     * @return the written log
+     * @throws IOException if the log cannot be written
+     */
+    static File writeHourlyLog(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("cookie,timestamp");
+            for (int day = 10; day >= 1; day--) {
+                for (int hour = 23; hour >= 0; hour--) {
+                    out.printf("cookie%d,2018-12-%02dT%02d:30:00+00:00%n", (hour * day) % 7, day, hour);
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the counts of a counter keyed by cookie identifier.
+     *
+     * @param counter the counter
+     * @return the count of every cookie
+     */
+    static Map<String, Integer> countsOf(CookieCounter counter) {
+        Map<String, Integer> counts = new TreeMap<>();
+        counter.forEach(counts::put);
+        return counts;
+    }
+
+    /**
+     * Returns the counts of cookies keyed by cookie identifier.
+     *
+     * @param cookies the cookies
+     * @return the count of every cookie
+     */
+    static Map<String, Integer> countsOf(Collection<Cookie> cookies) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Cookie cookie : cookies) {
+            counts.put(cookie.getCookieId(), cookie.getCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the timestamps of cookies keyed by cookie identifier, sorted so that readers returning them in a
+     * different order compare equal.
+     *
+     * @param cookies the cookies
+     * @return the sorted timestamps of every cookie
+     */
+    static Map<String, List<Date>> timestampsById(Collection<Cookie> cookies) {
+        Map<String, List<Date>> timestamps = new TreeMap<>();
+        for (Cookie cookie : cookies) {
+            List<Date> sorted = new ArrayList<>(cookie.getTimestamps());
+            Collections.sort(sorted);
+            timestamps.put(cookie.getCookieId(), sorted);
+        }
+        return timestamps;
+    }
+}
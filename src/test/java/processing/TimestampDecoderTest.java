@@ -0,0 +1,58 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimestampDecoderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+    @Test
+    void testDecodeMatchesSimpleDateFormat() throws ParseException {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int offsetMinutes = (random.nextInt(29) - 14) * 60 + (random.nextBoolean() ? 30 : 0);
+            String offset = offsetMinutes == 0 && random.nextBoolean() ? "Z" : String.format("%c%02d:%02d",
+                    offsetMinutes < 0 ? '-' : '+', Math.abs(offsetMinutes) / 60, Math.abs(offsetMinutes) % 60);
+            LocalDate date = LocalDate.ofEpochDay(random.nextInt(60_000));
+            String text = String.format("%04d-%02d-%02dT%02d:%02d:%02d%s", date.getYear(), date.getMonthValue(),
+                    date.getDayOfMonth(), random.nextInt(24), random.nextInt(60), random.nextInt(60), offset);
+
+            long expected = dateFormat.parse(text).getTime() / 1000;
+            assertEquals(expected, TimestampDecoder.decode(text), "Incorrect decoding of " + text);
+            ByteBuffer buffer = ByteBuffer.wrap(("cookie," + text).getBytes(StandardCharsets.US_ASCII));
+            assertEquals(expected, TimestampDecoder.decode(buffer, 7, buffer.limit()),
+                    "Incorrect decoding of bytes " + text);
+        }
+    }
+
+    @Test
+    void testDecodeRejectsMalformedTimestamps() {
+        String[] malformed = {"", "not-a-date", "2018-12-09", "2018-12-09 14:19:00+00:00", "2018-12-09T14:19:00",
+                "2018-12-09T14:19:00+0000", "2018-12-09T14:19:00*00:00", "2018-13-09T14:19:00+00:00",
+                "2018-02-30T14:19:00+00:00", "2018-12-09T24:19:00+00:00", "2018-12-09T14:19:00+00:00 ",
+                "2018-12-09T14:19:00Y", "2O18-12-09T14:19:00+00:00"};
+        for (String text : malformed) {
+            assertEquals(TimestampDecoder.INVALID_TIMESTAMP, TimestampDecoder.decode(text),
+                    "Malformed timestamp should be rejected: " + text);
+        }
+    }
+
+    @Test
+    void testDayRangeUsesUtcBounds() {
+        DayRange day = DayRange.of(LocalDate.of(2018, 12, 9));
+
+        assertTrue(day.contains(TimestampDecoder.decode("2018-12-09T00:00:00+00:00")));
+        assertTrue(day.contains(TimestampDecoder.decode("2018-12-10T01:59:59+02:00")));
+        assertFalse(day.contains(TimestampDecoder.decode("2018-12-10T00:00:00Z")));
+        assertFalse(day.contains(TimestampDecoder.decode("2018-12-08T20:00:00-03:59")));
+    }
+}
@@ -0,0 +1,165 @@
+package processing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorizedCookieFileReaderTest {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    @Test
+    void testUsesVectorKernelWhenModuleIsAdded() {
+        // The surefire configuration adds jdk.incubator.vector to the test runtime
+        assertTrue(new VectorizedCookieFileReader().getKernelName().startsWith("vector"),
+                "Vector kernel should be used when the incubator module is available.");
+        assertEquals("scalar", new VectorizedCookieFileReader(new ScalarScanKernel()).getKernelName(),
+                "Scalar kernel should be used when it is given.");
+    }
+
+    @Test
+    void testMatchesCsvReaderOnMalformedAndEdgeCaseLines(@TempDir Path tempDir) throws IOException, ParseException {
+        File tempFile = tempDir.resolve("cookie_edge_cases.csv").toFile();
+        try (PrintWriter out = new PrintWriter(tempFile, StandardCharsets.US_ASCII)) {
+            out.print("cookie,timestamp\n");
+            for (int day = 10; day >= 8; day--) {
+                for (int length = 0; length <= 70; length += 7) {
+                    String id = "c".repeat(length);
+                    out.printf("%s,2018-12-%02dT%02d:15:00+00:00\n", id, day, 23 - length / 7);
+                    out.printf("%s,2018-12-%02dT%02d:15:00Z\r\n", id, day, 22 - length / 7);
+                }
+                out.print("\n");
+                out.print("\r\n");
+                out.print(",\n");
+                out.print("no-comma-at-all\n");
+                out.printf("extra,comma,2018-12-%02dT10:00:00+00:00\n", day);
+                out.printf("cookieA,2018-12-%02dT10:00:00+00:00,tail\n", day);
+                out.printf("cookieA,2018-12-%02dT10:00:00+0000\n", day);
+                out.printf("cookieA,2018-12-%02dT10:00:00+00:000\n", day);
+                out.printf("cookieA,2018-12-%02dX10:00:00+00:00\n", day);
+                out.printf("cookieA,2018-12-%02dT1a:00:00+00:00\n", day);
+                out.printf("cookieA,2018-13-%02dT10:00:00+00:00\n", day);
+                out.printf("cookieA,2018-12-%02dT10:00:00*01:00\n", day);
+                out.printf("cookieB,2018-12-%02dT05:00:00-02:00\n", day);
+                out.printf("cookieB,2018-12-%02dT03:00:00+01:30\r\n", day);
+                out.print("cookieC,\n");
+                out.printf("cookieD,2018-12-%02dT02:00:00+00:00\n", day);
+            }
+            out.print("cookieE,2018-12-08T00:00:00+00:00");
+        }
+
+        List<MappedCookieFileReader> readers = List.of(
+                new VectorizedCookieFileReader(new ScalarScanKernel()),
+                new VectorizedCookieFileReader(ScanKernel.create()),
+                new VectorizedCookieFileReader(300, ScanKernel.create()));
+        for (int day = 7; day <= 11; day++) {
+            Date targetDate = dateFormat.parse(String.format("2018-12-%02d", day));
+            Map<String, List<Date>> expected = TestLogs.timestampsById(
+                    new CSVCookieFileReader().readFile(List.of(tempFile), targetDate));
+            for (MappedCookieFileReader reader : readers) {
+                assertEquals(expected, TestLogs.timestampsById(reader.readFile(List.of(tempFile), targetDate)),
+                        "Reader should return the same cookies as the sequential reader for day " + day);
+            }
+        }
+    }
+
+    @Test
+    void testKernelScanMatchesByteScan() {
+        String text = "a,2018-12-09T10:00:00+00:00\n"
+                + "trailing,2018-12-09T10:00:00+00:00,\n"
+                + "b,2018-12-09T09:00:00+00:00\r\n"
+                + ",,\n"
+                + "\n"
+                + "c,2018-12-09T08:00:00Z\n"
+                + "d,2018-12-09T07:00:00+99:00\n"
+                + "e,2018-12-09T06:00:00+00:00\r"
+                + "\n"
+                + "f,2018-12-08T23:00:00+00:00\n"
+                + "g,2018-12-08T22:00:00+00:00\n";
+        for (int padding = 0; padding < 40; padding++) {
+            // Shifting the lines moves every delimiter across the vector boundaries
+            ByteBuffer buffer = ByteBuffer.wrap(("x".repeat(padding) + text).getBytes(StandardCharsets.US_ASCII));
+            DayRange day = DayRange.ofEpochDay(TimestampDecoder.toEpochDay(2018, 12, 9));
+            FileMetrics byteMetrics = new FileMetrics("byte");
+            List<String> byteRecords = new ArrayList<>();
+            boolean byteMore = CsvRecordScanner.scan(buffer, padding, buffer.limit(), day,
+                    (b, idStart, idEnd, second) -> byteRecords.add(CsvRecordScanner.decode(b, idStart, idEnd) + second),
+                    byteMetrics);
+
+            for (ScanKernel kernel : List.of(new ScalarScanKernel(), ScanKernel.create())) {
+                FileMetrics kernelMetrics = new FileMetrics(kernel.getName());
+                List<String> kernelRecords = new ArrayList<>();
+                boolean kernelMore = CsvRecordScanner.scan(buffer, padding, buffer.limit(), day,
+                        (b, idStart, idEnd, second) ->
+                                kernelRecords.add(CsvRecordScanner.decode(b, idStart, idEnd) + second),
+                        kernelMetrics, kernel);
+                String label = kernel.getName() + " kernel with padding " + padding;
+                assertEquals(byteRecords, kernelRecords, "Records should match for the " + label);
+                assertEquals(byteMore, kernelMore, "Early stop should match for the " + label);
+                assertEquals(byteMetrics.getBytesRead(), kernelMetrics.getBytesRead(),
+                        "Bytes read should match for the " + label);
+                assertEquals(byteMetrics.getLinesParsed(), kernelMetrics.getLinesParsed(),
+                        "Lines parsed should match for the " + label);
+                for (SkipReason reason : SkipReason.values()) {
+                    assertEquals(byteMetrics.getLinesSkipped(reason), kernelMetrics.getLinesSkipped(reason),
+                            "Skipped lines for " + reason + " should match for the " + label);
+                }
+            }
+            assertEquals(4, byteRecords.size(), "Should find the 4 valid records of the day.");
+            assertFalse(byteMore, "Scan should stop at the previous day.");
+        }
+    }
+
+    @Test
+    void testVectorKernelMatchesScalarKernel() {
+        ScanKernel scalar = new ScalarScanKernel();
+        ScanKernel vector = ScanKernel.create();
+        Random random = new Random(42);
+        byte[] alphabet = "ab0,\n\r-".getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = new byte[300];
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < bytes.length; i++) {
+                // Mostly identifier bytes, so delimiters are far enough apart to be found by full vectors
+                bytes[i] = random.nextInt(20) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'k';
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            for (int from = 0; from < 80; from += 3) {
+                for (int to = from; to <= bytes.length; to += 11) {
+                    assertEquals(scalar.indexOfDelimiter(buffer, from, to), vector.indexOfDelimiter(buffer, from, to),
+                            "Delimiter index should match in " + from + " - " + to);
+                    assertEquals(scalar.indexOfLineEnd(buffer, from, to), vector.indexOfLineEnd(buffer, from, to),
+                            "Line end index should match in " + from + " - " + to);
+                }
+            }
+        }
+
+        byte[] timestamp = "2018-12-09T14:19:00+00:00 padding to a full vector".getBytes(StandardCharsets.US_ASCII);
+        for (int tail = 0; tail <= 25; tail += 25) {
+            // Without a tail the timestamp ends at the limit, which the vector kernel checks byte by byte
+            ByteBuffer buffer = ByteBuffer.wrap(timestamp, 0, ScanKernel.TIMESTAMP_LENGTH + tail).slice();
+            assertTrue(vector.isTimestampShape(buffer, 0), "Valid timestamp should have the expected shape.");
+            for (int position = 0; position < ScanKernel.TIMESTAMP_LENGTH; position++) {
+                byte original = timestamp[position];
+                for (byte replacement : "0 9:-+TZ,\n/".getBytes(StandardCharsets.US_ASCII)) {
+                    timestamp[position] = replacement;
+                    assertEquals(scalar.isTimestampShape(buffer, 0), vector.isTimestampShape(buffer, 0),
+                            "Shape check should match for '" + (char) replacement + "' at " + position);
+                }
+                timestamp[position] = original;
+            }
+        }
+        assertFalse(vector.isTimestampShape(ByteBuffer.wrap("2018-12-09T14:19:00Z,extra, and more".getBytes(
+                StandardCharsets.US_ASCII)), 0), "Timestamp in UTC should not have the offset shape.");
+    }
+}